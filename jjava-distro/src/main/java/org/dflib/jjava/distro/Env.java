@@ -1,10 +1,14 @@
 package org.dflib.jjava.distro;
 
+import org.dflib.jjava.jupyter.channels.JupyterConnection;
+import org.dflib.jjava.jupyter.channels.OutputRateLimiter;
 import org.dflib.jjava.jupyter.kernel.util.PathsHandler;
+import org.dflib.jjava.kernel.execution.ExecutionStrategy;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -24,9 +28,72 @@ final class Env {
     public static final String JJAVA_STARTUP_SCRIPT = "JJAVA_STARTUP_SCRIPT";
     public static final String JJAVA_LOAD_EXTENSIONS = "JJAVA_LOAD_EXTENSIONS";
 
+    /**
+     * Maximum average rate of cell stdout/stderr output in bytes per second, e.g. "1000000". Once exceeded, the rest
+     * of the cell output is suppressed. Zero (default) disables the limit.
+     */
+    public static final String JJAVA_IOPUB_DATA_RATE_LIMIT = "JJAVA_IOPUB_DATA_RATE_LIMIT";
+
+    /**
+     * Maximum average rate of cell stdout/stderr messages per second, e.g. "1000". Once exceeded, the rest of the cell
+     * output is suppressed. Zero (default) disables the limit.
+     */
+    public static final String JJAVA_IOPUB_MSG_RATE_LIMIT = "JJAVA_IOPUB_MSG_RATE_LIMIT";
+
+    /**
+     * If "true", raw binary display data (e.g. images) is sent as binary message buffers instead of base64 strings.
+     * Only for the frontends that support it.
+     */
+    public static final String JJAVA_BINARY_DISPLAY_BUFFERS = "JJAVA_BINARY_DISPLAY_BUFFERS";
+
+    /**
+     * The number of ZMQ I/O threads shared by the shell, control, stdin and IOPub channels.
+     */
+    public static final String JJAVA_ZMQ_IO_THREADS = "JJAVA_ZMQ_IO_THREADS";
+
+    /**
+     * The kind of threads that run the code snippets: "platform" (default) or "virtual" (requires Java 21+).
+     */
+    public static final String JJAVA_EXECUTION_STRATEGY = "JJAVA_EXECUTION_STRATEGY";
+
+    /**
+     * If "true", a restart request replaces the kernel within the same JVM instead of shutting the process down. Only
+     * for the frontends that do not kill the kernel process on restart.
+     */
+    public static final String JJAVA_WARM_RESTART = "JJAVA_WARM_RESTART";
+
+    /**
+     * The number of pre-started worker JVMs that run the code snippets out of the kernel process. Zero (default) runs
+     * the snippets in the kernel JVM.
+     */
+    public static final String JJAVA_WORKERS = "JJAVA_WORKERS";
+
+    /**
+     * Extra JVM options of the worker JVMs, e.g. "-Xmx2g". Only used when {@link #JJAVA_WORKERS} is set.
+     */
+    public static final String JJAVA_WORKER_JVM_OPTS = "JJAVA_WORKER_JVM_OPTS";
+
+    /**
+     * If "true", the consecutive class, method and import declarations of a cell are compiled together instead of one
+     * by one, which makes the cells with many declarations run much faster.
+     */
+    public static final String JJAVA_BATCH_DECLARATIONS = "JJAVA_BATCH_DECLARATIONS";
+
+    /**
+     * Enables the documentation index of the JDK and of the classpath jars, that makes the code inspection (Shift+Tab)
+     * fast: "true" for the "~/.jjava/doc-index" directory, or the index directory path. Off by default, as the first
+     * start on each JDK version parses the JDK sources in the kernel JVM in background, which takes a few minutes of
+     * CPU and a few hundred MB of heap.
+     */
+    public static final String JJAVA_DOC_INDEX = "JJAVA_DOC_INDEX";
+
     // not used by JJava, but rather by the kernel launcher script
     public static final String JJAVA_JVM_OPTS = "JJAVA_JVM_OPTS";
 
+    // not used by JJava, but rather by the kernel launcher script. "off" disables the AppCDS archive that the launcher
+    // creates next to the kernel jar on the first run, and uses on the following runs
+    public static final String JJAVA_CDS = "JJAVA_CDS";
+
     public static String timeout() {
         return System.getenv(Env.JJAVA_TIMEOUT);
     }
@@ -43,6 +110,62 @@ final class Env {
                 && !envValueTrimmed.equalsIgnoreCase("false");
     }
 
+    public static long iopubDataRateLimit() {
+        return parseLong(Env.JJAVA_IOPUB_DATA_RATE_LIMIT, OutputRateLimiter.DEFAULT_DATA_RATE_LIMIT);
+    }
+
+    public static int iopubMsgRateLimit() {
+        return (int) Math.min(parseLong(Env.JJAVA_IOPUB_MSG_RATE_LIMIT, OutputRateLimiter.DEFAULT_MSG_RATE_LIMIT), Integer.MAX_VALUE);
+    }
+
+    public static ExecutionStrategy executionStrategy() {
+        return ExecutionStrategy.parse(System.getenv(Env.JJAVA_EXECUTION_STRATEGY));
+    }
+
+    public static int zmqIoThreads() {
+        return parseInt(Env.JJAVA_ZMQ_IO_THREADS, JupyterConnection.DEFAULT_IO_THREADS);
+    }
+
+    public static boolean binaryDisplayBuffers() {
+        String envValue = System.getenv(Env.JJAVA_BINARY_DISPLAY_BUFFERS);
+        return envValue != null && (envValue.trim().equals("1") || envValue.trim().equalsIgnoreCase("true"));
+    }
+
+    public static boolean warmRestart() {
+        String envValue = System.getenv(Env.JJAVA_WARM_RESTART);
+        return envValue != null && (envValue.trim().equals("1") || envValue.trim().equalsIgnoreCase("true"));
+    }
+
+    public static int workers() {
+        return parseInt(Env.JJAVA_WORKERS, 0);
+    }
+
+    public static List<String> workerJvmOpts() {
+        String optsString = System.getenv(Env.JJAVA_WORKER_JVM_OPTS);
+        return optsString != null ? Opts.splitOpts(optsString) : List.of();
+    }
+
+    public static boolean batchDeclarations() {
+        String envValue = System.getenv(Env.JJAVA_BATCH_DECLARATIONS);
+        return envValue != null && (envValue.trim().equals("1") || envValue.trim().equalsIgnoreCase("true"));
+    }
+
+    public static Path docIndexDir() {
+        String envValue = System.getenv(Env.JJAVA_DOC_INDEX);
+        if (envValue == null || envValue.isBlank()) {
+            return null;
+        }
+
+        String trimmed = envValue.trim();
+        if (trimmed.equals("0") || trimmed.equalsIgnoreCase("false") || trimmed.equalsIgnoreCase("off")) {
+            return null;
+        }
+
+        return trimmed.equals("1") || trimmed.equalsIgnoreCase("true")
+                ? Paths.get(System.getProperty("user.home"), ".jjava", "doc-index")
+                : Paths.get(trimmed);
+    }
+
     public static List<String> compilerOpts() {
         String optsString = System.getenv(Env.JJAVA_COMPILER_OPTS);
         return optsString != null ? Opts.splitOpts(optsString) : java.util.List.of();
@@ -68,6 +191,35 @@ final class Env {
         return snippets;
     }
 
+    // a malformed optional setting should not prevent the kernel from starting, so it falls back to the default
+    private static long parseLong(String name, long defaultValue) {
+        String envValue = System.getenv(name);
+        if (envValue == null || envValue.isBlank()) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(envValue.trim());
+        } catch (NumberFormatException e) {
+            System.err.printf("Ignoring invalid %s value '%s', using %d%n", name, envValue, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static int parseInt(String name, int defaultValue) {
+        String envValue = System.getenv(name);
+        if (envValue == null || envValue.isBlank()) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(envValue.trim());
+        } catch (NumberFormatException e) {
+            System.err.printf("Ignoring invalid %s value '%s', using %d%n", name, envValue, defaultValue);
+            return defaultValue;
+        }
+    }
+
     private static void appendSnippestFromScriptPaths(List<String> startupScripts, String scriptPaths) {
         for (Path path : PathsHandler.splitAndResolveGlobs(scriptPaths)) {
             if (Files.isRegularFile(path) && Files.isReadable(path)) {
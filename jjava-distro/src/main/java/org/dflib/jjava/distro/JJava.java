@@ -1,8 +1,11 @@
 package org.dflib.jjava.distro;
 
+import org.dflib.jjava.jupyter.channels.IOPubChannel;
 import org.dflib.jjava.jupyter.channels.JupyterConnection;
 import org.dflib.jjava.jupyter.kernel.KernelConnectionProperties;
+import org.dflib.jjava.kernel.DocumentationIndex;
 import org.dflib.jjava.kernel.JavaKernel;
+import org.dflib.jjava.kernel.execution.WorkerPool;
 import org.dflib.jjava.kernel.magics.ClasspathMagic;
 import org.dflib.jjava.kernel.magics.JarsMagic;
 import org.dflib.jjava.kernel.magics.LoadMagic;
@@ -48,7 +51,11 @@ public class JJava {
         System.setProperty("java.util.logging.SimpleFormatter.format", JUL_JUPYTER_LOG_FORMAT);
 
         KernelConnectionProperties connProps = KernelConnectionProperties.parse(Files.readString(connectionFile));
-        JupyterConnection connection = new JupyterConnection(connProps);
+        JupyterConnection connection = new JupyterConnection(
+                connProps,
+                Env.zmqIoThreads(),
+                IOPubChannel.DEFAULT_QUEUE_CAPACITY,
+                IOPubChannel.Backpressure.BLOCK);
 
         MavenDependencyResolver mavenResolver = new MavenDependencyResolver();
 
@@ -57,13 +64,20 @@ public class JJava {
 
         Timeout timeout = Timeout.parseOrDefault(System.getenv(Env.JJAVA_TIMEOUT));
 
-        JavaKernel kernel = JavaKernel.builder()
+        JavaKernel.Builder kernelBuilder = JavaKernel.builder()
                 .name("JJava")
                 .version((String) pomProps.getOrDefault("version", ""))
 
                 .extensionsEnabled(Env.extensionsEnabled())
                 .compilerOpts(Env.compilerOpts())
                 .timeout(timeout.time, timeout.timeUnit)
+                .executionStrategy(Env.executionStrategy())
+                .outputDataRateLimit(Env.iopubDataRateLimit())
+                .outputMsgRateLimit(Env.iopubMsgRateLimit())
+                .binaryDisplayBuffers(Env.binaryDisplayBuffers())
+                .workerPool(createWorkerPool())
+                .batchDeclarations(Env.batchDeclarations())
+                .documentationIndex(createDocumentationIndex())
 
                 .lineMagic("load", new LoadMagic())
                 .lineMagic("classpath", new ClasspathMagic())
@@ -78,18 +92,14 @@ public class JJava {
                 .lineMagic("addMavenDependency", new AddMavenDependencyMagic(mavenResolver))
 
                 .cellMagic("loadFromPOM", new LoadFromPomCellMagic(mavenResolver))
-                .cellMagic("time", timeMagic)
+                .cellMagic("time", timeMagic);
 
-                .build();
+        JavaKernel kernel = startKernel(kernelBuilder, true);
 
-        // default startup: init "BaseKernel.notebookKernel" and install the default extensions (if enabled)
-        kernel.onStartup();
-
-        // process custom locations: expand JShell classpath, install extensions from those places (if enabled)
-        kernel.addToClasspath(Env.extraClasspath());
-
-        // run user defined startup snippets explicitly after the default startup
-        Env.startupSnippets().forEach(s -> kernel.evalBuilder(s).resolveMagics().eval());
+        // on restart, rebuild the kernel from the same configuration, reusing the JVM and the connection
+        if (Env.warmRestart()) {
+            kernel.setWarmRestartFactory(() -> startKernel(kernelBuilder, false));
+        }
 
         // connect to Jupyter
         kernel.becomeHandlerForConnection(connection);
@@ -97,6 +107,45 @@ public class JJava {
         connection.waitUntilClose();
     }
 
+    private static JavaKernel startKernel(JavaKernel.Builder builder, boolean warmUpJShell) {
+        JavaKernel kernel = builder.build();
+
+        // Initialize the kernel and warm up JShell in the background, while connecting to Jupyter. Requests that need
+        // JShell wait until this is done
+        kernel.startWarmUp(() -> {
+
+            // default startup: init "BaseKernel.notebookKernel" and install the default extensions (if enabled)
+            kernel.onStartup();
+
+            // process custom locations: expand JShell classpath, install extensions from those places (if enabled)
+            kernel.addToClasspath(Env.extraClasspath());
+
+            // run user defined startup snippets explicitly after the default startup
+            Env.startupSnippets().forEach(s -> kernel.evalBuilder(s).resolveMagics().eval());
+        }, warmUpJShell);
+
+        return kernel;
+    }
+
+    private static WorkerPool createWorkerPool() throws IOException {
+        int workers = Env.workers();
+
+        // the pool keeps its workers ready for the warm restarts, and goes away with the kernel process
+        return workers > 0 ? new WorkerPool(workers, Env.workerJvmOpts()) : null;
+    }
+
+    private static DocumentationIndex createDocumentationIndex() {
+        Path dir = Env.docIndexDir();
+        if (dir == null) {
+            return null;
+        }
+
+        // opt-in. The index survives the warm restarts, and indexes the JDK in background on the first run
+        DocumentationIndex index = new DocumentationIndex(dir);
+        index.indexJdk();
+        return index;
+    }
+
     private static Properties loadPomProps() {
 
         Properties props = new Properties();
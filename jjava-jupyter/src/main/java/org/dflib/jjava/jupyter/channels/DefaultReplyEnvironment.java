@@ -9,6 +9,7 @@ import org.dflib.jjava.jupyter.messages.reply.ErrorReply;
 
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.List;
 
 public class DefaultReplyEnvironment implements ReplyEnvironment {
     private final JupyterSocket shell;
@@ -50,13 +51,19 @@ public class DefaultReplyEnvironment implements ReplyEnvironment {
     @Override
     public void reply(Message<?> msg) {
         if (defer) {
-            deferred.push(() -> shell.sendMessage(msg));
+            deferred.push(() -> sendReply(msg));
             this.defer = false;
         } else {
-            shell.sendMessage(msg);
+            sendReply(msg);
         }
     }
 
+    private void sendReply(Message<?> msg) {
+        // make sure the outputs published while handling the request are sent before the reply
+        iopub.flush();
+        shell.sendMessage(msg);
+    }
+
     @Override
     public ReplyEnvironment defer() {
         this.defer = true;
@@ -82,6 +89,11 @@ public class DefaultReplyEnvironment implements ReplyEnvironment {
         publish(new Message<>(context, content.getType(), content));
     }
 
+    @Override
+    public <T extends ContentType<T>> void publish(T content, List<byte[]> blobs) {
+        publish(new Message<>(context, content.getType(), content, blobs, null));
+    }
+
     @Override
     public <T extends ContentType<T>> void reply(T content) {
         reply(new Message<>(context, content.getType(), content));
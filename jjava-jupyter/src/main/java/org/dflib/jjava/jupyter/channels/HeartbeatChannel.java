@@ -8,22 +8,42 @@ import org.zeromq.ZMQ;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
-
+/**
+ * Echoes the heartbeat pings of the frontend. The pings are answered from a dedicated high priority thread, that is
+ * blocked on the socket between pings. To avoid being delayed by the traffic of the other channels, the heartbeat
+ * should have a ZMQ context of its own (see {@link #HeartbeatChannel(HMACGenerator)}).
+ */
 public class HeartbeatChannel extends JupyterSocket {
 
-    private static final long HB_DEFAULT_SLEEP_MS = 500;
     private static final AtomicInteger HEARTBEAT_ID = new AtomicInteger();
 
     private final long sleep;
+    private final boolean ownsContext;
     private volatile Loop pulse;
 
+    /**
+     * @param sleep a delay in milliseconds between polling the socket for pings. If zero, the heartbeat loop blocks on
+     *              the socket and echoes pings as soon as they arrive.
+     */
     public HeartbeatChannel(ZMQ.Context context, HMACGenerator hmacGenerator, long sleep) {
-        super(context, SocketType.REP, hmacGenerator, LoggerFactory.getLogger("HeartbeatChannel"));
-        this.sleep = sleep;
+        this(context, hmacGenerator, sleep, false);
     }
 
     public HeartbeatChannel(ZMQ.Context context, HMACGenerator hmacGenerator) {
-        this(context, hmacGenerator, HB_DEFAULT_SLEEP_MS);
+        this(context, hmacGenerator, BLOCKING_POLL);
+    }
+
+    /**
+     * Creates a heartbeat channel with its own single I/O thread ZMQ context, that is closed together with the channel.
+     */
+    public HeartbeatChannel(HMACGenerator hmacGenerator) {
+        this(ZMQ.context(1), hmacGenerator, BLOCKING_POLL, true);
+    }
+
+    private HeartbeatChannel(ZMQ.Context context, HMACGenerator hmacGenerator, long sleep, boolean ownsContext) {
+        super(context, SocketType.REP, hmacGenerator, LoggerFactory.getLogger("HeartbeatChannel"));
+        this.sleep = sleep;
+        this.ownsContext = ownsContext;
     }
 
     private boolean isBound() {
@@ -41,47 +61,79 @@ public class HeartbeatChannel extends JupyterSocket {
         logger.debug("Binding {} to {}.", channelThreadName, addr);
         super.bind(addr);
 
-        ZMQ.Poller poller = super.ctx.poller(1);
+        boolean blocking = this.sleep <= BLOCKING_POLL;
+        ZMQ.Poller poller = super.ctx.poller(2);
         poller.register(this, ZMQ.Poller.POLLIN);
 
-        this.pulse = new Loop(channelThreadName, this.sleep, () -> {
-            int events = poller.poll(0);
+        PollerWakeup wakeup = blocking ? new PollerWakeup(super.ctx, channelThreadName) : null;
+        if (wakeup != null) {
+            wakeup.register(poller);
+        }
+
+        this.pulse = new Loop(channelThreadName, blocking ? 0 : this.sleep, () -> {
+            int events = poller.poll(blocking ? -1 : 0);
             if (events > 0) {
-                byte[] msg = this.recv();
-                if (msg == null) {
-                    // Error during receive, just continue
-                    logger.warn("Poll returned 1 event but could not read the echo string");
-                    return;
+                if (wakeup != null) {
+                    wakeup.drain();
                 }
 
-                if (!this.send(msg)) {
-                    logger.warn("Could not send heartbeat reply");
-                }
+                while (!this.closed && hasPendingMessages()) {
+                    byte[] msg = this.recv();
+                    if (msg == null) {
+                        // Error during receive, just continue
+                        logger.warn("Poll returned 1 event but could not read the echo string");
+                        return;
+                    }
 
-                logger.trace("Heartbeat pulse");
+                    if (!this.send(msg)) {
+                        logger.warn("Could not send heartbeat reply");
+                    }
+
+                    logger.trace("Heartbeat pulse");
+                }
             }
         });
+
+        if (wakeup != null) {
+            this.pulse.onWakeup(wakeup::wakeup);
+        }
+
         this.pulse.onClose(() -> {
             logger.debug( "{} shutdown.", channelThreadName);
+            poller.close();
+            if (wakeup != null) {
+                wakeup.close();
+            }
             this.pulse = null;
         });
+
+        // the echo is cheap, so it shouldn't hurt to let it preempt the busy threads if the OS honors Java priorities
+        this.pulse.setPriority(Thread.MAX_PRIORITY);
         this.pulse.start();
         logger.debug("Polling on {}", channelThreadName);
     }
 
     @Override
     public void close() {
-        if (this.isBound())
-            this.pulse.shutdown();
+        Loop loop = this.pulse;
+        if (loop != null) {
+            loop.shutdown();
+            awaitLoopShutdown(loop);
+        }
 
         super.close();
+
+        if (this.ownsContext) {
+            super.ctx.close();
+        }
     }
 
     @Override
     public void waitUntilClose() {
-        if (this.pulse != null) {
+        Loop loop = this.pulse;
+        if (loop != null) {
             try {
-                this.pulse.join();
+                loop.join();
             } catch (InterruptedException ignored) {
             }
         }
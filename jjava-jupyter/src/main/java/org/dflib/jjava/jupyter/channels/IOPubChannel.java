@@ -2,13 +2,99 @@ package org.dflib.jjava.jupyter.channels;
 
 import org.dflib.jjava.jupyter.kernel.KernelConnectionProperties;
 import org.dflib.jjava.jupyter.messages.HMACGenerator;
+import org.dflib.jjava.jupyter.messages.Header;
+import org.dflib.jjava.jupyter.messages.Message;
+import org.dflib.jjava.jupyter.messages.publish.PublishStream;
 import org.slf4j.LoggerFactory;
 import org.zeromq.SocketType;
 import org.zeromq.ZMQ;
 
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A channel publishing kernel outputs and status changes. Can work in one of two modes. In the synchronous mode
+ * (queue capacity of zero), each message is serialized, signed and sent on the calling thread. In the asynchronous
+ * mode, {@link #sendMessage(Message)} only places the message in a bounded queue, and a single publisher thread does
+ * the actual sending. The queue preserves the order of messages, so a status message is never published ahead of
+ * the outputs produced before it.
+ */
 public class IOPubChannel extends JupyterSocket {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final AtomicInteger PUBLISHER_ID = new AtomicInteger();
+    private static final long PUBLISHER_IDLE_PARK_NS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long CLOSE_FLUSH_TIMEOUT_MS = 1000;
+
+    /**
+     * Defines what a producer does when it attempts to publish a message, and the publisher queue is full.
+     */
+    public enum Backpressure {
+
+        /**
+         * The producer blocks until the publisher frees up space in the queue.
+         */
+        BLOCK,
+
+        /**
+         * The oldest queued stdout/stderr chunk is discarded to make room for the new message. If there are no stream
+         * messages in the queue, the producer blocks.
+         */
+        DROP_OLDEST_STREAM,
+
+        /**
+         * A stream message is appended to the most recently queued chunk of the same stream if that chunk hasn't
+         * been picked up by the publisher yet. Otherwise, the producer blocks.
+         */
+        COALESCE
+    }
+
+    private final int capacity;
+    private final Backpressure backpressure;
+
+    // "queue" is a non-blocking linked queue, while "slots" keeps it bounded
+    private final Queue<Entry> queue;
+    private final Semaphore slots;
+    private final AtomicLong enqueued;
+    private final AtomicLong completed;
+    private final AtomicLong dropped;
+    private final Object flushLock;
+
+    private volatile Entry lastEntry;
+    private volatile int flushWaiters;
+    private volatile Loop publisher;
+
     public IOPubChannel(ZMQ.Context context, HMACGenerator hmacGenerator) {
+        this(context, hmacGenerator, 0, Backpressure.BLOCK);
+    }
+
+    /**
+     * @param capacity     the size of the publisher queue. If zero, the channel works in the synchronous mode.
+     * @param backpressure the strategy for the producers when the queue is full
+     */
+    public IOPubChannel(ZMQ.Context context, HMACGenerator hmacGenerator, int capacity, Backpressure backpressure) {
         super(context, SocketType.PUB, hmacGenerator, LoggerFactory.getLogger("IOPubChannel"));
+
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative queue capacity: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.backpressure = Objects.requireNonNull(backpressure);
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.slots = new Semaphore(capacity);
+        this.enqueued = new AtomicLong();
+        this.completed = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.flushLock = new Object();
     }
 
     @Override
@@ -17,5 +103,272 @@ public class IOPubChannel extends JupyterSocket {
 
         logger.debug("Binding iopub to {}.", addr);
         super.bind(addr);
+
+        if (isAsync()) {
+            startPublisher();
+        }
+    }
+
+    public boolean isAsync() {
+        return capacity > 0;
+    }
+
+    /**
+     * Returns the number of stream messages discarded due to the {@link Backpressure#DROP_OLDEST_STREAM} policy.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void sendMessage(Message<?> message) {
+        if (!isAsync()) {
+            super.sendMessage(message);
+            return;
+        }
+
+        if (this.closed) {
+            return;
+        }
+
+        if (!slots.tryAcquire()) {
+
+            // the queue is full, apply the backpressure policy
+            if (backpressure == Backpressure.COALESCE && coalesce(message)) {
+                return;
+            }
+
+            if (backpressure != Backpressure.DROP_OLDEST_STREAM || !dropOldestStream()) {
+                try {
+                    slots.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.warn("Interrupted while waiting to publish a message, the message is discarded");
+                    return;
+                }
+            }
+        }
+
+        enqueue(new Entry(message));
+    }
+
+    /**
+     * Blocks until all the messages previously passed to {@link #sendMessage(Message)} are sent.
+     */
+    @Override
+    public void flush() {
+        Loop publisher = this.publisher;
+        if (publisher == null || publisher == Thread.currentThread()) {
+            return;
+        }
+
+        long target = enqueued.get();
+        if (completed.get() >= target) {
+            return;
+        }
+
+        synchronized (flushLock) {
+            flushWaiters++;
+            try {
+                while (completed.get() < target && this.publisher != null) {
+                    flushLock.wait(PUBLISHER_IDLE_PARK_NS / 1_000_000);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                flushWaiters--;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Loop publisher = this.publisher;
+        if (publisher != null) {
+            flushWithTimeout();
+            publisher.shutdown();
+            awaitLoopShutdown(publisher);
+        }
+
+        super.close();
+    }
+
+    private void flushWithTimeout() {
+        long deadline = System.currentTimeMillis() + CLOSE_FLUSH_TIMEOUT_MS;
+        long target = enqueued.get();
+        while (completed.get() < target && System.currentTimeMillis() < deadline && this.publisher != null) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    void startPublisher() {
+        String name = "IOPub-" + PUBLISHER_ID.getAndIncrement();
+
+        Loop loop = new Loop(name, 0, this::publishQueued);
+        loop.onWakeup(() -> LockSupport.unpark(loop));
+
+        // an Error publishing a message (e.g. an OOM serializing a huge stream chunk) must not stop the publisher, as
+        // the producers and the flushing threads would wait for it forever
+        loop.onError(t -> {
+            logger.error("Error publishing a message, the message is discarded", t);
+            releaseFlushWaiters();
+            return 0;
+        });
+        loop.onClose(() -> {
+            this.publisher = null;
+            releaseFlushWaiters();
+        });
+
+        this.publisher = loop;
+        loop.start();
+    }
+
+    private void enqueue(Entry entry) {
+        enqueued.incrementAndGet();
+        queue.offer(entry);
+        lastEntry = entry;
+
+        Loop publisher = this.publisher;
+        if (publisher != null) {
+            LockSupport.unpark(publisher);
+        }
+    }
+
+    private boolean dropOldestStream() {
+        Iterator<Entry> it = queue.iterator();
+        while (it.hasNext()) {
+            Entry e = it.next();
+            if (e.isStream() && e.take()) {
+
+                // if the publisher has polled the entry concurrently, it will skip it, as it is already taken
+                if (queue.remove(e)) {
+                    completed.incrementAndGet();
+                }
+
+                dropped.incrementAndGet();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean coalesce(Message<?> message) {
+        Entry last = this.lastEntry;
+        return last != null && last.append(message);
+    }
+
+    private void publishQueued() {
+        Entry e;
+        while ((e = queue.poll()) != null) {
+
+            Message<?> message = e.takeForSending();
+
+            // "null" means the entry was dropped, and its queue slot is reused by another message
+            try {
+                if (message != null) {
+                    slots.release();
+                    publish(message);
+                }
+            } catch (RuntimeException ex) {
+                logger.warn("Error publishing a message: {}", ex.getMessage());
+            } finally {
+                // counted even if "publish" throws an Error, so that the flushing threads are not stuck waiting for it
+                completed.incrementAndGet();
+            }
+        }
+
+        releaseFlushWaiters();
+
+        if (queue.isEmpty()) {
+            LockSupport.parkNanos(this, PUBLISHER_IDLE_PARK_NS);
+        }
+    }
+
+    /**
+     * Sends a message to the socket. Invoked on the publisher thread in the asynchronous mode.
+     */
+    protected void publish(Message<?> message) {
+        super.sendMessage(message);
+    }
+
+    private void releaseFlushWaiters() {
+        if (flushWaiters > 0) {
+            synchronized (flushLock) {
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Message<?> message;
+        private StringBuilder appended;
+        private boolean taken;
+
+        Entry(Message<?> message) {
+            this.message = message;
+        }
+
+        boolean isStream() {
+            return message.getContent() instanceof PublishStream;
+        }
+
+        synchronized boolean take() {
+            if (taken) {
+                return false;
+            }
+
+            taken = true;
+            return true;
+        }
+
+        /**
+         * Marks the entry as taken by the publisher, returning a message to send or null if the entry was dropped.
+         */
+        synchronized Message<?> takeForSending() {
+            if (taken) {
+                return null;
+            }
+
+            taken = true;
+            return appended != null ? merged() : message;
+        }
+
+        synchronized boolean append(Message<?> next) {
+            if (taken || !isStream() || !(next.getContent() instanceof PublishStream)) {
+                return false;
+            }
+
+            PublishStream stream = (PublishStream) message.getContent();
+            PublishStream nextStream = (PublishStream) next.getContent();
+            if (stream.getStreamType() != nextStream.getStreamType() || !sameParent(next)) {
+                return false;
+            }
+
+            if (appended == null) {
+                appended = new StringBuilder(stream.getText());
+            }
+
+            appended.append(nextStream.getText());
+            return true;
+        }
+
+        private boolean sameParent(Message<?> next) {
+            Header<?> p1 = message.getParentHeader();
+            Header<?> p2 = next.getParentHeader();
+            return p1 == null ? p2 == null : p2 != null && Objects.equals(p1.getId(), p2.getId());
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Message<?> merged() {
+            PublishStream stream = (PublishStream) message.getContent();
+            return new Message(
+                    message.getIdentities(),
+                    message.getHeader(),
+                    message.getParentHeader(),
+                    message.getMetadata(),
+                    new PublishStream(stream.getStreamType(), appended.toString()),
+                    message.getBlobs());
+        }
     }
 }
@@ -0,0 +1,207 @@
+package org.dflib.jjava.jupyter.channels;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A reusable buffer for a single JSON part of an outgoing message. Gson writes to it through a streaming UTF-8
+ * writer that encodes chars straight into the buffer, so the JSON never materializes as a String or a char array.
+ * The bytes are accumulated in fixed-size chunks that are kept between messages, so the buffer never has to be grown
+ * by copying. {@link #toByteArray()} produces the only copy of the data, which is then signed and handed over to
+ * ZMQ. Not thread-safe.
+ */
+class JsonFrame extends OutputStream {
+
+    static final int CHUNK_SIZE = 16 * 1024;
+
+    // chunks past this number, allocated while encoding a large message, are not reused
+    private static final int MAX_RETAINED_CHUNKS = 64;
+
+    private final Writer writer;
+    private final List<byte[]> chunks;
+
+    private byte[] chunk;
+    private int chunkIndex;
+    private int chunkPos;
+    private int count;
+
+    JsonFrame() {
+        this.writer = new Utf8Writer();
+        this.chunks = new ArrayList<>();
+        this.chunks.add(new byte[CHUNK_SIZE]);
+        this.chunk = chunks.get(0);
+    }
+
+    /**
+     * Replaces the frame contents with the JSON representation of the value.
+     */
+    void writeJson(Gson gson, Object value) {
+        reset();
+
+        try {
+            JsonWriter jsonWriter = gson.newJsonWriter(writer);
+            if (value != null) {
+                gson.toJson(value, value.getClass(), jsonWriter);
+            } else {
+                gson.toJson(JsonNull.INSTANCE, jsonWriter);
+            }
+
+            jsonWriter.flush();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    int length() {
+        return count;
+    }
+
+    byte[] toByteArray() {
+        byte[] bytes = new byte[count];
+
+        int copied = 0;
+        for (int i = 0; copied < count; i++) {
+            int len = Math.min(CHUNK_SIZE, count - copied);
+            System.arraycopy(chunks.get(i), 0, bytes, copied, len);
+            copied += len;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Clears the frame after its contents were sent, dropping the extra chunks if the frame grew too large.
+     */
+    void release() {
+        reset();
+
+        for (int i = chunks.size() - 1; i >= MAX_RETAINED_CHUNKS; i--) {
+            chunks.remove(i);
+        }
+    }
+
+    private void reset() {
+        this.chunkIndex = 0;
+        this.chunk = chunks.get(0);
+        this.chunkPos = 0;
+        this.count = 0;
+    }
+
+    @Override
+    public void write(int b) {
+        if (chunkPos == CHUNK_SIZE) {
+            nextChunk();
+        }
+
+        chunk[chunkPos++] = (byte) b;
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (chunkPos == CHUNK_SIZE) {
+                nextChunk();
+            }
+
+            int n = Math.min(len, CHUNK_SIZE - chunkPos);
+            System.arraycopy(b, off, chunk, chunkPos, n);
+            chunkPos += n;
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void nextChunk() {
+        chunkIndex++;
+        if (chunkIndex == chunks.size()) {
+            chunks.add(new byte[CHUNK_SIZE]);
+        }
+
+        chunk = chunks.get(chunkIndex);
+        chunkPos = 0;
+    }
+
+    /**
+     * An allocation-free UTF-8 encoding writer. Unpaired surrogates are replaced with '?', same as
+     * {@link String#getBytes(java.nio.charset.Charset)} does.
+     */
+    private class Utf8Writer extends Writer {
+
+        private char highSurrogate;
+
+        @Override
+        public void write(int c) {
+            writeChar((char) c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            for (int i = off, end = off + len; i < end; i++) {
+                writeChar(cbuf[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            for (int i = off, end = off + len; i < end; i++) {
+                writeChar(str.charAt(i));
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                JsonFrame.this.write('?');
+            }
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+
+        private void writeChar(char c) {
+            if (highSurrogate != 0) {
+                char high = highSurrogate;
+                highSurrogate = 0;
+
+                if (Character.isLowSurrogate(c)) {
+                    int cp = Character.toCodePoint(high, c);
+                    JsonFrame.this.write(0xF0 | (cp >> 18));
+                    JsonFrame.this.write(0x80 | ((cp >> 12) & 0x3F));
+                    JsonFrame.this.write(0x80 | ((cp >> 6) & 0x3F));
+                    JsonFrame.this.write(0x80 | (cp & 0x3F));
+                    return;
+                }
+
+                JsonFrame.this.write('?');
+            }
+
+            if (c < 0x80) {
+                JsonFrame.this.write(c);
+            } else if (c < 0x800) {
+                JsonFrame.this.write(0xC0 | (c >> 6));
+                JsonFrame.this.write(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                JsonFrame.this.write('?');
+            } else {
+                JsonFrame.this.write(0xE0 | (c >> 12));
+                JsonFrame.this.write(0x80 | ((c >> 6) & 0x3F));
+                JsonFrame.this.write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+}
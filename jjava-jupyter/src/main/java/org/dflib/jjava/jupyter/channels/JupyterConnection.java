@@ -10,11 +10,14 @@ import org.zeromq.ZMQ;
 
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 public class JupyterConnection {
+
+    public static final int DEFAULT_IO_THREADS = 1;
+
     private final KernelConnectionProperties connProps;
 
     private boolean isConnected = false;
@@ -29,18 +32,47 @@ public class JupyterConnection {
     private final Map<MessageType, ShellHandler> handlers;
 
     public JupyterConnection(KernelConnectionProperties connProps) throws NoSuchAlgorithmException, InvalidKeyException {
+        this(connProps, DEFAULT_IO_THREADS, IOPubChannel.DEFAULT_QUEUE_CAPACITY, IOPubChannel.Backpressure.BLOCK);
+    }
+
+    public JupyterConnection(
+            KernelConnectionProperties connProps,
+            int iopubQueueCapacity,
+            IOPubChannel.Backpressure iopubBackpressure) throws NoSuchAlgorithmException, InvalidKeyException {
+        this(connProps, DEFAULT_IO_THREADS, iopubQueueCapacity, iopubBackpressure);
+    }
+
+    /**
+     * @param ioThreads          the number of I/O threads of the ZMQ context shared by the shell, control, stdin and
+     *                           IOPub channels. The heartbeat always has a context of its own.
+     * @param iopubQueueCapacity the size of the IOPub publisher queue. If zero, outputs are published synchronously
+     *                           on the producing thread.
+     * @param iopubBackpressure  what to do when the IOPub publisher queue is full
+     */
+    public JupyterConnection(
+            KernelConnectionProperties connProps,
+            int ioThreads,
+            int iopubQueueCapacity,
+            IOPubChannel.Backpressure iopubBackpressure) throws NoSuchAlgorithmException, InvalidKeyException {
+
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("At least one I/O thread is required: " + ioThreads);
+        }
+
         this.connProps = connProps;
-        this.ctx = ZMQ.context(1);
+        this.ctx = ZMQ.context(ioThreads);
 
         HMACGenerator hmacGenerator = connProps.createHMACGenerator();
 
-        this.heartbeat = new HeartbeatChannel(this.ctx, hmacGenerator);
+        // a separate context, so that the pings are not queued behind large outputs in the shared I/O threads
+        this.heartbeat = new HeartbeatChannel(hmacGenerator);
         this.shell = new ShellChannel(this.ctx, hmacGenerator, false, this);
         this.control = new ShellChannel(this.ctx, hmacGenerator, true, this);
         this.stdin = new StdinChannel(this.ctx, hmacGenerator);
-        this.iopub = new IOPubChannel(this.ctx, hmacGenerator);
+        this.iopub = new IOPubChannel(this.ctx, hmacGenerator, iopubQueueCapacity, iopubBackpressure);
 
-        this.handlers = new HashMap<>();
+        // handlers may be replaced by a kernel restarted from the control channel, while the shell channel reads them
+        this.handlers = new ConcurrentHashMap<>();
     }
 
     public void connect() {
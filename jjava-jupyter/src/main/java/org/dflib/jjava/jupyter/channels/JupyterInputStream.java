@@ -9,6 +9,7 @@ public class JupyterInputStream extends InputStream {
 
     private ShellReplyEnvironment env;
     private boolean enabled;
+    private Runnable beforeRead;
     private byte[] data = null;
     private int bufferPos = 0;
 
@@ -27,6 +28,13 @@ public class JupyterInputStream extends InputStream {
         this.env = env;
     }
 
+    /**
+     * Registers a callback invoked before requesting input from the frontend, e.g. to flush a buffered prompt.
+     */
+    public void onBeforeRead(Runnable callback) {
+        this.beforeRead = callback;
+    }
+
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
     }
@@ -49,8 +57,11 @@ public class JupyterInputStream extends InputStream {
     }
 
     private byte[] readFromFrontend() {
-        if (this.enabled)
+        if (this.enabled) {
+            if (this.beforeRead != null)
+                this.beforeRead.run();
             return this.env.readFromStdIn().getBytes(this.encoding);
+        }
         return new byte[0];
     }
 
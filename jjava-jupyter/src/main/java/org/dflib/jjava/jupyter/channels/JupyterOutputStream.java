@@ -1,32 +1,113 @@
 package org.dflib.jjava.jupyter.channels;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
+/**
+ * An output stream that publishes the bytes written to it as Jupyter "stream" messages. To avoid flooding the
+ * frontend with tiny messages (e.g. one per {@code println} of an autoflushing {@link java.io.PrintStream}), the
+ * output is buffered and published at most once per flush interval, unless the buffer grows past the flush threshold.
+ * Output pending when the interval expires is published from a background thread. {@link #flushNow()} publishes
+ * the buffered output immediately and should be called at the end of each cell. An optional {@link OutputRateLimiter}
+ * suppresses runaway output.
+ */
 public class JupyterOutputStream extends ByteArrayOutputStream {
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 50;
+    public static final int DEFAULT_FLUSH_THRESHOLD = 64 * 1024;
+
     private static final int INITIAL_BUFFER_CAP = 1024;
 
     private ShellReplyEnvironment env;
     private final BiConsumer<ShellReplyEnvironment, String> write;
 
+    private final CharsetDecoder decoder;
+    private final long flushIntervalNs;
+    private final int flushThreshold;
+    private final OutputRateLimiter rateLimiter;
+
+    private CharBuffer decoded;
+    private long lastPublishedNs;
+    private ScheduledFuture<?> scheduledFlush;
+
     public JupyterOutputStream(ShellReplyEnvironment env, BiConsumer<ShellReplyEnvironment, String> write) {
-        super(INITIAL_BUFFER_CAP);
-        this.env = env;
-        this.write = write;
+        this(env, write, StandardCharsets.UTF_8, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_FLUSH_THRESHOLD);
     }
 
     public JupyterOutputStream(BiConsumer<ShellReplyEnvironment, String> write) {
         this(null, write);
     }
 
-    public void setEnv(ShellReplyEnvironment env) {
+    /**
+     * @param encoding        the encoding of the bytes written to the stream
+     * @param flushIntervalMs the minimal interval between two published messages. If zero, the output is published
+     *                        on every flush.
+     * @param flushThreshold  the number of buffered bytes that triggers publishing regardless of the interval
+     */
+    public JupyterOutputStream(
+            ShellReplyEnvironment env,
+            BiConsumer<ShellReplyEnvironment, String> write,
+            Charset encoding,
+            long flushIntervalMs,
+            int flushThreshold) {
+        this(env, write, encoding, flushIntervalMs, flushThreshold, null);
+    }
+
+    /**
+     * @param rateLimiter an optional limiter of the published output. May be null.
+     */
+    public JupyterOutputStream(
+            ShellReplyEnvironment env,
+            BiConsumer<ShellReplyEnvironment, String> write,
+            Charset encoding,
+            long flushIntervalMs,
+            int flushThreshold,
+            OutputRateLimiter rateLimiter) {
+
+        super(INITIAL_BUFFER_CAP);
+
+        if (flushIntervalMs < 0) {
+            throw new IllegalArgumentException("Negative flush interval: " + flushIntervalMs);
+        }
+
+        if (flushThreshold <= 0) {
+            throw new IllegalArgumentException("Flush threshold must be positive: " + flushThreshold);
+        }
+
+        this.env = env;
+        this.write = write;
+
+        // a "streaming" decoder keeps incomplete multibyte sequences in the buffer between the publish calls
+        this.decoder = encoding.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        this.flushIntervalNs = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.flushThreshold = flushThreshold;
+        this.rateLimiter = rateLimiter;
+        this.decoded = CharBuffer.allocate(INITIAL_BUFFER_CAP);
+    }
+
+    public synchronized void setEnv(ShellReplyEnvironment env) {
         this.env = env;
     }
 
-    public void retractEnv(ShellReplyEnvironment env) {
-        if (this.env == env)
+    public synchronized void retractEnv(ShellReplyEnvironment env) {
+        if (this.env == env) {
+            flushNow();
             this.env = null;
+        }
     }
 
     public boolean isAttached() {
@@ -34,13 +115,153 @@ public class JupyterOutputStream extends ByteArrayOutputStream {
     }
 
     @Override
-    public void flush() {
-        if (this.env != null) {
-            String contents = new String(super.buf, 0, super.count, StandardCharsets.UTF_8);
-            if (!contents.isEmpty())
+    public synchronized void write(int b) {
+        if (rateLimiter != null && rateLimiter.isSuppressing()) {
+            rateLimiter.suppress(1);
+            return;
+        }
+
+        super.write(b);
+        afterWrite();
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+
+        // write large arrays in chunks, so that the buffer stays bounded, and the rate limiter can cut off the rest
+        int end = off + len;
+        while (off < end) {
+            if (rateLimiter != null && rateLimiter.isSuppressing()) {
+                rateLimiter.suppress(end - off);
+                return;
+            }
+
+            int chunk = Math.min(end - off, Math.max(1, flushThreshold - super.count));
+            super.write(b, off, chunk);
+            afterWrite();
+            off += chunk;
+        }
+    }
+
+    /**
+     * Publishes the buffered output if the flush interval has passed since the last published message. Otherwise,
+     * schedules the publishing for the end of the interval.
+     */
+    @Override
+    public synchronized void flush() {
+        if (super.count == 0) {
+            return;
+        }
+
+        if (System.nanoTime() - lastPublishedNs >= flushIntervalNs) {
+            publish(false);
+        } else {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Publishes all the buffered output immediately.
+     */
+    public synchronized void flushNow() {
+        publish(true);
+    }
+
+    /**
+     * Publishes the buffered output followed by the given text immediately, bypassing the rate limiter. Used for
+     * kernel notices, such as the rate limit warning.
+     */
+    public synchronized void writeNotice(String text) {
+        publish(true);
+        if (this.env != null && !text.isEmpty()) {
+            this.write.accept(this.env, text);
+        }
+    }
+
+    private void afterWrite() {
+        if (super.count >= flushThreshold) {
+            publish(false);
+        } else if (super.count > 0 && flushIntervalNs > 0) {
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (scheduledFlush == null) {
+            long delayNs = Math.max(0, lastPublishedNs + flushIntervalNs - System.nanoTime());
+            scheduledFlush = FlushScheduler.INSTANCE.schedule(this::flushScheduled, delayNs, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized void flushScheduled() {
+        scheduledFlush = null;
+        publish(false);
+    }
+
+    private void publish(boolean endOfInput) {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+
+        lastPublishedNs = System.nanoTime();
+
+        int bytes = super.count;
+        String contents = decode(endOfInput);
+        if (this.env != null && !contents.isEmpty()) {
+            if (rateLimiter == null || rateLimiter.tryPublish(bytes - super.count)) {
                 this.write.accept(this.env, contents);
+            }
+        }
+    }
+
+    private String decode(boolean endOfInput) {
+        int maxChars = (int) Math.ceil(super.count * (double) decoder.maxCharsPerByte()) + 1;
+        if (decoded.capacity() < maxChars) {
+            decoded = CharBuffer.allocate(maxChars);
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(super.buf, 0, super.count);
+        decoder.decode(in, decoded, endOfInput);
+        if (endOfInput) {
+            decoder.flush(decoded);
+            decoder.reset();
+        }
+
+        // an incomplete trailing character stays in the buffer until more bytes arrive
+        int remaining = in.remaining();
+        System.arraycopy(super.buf, in.position(), super.buf, 0, remaining);
+        super.count = remaining;
+
+        decoded.flip();
+        String contents = decoded.toString();
+        decoded.clear();
+
+        // don't hold on to the memory after an occasional oversized write
+        if (super.buf.length > 2 * flushThreshold && super.count < INITIAL_BUFFER_CAP) {
+            super.buf = Arrays.copyOf(super.buf, INITIAL_BUFFER_CAP);
+        }
+
+        if (decoded.capacity() > 2 * flushThreshold) {
+            decoded = CharBuffer.allocate(INITIAL_BUFFER_CAP);
         }
 
-        super.reset();
+        return contents;
+    }
+
+    private static class FlushScheduler {
+
+        static final ScheduledExecutorService INSTANCE = create();
+
+        private static ScheduledExecutorService create() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "JupyterOutputStream-flush");
+                t.setDaemon(true);
+                return t;
+            });
+
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
     }
 }
@@ -2,9 +2,6 @@ package org.dflib.jjava.jupyter.channels;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
-import com.google.gson.reflect.TypeToken;
 import org.dflib.jjava.jupyter.kernel.ExpressionValue;
 import org.dflib.jjava.jupyter.kernel.KernelConnectionProperties;
 import org.dflib.jjava.jupyter.kernel.history.HistoryEntry;
@@ -14,6 +11,7 @@ import org.dflib.jjava.jupyter.messages.KernelTimestamp;
 import org.dflib.jjava.jupyter.messages.Message;
 import org.dflib.jjava.jupyter.messages.MessageType;
 import org.dflib.jjava.jupyter.messages.ReplyType;
+import org.dflib.jjava.jupyter.messages.adapters.ByteArrayAdapter;
 import org.dflib.jjava.jupyter.messages.adapters.ExpressionValueAdapter;
 import org.dflib.jjava.jupyter.messages.adapters.HeaderAdapter;
 import org.dflib.jjava.jupyter.messages.adapters.HistoryEntryAdapter;
@@ -23,22 +21,27 @@ import org.dflib.jjava.jupyter.messages.adapters.MessageTypeAdapter;
 import org.dflib.jjava.jupyter.messages.adapters.PublishStatusAdapter;
 import org.dflib.jjava.jupyter.messages.adapters.ReplyTypeAdapter;
 import org.dflib.jjava.jupyter.messages.publish.PublishStatus;
-import org.dflib.jjava.jupyter.messages.reply.ErrorReply;
 import org.dflib.jjava.jupyter.messages.request.HistoryRequest;
 import org.slf4j.Logger;
 import org.zeromq.SocketType;
 import org.zeromq.ZMQ;
 
-import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 public abstract class JupyterSocket extends ZMQ.Socket {
 
+    /**
+     * A channel loop "sleep" value that makes the loop block on its socket until a message arrives, instead of
+     * periodically polling it.
+     */
+    public static final long BLOCKING_POLL = 0;
+
+    private static final long LOOP_SHUTDOWN_TIMEOUT_MS = 1000;
+
     protected static String formatAddress(String transport, String ip, int port) {
         return transport + "://" + ip + ":" + port;
     }
@@ -49,6 +52,7 @@ public abstract class JupyterSocket extends ZMQ.Socket {
     private static final Gson replyGson = new GsonBuilder()
             .registerTypeAdapter(HistoryEntry.class, HistoryEntryAdapter.INSTANCE)
             .registerTypeAdapter(ExpressionValue.class, ExpressionValueAdapter.INSTANCE)
+            .registerTypeAdapter(byte[].class, ByteArrayAdapter.INSTANCE)
             .create();
 
     private static final Gson gson = new GsonBuilder()
@@ -58,15 +62,17 @@ public abstract class JupyterSocket extends ZMQ.Socket {
             .registerTypeAdapter(PublishStatus.class, PublishStatusAdapter.INSTANCE)
             .registerTypeAdapter(HistoryRequest.class, HistoryRequestAdapter.INSTANCE)
             .registerTypeHierarchyAdapter(ReplyType.class, new ReplyTypeAdapter(replyGson))
+            .registerTypeAdapter(byte[].class, ByteArrayAdapter.INSTANCE)
             .create();
     private static final byte[] EMPTY_JSON_OBJECT = "{}".getBytes(StandardCharsets.UTF_8);
-    private static final Type JSON_OBJ_AS_MAP = new TypeToken<Map<String, Object>>() {
-    }.getType();
 
     protected final ZMQ.Context ctx;
     protected final HMACGenerator hmacGenerator;
     protected final Logger logger;
-    protected boolean closed;
+    protected volatile boolean closed;
+
+    // a reusable buffer for the JSON parts of the outgoing messages, guarded by the "sendMessage" lock
+    private final JsonFrame jsonFrame;
 
     protected JupyterSocket(ZMQ.Context context, SocketType type, HMACGenerator hmacGenerator, Logger logger) {
         super(context, type);
@@ -74,10 +80,34 @@ public abstract class JupyterSocket extends ZMQ.Socket {
         this.hmacGenerator = hmacGenerator;
         this.logger = logger;
         this.closed = false;
+        this.jsonFrame = new JsonFrame();
     }
 
     public abstract void bind(KernelConnectionProperties connProps);
 
+    /**
+     * Returns true if there is at least one message that can be read from the socket without blocking.
+     */
+    protected boolean hasPendingMessages() {
+        return (super.getEvents() & ZMQ.Poller.POLLIN) != 0;
+    }
+
+    /**
+     * Waits for a channel loop to finish after it was requested to shut down. Returns immediately if called from the
+     * loop thread itself, and gives up after a short timeout, as the loop may be busy handling a long-running request.
+     */
+    protected void awaitLoopShutdown(Loop loop) {
+        if (loop == Thread.currentThread()) {
+            return;
+        }
+
+        try {
+            loop.join(LOOP_SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public synchronized Message<?> readMessage() {
         if (this.closed)
             return null;
@@ -90,7 +120,7 @@ public abstract class JupyterSocket extends ZMQ.Socket {
         }
 
         //A hex string
-        String receivedSig = super.recvStr();
+        byte[] receivedSig = super.recv();
 
         byte[] headerRaw = super.recv();
         byte[] parentHeaderRaw = super.recv();
@@ -102,36 +132,15 @@ public abstract class JupyterSocket extends ZMQ.Socket {
             blobs.add(super.recv());
         }
 
-        String calculatedSig = hmacGenerator.calculateSignature(headerRaw, parentHeaderRaw, metadataRaw, contentRaw);
-
-        if (calculatedSig != null && !calculatedSig.equals(receivedSig)) {
+        if (!hmacGenerator.verify(receivedSig, headerRaw, parentHeaderRaw, metadataRaw, contentRaw)) {
             throw new SecurityException("Message received had invalid signature");
         }
 
-        Header<?> header = gson.fromJson(new String(headerRaw, StandardCharsets.UTF_8), Header.class);
-
-        Header<?> parentHeader = null;
-        JsonElement parentHeaderJson = JsonParser.parseString(new String(parentHeaderRaw, StandardCharsets.UTF_8));
-        if (parentHeaderJson.isJsonObject() && !parentHeaderJson.getAsJsonObject().isEmpty()) {
-            parentHeader = gson.fromJson(parentHeaderJson, Header.class);
-        }
-
-        Map<String, Object> metadata = gson.fromJson(new String(metadataRaw, StandardCharsets.UTF_8), JSON_OBJ_AS_MAP);
-        Object content = gson.fromJson(new String(contentRaw, StandardCharsets.UTF_8), header.getType().getContentType());
-        if (content instanceof ErrorReply) {
-            header = new Header<>(
-                    header.getId(),
-                    header.getUsername(),
-                    header.getSessionId(),
-                    header.getTimestamp(),
-                    header.getType().error(),
-                    header.getVersion());
-        }
-
-        Message<?> message = new Message(identities, header, parentHeader, metadata, content, blobs);
+        // the JSON parts are decoded lazily, when (and if) the message is handled
+        ReceivedMessage<?> message = new ReceivedMessage<>(gson, identities, headerRaw, parentHeaderRaw, metadataRaw, contentRaw, blobs);
 
         if (logger.isTraceEnabled()) {
-            logger.trace("Received from {}:\n{}", super.base().getSocketOptx(zmq.ZMQ.ZMQ_LAST_ENDPOINT), gson.toJson(message));
+            logger.trace("Received from {}:\n{}", super.base().getSocketOptx(zmq.ZMQ.ZMQ_LAST_ENDPOINT), gson.toJson(message.decoded()));
         }
 
         return message;
@@ -149,29 +158,36 @@ public abstract class JupyterSocket extends ZMQ.Socket {
         if (this.closed)
             return;
 
-        byte[] headerRaw = gson.toJson(message.getHeader()).getBytes(StandardCharsets.UTF_8);
-        byte[] parentHeaderRaw = message.hasParentHeader()
-                ? gson.toJson(message.getParentHeader()).getBytes(StandardCharsets.UTF_8)
-                : EMPTY_JSON_OBJECT;
-        byte[] metadata = message.hasMetadata()
-                ? gson.toJson(message.getMetadata()).getBytes(StandardCharsets.UTF_8)
-                : EMPTY_JSON_OBJECT;
-        byte[] content = gson.toJson(message.getContent()).getBytes(StandardCharsets.UTF_8);
+        byte[] headerRaw;
+        byte[] parentHeaderRaw;
+        byte[] metadata;
+        byte[] content;
+
+        try {
+            headerRaw = toJson(message.getHeader());
+            parentHeaderRaw = message.hasParentHeader() ? toJson(message.getParentHeader()) : EMPTY_JSON_OBJECT;
+            metadata = message.hasMetadata() ? toJson(message.getMetadata()) : EMPTY_JSON_OBJECT;
+            content = toJson(message.getContent());
+        } finally {
+            jsonFrame.release();
+        }
 
-        String hmac = hmacGenerator.calculateSignature(headerRaw, parentHeaderRaw, metadata, content);
+        byte[] hmac = hmacGenerator.sign(headerRaw, parentHeaderRaw, metadata, content);
 
         if (logger.isTraceEnabled()) {
             logger.trace("Sending to {}:\n{}", super.base().getSocketOptx(zmq.ZMQ.ZMQ_LAST_ENDPOINT), gson.toJson(message));
         }
 
+        // ZMQ takes ownership of the byte arrays without copying them, except for the signature that is stored in a
+        // reusable buffer, and must be copied
         message.getIdentities().forEach(super::sendMore);
         super.sendMore(IDENTITY_BLOB_DELIMITER);
-        super.sendMore(hmac.getBytes(StandardCharsets.US_ASCII));
+        super.send(hmac, 0, hmac.length, ZMQ.SNDMORE);
         super.sendMore(headerRaw);
         super.sendMore(parentHeaderRaw);
         super.sendMore(metadata);
 
-        if (message.getBlobs() == null)
+        if (message.getBlobs() == null || message.getBlobs().isEmpty())
             super.send(content);
         else {
             super.sendMore(content);
@@ -189,6 +205,22 @@ public abstract class JupyterSocket extends ZMQ.Socket {
         }
     }
 
+    /**
+     * Serializes a message part to UTF-8 JSON. The JSON is streamed to a reusable buffer, and then copied to an
+     * exactly sized array that is handed over to ZMQ.
+     */
+    private byte[] toJson(Object messagePart) {
+        jsonFrame.writeJson(gson, messagePart);
+        return jsonFrame.toByteArray();
+    }
+
+    /**
+     * Blocks until all the messages passed to {@link #sendMessage(Message)} are handed over to ZMQ. This is a noop for
+     * sockets that send messages synchronously.
+     */
+    public void flush() {
+    }
+
     @Override
     public void close() {
         super.close();
@@ -16,6 +16,7 @@ public class Loop extends Thread {
 
     private volatile boolean running;
     private volatile Runnable onCloseCb;
+    private volatile Runnable onWakeupCb;
     private volatile ToLongFunction<Throwable> onErrorCb;
 
     public Loop(String name, long sleep, Runnable target) {
@@ -42,6 +43,22 @@ public class Loop extends Thread {
         }
     }
 
+    /**
+     * Registers a callback that interrupts a loop body blocked waiting for I/O. It is invoked on {@link #shutdown()}
+     * and {@link #doNext(Runnable)}, so that a blocking loop can notice those without waiting for the next event.
+     */
+    public void onWakeup(Runnable callback) {
+        if (onWakeupCb != null) {
+            Runnable oldCallback = this.onWakeupCb;
+            onWakeupCb = () -> {
+                oldCallback.run();
+                callback.run();
+            };
+        } else {
+            onWakeupCb = callback;
+        }
+    }
+
     public void onError(ToLongFunction<Throwable> callback) {
         if (onErrorCb == null) {
             onErrorCb = callback;
@@ -63,6 +80,7 @@ public class Loop extends Thread {
 
     public void doNext(Runnable next) {
         this.runNextQueue.offer(next);
+        wakeup();
     }
 
     @Override
@@ -121,6 +139,14 @@ public class Loop extends Thread {
 
     public void shutdown() {
         running = false;
+        wakeup();
         logger.debug("Loop shutdown.");
     }
+
+    private void wakeup() {
+        Runnable callback = this.onWakeupCb;
+        if (callback != null) {
+            callback.run();
+        }
+    }
 }
@@ -0,0 +1,123 @@
+package org.dflib.jjava.jupyter.channels;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of stdout/stderr output published by a cell, similar to "iopub_data_rate_limit" and
+ * "iopub_msg_rate_limit" of Jupyter server. The rates are averaged over a window of time. Once either rate is
+ * exceeded, the rest of the cell output is suppressed, and only the amount of the suppressed output is tracked, so
+ * the memory use stays bounded regardless of how much a cell prints. A single instance is shared by stdout and stderr.
+ * The limits are off by default, as the suppressed output can not be recovered.
+ */
+public class OutputRateLimiter {
+
+    public static final long DEFAULT_DATA_RATE_LIMIT = 0;
+    public static final int DEFAULT_MSG_RATE_LIMIT = 0;
+    public static final long DEFAULT_RATE_WINDOW_MS = 3000;
+
+    private final long dataRateLimit;
+    private final int msgRateLimit;
+    private final long windowNs;
+    private final long maxWindowBytes;
+    private final long maxWindowMessages;
+
+    private long windowStartNs;
+    private long windowBytes;
+    private long windowMessages;
+
+    private boolean suppressing;
+    private long suppressedBytes;
+    private long suppressedMessages;
+
+    /**
+     * @param dataRateLimit the maximum average number of bytes per second. Zero or negative means no limit.
+     * @param msgRateLimit  the maximum average number of messages per second. Zero or negative means no limit.
+     * @param rateWindowMs  the period of time over which the rates are averaged
+     */
+    public OutputRateLimiter(long dataRateLimit, int msgRateLimit, long rateWindowMs) {
+
+        if (rateWindowMs <= 0) {
+            throw new IllegalArgumentException("Rate window must be positive: " + rateWindowMs);
+        }
+
+        this.dataRateLimit = dataRateLimit;
+        this.msgRateLimit = msgRateLimit;
+        this.windowNs = TimeUnit.MILLISECONDS.toNanos(rateWindowMs);
+        this.maxWindowBytes = dataRateLimit > 0 ? dataRateLimit * rateWindowMs / 1000 : Long.MAX_VALUE;
+        this.maxWindowMessages = msgRateLimit > 0 ? msgRateLimit * rateWindowMs / 1000 : Long.MAX_VALUE;
+        this.windowStartNs = System.nanoTime();
+    }
+
+    public OutputRateLimiter(long dataRateLimit, int msgRateLimit) {
+        this(dataRateLimit, msgRateLimit, DEFAULT_RATE_WINDOW_MS);
+    }
+
+    /**
+     * Returns true if the output of the given size can be published. Otherwise, counts it as suppressed. Once this
+     * method returns false, it keeps returning false until {@link #reset()} is called.
+     */
+    public synchronized boolean tryPublish(int bytes) {
+        if (suppressing) {
+            suppressedBytes += bytes;
+            suppressedMessages++;
+            return false;
+        }
+
+        long now = System.nanoTime();
+        if (now - windowStartNs >= windowNs) {
+            windowStartNs = now;
+            windowBytes = 0;
+            windowMessages = 0;
+        }
+
+        if (windowBytes + bytes > maxWindowBytes || windowMessages + 1 > maxWindowMessages) {
+            suppressing = true;
+            suppressedBytes += bytes;
+            suppressedMessages++;
+            return false;
+        }
+
+        windowBytes += bytes;
+        windowMessages++;
+        return true;
+    }
+
+    /**
+     * Records the bytes discarded before they were turned into a message.
+     */
+    public synchronized void suppress(int bytes) {
+        suppressedBytes += bytes;
+    }
+
+    public synchronized boolean isSuppressing() {
+        return suppressing;
+    }
+
+    /**
+     * Starts a new rate window and stops suppressing the output. Returns a warning describing the output suppressed
+     * since the previous reset or null if nothing was suppressed.
+     */
+    public synchronized String reset() {
+        String warning = suppressing
+                ? String.format("%nOutput rate limit exceeded (data rate limit: %s, message rate limit: %s), " +
+                        "%d bytes of output in %d messages were suppressed.%n",
+                describeLimit(dataRateLimit, "bytes/sec"),
+                describeLimit(msgRateLimit, "messages/sec"),
+                suppressedBytes,
+                suppressedMessages)
+                : null;
+
+        this.windowStartNs = System.nanoTime();
+        this.windowBytes = 0;
+        this.windowMessages = 0;
+        this.suppressing = false;
+        this.suppressedBytes = 0;
+        this.suppressedMessages = 0;
+
+        return warning;
+    }
+
+    private static String describeLimit(long limit, String unit) {
+        return limit > 0 ? String.format("%d %s", limit, unit) : "none";
+    }
+}
@@ -0,0 +1,66 @@
+package org.dflib.jjava.jupyter.channels;
+
+import org.zeromq.SocketType;
+import org.zeromq.ZMQ;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pair of connected "inproc" sockets that allows to interrupt a thread blocked in {@link ZMQ.Poller#poll(long)}.
+ * The receiving end is registered with the poller of the blocked thread, and any other thread can wake it up by
+ * calling {@link #wakeup()}.
+ */
+class PollerWakeup {
+
+    private static final AtomicInteger WAKEUP_ID = new AtomicInteger();
+    private static final byte[] WAKEUP_SIGNAL = new byte[0];
+
+    private final ZMQ.Socket receiver;
+    private final ZMQ.Socket sender;
+    private boolean closed;
+
+    PollerWakeup(ZMQ.Context context, String name) {
+        String address = "inproc://wakeup-" + name + "-" + WAKEUP_ID.getAndIncrement();
+
+        this.receiver = context.socket(SocketType.PAIR);
+        this.receiver.setLinger(0);
+        this.receiver.bind(address);
+
+        this.sender = context.socket(SocketType.PAIR);
+        this.sender.setLinger(0);
+        this.sender.connect(address);
+    }
+
+    /**
+     * Registers the receiving socket with the poller, returning its poller index.
+     */
+    int register(ZMQ.Poller poller) {
+        return poller.register(receiver, ZMQ.Poller.POLLIN);
+    }
+
+    /**
+     * Interrupts a pending or the next {@link ZMQ.Poller#poll(long)} call. Safe to call from any thread.
+     */
+    synchronized void wakeup() {
+        if (!closed) {
+            sender.send(WAKEUP_SIGNAL, ZMQ.DONTWAIT);
+        }
+    }
+
+    /**
+     * Discards all accumulated wakeup signals. Must be called from the polling thread.
+     */
+    void drain() {
+        while (receiver.recv(ZMQ.DONTWAIT) != null) {
+            // discard
+        }
+    }
+
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            sender.close();
+            receiver.close();
+        }
+    }
+}
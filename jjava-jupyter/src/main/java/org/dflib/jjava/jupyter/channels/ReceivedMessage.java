@@ -0,0 +1,166 @@
+package org.dflib.jjava.jupyter.channels;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import org.dflib.jjava.jupyter.messages.Header;
+import org.dflib.jjava.jupyter.messages.Message;
+import org.dflib.jjava.jupyter.messages.ReplyType;
+import org.dflib.jjava.jupyter.messages.reply.ErrorReply;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A message read from a socket. Holds the raw JSON frames and decodes the header, the parent header, the metadata and
+ * the content on first access, so a message that nobody handles costs only the signature check. The frames are
+ * parsed straight from bytes, without building intermediate Strings. The decoding is synchronized, so the message can
+ * be read from any thread. A decoded field is assigned before its raw frame is released.
+ */
+class ReceivedMessage<T> extends Message<T> {
+
+    private static final Type JSON_OBJ_AS_MAP = new TypeToken<Map<String, Object>>() {
+    }.getType();
+
+    // "transient" to exclude the fields from the reflection-based serialization of the message used in logging
+    private final transient Gson gson;
+
+    private transient byte[] headerRaw;
+    private transient byte[] parentHeaderRaw;
+    private transient byte[] metadataRaw;
+    private transient byte[] contentRaw;
+
+    private transient Header<T> header;
+    private transient Header<?> parentHeader;
+    private transient Map<String, Object> metadata;
+    private transient T content;
+
+    ReceivedMessage(
+            Gson gson,
+            List<byte[]> identities,
+            byte[] headerRaw,
+            byte[] parentHeaderRaw,
+            byte[] metadataRaw,
+            byte[] contentRaw,
+            List<byte[]> blobs) {
+
+        super(identities, null, null, null, null, blobs);
+
+        this.gson = gson;
+        this.headerRaw = headerRaw;
+        this.parentHeaderRaw = parentHeaderRaw;
+        this.metadataRaw = metadataRaw;
+        this.contentRaw = contentRaw;
+    }
+
+    @Override
+    public synchronized Header<T> getHeader() {
+        if (headerRaw != null) {
+            Header<T> header = decode(headerRaw, Header.class);
+
+            // replies with an "error" status are decoded as ErrorReply, and need a header of the matching type
+            if (ReplyType.class.isAssignableFrom(header.getType().getContentType())) {
+                Object content = decode(contentRaw, header.getType().getContentType());
+                this.content = (T) content;
+                contentRaw = null;
+
+                if (content instanceof ErrorReply) {
+                    header = (Header<T>) new Header<>(
+                            header.getId(),
+                            header.getUsername(),
+                            header.getSessionId(),
+                            header.getTimestamp(),
+                            header.getType().error(),
+                            header.getVersion());
+                }
+            }
+
+            this.header = header;
+            headerRaw = null;
+        }
+
+        return header;
+    }
+
+    @Override
+    public boolean hasParentHeader() {
+        return getParentHeader() != null;
+    }
+
+    @Override
+    public synchronized Header<?> getParentHeader() {
+        if (parentHeaderRaw != null) {
+
+            // the parent header may be an empty object, which is only known after parsing
+            JsonElement json = JsonParser.parseReader(reader(parentHeaderRaw));
+            if (json != null && json.isJsonObject() && !json.getAsJsonObject().isEmpty()) {
+                this.parentHeader = gson.fromJson(json, Header.class);
+            }
+
+            parentHeaderRaw = null;
+        }
+
+        return parentHeader;
+    }
+
+    @Override
+    public boolean hasMetadata() {
+        return getMetadata() != null;
+    }
+
+    @Override
+    public synchronized Map<String, Object> getMetadata() {
+        if (metadataRaw != null) {
+            this.metadata = decode(metadataRaw, JSON_OBJ_AS_MAP);
+            metadataRaw = null;
+        }
+
+        return metadata;
+    }
+
+    @Override
+    public synchronized Map<String, Object> getNonNullMetadata() {
+        if (!hasMetadata()) {
+            this.metadata = new LinkedHashMap<>();
+        }
+
+        return metadata;
+    }
+
+    @Override
+    public synchronized T getContent() {
+        if (contentRaw != null) {
+            Class<T> contentType = getHeader().getType().getContentType();
+
+            // may have been decoded by "getHeader()"
+            if (contentRaw != null) {
+                this.content = decode(contentRaw, contentType);
+                contentRaw = null;
+            }
+        }
+
+        return content;
+    }
+
+    /**
+     * Returns a fully decoded copy of this message.
+     */
+    Message<T> decoded() {
+        return new Message<>(getIdentities(), getHeader(), getParentHeader(), getMetadata(), getContent(), getBlobs());
+    }
+
+    private <V> V decode(byte[] json, Type type) {
+        return gson.fromJson(reader(json), type);
+    }
+
+    private JsonReader reader(byte[] json) {
+        return gson.newJsonReader(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8));
+    }
+}
@@ -5,6 +5,8 @@ import org.dflib.jjava.jupyter.messages.Message;
 import org.dflib.jjava.jupyter.messages.MessageType;
 import org.dflib.jjava.jupyter.messages.reply.ErrorReply;
 
+import java.util.List;
+
 public interface ReplyEnvironment {
     void publish(Message<?> msg);
 
@@ -48,6 +50,11 @@ public interface ReplyEnvironment {
 
     <T extends ContentType<T>> void publish(T content);
 
+    /**
+     * Publish the content with raw binary buffers attached to the message after its JSON parts.
+     */
+    <T extends ContentType<T>> void publish(T content, List<byte[]> blobs);
+
     <T extends ContentType<T>> void reply(T content);
 
     void replyError(MessageType<?> type, ErrorReply error);
@@ -3,14 +3,17 @@ package org.dflib.jjava.jupyter.channels;
 import org.dflib.jjava.jupyter.kernel.KernelConnectionProperties;
 import org.dflib.jjava.jupyter.messages.HMACGenerator;
 import org.dflib.jjava.jupyter.messages.Message;
+import org.dflib.jjava.jupyter.messages.request.CompleteRequest;
 import org.slf4j.LoggerFactory;
 import org.zeromq.SocketType;
 import org.zeromq.ZMQ;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class ShellChannel extends JupyterSocket {
-    private static final long SHELL_DEFAULT_LOOP_SLEEP_MS = 50;
     private static final AtomicInteger SHELL_ID = new AtomicInteger();
 
     private volatile Loop ioloop;
@@ -19,6 +22,11 @@ public class ShellChannel extends JupyterSocket {
     private final JupyterConnection connection;
     private final long sleep;
 
+    /**
+     * @param sleep a delay in milliseconds between polling the socket for messages. If zero, the channel loop blocks
+     *              on the socket and wakes up as soon as a message arrives. A positive value enables the legacy
+     *              "poll and sleep" mode.
+     */
     public ShellChannel(ZMQ.Context context, HMACGenerator hmacGenerator, boolean isControl, JupyterConnection connection, long sleep) {
         super(context, SocketType.ROUTER, hmacGenerator, LoggerFactory.getLogger(isControl ? "ControlChannel" : "ShellChannel"));
         this.isControl = isControl;
@@ -27,7 +35,7 @@ public class ShellChannel extends JupyterSocket {
     }
 
     public ShellChannel(ZMQ.Context context, HMACGenerator hmacGenerator, boolean isControl, JupyterConnection connection) {
-        this(context, hmacGenerator, isControl, connection, SHELL_DEFAULT_LOOP_SLEEP_MS);
+        this(context, hmacGenerator, isControl, connection, BLOCKING_POLL);
     }
 
     private boolean isBound() {
@@ -35,7 +43,6 @@ public class ShellChannel extends JupyterSocket {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void bind(KernelConnectionProperties connProps) {
         if (this.isBound())
             throw new IllegalStateException("Shell channel already bound");
@@ -49,40 +56,46 @@ public class ShellChannel extends JupyterSocket {
         logger.debug("Binding {} to {}.", channelThreadName, address);
         super.bind(address);
 
-        ZMQ.Poller poller = super.ctx.poller(1);
+        boolean blocking = this.sleep <= BLOCKING_POLL;
+        ZMQ.Poller poller = super.ctx.poller(2);
         poller.register(this, ZMQ.Poller.POLLIN);
 
-        this.ioloop = new Loop(channelThreadName, this.sleep, () -> {
-            int events = poller.poll(0);
+        PollerWakeup wakeup = blocking ? new PollerWakeup(super.ctx, channelThreadName) : null;
+        if (wakeup != null) {
+            wakeup.register(poller);
+        }
+
+        // the messages read ahead of the one being handled, only accessed by the loop thread
+        Deque<Message<?>> queued = new ArrayDeque<>();
+
+        this.ioloop = new Loop(channelThreadName, blocking ? 0 : this.sleep, () -> {
+            int events = poller.poll(blocking ? -1 : 0);
             if (events > 0) {
-                Message<?> message = super.readMessage();
-
-                ShellHandler handler = connection.getHandler(message.getHeader().getType());
-                if (handler != null) {
-                    logger.debug("Handling message: {}", message.getHeader().getType().getName());
-                    ShellReplyEnvironment env = connection.prepareReplyEnv(this, message);
-                    try {
-                        handler.handle(env, message);
-                    } catch (Exception e) {
-                        logger.warn("Unhandled exception handling {}. {} - {}",
-                                message.getHeader().getType().getName(),
-                                e.getClass().getSimpleName(),
-                                e.getLocalizedMessage());
-                    } finally {
-                        env.resolveDeferrals();
-                    }
-                    if (env.isMarkedForShutdown()) {
-                        logger.debug("{} shutting down connection as environment was marked for shutdown.", channelThreadName);
-                        this.connection.close();
-                    }
-                } else {
-                    logger.warn("Unhandled message: {}", message.getHeader().getType().getName());
+                if (wakeup != null) {
+                    wakeup.drain();
+                }
+
+                // process everything that is queued before going back to poll. The messages that arrived while handling
+                // the previous one are read ahead, so that the handler can tell if its request is already superseded
+                readPendingMessages(queued);
+                while (!this.closed && !queued.isEmpty()) {
+                    Message<?> message = queued.poll();
+                    handleMessage(channelThreadName, message, isSuperseded(message, queued));
+                    readPendingMessages(queued);
                 }
             }
         });
 
+        if (wakeup != null) {
+            this.ioloop.onWakeup(wakeup::wakeup);
+        }
+
         this.ioloop.onClose(() -> {
             logger.debug("{} shutdown.", channelThreadName);
+            poller.close();
+            if (wakeup != null) {
+                wakeup.close();
+            }
             this.ioloop = null;
         });
 
@@ -91,19 +104,96 @@ public class ShellChannel extends JupyterSocket {
         logger.debug("Polling on {}", channelThreadName);
     }
 
+    private void readPendingMessages(Deque<Message<?>> queued) {
+        while (!this.closed && hasPendingMessages()) {
+            Message<?> message = super.readMessage();
+            if (message != null) {
+                queued.add(message);
+            }
+        }
+    }
+
+    private static boolean isSuperseded(Message<?> message, Deque<Message<?>> queued) {
+        if (!(message.getContent() instanceof CompleteRequest)) {
+            return false;
+        }
+
+        CompleteRequest request = (CompleteRequest) message.getContent();
+        for (Message<?> next : queued) {
+            if (next.getContent() instanceof CompleteRequest
+                    && Objects.equals(next.getHeader().getSessionId(), message.getHeader().getSessionId())
+                    && continuesTyping(request, (CompleteRequest) next.getContent())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // true if the next request is for the same code, with more text typed at the cursor, so that its completions
+    // replace the ones of the earlier request. The completions of a different cell or of a different place in the same
+    // cell are still needed
+    private static boolean continuesTyping(CompleteRequest request, CompleteRequest next) {
+        String code = request.getCode();
+        String nextCode = next.getCode();
+        int cursor = request.getCursorPos();
+        int nextCursor = next.getCursorPos();
+
+        if (code == null || nextCode == null
+                || cursor < 0 || cursor > code.length()
+                || nextCursor < cursor || nextCursor > nextCode.length()) {
+            return false;
+        }
+
+        return nextCode.startsWith(code.substring(0, cursor))
+                && nextCode.substring(nextCursor).equals(code.substring(cursor));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handleMessage(String channelThreadName, Message<?> message, boolean superseded) {
+        ShellHandler handler = connection.getHandler(message.getHeader().getType());
+        if (handler != null) {
+            logger.debug("Handling message: {}", message.getHeader().getType().getName());
+            ShellReplyEnvironment env = connection.prepareReplyEnv(this, message);
+            if (superseded) {
+                env.markSuperseded();
+            }
+            try {
+                handler.handle(env, message);
+            } catch (Exception e) {
+                logger.warn("Unhandled exception handling {}. {} - {}",
+                        message.getHeader().getType().getName(),
+                        e.getClass().getSimpleName(),
+                        e.getLocalizedMessage());
+            } finally {
+                env.resolveDeferrals();
+            }
+            if (env.isMarkedForShutdown()) {
+                logger.debug("{} shutting down connection as environment was marked for shutdown.", channelThreadName);
+                this.connection.close();
+            }
+        } else {
+            logger.warn("Unhandled message: {}", message.getHeader().getType().getName());
+        }
+    }
+
     @Override
     public void close() {
-        if (this.isBound())
-            this.ioloop.shutdown();
+        Loop loop = this.ioloop;
+        if (loop != null) {
+            loop.shutdown();
+            awaitLoopShutdown(loop);
+        }
 
         super.close();
     }
 
     @Override
     public void waitUntilClose() {
-        if (this.ioloop != null) {
+        Loop loop = this.ioloop;
+        if (loop != null) {
             try {
-                this.ioloop.join();
+                loop.join();
             } catch (InterruptedException ignored) {
             }
         }
@@ -1,5 +1,6 @@
 package org.dflib.jjava.jupyter.channels;
 
+import org.dflib.jjava.jupyter.messages.Message;
 import org.dflib.jjava.jupyter.messages.MessageContext;
 import org.dflib.jjava.jupyter.messages.publish.PublishStream;
 
@@ -7,6 +8,7 @@ public class ShellReplyEnvironment extends DefaultReplyEnvironment {
     private final StdinChannel stdin;
 
     private boolean requestShutdown = false;
+    private boolean superseded = false;
 
     protected ShellReplyEnvironment(ShellChannel shell, StdinChannel stdin, JupyterSocket iopub, MessageContext context) {
         super(shell, iopub, context);
@@ -27,15 +29,35 @@ public class ShellReplyEnvironment extends DefaultReplyEnvironment {
         return this.requestShutdown;
     }
 
+    void markSuperseded() {
+        this.superseded = true;
+    }
+
+    /**
+     * Returns true if this is a completion request, and a newer one from the same session for the same code with more
+     * text typed at the cursor is already waiting to be handled. Only the completions of the newer request matter, so
+     * the handler may skip the work and reply with an empty result.
+     */
+    public boolean isSuperseded() {
+        return this.superseded;
+    }
+
     public void writeToStdOut(String msg) {
-        publish(new PublishStream(PublishStream.StreamType.OUT, msg));
+        publishStream(new PublishStream(PublishStream.StreamType.OUT, msg));
     }
 
     public void writeToStdErr(String msg) {
-        publish(new PublishStream(PublishStream.StreamType.ERR, msg));
+        publishStream(new PublishStream(PublishStream.StreamType.ERR, msg));
+    }
+
+    // stream output may be written from a background flush thread, so it must bypass the "defer" mode
+    private void publishStream(PublishStream stream) {
+        getIopub().sendMessage(new Message<>(getContext(), PublishStream.MESSAGE_TYPE, stream));
     }
 
     public String readFromStdIn(String prompt, boolean isPassword) {
+        // the prompt may have been printed to stdout, so make sure it is shown before asking for input
+        getIopub().flush();
         return this.stdin.getInput(super.getContext(), prompt, isPassword);
     }
 
@@ -2,6 +2,7 @@ package org.dflib.jjava.jupyter.kernel;
 
 import org.dflib.jjava.jupyter.Extension;
 import org.dflib.jjava.jupyter.channels.JupyterConnection;
+import org.dflib.jjava.jupyter.channels.ShellHandler;
 import org.dflib.jjava.jupyter.channels.ShellReplyEnvironment;
 import org.dflib.jjava.jupyter.kernel.comm.CommManager;
 import org.dflib.jjava.jupyter.kernel.display.DisplayData;
@@ -59,7 +60,9 @@ import java.util.Objects;
 import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * A common superclass of JVM-aware kernels.
@@ -92,6 +95,9 @@ public abstract class BaseKernel {
     protected final StringStyler errorStyler;
     protected final AtomicInteger executionCount;
 
+    private volatile JupyterConnection connection;
+    private volatile Supplier<? extends BaseKernel> warmRestartFactory;
+
     /**
      * Returns a non-null instance of the kernel associated with the current notebook. Throws an exception if called
      * outside the notebook lifecycle.
@@ -225,6 +231,16 @@ public abstract class BaseKernel {
      */
     protected abstract Object doEval(String source);
 
+    /**
+     * Runs the magics of a cell that consists of nothing but magics, and that is evaluated by invoking them directly
+     * instead of via {@link #doEval(String)}. The default implementation runs them on the calling thread. The kernels
+     * that evaluate the code on a separate thread, to interrupt it or to time it out, should run the magics the same
+     * way.
+     */
+    protected <T> T doEvalMagics(String source, Supplier<T> magics) {
+        return magics.get();
+    }
+
     /**
      * Inspect the code to get things such as documentation for a function. This is
      * triggered by {@code shift-tab} in the Jupyter notebook which opens a tooltip displaying
@@ -312,6 +328,10 @@ public abstract class BaseKernel {
     public void onShutdown(boolean isRestarting) {
         uninstallExtension();
         uninstallNotebookKernel();
+
+        if (magicsResolver != null) {
+            magicsResolver.getMagicHandles().clear();
+        }
     }
 
     protected void uninstallExtension() {
@@ -344,6 +364,45 @@ public abstract class BaseKernel {
         BaseKernel.notebookKernel = null;
     }
 
+    /**
+     * Enables in-process ("warm") restarts. On a restart request, instead of shutting down the process and letting
+     * Jupyter start a new one, this kernel is replaced with a new kernel produced by the factory, that takes over the
+     * same connection. So the JVM with its loaded and JIT-compiled classes survives the restart, while the notebook
+     * state is discarded together with the old kernel. Only makes sense with the frontends that don't kill the kernel
+     * process on restart.
+     *
+     * @param factory creates a new started kernel. Null disables warm restarts.
+     */
+    public void setWarmRestartFactory(Supplier<? extends BaseKernel> factory) {
+        this.warmRestartFactory = factory;
+    }
+
+    /**
+     * Shuts down this kernel and creates its replacement with the warm restart factory. If this kernel handles a
+     * connection, the connection is handed over to the new kernel.
+     *
+     * @return the new kernel
+     */
+    public BaseKernel restartInProcess() {
+        Supplier<? extends BaseKernel> factory = warmRestartFactory;
+        if (factory == null) {
+            throw new IllegalStateException("Warm restarts are not enabled");
+        }
+
+        onShutdown(true);
+
+        BaseKernel kernel = factory.get();
+        kernel.setWarmRestartFactory(factory);
+
+        JupyterConnection connection = this.connection;
+        if (connection != null) {
+            kernel.becomeHandlerForConnection(connection);
+            this.connection = null;
+        }
+
+        return kernel;
+    }
+
     /**
      * Invoked when the kernel.json specifies an {@code interrupt_mode} of {@code message}
      * and the frontend requests an interrupt of the currently running cell.
@@ -368,20 +427,40 @@ public abstract class BaseKernel {
     }
 
     public void becomeHandlerForConnection(JupyterConnection connection) {
-        connection.setHandler(MessageType.EXECUTE_REQUEST, this::handleExecuteRequest);
-        connection.setHandler(MessageType.INSPECT_REQUEST, this::handleInspectRequest);
-        connection.setHandler(MessageType.COMPLETE_REQUEST, this::handleCompleteRequest);
-        connection.setHandler(MessageType.HISTORY_REQUEST, this::handleHistoryRequest);
-        connection.setHandler(MessageType.IS_COMPLETE_REQUEST, this::handleIsCodeCompeteRequest);
-        connection.setHandler(MessageType.KERNEL_INFO_REQUEST, this::handleKernelInfoRequest);
-        connection.setHandler(MessageType.SHUTDOWN_REQUEST, this::handleShutdownRequest);
-        connection.setHandler(MessageType.INTERRUPT_REQUEST, this::handleInterruptRequest);
+        this.connection = connection;
+
+        connection.setHandler(MessageType.EXECUTE_REQUEST, withClassLoader(this::handleExecuteRequest));
+        connection.setHandler(MessageType.INSPECT_REQUEST, withClassLoader(this::handleInspectRequest));
+        connection.setHandler(MessageType.COMPLETE_REQUEST, withClassLoader(this::handleCompleteRequest));
+        connection.setHandler(MessageType.HISTORY_REQUEST, withClassLoader(this::handleHistoryRequest));
+        connection.setHandler(MessageType.IS_COMPLETE_REQUEST, withClassLoader(this::handleIsCodeCompeteRequest));
+        connection.setHandler(MessageType.KERNEL_INFO_REQUEST, withClassLoader(this::handleKernelInfoRequest));
+        connection.setHandler(MessageType.SHUTDOWN_REQUEST, withClassLoader(this::handleShutdownRequest));
+        connection.setHandler(MessageType.INTERRUPT_REQUEST, withClassLoader(this::handleInterruptRequest));
 
         commManager.setIOPubChannel(connection.getIOPub());
-        connection.setHandler(MessageType.COMM_OPEN_COMMAND, commManager::handleCommOpenCommand);
-        connection.setHandler(MessageType.COMM_MSG_COMMAND, commManager::handleCommMsgCommand);
-        connection.setHandler(MessageType.COMM_CLOSE_COMMAND, commManager::handleCommCloseCommand);
-        connection.setHandler(MessageType.COMM_INFO_REQUEST, commManager::handleCommInfoRequest);
+        connection.setHandler(MessageType.COMM_OPEN_COMMAND, withClassLoader(commManager::handleCommOpenCommand));
+        connection.setHandler(MessageType.COMM_MSG_COMMAND, withClassLoader(commManager::handleCommMsgCommand));
+        connection.setHandler(MessageType.COMM_CLOSE_COMMAND, withClassLoader(commManager::handleCommCloseCommand));
+        connection.setHandler(MessageType.COMM_INFO_REQUEST, withClassLoader(commManager::handleCommInfoRequest));
+    }
+
+    /**
+     * Wraps a handler to run with the notebook ClassLoader as the context ClassLoader, so that the magics, the
+     * renderers and the comm handlers see the notebook classpath. It is set per request, as the channel threads
+     * outlive the kernel on an in-process restart, and must not keep its ClassLoader.
+     */
+    protected <T> ShellHandler<T> withClassLoader(ShellHandler<T> handler) {
+        return (env, message) -> {
+            Thread thread = Thread.currentThread();
+            ClassLoader contextClassLoader = thread.getContextClassLoader();
+            thread.setContextClassLoader(getClassLoader());
+            try {
+                handler.handle(env, message);
+            } finally {
+                thread.setContextClassLoader(contextClassLoader);
+            }
+        };
     }
 
     protected void replaceOutputStreams(ShellReplyEnvironment env) {
@@ -420,13 +499,18 @@ public abstract class BaseKernel {
         try {
             DisplayData out = evalBuilder(request.getCode()).resolveMagics().renderResults().eval();
 
+            // publish the buffered cell output before the result
+            io.flushCellOutput();
+
             if (out != null) {
                 PublishExecuteResult result = new PublishExecuteResult(count, out);
-                env.publish(result);
+                io.display.publish(env, result);
             }
 
             env.defer().reply(new ExecuteReply(count, Collections.emptyMap()));
         } catch (Exception e) {
+            io.flushCellOutput();
+
             ErrorReply error = ErrorReply.of(e);
             error.setExecutionCount(count);
             env.publish(PublishError.of(e, this::formatError));
@@ -448,6 +532,13 @@ public abstract class BaseKernel {
     protected void handleCompleteRequest(ShellReplyEnvironment env, Message<CompleteRequest> completeRequestMessage) {
         CompleteRequest request = completeRequestMessage.getContent();
         env.setBusyDeferIdle();
+
+        // the user kept typing, and the frontend only needs the completions for the newer request
+        if (env.isSuperseded()) {
+            env.reply(new CompleteReply(Collections.emptyList(), request.getCursorPos(), request.getCursorPos(), Collections.emptyMap()));
+            return;
+        }
+
         try {
             ReplacementOptions options = this.complete(request.getCode(), request.getCursorPos());
             if (options == null)
@@ -538,6 +629,15 @@ public abstract class BaseKernel {
 
         env.defer().reply(request.isRestart() ? ShutdownReply.SHUTDOWN_AND_RESTART : ShutdownReply.SHUTDOWN);
 
+        if (request.isRestart() && warmRestartFactory != null) {
+            long t0 = System.nanoTime();
+            restartInProcess();
+            LOGGER.info("Kernel restarted in-process in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+
+            // keeping the connection open
+            return;
+        }
+
         this.onShutdown(request.isRestart());
 
         env.resolveDeferrals(); //Resolve early because of shutdown
@@ -1,5 +1,7 @@
 package org.dflib.jjava.jupyter.kernel;
 
+import org.dflib.jjava.jupyter.channels.JupyterOutputStream;
+import org.dflib.jjava.jupyter.channels.OutputRateLimiter;
 import org.dflib.jjava.jupyter.kernel.comm.CommManager;
 import org.dflib.jjava.jupyter.kernel.display.Renderer;
 import org.dflib.jjava.jupyter.kernel.history.HistoryManager;
@@ -24,6 +26,11 @@ public abstract class BaseKernelBuilder<
     protected String name;
     protected String version;
     protected Charset jupyterIOEncoding;
+    protected Long outputFlushIntervalMs;
+    protected Integer outputFlushThreshold;
+    protected Long outputDataRateLimit;
+    protected Integer outputMsgRateLimit;
+    protected Boolean binaryDisplayBuffers;
     protected MagicsResolver magicsResolver;
     protected MagicTranspiler magicTranspiler;
     protected HistoryManager historyManager;
@@ -49,6 +56,52 @@ public abstract class BaseKernelBuilder<
         return (B) this;
     }
 
+    /**
+     * Sets the minimal interval between two published stdout (or stderr) messages. Output produced within the
+     * interval is coalesced into a single message. Zero disables coalescing.
+     */
+    public B outputFlushIntervalMs(long outputFlushIntervalMs) {
+        this.outputFlushIntervalMs = outputFlushIntervalMs;
+        return (B) this;
+    }
+
+    /**
+     * Sets the number of buffered stdout (or stderr) bytes that are published right away, regardless of the flush
+     * interval.
+     */
+    public B outputFlushThreshold(int outputFlushThreshold) {
+        this.outputFlushThreshold = outputFlushThreshold;
+        return (B) this;
+    }
+
+    /**
+     * Sets the maximum average rate of stdout and stderr output of a cell in bytes per second. If exceeded, the rest
+     * of the cell output is suppressed. Zero disables the limit.
+     */
+    public B outputDataRateLimit(long outputDataRateLimit) {
+        this.outputDataRateLimit = outputDataRateLimit;
+        return (B) this;
+    }
+
+    /**
+     * Sets the maximum average rate of stdout and stderr messages of a cell per second. If exceeded, the rest of the
+     * cell output is suppressed. Zero disables the limit.
+     */
+    public B outputMsgRateLimit(int outputMsgRateLimit) {
+        this.outputMsgRateLimit = outputMsgRateLimit;
+        return (B) this;
+    }
+
+    /**
+     * Enables sending raw binary display data (e.g. images) as binary buffers of the message instead of base64
+     * strings, and makes the renderer produce the raw data (see {@link Renderer#setBinaryData(boolean)}). Only for the
+     * frontends that support it. Disabled by default.
+     */
+    public B binaryDisplayBuffers(boolean binaryDisplayBuffers) {
+        this.binaryDisplayBuffers = binaryDisplayBuffers;
+        return (B) this;
+    }
+
     public B historyManager(HistoryManager historyManager) {
         this.historyManager = historyManager;
         return (B) this;
@@ -94,7 +147,27 @@ public abstract class BaseKernelBuilder<
     }
 
     protected JupyterIO buildJupyterIO(Charset encoding) {
-        return new JupyterIO(encoding);
+        JupyterIO io = new JupyterIO(encoding, buildOutputFlushIntervalMs(), buildOutputFlushThreshold(), buildOutputRateLimiter());
+        io.display.setBinaryBuffers(buildBinaryDisplayBuffers());
+        return io;
+    }
+
+    protected boolean buildBinaryDisplayBuffers() {
+        return binaryDisplayBuffers != null ? binaryDisplayBuffers : false;
+    }
+
+    protected OutputRateLimiter buildOutputRateLimiter() {
+        long dataRateLimit = outputDataRateLimit != null ? outputDataRateLimit : OutputRateLimiter.DEFAULT_DATA_RATE_LIMIT;
+        int msgRateLimit = outputMsgRateLimit != null ? outputMsgRateLimit : OutputRateLimiter.DEFAULT_MSG_RATE_LIMIT;
+        return dataRateLimit > 0 || msgRateLimit > 0 ? new OutputRateLimiter(dataRateLimit, msgRateLimit) : null;
+    }
+
+    protected long buildOutputFlushIntervalMs() {
+        return outputFlushIntervalMs != null ? outputFlushIntervalMs : JupyterOutputStream.DEFAULT_FLUSH_INTERVAL_MS;
+    }
+
+    protected int buildOutputFlushThreshold() {
+        return outputFlushThreshold != null ? outputFlushThreshold : JupyterOutputStream.DEFAULT_FLUSH_THRESHOLD;
     }
 
     protected CommManager buildCommManager() {
@@ -102,7 +175,9 @@ public abstract class BaseKernelBuilder<
     }
 
     protected Renderer buildRenderer() {
-        return new Renderer();
+        Renderer renderer = new Renderer();
+        renderer.setBinaryData(buildBinaryDisplayBuffers());
+        return renderer;
     }
 
     protected boolean buildExtensionsEnabled() {
@@ -110,7 +185,9 @@ public abstract class BaseKernelBuilder<
     }
 
     protected MagicsRegistry buildMagicsRegistry() {
-        return magicsRegistry;
+        // a copy, so that the magics registered at runtime (e.g. by the extensions) do not leak into the other kernels
+        // built by this builder
+        return new MagicsRegistry(magicsRegistry);
     }
 
     protected MagicTranspiler buildMagicTranspiler() {
@@ -1,7 +1,6 @@
 package org.dflib.jjava.jupyter.kernel;
 
 import org.dflib.jjava.jupyter.kernel.display.DisplayData;
-import org.dflib.jjava.jupyter.kernel.magic.UndefinedMagicException;
 
 import java.util.List;
 import java.util.UUID;
@@ -21,27 +20,11 @@ public class BaseNotebookStatics {
     }
 
     public static <T> T lineMagic(String name, List<String> args) {
-        BaseKernel kernel = BaseKernel.notebookKernel();
-
-        try {
-            return kernel.getMagicsRegistry().evalLineMagic(kernel, name, args);
-        } catch (UndefinedMagicException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new RuntimeException(String.format("Exception running line magic '%s': %s", name, e.getMessage()), e);
-        }
+        return MagicsEvalBuilder.evalLineMagic(BaseKernel.notebookKernel(), name, args);
     }
 
     public static <T> T cellMagic(String name, List<String> args, String body) {
-        BaseKernel kernel = BaseKernel.notebookKernel();
-
-        try {
-            return kernel.getMagicsRegistry().evalCellMagic(kernel, name, args, body);
-        } catch (UndefinedMagicException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new RuntimeException(String.format("Exception running cell magic '%s': %s", name, e.getMessage()), e);
-        }
+        return MagicsEvalBuilder.evalCellMagic(BaseKernel.notebookKernel(), name, args, body);
     }
 
     public static DisplayData render(Object o) {
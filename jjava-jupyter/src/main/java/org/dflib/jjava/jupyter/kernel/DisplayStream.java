@@ -2,11 +2,34 @@ package org.dflib.jjava.jupyter.kernel;
 
 import org.dflib.jjava.jupyter.channels.ShellReplyEnvironment;
 import org.dflib.jjava.jupyter.kernel.display.DisplayData;
+import org.dflib.jjava.jupyter.messages.ContentType;
 import org.dflib.jjava.jupyter.messages.publish.PublishDisplayData;
 import org.dflib.jjava.jupyter.messages.publish.PublishUpdateDisplayData;
 
 public class DisplayStream {
     private ShellReplyEnvironment env;
+    private Runnable beforePublish;
+    private boolean binaryBuffers;
+
+    /**
+     * Registers a callback invoked before publishing display data, e.g. to flush buffered stdout, so that outputs
+     * appear in the order they were produced.
+     */
+    public void onBeforePublish(Runnable callback) {
+        this.beforePublish = callback;
+    }
+
+    /**
+     * Enables sending raw binary display data (see {@link DisplayData#putBinaryData}) as binary buffers of the
+     * message instead of base64 strings in its JSON content. Only for the frontends that support such buffers.
+     */
+    public void setBinaryBuffers(boolean binaryBuffers) {
+        this.binaryBuffers = binaryBuffers;
+    }
+
+    public boolean isBinaryBuffers() {
+        return binaryBuffers;
+    }
 
     protected void setEnv(ShellReplyEnvironment env) {
         this.env = env;
@@ -22,20 +45,39 @@ public class DisplayStream {
     }
 
     public void display(DisplayData data) {
-        if (this.env != null)
-            this.env.publish(new PublishDisplayData(data));
+        if (this.env != null) {
+            beforePublish();
+            publish(this.env, new PublishDisplayData(data));
+        }
     }
 
     public void updateDisplay(DisplayData data) {
         if (!data.hasDisplayId())
             throw new IllegalArgumentException("Data must have a display_id in order to update an existing display.");
 
-        if (this.env != null)
-            this.env.publish(new PublishUpdateDisplayData(data));
+        if (this.env != null) {
+            beforePublish();
+            publish(this.env, new PublishUpdateDisplayData(data));
+        }
     }
 
     public void updateDisplay(String id, DisplayData data) {
         data.setDisplayId(id);
         this.updateDisplay(data);
     }
+
+    /**
+     * Publishes display data content, detaching its binary payloads into message buffers if enabled.
+     */
+    public <T extends DisplayData & ContentType<T>> void publish(ShellReplyEnvironment env, T content) {
+        if (this.binaryBuffers && content.hasBinaryData())
+            env.publish(content, content.detachBinaryData());
+        else
+            env.publish(content);
+    }
+
+    private void beforePublish() {
+        if (this.beforePublish != null)
+            this.beforePublish.run();
+    }
 }
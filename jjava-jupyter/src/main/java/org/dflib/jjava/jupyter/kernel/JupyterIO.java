@@ -2,6 +2,7 @@ package org.dflib.jjava.jupyter.kernel;
 
 import org.dflib.jjava.jupyter.channels.JupyterInputStream;
 import org.dflib.jjava.jupyter.channels.JupyterOutputStream;
+import org.dflib.jjava.jupyter.channels.OutputRateLimiter;
 import org.dflib.jjava.jupyter.channels.ShellReplyEnvironment;
 
 import java.io.InputStream;
@@ -13,6 +14,7 @@ public class JupyterIO {
     private final JupyterOutputStream jupyterOut;
     private final JupyterOutputStream jupyterErr;
     private final JupyterInputStream jupyterIn;
+    private final OutputRateLimiter rateLimiter;
 
     public final DisplayStream display;
 
@@ -21,14 +23,33 @@ public class JupyterIO {
     public final InputStream in;
 
     public JupyterIO(Charset encoding) {
+        this(encoding, JupyterOutputStream.DEFAULT_FLUSH_INTERVAL_MS, JupyterOutputStream.DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    /**
+     * @param flushIntervalMs the minimal interval between two stdout (or stderr) messages. If zero, the output is
+     *                        published on every flush.
+     * @param flushThreshold  the number of buffered output bytes that triggers publishing regardless of the interval
+     */
+    public JupyterIO(Charset encoding, long flushIntervalMs, int flushThreshold) {
+        this(encoding, flushIntervalMs, flushThreshold, null);
+    }
+
+    /**
+     * @param rateLimiter an optional limiter of the cell stdout and stderr output. May be null.
+     */
+    public JupyterIO(Charset encoding, long flushIntervalMs, int flushThreshold, OutputRateLimiter rateLimiter) {
 
         Objects.requireNonNull(encoding);
 
-        this.jupyterOut = new JupyterOutputStream(ShellReplyEnvironment::writeToStdOut);
-        this.jupyterErr = new JupyterOutputStream(ShellReplyEnvironment::writeToStdErr);
+        this.rateLimiter = rateLimiter;
+        this.jupyterOut = new JupyterOutputStream(null, ShellReplyEnvironment::writeToStdOut, encoding, flushIntervalMs, flushThreshold, rateLimiter);
+        this.jupyterErr = new JupyterOutputStream(null, ShellReplyEnvironment::writeToStdErr, encoding, flushIntervalMs, flushThreshold, rateLimiter);
         this.jupyterIn = new JupyterInputStream(encoding);
+        this.jupyterIn.onBeforeRead(this::flush);
 
         this.display = new DisplayStream();
+        this.display.onBeforePublish(this::flush);
 
         this.out = new PrintStream(jupyterOut, true, encoding);
         this.err = new PrintStream(jupyterErr, true, encoding);
@@ -42,7 +63,36 @@ public class JupyterIO {
                 && this.display.isAttached();
     }
 
+    /**
+     * Publishes all the buffered stdout and stderr output immediately.
+     */
+    public void flush() {
+        this.out.flush();
+        this.err.flush();
+        this.jupyterOut.flushNow();
+        this.jupyterErr.flushNow();
+    }
+
+    /**
+     * Publishes all the buffered output at the end of a cell, followed by a warning if some of the cell output was
+     * suppressed by the rate limiter.
+     */
+    public void flushCellOutput() {
+        flush();
+
+        if (this.rateLimiter != null) {
+            String warning = this.rateLimiter.reset();
+            if (warning != null) {
+                this.jupyterErr.writeNotice(warning);
+            }
+        }
+    }
+
     protected void setEnv(ShellReplyEnvironment env) {
+        if (this.rateLimiter != null) {
+            this.rateLimiter.reset();
+        }
+
         this.jupyterOut.setEnv(env);
         this.jupyterErr.setEnv(env);
         this.jupyterIn.setEnv(env);
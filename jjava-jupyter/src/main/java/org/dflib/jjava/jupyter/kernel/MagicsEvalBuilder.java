@@ -0,0 +1,85 @@
+package org.dflib.jjava.jupyter.kernel;
+
+import org.dflib.jjava.jupyter.kernel.display.DisplayData;
+import org.dflib.jjava.jupyter.kernel.magic.ParsedCellMagic;
+import org.dflib.jjava.jupyter.kernel.magic.ParsedLineMagic;
+import org.dflib.jjava.jupyter.kernel.magic.UndefinedMagicException;
+
+import java.util.List;
+
+/**
+ * Evaluates a cell that consists of nothing but magics by invoking them directly via the {@link
+ * org.dflib.jjava.jupyter.kernel.magic.MagicsRegistry}, without compiling any code. The result is the result of the
+ * last magic, same as if the transpiled magics were evaluated by the kernel. The magics are run by {@link
+ * BaseKernel#doEvalMagics(String, java.util.function.Supplier)}, so that they can be interrupted the same way as the
+ * code.
+ */
+public class MagicsEvalBuilder<T> implements EvalBuilder<T> {
+
+    private final BaseKernel kernel;
+    private final String source;
+    private final ParsedCellMagic cellMagic;
+    private final List<ParsedLineMagic> lineMagics;
+
+    protected MagicsEvalBuilder(BaseKernel kernel, String source, ParsedCellMagic cellMagic) {
+        this.kernel = kernel;
+        this.source = source;
+        this.cellMagic = cellMagic;
+        this.lineMagics = List.of();
+    }
+
+    protected MagicsEvalBuilder(BaseKernel kernel, String source, List<ParsedLineMagic> lineMagics) {
+        this.kernel = kernel;
+        this.source = source;
+        this.cellMagic = null;
+        this.lineMagics = lineMagics;
+    }
+
+    @Override
+    public EvalBuilder<T> resolveMagics() {
+        return this;
+    }
+
+    @Override
+    public EvalBuilder<DisplayData> renderResults() {
+        return new RenderedEvalBuilder(kernel, this);
+    }
+
+    @Override
+    public T eval() {
+        return kernel.doEvalMagics(source, this::evalMagics);
+    }
+
+    private T evalMagics() {
+        if (cellMagic != null) {
+            return evalCellMagic(kernel, cellMagic.name, cellMagic.args, cellMagic.cellBodyAfterMagic);
+        }
+
+        T result = null;
+        for (ParsedLineMagic magic : lineMagics) {
+            result = evalLineMagic(kernel, magic.name, magic.args);
+        }
+
+        return result;
+    }
+
+    static <T> T evalLineMagic(BaseKernel kernel, String name, List<String> args) {
+        try {
+            return kernel.getMagicsRegistry().evalLineMagic(kernel, name, args);
+        } catch (UndefinedMagicException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(String.format("Exception running line magic '%s': %s", name, e.getMessage()), e);
+        }
+    }
+
+    static <T> T evalCellMagic(BaseKernel kernel, String name, List<String> args, String body) {
+        try {
+            return kernel.getMagicsRegistry().evalCellMagic(kernel, name, args, body);
+        } catch (UndefinedMagicException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(String.format("Exception running cell magic '%s': %s", name, e.getMessage()), e);
+        }
+    }
+}
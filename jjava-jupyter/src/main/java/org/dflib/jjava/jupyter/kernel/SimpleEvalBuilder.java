@@ -1,6 +1,11 @@
 package org.dflib.jjava.jupyter.kernel;
 
 import org.dflib.jjava.jupyter.kernel.display.DisplayData;
+import org.dflib.jjava.jupyter.kernel.magic.MagicsResolver;
+import org.dflib.jjava.jupyter.kernel.magic.ParsedCellMagic;
+import org.dflib.jjava.jupyter.kernel.magic.ParsedLineMagic;
+
+import java.util.List;
 
 public class SimpleEvalBuilder<T> implements EvalBuilder<T> {
 
@@ -14,7 +19,20 @@ public class SimpleEvalBuilder<T> implements EvalBuilder<T> {
 
     @Override
     public EvalBuilder<T> resolveMagics() {
-        return new SimpleEvalBuilder<>(kernel, kernel.getMagicsResolver().resolve(source));
+        MagicsResolver resolver = kernel.getMagicsResolver();
+
+        // a cell of nothing but magics is evaluated without compiling the code that would invoke them
+        ParsedCellMagic cellMagic = resolver.parseCellMagic(source);
+        if (cellMagic != null) {
+            return new MagicsEvalBuilder<>(kernel, source, cellMagic);
+        }
+
+        List<ParsedLineMagic> lineMagics = resolver.parseLineMagicsOnly(source);
+        if (lineMagics != null) {
+            return new MagicsEvalBuilder<>(kernel, source, lineMagics);
+        }
+
+        return new SimpleEvalBuilder<>(kernel, resolver.resolve(source));
     }
 
     @Override
@@ -3,13 +3,17 @@ package org.dflib.jjava.jupyter.kernel.display;
 import com.google.gson.annotations.SerializedName;
 import org.dflib.jjava.jupyter.kernel.display.mime.MIMEType;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
-public class DisplayData {
+public class DisplayData implements Serializable {
 
     private static final String DISPLAY_ID_KEY = "display_id";
+    private static final String BUFFER_PATHS_KEY = "buffer_paths";
 
     public static final DisplayData EMPTY = new DisplayData(Collections.emptyMap());
 
@@ -17,7 +21,7 @@ public class DisplayData {
         return bundle == null ? EMPTY : bundle;
     }
 
-    private final Map<String, Object> data;
+    private Map<String, Object> data;
 
     private Map<String, Object> metadata = new LinkedHashMap<>();
 
@@ -88,6 +92,55 @@ public class DisplayData {
         this.putMetaData(type, metadata);
     }
 
+    /**
+     * Adds a raw binary payload, e.g. an encoded image. Unless the payload is sent as a binary buffer (see
+     * {@link #detachBinaryData()}), it is base64-encoded when the bundle is serialized.
+     */
+    public void putBinaryData(MIMEType type, byte[] data) {
+        this.putData(type, data);
+    }
+
+    public boolean hasBinaryData() {
+        for (Object value : this.data.values()) {
+            if (value instanceof byte[])
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the raw binary payloads from this bundle, so that they can be sent as binary buffers (blobs) of the
+     * message instead of being base64-encoded into the JSON. The location of each buffer is recorded in the
+     * {@code buffer_paths} metadata entry, as is done by Jupyter widgets. Only use this for the frontends that
+     * support it. The data and the metadata are copied before modification, so the bundle this one was created from
+     * is not affected.
+     *
+     * @return the buffers in the order of their paths, or an empty list if there is no binary data
+     */
+    public List<byte[]> detachBinaryData() {
+        if (!hasBinaryData())
+            return Collections.emptyList();
+
+        List<byte[]> buffers = new ArrayList<>();
+        List<List<String>> paths = new ArrayList<>();
+        Map<String, Object> textData = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Object> e : this.data.entrySet()) {
+            if (e.getValue() instanceof byte[]) {
+                buffers.add((byte[]) e.getValue());
+                paths.add(List.of("data", e.getKey()));
+            } else {
+                textData.put(e.getKey(), e.getValue());
+            }
+        }
+
+        this.data = textData;
+        this.metadata = this.metadata != null ? new LinkedHashMap<>(this.metadata) : new LinkedHashMap<>();
+        this.metadata.put(BUFFER_PATHS_KEY, paths);
+
+        return buffers;
+    }
+
     public Object getData(MIMEType type) {
         return this.data.get(type.toString());
     }
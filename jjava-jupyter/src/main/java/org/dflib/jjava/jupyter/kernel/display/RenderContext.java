@@ -29,6 +29,15 @@ public class RenderContext {
         return this.out;
     }
 
+    /**
+     * Returns true if the binary data, e.g. images, may be rendered as raw bytes instead of base64 strings.
+     *
+     * @see Renderer#setBinaryData(boolean)
+     */
+    public boolean isBinaryData() {
+        return this.renderer.isBinaryData();
+    }
+
     public Map<String, Object> getParams() {
         return Collections.unmodifiableMap(this.params);
     }
@@ -102,12 +102,26 @@ public class Renderer {
 
     private final Map<Class, List<RenderFunctionProps>> renderFunctions;
     private final Map<String, MIMEType> suffixMappings;
+    private volatile boolean binaryData;
 
     public Renderer() {
         this.renderFunctions = new HashMap<>();
         this.suffixMappings = new HashMap<>();
     }
 
+    /**
+     * Allows the render functions to produce raw binary data (see {@link DisplayData#putBinaryData}) instead of base64
+     * strings. Should only be enabled when the binary data is sent as binary buffers of the messages, so that the
+     * other consumers of the rendered data keep getting the strings. Disabled by default.
+     */
+    public void setBinaryData(boolean binaryData) {
+        this.binaryData = binaryData;
+    }
+
+    public boolean isBinaryData() {
+        return binaryData;
+    }
+
     public <T> RenderRegistration<T> createRegistration(Class<T> type) {
         return new RenderRegistration<>(type);
     }
@@ -28,21 +28,30 @@ public class Image {
     }
 
     private static String imageTob64(java.awt.image.RenderedImage image, String fmt) {
+        return Base64.getEncoder().encodeToString(imageToBytes(image, fmt));
+    }
+
+    private static byte[] imageToBytes(java.awt.image.RenderedImage image, String fmt) {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
 
         try {
-            ImageIO.write(image, fmt, Base64.getEncoder().wrap(out));
-
-            return out.toString("UTF-8");
+            ImageIO.write(image, fmt, out);
+            return out.toByteArray();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     public static void renderImage(java.awt.image.RenderedImage data, RenderContext context) {
-        context.renderIfRequested(PNG, () -> imageTob64(data, "png"));
-        context.renderIfRequested(JPEG, () -> imageTob64(data, "jpeg"));
-        context.renderIfRequested(GIF, () -> imageTob64(data, "gif"));
+        if (context.isBinaryData()) {
+            context.renderIfRequested(PNG, () -> imageToBytes(data, "png"));
+            context.renderIfRequested(JPEG, () -> imageToBytes(data, "jpeg"));
+            context.renderIfRequested(GIF, () -> imageToBytes(data, "gif"));
+        } else {
+            context.renderIfRequested(PNG, () -> imageTob64(data, "png"));
+            context.renderIfRequested(JPEG, () -> imageTob64(data, "jpeg"));
+            context.renderIfRequested(GIF, () -> imageTob64(data, "gif"));
+        }
     }
 
     public static void renderImageFromStream(InputStream data, RenderContext context) {
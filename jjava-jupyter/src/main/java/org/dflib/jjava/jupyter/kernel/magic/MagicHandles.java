@@ -0,0 +1,82 @@
+package org.dflib.jjava.jupyter.kernel.magic;
+
+import org.dflib.jjava.jupyter.kernel.BaseKernel;
+import org.dflib.jjava.jupyter.kernel.BaseNotebookStatics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A side table of the magics transpiled by {@link MagicTranspiler}, so that the generated code refers to a magic by
+ * an int handle, instead of carrying the magic name and arguments as literals that have to be compiled. The same magic
+ * always gets the same handle, as the generated code may be invoked any number of times (e.g. from a method declared
+ * in a cell), so the table only grows with the distinct magics of a notebook. The table belongs to the transpiler of a
+ * kernel, and is cleared when the kernel shuts down.
+ */
+public class MagicHandles {
+
+    private final List<Object> magics;
+    private final Map<List<Object>, Integer> handles;
+
+    public MagicHandles() {
+        this.magics = new ArrayList<>();
+        this.handles = new HashMap<>();
+    }
+
+    /**
+     * Invokes a transpiled line magic of the current notebook kernel. Called by the generated code.
+     */
+    public static <T> T lineMagic(int handle) {
+        ParsedLineMagic magic = (ParsedLineMagic) notebookHandles().magic(handle);
+        return BaseNotebookStatics.lineMagic(magic.name, magic.args);
+    }
+
+    /**
+     * Invokes a transpiled cell magic of the current notebook kernel. Called by the generated code.
+     */
+    public static <T> T cellMagic(int handle) {
+        ParsedCellMagic magic = (ParsedCellMagic) notebookHandles().magic(handle);
+        return BaseNotebookStatics.cellMagic(magic.name, magic.args, magic.cellBodyAfterMagic);
+    }
+
+    private static MagicHandles notebookHandles() {
+        return BaseKernel.notebookKernel().getMagicsResolver().getMagicHandles();
+    }
+
+    synchronized int lineMagicHandle(ParsedLineMagic magic) {
+        return handle(List.of(magic.name, magic.args), magic);
+    }
+
+    synchronized int cellMagicHandle(ParsedCellMagic magic) {
+        return handle(List.of(magic.name, magic.args, magic.cellBodyAfterMagic), magic);
+    }
+
+    /**
+     * Forgets all the magics, so that the table doesn't keep their arguments and cell bodies after the kernel is gone.
+     */
+    public synchronized void clear() {
+        magics.clear();
+        handles.clear();
+    }
+
+    public synchronized int size() {
+        return magics.size();
+    }
+
+    private int handle(List<Object> key, Object magic) {
+        return handles.computeIfAbsent(key, k -> {
+            magics.add(magic);
+            return magics.size() - 1;
+        });
+    }
+
+    private synchronized Object magic(int handle) {
+        if (handle >= magics.size()) {
+            throw new IllegalStateException("Unknown magic handle " + handle + ", the kernel was likely restarted");
+        }
+
+        return magics.get(handle);
+    }
+}
@@ -1,32 +1,24 @@
 package org.dflib.jjava.jupyter.kernel.magic;
 
-import org.dflib.jjava.jupyter.kernel.BaseNotebookStatics;
-
-import java.util.Base64;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
- * A converter (aka "transpiler") of generic syntax of a single magic into kernel-specific syntax (such as Java).
+ * A converter (aka "transpiler") of generic syntax of a single magic into kernel-specific syntax (such as Java). The
+ * magic name and arguments are kept in {@link MagicHandles}, and the generated code only refers to them by a handle.
  */
 public class MagicTranspiler {
 
     private static final Pattern UNESCAPED_QUOTE = Pattern.compile("(?<!\\\\)\"");
 
     // generated code templates
-    private static final String CELL_CALL_TEMPLATE = BaseNotebookStatics.class.getName() + ".cellMagic(%s,java.util.List.of(%s),%s);";
-    private static final String LINE_CALL_TEMPLATE = BaseNotebookStatics.class.getName() + ".lineMagic(%s,java.util.List.of(%s));";
-    private static final String DECODE_TEMPLATE = "new String(java.util.Base64.getDecoder().decode(\"%s\"))";
+    private static final String CELL_CALL_TEMPLATE = MagicHandles.class.getName() + ".cellMagic(%d);";
+    private static final String LINE_CALL_TEMPLATE = MagicHandles.class.getName() + ".lineMagic(%d);";
+
+    private final MagicHandles handles = new MagicHandles();
 
     public String transpileCell(ParsedCellMagic magic) {
-        return String.format(CELL_CALL_TEMPLATE,
-                argWithEscapingToJava(magic.name),
-                magic.args.stream()
-                        .map(this::argWithEscapingToJava)
-                        .collect(Collectors.joining(",")),
-                argWithEscapingToJava(magic.cellBodyAfterMagic)
-        );
+        return String.format(CELL_CALL_TEMPLATE, handles.cellMagicHandle(magic));
     }
 
     public String transpileLine(ParsedLineMagic magic) {
@@ -36,22 +28,16 @@ public class MagicTranspiler {
             inString = !inString;
         }
 
-        // If in a string literal, don't apply the magic, just use the original
+        // If in a string literal, don't apply the magic, just use the original. MagicsResolver never passes such a
+        // magic, but other callers may
         if (inString) {
             return magic.unparsedMagic;
         }
 
-        return String.format(LINE_CALL_TEMPLATE,
-                argWithEscapingToJava(magic.name),
-                magic.args.stream()
-                        .map(this::argWithEscapingToJava)
-                        .collect(Collectors.joining(","))
-        );
+        return String.format(LINE_CALL_TEMPLATE, handles.lineMagicHandle(magic));
     }
 
-    // Poor man's string escape
-    private String argWithEscapingToJava(String arg) {
-        String encoded = Base64.getEncoder().encodeToString(arg.getBytes());
-        return String.format(DECODE_TEMPLATE, encoded);
+    public MagicHandles getHandles() {
+        return handles;
     }
 }
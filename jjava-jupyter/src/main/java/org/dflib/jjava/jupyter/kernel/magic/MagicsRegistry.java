@@ -21,6 +21,14 @@ public class MagicsRegistry {
         this.cellMagics = new ConcurrentHashMap<>();
     }
 
+    /**
+     * Creates a registry with the same magics as the "other" registry. The two registries can be changed independently.
+     */
+    public MagicsRegistry(MagicsRegistry other) {
+        this.lineMagics = new ConcurrentHashMap<>(other.lineMagics);
+        this.cellMagics = new ConcurrentHashMap<>(other.cellMagics);
+    }
+
     /**
      * Registers or overrides a named LineMagic
      */
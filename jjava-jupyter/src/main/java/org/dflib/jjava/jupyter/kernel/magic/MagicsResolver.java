@@ -1,6 +1,7 @@
 package org.dflib.jjava.jupyter.kernel.magic;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -8,19 +9,37 @@ import java.util.regex.Pattern;
 /**
  * Locates line and cell magic syntax in the cell code and replaces it with code native to the underlying kernel.
  * Code replacement happens via {@link MagicTranspiler}.
+ * <p>
+ * The line magics are located in a single pass over the cell with a Java lexer, so that the magic syntax inside the
+ * string and char literals, the text blocks and the comments is left as is. The magic patterns are only matched at
+ * the positions of the code where the literal end of the pattern (e.g. "%" of "^\\s*%") is found, and a cell without
+ * such positions is returned as is.
  */
 public class MagicsResolver {
 
+    private static final String REGEX_META_CHARS = "\\^$.|?*+()[]{}";
+
     private final Pattern lineMagicPattern;
     private final Pattern cellMagicPattern;
+    private final String lineMagicMarker;
+    private final String cellMagicMarker;
     private final MagicTranspiler magicTranspiler;
 
     public MagicsResolver(String lineMagicStart, String cellMagicStart, MagicTranspiler magicTranspiler) {
         this.lineMagicPattern = Pattern.compile(lineMagicStart + "(?<args>\\w.*?)$", Pattern.MULTILINE);
-        this.cellMagicPattern = Pattern.compile("^(?<argsLine>" + cellMagicStart + "(?<args>\\w.*?))\\R(?<body>(?sU).+?)$");
+        this.cellMagicPattern = Pattern.compile("^(?<argsLine>" + cellMagicStart + "(?<args>\\w.*?))\\R");
+        this.lineMagicMarker = literalSuffix(lineMagicStart);
+        this.cellMagicMarker = literalSuffix(cellMagicStart);
         this.magicTranspiler = magicTranspiler;
     }
 
+    /**
+     * Returns the table of the magics transpiled by this resolver, that the generated code refers to.
+     */
+    public MagicHandles getMagicHandles() {
+        return magicTranspiler.getHandles();
+    }
+
     /**
      * Replaces cell and line magics in the source with native kernel code.
      */
@@ -33,28 +52,109 @@ public class MagicsResolver {
 
     String resolveLineMagics(String cellSource) {
 
-        StringBuffer out = new StringBuffer();
-        Matcher m = lineMagicPattern.matcher(cellSource);
+        // created on the first magic, so the cells without magics are returned as is
+        StringBuilder out = null;
+        Matcher m = null;
+        int copied = 0;
 
-        while (m.find()) {
-            ParsedLineMagic parsed = parseLineMagic(cellSource, m);
-            String transformed = magicTranspiler.transpileLine(parsed);
-            m.appendReplacement(out, Matcher.quoteReplacement(transformed));
+        BitSet magicStarts = magicStartsOfEmptyMarker(cellSource);
+        int n = cellSource.length();
+        int i = 0;
+        while (i < n) {
+            if (atLineMagicMarker(cellSource, i, magicStarts)) {
+                if (m == null) {
+                    m = lineMagicMatcher(cellSource);
+                }
+
+                if (findLineMagic(cellSource, m, i)) {
+                    if (out == null) {
+                        out = new StringBuilder(n);
+                    }
+
+                    out.append(cellSource, copied, m.start());
+                    out.append(magicTranspiler.transpileLine(parseLineMagic(cellSource, m)));
+                    copied = m.end();
+                    i = m.end();
+                    continue;
+                }
+            }
+
+            i = tokenEnd(cellSource, i);
         }
 
-        m.appendTail(out);
+        if (out == null) {
+            return cellSource;
+        }
+
+        out.append(cellSource, copied, n);
         return out.toString();
     }
 
-    ParsedCellMagic parseCellMagic(String cellSource) {
-        Matcher m = cellMagicPattern.matcher(cellSource);
+    /**
+     * Returns the line magics of the cell, if it consists of nothing but the line magics and the comments, or null
+     * otherwise. Such cells can be evaluated by invoking the magics directly, without transpiling them to the kernel
+     * code.
+     */
+    public List<ParsedLineMagic> parseLineMagicsOnly(String cellSource) {
+        List<ParsedLineMagic> magics = null;
+        Matcher m = null;
+
+        BitSet magicStarts = magicStartsOfEmptyMarker(cellSource);
+        int n = cellSource.length();
+        int i = 0;
+        while (i < n) {
+            if (atLineMagicMarker(cellSource, i, magicStarts)) {
+                if (m == null) {
+                    m = lineMagicMatcher(cellSource);
+                }
+
+                if (findLineMagic(cellSource, m, i)) {
+                    if (magics == null) {
+                        magics = new ArrayList<>(2);
+                    }
+
+                    magics.add(parseLineMagic(cellSource, m));
+                    i = m.end();
+                    continue;
+                }
+            }
+
+            int end = commentEnd(cellSource, i);
+            if (end > i) {
+                i = end;
+            } else if (Character.isWhitespace(cellSource.charAt(i))) {
+                i++;
+            } else {
+                return null;
+            }
+        }
+
+        return magics;
+    }
+
+    /**
+     * Returns the cell magic, if the cell starts with one, or null otherwise.
+     */
+    public ParsedCellMagic parseCellMagic(String cellSource) {
+
+        // the marker must be on the first line, checked before matching the pattern
+        int firstLineEnd = lineEnd(cellSource, 0);
+        int marker = 0;
+        while (marker <= firstLineEnd && !cellSource.startsWith(cellMagicMarker, marker)) {
+            marker++;
+        }
+
+        if (marker > firstLineEnd) {
+            return null;
+        }
 
-        if (!m.matches()) {
+        Matcher m = cellMagicPattern.matcher(cellSource);
+        if (!m.lookingAt() || m.end() == cellSource.length()) {
             return null;
         }
 
         List<String> split = split(m.group("args"));
-        String bodyAfterMagic = m.group("body");
+        String bodyAfterMagic = cellSource.substring(m.end());
 
         return new ParsedCellMagic(
                 split.get(0),
@@ -62,20 +162,149 @@ public class MagicsResolver {
                 bodyAfterMagic);
     }
 
-    private ParsedLineMagic parseLineMagic(String cellSource, Matcher matchedLine) {
-        List<String> split = split(matchedLine.group("args"));
+    private Matcher lineMagicMatcher(String cellSource) {
+        return lineMagicPattern.matcher(cellSource).useTransparentBounds(true).useAnchoringBounds(false);
+    }
+
+    // A pattern that ends with no literal text (e.g. "(?:%|!)") has an empty marker, that is found at every position
+    // of the cell, and matching the line at each of them would be quadratic. Instead, the magics are found in a single
+    // pass over the cell, and their starts are used as the marker positions. Returns null for a non-empty marker.
+    private BitSet magicStartsOfEmptyMarker(String cellSource) {
+        if (!lineMagicMarker.isEmpty()) {
+            return null;
+        }
+
+        BitSet magicStarts = new BitSet(cellSource.length());
+        Matcher m = lineMagicMatcher(cellSource);
+        while (m.find()) {
+            magicStarts.set(m.start());
+        }
+
+        return magicStarts;
+    }
+
+    private boolean atLineMagicMarker(String cellSource, int i, BitSet magicStarts) {
+        return magicStarts != null ? magicStarts.get(i) : cellSource.startsWith(lineMagicMarker, i);
+    }
 
-        String rawLinePrefix = cellSource.substring(0, matchedLine.start());
-        String linePrefix = rawLinePrefix.substring(rawLinePrefix.lastIndexOf('\n') + 1);
+    // finds the magic on the line with the marker at the given position
+    private boolean findLineMagic(String cellSource, Matcher m, int markerStart) {
+        int argsStart = markerStart + lineMagicMarker.length();
+        m.region(lineStart(cellSource, markerStart), lineEnd(cellSource, markerStart));
+        while (m.find()) {
+            boolean atMarker = lineMagicMarker.isEmpty() ? m.start() == markerStart : m.start("args") == argsStart;
+            if (atMarker) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static ParsedLineMagic parseLineMagic(String cellSource, Matcher matchedLine) {
+        List<String> split = split(matchedLine.group("args"));
 
         return new ParsedLineMagic(
                 split.get(0),
                 split.subList(1, split.size()),
-                linePrefix,
+                cellSource.substring(lineStart(cellSource, matchedLine.start()), matchedLine.start()),
                 matchedLine.group()
         );
     }
 
+    // the end of the literal or the comment starting at the given position, or the next position
+    private static int tokenEnd(String source, int from) {
+        int end = commentEnd(source, from);
+        if (end > from) {
+            return end;
+        }
+
+        switch (source.charAt(from)) {
+            case '"':
+                return source.startsWith("\"\"\"", from)
+                        ? textBlockEnd(source, from + 3)
+                        : literalEnd(source, from + 1, '"');
+            case '\'':
+                return literalEnd(source, from + 1, '\'');
+            default:
+                return from + 1;
+        }
+    }
+
+    // the end of the comment starting at the given position, or the same position if there is no comment
+    private static int commentEnd(String source, int from) {
+        if (source.startsWith("//", from)) {
+            return lineEnd(source, from);
+        }
+
+        if (source.startsWith("/*", from)) {
+            int end = source.indexOf("*/", from + 2);
+            return end >= 0 ? end + 2 : source.length();
+        }
+
+        return from;
+    }
+
+    private static int lineStart(String source, int at) {
+        return source.lastIndexOf('\n', at - 1) + 1;
+    }
+
+    private static int lineEnd(String source, int from) {
+        int end = source.indexOf('\n', from);
+        return end >= 0 ? end : source.length();
+    }
+
+    // a string or a char literal ends at the closing quote, or at the end of the line if it is not closed
+    private static int literalEnd(String source, int from, char quote) {
+        int n = source.length();
+        int i = from;
+        while (i < n) {
+            char c = source.charAt(i);
+            if (c == quote) {
+                return i + 1;
+            }
+
+            if (c == '\n') {
+                return i;
+            }
+
+            i += c == '\\' ? 2 : 1;
+        }
+
+        return n;
+    }
+
+    private static int textBlockEnd(String source, int from) {
+        int n = source.length();
+        int i = from;
+        while (i < n) {
+            if (source.charAt(i) == '\\') {
+                i += 2;
+            } else if (source.startsWith("\"\"\"", i)) {
+                return i + 3;
+            } else {
+                i++;
+            }
+        }
+
+        return n;
+    }
+
+    // the literal text the pattern ends with, e.g. "%" of "^\\s*%", which is present in any matched magic
+    private static String literalSuffix(String regex) {
+        int start = regex.length();
+        while (start > 0 && REGEX_META_CHARS.indexOf(regex.charAt(start - 1)) < 0) {
+            start--;
+        }
+
+        // an escaped char, e.g. "s" of "\\s", is not a literal
+        if (start > 0 && start < regex.length() && regex.charAt(start - 1) == '\\') {
+            start++;
+        }
+
+        return regex.substring(start);
+    }
+
     static List<String> split(String args) {
         args = args.trim();
 
@@ -1,48 +1,102 @@
 package org.dflib.jjava.jupyter.messages;
 
 import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
+/**
+ * Signs and verifies messages. Can be used from multiple threads without contention: each thread gets its own
+ * {@link Mac} cloned from a keyed prototype, and its own buffer for the hex-encoded signature.
+ */
 public class HMACGenerator {
     private static final int MASK_INT_TO_BYTE = 0xFF;
     private static final int MASK_BYTE_LOWER = 0x0F;
+    private static final byte[] EMPTY_SIGNATURE = new byte[0];
 
     public static final HMACGenerator NO_AUTH_INSTANCE = new HMACGenerator() {
         @Override
-        public String calculateSignature(byte[]... messageParts) {
-            return "";
+        public byte[] sign(byte[]... messageParts) {
+            return EMPTY_SIGNATURE;
         }
     };
 
-    private final Mac mac;
+    private final Mac prototype;
+    private final ThreadLocal<Signer> signers;
 
     public HMACGenerator(String algorithm, String key) throws NoSuchAlgorithmException, InvalidKeyException {
-        this.mac = Mac.getInstance(algorithm.replace("-", ""));
-        this.mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.US_ASCII), algorithm));
+        this.prototype = Mac.getInstance(algorithm.replace("-", ""));
+        this.prototype.init(new SecretKeySpec(key.getBytes(StandardCharsets.US_ASCII), algorithm));
+        this.signers = ThreadLocal.withInitial(() -> new Signer(cloneMac()));
     }
 
     private HMACGenerator() {
-        this.mac = null;
+        this.prototype = null;
+        this.signers = null;
     }
 
-    private final static char[] HEX_CHAR = "0123456789abcdef".toCharArray();
+    private final static byte[] HEX_CHAR = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
 
-    public synchronized String calculateSignature(byte[]... messageParts) {
-        for (byte[] part : messageParts)
-            this.mac.update(part);
+    public String calculateSignature(byte[]... messageParts) {
+        return new String(sign(messageParts), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the hex-encoded signature of the message parts as ASCII bytes. The returned array is a per-thread
+     * buffer that is overwritten by the next call on the same thread.
+     */
+    public byte[] sign(byte[]... messageParts) {
+        return signers.get().sign(messageParts);
+    }
+
+    /**
+     * Checks a hex-encoded signature received with a message. The comparison takes the same time regardless of where
+     * the signatures differ.
+     */
+    public boolean verify(byte[] signature, byte[]... messageParts) {
+        return MessageDigest.isEqual(sign(messageParts), signature);
+    }
+
+    private Mac cloneMac() {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Mac algorithm can't be cloned: " + prototype.getAlgorithm(), e);
+        }
+    }
 
-        byte[] sig = this.mac.doFinal();
+    private static class Signer {
+        private final Mac mac;
+        private final byte[] sig;
+        private final byte[] hex;
 
-        char[] hex = new char[sig.length * 2];
-        for (int j = 0; j < sig.length; j++) {
-            int b = sig[j] & MASK_INT_TO_BYTE;
-            hex[j * 2] = HEX_CHAR[b >>> 4];
-            hex[j * 2 + 1] = HEX_CHAR[b & MASK_BYTE_LOWER];
+        Signer(Mac mac) {
+            this.mac = mac;
+            this.sig = new byte[mac.getMacLength()];
+            this.hex = new byte[sig.length * 2];
         }
 
-        return new String(hex);
+        byte[] sign(byte[]... messageParts) {
+            for (byte[] part : messageParts)
+                this.mac.update(part);
+
+            try {
+                this.mac.doFinal(sig, 0);
+            } catch (ShortBufferException e) {
+                // not expected, the buffer is sized to the Mac length
+                throw new IllegalStateException(e);
+            }
+
+            for (int j = 0; j < sig.length; j++) {
+                int b = sig[j] & MASK_INT_TO_BYTE;
+                hex[j * 2] = HEX_CHAR[b >>> 4];
+                hex[j * 2 + 1] = HEX_CHAR[b & MASK_BYTE_LOWER];
+            }
+
+            return hex;
+        }
     }
 }
@@ -2,8 +2,6 @@ package org.dflib.jjava.jupyter.messages;
 
 import com.google.gson.annotations.SerializedName;
 
-import java.util.UUID;
-
 public class Header<T> {
     public static final String KERNEL_USERNAME = "kernel";
     public static final String PROTOCOL_VERISON = "5.3";
@@ -28,7 +26,7 @@ public class Header<T> {
 
     public Header(String sessionId, MessageType<T> type) {
         this(
-                UUID.randomUUID().toString(),
+                MessageIds.next(),
                 KERNEL_USERNAME,
                 sessionId,
                 KernelTimestamp.now(),
@@ -39,7 +37,7 @@ public class Header<T> {
 
     public Header(MessageContext ctx, MessageType<T> type) {
         this(
-                UUID.randomUUID().toString(),
+                MessageIds.next(),
                 ctx != null ? ctx.getHeader().getUsername() : KERNEL_USERNAME,
                 ctx != null ? ctx.getHeader().getSessionId() : null,
                 KernelTimestamp.now(),
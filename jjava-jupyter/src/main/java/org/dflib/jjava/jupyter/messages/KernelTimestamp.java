@@ -1,45 +1,102 @@
 package org.dflib.jjava.jupyter.messages;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
 import java.util.Date;
-import java.util.TimeZone;
 
 /**
- * A lazy date parser
+ * A message timestamp with microsecond precision. Lazily parsed and formatted in the ISO 8601 format, as expected by
+ * the Jupyter protocol.
  */
 public class KernelTimestamp {
     public static KernelTimestamp now() {
-        return new KernelTimestamp(new Date());
+        return new KernelTimestamp(Instant.now());
     }
 
-    private static final ThreadLocal<DateFormat> DATE_FORMAT = ThreadLocal.withInitial(() -> {
-        DateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mmZ");
-        format.setTimeZone(TimeZone.getTimeZone("UTC"));
-        return format;
-    });
+    private static final DateTimeFormatter SECONDS_FORMAT = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH:mm:ss")
+            .withZone(ZoneOffset.UTC);
+
+    // accepts the offsets like "Z", "+00:00" and "+0000", or no offset at all (i.e. UTC)
+    private static final DateTimeFormatter PARSE_FORMAT = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+            .optionalStart().appendOffset("+HH:MM", "Z").optionalEnd()
+            .optionalStart().appendOffset("+HHMM", "Z").optionalEnd()
+            .toFormatter();
+
+    // most timestamps formatted within a second share the same prefix, so it is cached
+    private static volatile FormattedSecond lastSecond = new FormattedSecond(Long.MIN_VALUE, null);
 
     private String serialized;
-    private Date date;
+    private Instant instant;
 
     public KernelTimestamp(String serialized) {
         this.serialized = serialized;
     }
 
+    public KernelTimestamp(Instant instant) {
+        this.instant = instant;
+    }
+
     public KernelTimestamp(Date date) {
-        this.date = date;
+        this(date.toInstant());
+    }
+
+    public Instant getInstant() {
+        return instant != null ? instant : (instant = parse(serialized));
     }
 
     public Date getDate() {
+        return Date.from(getInstant());
+    }
+
+    public String getDateString() {
+        return serialized != null ? serialized : (serialized = format(instant));
+    }
+
+    private static Instant parse(String serialized) {
         try {
-            return date != null ? date : (date = DATE_FORMAT.get().parse(serialized));
-        } catch (ParseException e) {
+            TemporalAccessor parsed = PARSE_FORMAT.parse(serialized);
+            LocalDateTime dateTime = LocalDateTime.from(parsed);
+            ZoneOffset offset = parsed.isSupported(ChronoField.OFFSET_SECONDS)
+                    ? ZoneOffset.ofTotalSeconds(parsed.get(ChronoField.OFFSET_SECONDS))
+                    : ZoneOffset.UTC;
+
+            return dateTime.toInstant(offset);
+        } catch (DateTimeParseException e) {
             throw new RuntimeException("Invalid date string '" + serialized + "'", e);
         }
     }
 
-    public String getDateString() {
-        return serialized != null ? serialized : (serialized = DATE_FORMAT.get().format(date));
+    private static String format(Instant instant) {
+        FormattedSecond second = lastSecond;
+        if (second.epochSecond != instant.getEpochSecond()) {
+            second = new FormattedSecond(instant.getEpochSecond(), SECONDS_FORMAT.format(instant));
+            lastSecond = second;
+        }
+
+        int micros = instant.getNano() / 1000;
+        StringBuilder out = new StringBuilder(second.text.length() + 8).append(second.text).append('.');
+        for (int d = 100_000; d > 0; d /= 10) {
+            out.append((char) ('0' + micros / d % 10));
+        }
+
+        return out.append('Z').toString();
+    }
+
+    private static class FormattedSecond {
+        final long epochSecond;
+        final String text;
+
+        FormattedSecond(long epochSecond, String text) {
+            this.epochSecond = epochSecond;
+            this.text = text;
+        }
     }
 }
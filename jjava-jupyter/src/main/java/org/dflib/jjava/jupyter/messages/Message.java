@@ -108,10 +108,10 @@ public class Message<T> implements MessageContext {
         for (byte[] id : identities)
             sb.append("\t\t").append(Arrays.toString(id)).append("\n");
         sb.append("\t]\n");
-        sb.append("\theader = ").append(header).append("\n");
-        sb.append("\tparentHeader = ").append(parentHeader).append("\n");
-        sb.append("\tmetadata = ").append(metadata).append("\n");
-        sb.append("\tcontent = ").append(content).append("\n");
+        sb.append("\theader = ").append(getHeader()).append("\n");
+        sb.append("\tparentHeader = ").append(getParentHeader()).append("\n");
+        sb.append("\tmetadata = ").append(getMetadata()).append("\n");
+        sb.append("\tcontent = ").append(getContent()).append("\n");
         sb.append("\tblobs = [\n");
         if (blobs != null)
             for (byte[] blob : blobs)
@@ -0,0 +1,21 @@
+package org.dflib.jjava.jupyter.messages;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the IDs of the outgoing messages. An ID is a random per-session prefix followed by a counter, which is
+ * unique just like a random UUID, but doesn't need a {@link java.security.SecureRandom} call per message.
+ */
+public final class MessageIds {
+
+    private static final String PREFIX = UUID.randomUUID() + "_";
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private MessageIds() {
+    }
+
+    public static String next() {
+        return PREFIX + COUNTER.incrementAndGet();
+    }
+}
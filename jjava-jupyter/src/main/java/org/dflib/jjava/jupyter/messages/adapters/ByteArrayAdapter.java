@@ -0,0 +1,37 @@
+package org.dflib.jjava.jupyter.messages.adapters;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Serializes raw binary payloads (e.g. images in display data) as base64 strings, which is how the binary data is
+ * represented in the JSON parts of the messages.
+ */
+public class ByteArrayAdapter extends TypeAdapter<byte[]> {
+    public static final ByteArrayAdapter INSTANCE = new ByteArrayAdapter();
+
+    private ByteArrayAdapter() { }
+
+    @Override
+    public void write(JsonWriter out, byte[] value) throws IOException {
+        if (value == null)
+            out.nullValue();
+        else
+            out.value(Base64.getEncoder().encodeToString(value));
+    }
+
+    @Override
+    public byte[] read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        return Base64.getDecoder().decode(in.nextString());
+    }
+}
@@ -1,47 +1,120 @@
 package org.dflib.jjava.jupyter.messages.adapters;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import org.dflib.jjava.jupyter.messages.Header;
 import org.dflib.jjava.jupyter.messages.KernelTimestamp;
 import org.dflib.jjava.jupyter.messages.MessageType;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
-public class HeaderAdapter implements JsonSerializer<Header>, JsonDeserializer<Header> {
+/**
+ * A streaming header adapter. As the username, the session and the version are mostly the same for all messages,
+ * their JSON representation is cached and written as is.
+ */
+public class HeaderAdapter extends TypeAdapter<Header> {
     public static final HeaderAdapter INSTANCE = new HeaderAdapter();
 
+    private static final Gson STRING_GSON = new Gson();
+
+    private final JsonStringCache username = new JsonStringCache();
+    private final JsonStringCache session = new JsonStringCache();
+    private final JsonStringCache version = new JsonStringCache();
+
     private HeaderAdapter() { }
 
     @Override
-    public Header deserialize(JsonElement element, Type type, JsonDeserializationContext ctx) throws JsonParseException {
-        JsonObject object = element.getAsJsonObject();
-        return new Header<>(
-                object.get("msg_id").getAsString(),
-                object.get("username").getAsString(),
-                object.get("session").getAsString(),
-                ctx.deserialize(object.get("date"), KernelTimestamp.class),
-                ctx.deserialize(object.get("msg_type"), MessageType.class),
-                object.get("version").getAsString()
-        );
+    public void write(JsonWriter out, Header header) throws IOException {
+        if (header == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("msg_id").value(header.getId());
+        writeCached(out, "username", username, header.getUsername());
+        writeCached(out, "session", session, header.getSessionId());
+        out.name("date").value(header.getTimestamp() != null ? header.getTimestamp().getDateString() : null);
+        out.name("msg_type").value(header.getType() != null ? header.getType().getName() : null);
+        writeCached(out, "version", version, header.getVersion());
+        out.endObject();
     }
 
     @Override
-    public JsonElement serialize(Header header, Type type, JsonSerializationContext ctx) {
-        JsonObject object = new JsonObject();
+    public Header read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String id = null;
+        String username = null;
+        String session = null;
+        KernelTimestamp timestamp = null;
+        MessageType<?> type = null;
+        String version = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+
+            switch (name) {
+                case "msg_id":
+                    id = in.nextString();
+                    break;
+                case "username":
+                    username = in.nextString();
+                    break;
+                case "session":
+                    session = in.nextString();
+                    break;
+                case "date":
+                    timestamp = new KernelTimestamp(in.nextString());
+                    break;
+                case "msg_type":
+                    type = MessageType.getType(in.nextString());
+                    break;
+                case "version":
+                    version = in.nextString();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Header<>(id, username, session, timestamp, type, version);
+    }
+
+    private static void writeCached(JsonWriter out, String name, JsonStringCache cache, String value) throws IOException {
+        out.name(name);
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.jsonValue(cache.toJson(value));
+        }
+    }
+
+    private static class JsonStringCache {
+
+        private volatile String[] last = {null, null};
 
-        object.addProperty("msg_id", header.getId());
-        object.addProperty("username", header.getUsername());
-        object.addProperty("session", header.getSessionId());
-        object.add("date", ctx.serialize(header.getTimestamp()));
-        object.add("msg_type", ctx.serialize(header.getType()));
-        object.addProperty("version", header.getVersion());
+        String toJson(String value) {
+            String[] last = this.last;
+            if (value.equals(last[0])) {
+                return last[1];
+            }
 
-        return object;
+            String json = STRING_GSON.toJson(value);
+            this.last = new String[]{value, json};
+            return json;
+        }
     }
 }
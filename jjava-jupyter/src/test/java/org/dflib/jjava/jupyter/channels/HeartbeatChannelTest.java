@@ -0,0 +1,139 @@
+package org.dflib.jjava.jupyter.channels;
+
+import org.dflib.jjava.jupyter.kernel.KernelConnectionProperties;
+import org.dflib.jjava.jupyter.messages.HMACGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.zeromq.SocketType;
+import org.zeromq.ZMQ;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.dflib.jjava.jupyter.channels.JupyterSocket.formatAddress;
+import static org.dflib.jjava.jupyter.channels.TestConnections.newConnProps;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class HeartbeatChannelTest {
+
+    private static final int PINGS = 200;
+
+    @Test
+    public void echo() throws IOException {
+        KernelConnectionProperties connProps = newConnProps();
+
+        HeartbeatChannel heartbeat = new HeartbeatChannel(HMACGenerator.NO_AUTH_INSTANCE);
+        heartbeat.bind(connProps);
+
+        ZMQ.Context clientContext = ZMQ.context(1);
+        ZMQ.Socket client = clientContext.socket(SocketType.REQ);
+        client.setLinger(0);
+        client.setReceiveTimeOut(5000);
+        client.connect(formatAddress(connProps.getTransport(), connProps.getIp(), connProps.getHbPort()));
+
+        try {
+            for (int i = 0; i < 20; i++) {
+                ping(client);
+            }
+        } finally {
+            client.close();
+            clientContext.close();
+            heartbeat.close();
+        }
+    }
+
+    // Busy threads saturate all the cores but one with allocations, to emulate a heavy cell. The remaining core is left
+    // to the test client, that plays the frontend running in its own process, so that the measured latency is the
+    // kernel's. The heartbeat echo is expected to stay responsive regardless. A benchmark, only runs with the
+    // "benchmarks" profile
+    @Test
+    @EnabledIfSystemProperty(named = "jjava.benchmark", matches = "true")
+    public void echo_underLoad() throws IOException, InterruptedException {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        assumeTrue(cpus > 1, "The client would compete with the load on a single CPU");
+
+        KernelConnectionProperties connProps = newConnProps();
+
+        HeartbeatChannel heartbeat = new HeartbeatChannel(HMACGenerator.NO_AUTH_INSTANCE);
+        heartbeat.bind(connProps);
+
+        ZMQ.Context clientContext = ZMQ.context(1);
+        ZMQ.Socket client = clientContext.socket(SocketType.REQ);
+        client.setLinger(0);
+        client.setReceiveTimeOut(5000);
+        client.connect(formatAddress(connProps.getTransport(), connProps.getIp(), connProps.getHbPort()));
+
+        List<Thread> load = new ArrayList<>();
+        for (int i = 0; i < cpus - 1; i++) {
+            Thread t = new Thread(HeartbeatChannelTest::allocate, "load-" + i);
+            t.setDaemon(true);
+            load.add(t);
+        }
+
+        try {
+            // warm up the connection and the code paths before the load
+            for (int i = 0; i < 20; i++) {
+                ping(client);
+            }
+
+            load.forEach(Thread::start);
+
+            long[] times = new long[PINGS];
+            for (int i = 0; i < PINGS; i++) {
+                times[i] = ping(client);
+
+                // the frontend pings every few seconds; here we only leave the load threads some room to run
+                Thread.sleep(2);
+            }
+
+            Arrays.sort(times);
+            long median = times[PINGS / 2];
+            long p99 = times[PINGS * 99 / 100];
+            long max = times[PINGS - 1];
+            String report = String.format("Heartbeat round trip under load: median %d us, p99 %d us, max %d us",
+                    TimeUnit.NANOSECONDS.toMicros(median),
+                    TimeUnit.NANOSECONDS.toMicros(p99),
+                    TimeUnit.NANOSECONDS.toMicros(max));
+
+            // a missed heartbeat is what makes a frontend report a dead kernel, so it is the tail that must stay under
+            // the 10 ms target, not just the median
+            assertTrue(p99 < TimeUnit.MILLISECONDS.toNanos(10), report);
+        } finally {
+            load.forEach(Thread::interrupt);
+            for (Thread t : load) {
+                t.join();
+            }
+
+            client.close();
+            clientContext.close();
+            heartbeat.close();
+        }
+    }
+
+    private static long ping(ZMQ.Socket client) {
+        byte[] ping = "ping".getBytes();
+
+        long t0 = System.nanoTime();
+        client.send(ping);
+        byte[] pong = client.recv();
+        long t = System.nanoTime() - t0;
+
+        assertArrayEquals(ping, pong);
+        return t;
+    }
+
+    private static void allocate() {
+        List<long[]> retained = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            retained.add(new long[1024]);
+            if (retained.size() > 1000) {
+                retained.clear();
+            }
+        }
+    }
+}
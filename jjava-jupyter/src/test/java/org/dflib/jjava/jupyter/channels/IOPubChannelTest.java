@@ -0,0 +1,190 @@
+package org.dflib.jjava.jupyter.channels;
+
+import org.dflib.jjava.jupyter.messages.HMACGenerator;
+import org.dflib.jjava.jupyter.messages.Header;
+import org.dflib.jjava.jupyter.messages.Message;
+import org.dflib.jjava.jupyter.messages.publish.PublishStatus;
+import org.dflib.jjava.jupyter.messages.publish.PublishStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.zeromq.ZMQ;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IOPubChannelTest {
+
+    private ZMQ.Context context;
+
+    @BeforeEach
+    public void setUp() {
+        context = ZMQ.context(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void preservesOrder() throws InterruptedException {
+        RecordingChannel channel = new RecordingChannel(context, 16, IOPubChannel.Backpressure.BLOCK);
+        channel.startPublisher();
+        try {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    channel.sendMessage(stream(PublishStream.StreamType.OUT, String.valueOf(i)));
+                }
+                channel.sendMessage(status(PublishStatus.IDLE));
+            });
+
+            producer.start();
+            producer.join();
+            channel.flush();
+
+            assertEquals(1001, channel.published.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(String.valueOf(i), ((PublishStream) channel.published.get(i).getContent()).getText());
+            }
+
+            assertSame(PublishStatus.IDLE, channel.published.get(1000).getContent());
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void block() throws InterruptedException {
+        RecordingChannel channel = new RecordingChannel(context, 1, IOPubChannel.Backpressure.BLOCK);
+        try {
+            channel.sendMessage(stream(PublishStream.StreamType.OUT, "a"));
+
+            Thread producer = new Thread(() -> channel.sendMessage(stream(PublishStream.StreamType.OUT, "b")));
+            producer.start();
+            producer.join(200);
+            assertTrue(producer.isAlive(), "Producer must be blocked on a full queue");
+
+            channel.startPublisher();
+            producer.join(1000);
+            channel.flush();
+
+            assertEquals(List.of("a", "b"), texts(channel));
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void dropOldestStream() {
+        RecordingChannel channel = new RecordingChannel(context, 2, IOPubChannel.Backpressure.DROP_OLDEST_STREAM);
+        try {
+            channel.sendMessage(stream(PublishStream.StreamType.OUT, "a"));
+            channel.sendMessage(stream(PublishStream.StreamType.OUT, "b"));
+            channel.sendMessage(stream(PublishStream.StreamType.OUT, "c"));
+            assertEquals(1, channel.getDroppedCount());
+
+            channel.startPublisher();
+            channel.flush();
+
+            assertEquals(List.of("b", "c"), texts(channel));
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void coalesce() {
+        RecordingChannel channel = new RecordingChannel(context, 1, IOPubChannel.Backpressure.COALESCE);
+        try {
+            channel.sendMessage(stream(PublishStream.StreamType.OUT, "a"));
+            channel.sendMessage(stream(PublishStream.StreamType.OUT, "b"));
+            channel.sendMessage(stream(PublishStream.StreamType.OUT, "c"));
+
+            channel.startPublisher();
+            channel.flush();
+
+            assertEquals(List.of("abc"), texts(channel));
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void publishError() throws InterruptedException {
+        RecordingChannel channel = new RecordingChannel(context, 1, IOPubChannel.Backpressure.BLOCK) {
+            @Override
+            protected void publish(Message<?> message) {
+                if (((PublishStream) message.getContent()).getText().startsWith("huge")) {
+                    throw new OutOfMemoryError("Test OOM");
+                }
+
+                super.publish(message);
+            }
+        };
+
+        channel.startPublisher();
+        try {
+            Thread producer = new Thread(() -> {
+                channel.sendMessage(stream(PublishStream.StreamType.OUT, "a"));
+                channel.sendMessage(stream(PublishStream.StreamType.OUT, "huge"));
+                channel.sendMessage(stream(PublishStream.StreamType.OUT, "b"));
+                channel.sendMessage(stream(PublishStream.StreamType.OUT, "c"));
+            });
+
+            producer.start();
+            producer.join(5000);
+            assertFalse(producer.isAlive(), "Producer must not be blocked after a publishing error");
+
+            channel.flush();
+            assertEquals(List.of("a", "b", "c"), texts(channel));
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void flush_sync() {
+        RecordingChannel channel = new RecordingChannel(context, 0, IOPubChannel.Backpressure.BLOCK);
+        try {
+            channel.flush();
+            assertTrue(channel.published.isEmpty());
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static List<String> texts(RecordingChannel channel) {
+        return channel.published.stream()
+                .map(m -> ((PublishStream) m.getContent()).getText())
+                .collect(Collectors.toList());
+    }
+
+    private static Message<PublishStream> stream(PublishStream.StreamType type, String text) {
+        return new Message<>(new Header<>(PublishStream.MESSAGE_TYPE), new PublishStream(type, text));
+    }
+
+    private static Message<PublishStatus> status(PublishStatus status) {
+        return new Message<>(new Header<>(PublishStatus.MESSAGE_TYPE), status);
+    }
+
+    static class RecordingChannel extends IOPubChannel {
+
+        final List<Message<?>> published = new CopyOnWriteArrayList<>();
+
+        RecordingChannel(ZMQ.Context context, int capacity, Backpressure backpressure) {
+            super(context, HMACGenerator.NO_AUTH_INSTANCE, capacity, backpressure);
+        }
+
+        @Override
+        protected void publish(Message<?> message) {
+            published.add(message);
+        }
+    }
+}
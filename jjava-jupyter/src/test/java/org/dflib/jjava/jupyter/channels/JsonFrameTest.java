@@ -0,0 +1,99 @@
+package org.dflib.jjava.jupyter.channels;
+
+import com.google.gson.Gson;
+import org.dflib.jjava.jupyter.messages.publish.PublishStream;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JsonFrameTest {
+
+    private static final Gson GSON = new Gson();
+
+    @Test
+    public void writeJson() {
+        JsonFrame frame = new JsonFrame();
+
+        Object[] values = {
+                Map.of("a", 1, "b", "<é€😀>"),
+                "unpaired \uD83D surrogates \uDE00",
+                new PublishStream(PublishStream.StreamType.ERR, "x\ny\t\"z\""),
+                "",
+                null
+        };
+
+        for (Object v : values) {
+            frame.writeJson(GSON, v);
+            assertArrayEquals(GSON.toJson(v).getBytes(StandardCharsets.UTF_8), frame.toByteArray());
+        }
+    }
+
+    @Test
+    public void writeJson_acrossChunks() {
+        JsonFrame frame = new JsonFrame();
+        String text = payload(JsonFrame.CHUNK_SIZE * 3 + 7);
+
+        frame.writeJson(GSON, new PublishStream(PublishStream.StreamType.OUT, text));
+        assertArrayEquals(GSON.toJson(new PublishStream(PublishStream.StreamType.OUT, text)).getBytes(StandardCharsets.UTF_8), frame.toByteArray());
+
+        // reusing the frame for a shorter value
+        frame.release();
+        frame.writeJson(GSON, "abc");
+        assertEquals(5, frame.length());
+        assertArrayEquals("\"abc\"".getBytes(StandardCharsets.UTF_8), frame.toByteArray());
+    }
+
+    // Compares the memory allocated by the streaming encoding against the previous "toJson(..).getBytes(..)" approach
+    @Test
+    public void writeJson_allocations() {
+        allocations(1024);
+        allocations(1024 * 1024);
+        allocations(20 * 1024 * 1024);
+    }
+
+    private static void allocations(int size) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        PublishStream content = new PublishStream(PublishStream.StreamType.OUT, payload(size));
+        JsonFrame frame = new JsonFrame();
+
+        // warm up, and let the frame allocate its chunks
+        for (int i = 0; i < 5; i++) {
+            frame.release();
+            frame.writeJson(GSON, content);
+            frame.toByteArray();
+            GSON.toJson(content).getBytes(StandardCharsets.UTF_8);
+        }
+
+        long t0 = threads.getThreadAllocatedBytes(threadId);
+        byte[] legacy = GSON.toJson(content).getBytes(StandardCharsets.UTF_8);
+        long legacyAllocated = threads.getThreadAllocatedBytes(threadId) - t0;
+
+        frame.release();
+        long t1 = threads.getThreadAllocatedBytes(threadId);
+        frame.writeJson(GSON, content);
+        byte[] streamed = frame.toByteArray();
+        long streamedAllocated = threads.getThreadAllocatedBytes(threadId) - t1;
+
+        assertArrayEquals(legacy, streamed);
+        assertTrue(streamedAllocated * 2 < legacyAllocated,
+                size + " bytes payload; streamed: " + streamedAllocated + ", legacy: " + legacyAllocated);
+    }
+
+    private static String payload(int size) {
+        StringBuilder payload = new StringBuilder(size);
+        while (payload.length() < size) {
+            payload.append("<td>\"value\"</td>\n");
+        }
+
+        payload.setLength(size);
+        return payload.toString();
+    }
+}
@@ -0,0 +1,145 @@
+package org.dflib.jjava.jupyter.channels;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JupyterOutputStreamTest {
+
+    private final List<String> published = new CopyOnWriteArrayList<>();
+    private final ShellReplyEnvironment env = new ShellReplyEnvironment(null, null, null, null);
+
+    @Test
+    public void flush_coalescesWithinInterval() {
+        JupyterOutputStream out = stream(10_000, JupyterOutputStream.DEFAULT_FLUSH_THRESHOLD);
+        PrintStream printer = new PrintStream(out, true, StandardCharsets.UTF_8);
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            printer.println(i);
+            expected.append(i).append(System.lineSeparator());
+        }
+
+        out.flushNow();
+
+        // the first output is published right away, the rest is held until the interval expires or "flushNow"
+        assertTrue(published.size() <= 5, "Too many messages: " + published.size());
+        assertEquals(expected.toString(), String.join("", published));
+    }
+
+    @Test
+    public void flush_zeroInterval() {
+        JupyterOutputStream out = stream(0, JupyterOutputStream.DEFAULT_FLUSH_THRESHOLD);
+        PrintStream printer = new PrintStream(out, true, StandardCharsets.UTF_8);
+
+        printer.println("a");
+        printer.println("b");
+
+        assertEquals(List.of("a" + System.lineSeparator(), "b" + System.lineSeparator()), published);
+    }
+
+    @Test
+    public void write_threshold() {
+        JupyterOutputStream out = stream(10_000, 100);
+
+        byte[] chunk = new byte[10];
+        for (int i = 0; i < 100; i++) {
+            out.write(chunk, 0, chunk.length);
+        }
+
+        assertEquals(10, published.size());
+        published.forEach(s -> assertEquals(100, s.length()));
+    }
+
+    @Test
+    public void write_publishedAfterInterval() throws InterruptedException {
+        JupyterOutputStream out = stream(20, JupyterOutputStream.DEFAULT_FLUSH_THRESHOLD);
+
+        out.writeBytes("a".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        out.writeBytes("b".getBytes(StandardCharsets.UTF_8));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (published.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(List.of("a", "b"), published);
+    }
+
+    @Test
+    public void flush_splitMultibyteChar() {
+        JupyterOutputStream out = stream(0, JupyterOutputStream.DEFAULT_FLUSH_THRESHOLD);
+        byte[] bytes = "aé€".getBytes(StandardCharsets.UTF_8);
+
+        // split both "é" (2 bytes) and "€" (3 bytes)
+        out.write(bytes, 0, 2);
+        out.flush();
+        out.write(bytes, 2, 2);
+        out.flush();
+        out.write(bytes, 4, 2);
+        out.flush();
+
+        assertEquals(List.of("a", "é", "€"), published);
+    }
+
+    @Test
+    public void flushNow_incompleteChar() {
+        JupyterOutputStream out = stream(0, JupyterOutputStream.DEFAULT_FLUSH_THRESHOLD);
+        byte[] bytes = "é".getBytes(StandardCharsets.UTF_8);
+
+        out.write(bytes, 0, 1);
+        out.flush();
+        assertEquals(List.of(), published);
+
+        out.flushNow();
+        assertEquals(List.of("�"), published);
+    }
+
+    @Test
+    public void retractEnv_flushes() {
+        JupyterOutputStream out = stream(10_000, JupyterOutputStream.DEFAULT_FLUSH_THRESHOLD);
+
+        out.writeBytes("a".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        out.writeBytes("b".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        out.retractEnv(env);
+
+        assertEquals(List.of("a", "b"), published);
+    }
+
+    @Test
+    public void write_rateLimited() {
+        OutputRateLimiter limiter = new OutputRateLimiter(1000, 0, 60_000);
+        JupyterOutputStream out = new JupyterOutputStream(env, (e, s) -> published.add(s), StandardCharsets.UTF_8, 0, 100, limiter);
+
+        byte[] chunk = new byte[1000];
+        for (int i = 0; i < 10_000; i++) {
+            out.write(chunk, 0, chunk.length);
+            out.flush();
+            assertTrue(out.size() <= 100, "Buffer must stay bounded: " + out.size());
+        }
+
+        out.flushNow();
+
+        // 60 seconds at 1000 bytes per second
+        int publishedBytes = published.stream().mapToInt(String::length).sum();
+        assertEquals(60_000, publishedBytes);
+        assertTrue(limiter.isSuppressing());
+
+        String warning = limiter.reset();
+        assertTrue(warning.contains("9940000 bytes"), warning);
+    }
+
+    private JupyterOutputStream stream(long flushIntervalMs, int flushThreshold) {
+        return new JupyterOutputStream(env, (e, s) -> published.add(s), StandardCharsets.UTF_8, flushIntervalMs, flushThreshold);
+    }
+}
@@ -0,0 +1,50 @@
+package org.dflib.jjava.jupyter.channels;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutputRateLimiterTest {
+
+    @Test
+    public void tryPublish_dataRate() {
+        OutputRateLimiter limiter = new OutputRateLimiter(100, 0, 10_000);
+
+        assertTrue(limiter.tryPublish(600));
+        assertTrue(limiter.tryPublish(400));
+        assertFalse(limiter.tryPublish(1));
+        assertTrue(limiter.isSuppressing());
+
+        // once suppressed, stays suppressed until reset, even for small outputs
+        assertFalse(limiter.tryPublish(0));
+    }
+
+    @Test
+    public void tryPublish_msgRate() {
+        OutputRateLimiter limiter = new OutputRateLimiter(0, 1, 3000);
+
+        assertTrue(limiter.tryPublish(1_000_000));
+        assertTrue(limiter.tryPublish(1_000_000));
+        assertTrue(limiter.tryPublish(1_000_000));
+        assertFalse(limiter.tryPublish(1));
+    }
+
+    @Test
+    public void reset() {
+        OutputRateLimiter limiter = new OutputRateLimiter(1, 0, 1000);
+        assertNull(limiter.reset());
+
+        assertFalse(limiter.tryPublish(2));
+        limiter.suppress(10);
+        assertFalse(limiter.tryPublish(3));
+
+        String warning = limiter.reset();
+        assertTrue(warning.contains("15 bytes of output in 2 messages"), warning);
+
+        assertFalse(limiter.isSuppressing());
+        assertTrue(limiter.tryPublish(1));
+        assertNull(limiter.reset());
+    }
+}
@@ -0,0 +1,167 @@
+package org.dflib.jjava.jupyter.channels;
+
+import com.google.gson.JsonSyntaxException;
+import org.dflib.jjava.jupyter.kernel.KernelConnectionProperties;
+import org.dflib.jjava.jupyter.kernel.display.DisplayData;
+import org.dflib.jjava.jupyter.kernel.display.mime.MIMEType;
+import org.dflib.jjava.jupyter.messages.HMACGenerator;
+import org.dflib.jjava.jupyter.messages.Header;
+import org.dflib.jjava.jupyter.messages.Message;
+import org.dflib.jjava.jupyter.messages.MessageType;
+import org.dflib.jjava.jupyter.messages.publish.PublishDisplayData;
+import org.dflib.jjava.jupyter.messages.reply.ErrorReply;
+import org.dflib.jjava.jupyter.messages.reply.InputReply;
+import org.dflib.jjava.jupyter.messages.request.ExecuteRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.zeromq.SocketType;
+import org.zeromq.ZMQ;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReceivedMessageTest {
+
+    private static final String HEADER = "{\"msg_id\":\"m1\",\"username\":\"u\",\"session\":\"s1\"," +
+            "\"date\":\"2024-01-01T00:00:00.000Z\",\"msg_type\":\"%s\",\"version\":\"5.3\"}";
+
+    private ZMQ.Context context;
+    private PairSocket receiver;
+    private ZMQ.Socket sender;
+
+    @BeforeEach
+    public void setUp() {
+        context = ZMQ.context(1);
+
+        receiver = new PairSocket(context);
+        receiver.bind("inproc://received-message-test");
+
+        sender = context.socket(SocketType.PAIR);
+        sender.setLinger(0);
+        sender.connect("inproc://received-message-test");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sender.close();
+        receiver.close();
+        context.close();
+    }
+
+    @Test
+    public void roundTrip() {
+        PairSocket out = new PairSocket(context);
+        out.connect("inproc://received-message-test-2");
+        PairSocket in = new PairSocket(context);
+        in.bind("inproc://received-message-test-2");
+
+        try {
+            Message<ExecuteRequest> parent = new Message<>(new Header<>(ExecuteRequest.MESSAGE_TYPE), new ExecuteRequest("1 + 1", false, true, Map.of(), false, false));
+            Message<InputReply> sent = new Message<>(
+                    List.of(),
+                    new Header<>(parent, InputReply.MESSAGE_TYPE),
+                    parent.getHeader(),
+                    Map.of("k", "v"),
+                    new InputReply("abc"),
+                    null);
+
+            out.sendMessage(sent);
+            Message<InputReply> received = in.readMessage(InputReply.MESSAGE_TYPE);
+
+            assertEquals(sent.getHeader().getId(), received.getHeader().getId());
+            assertEquals(parent.getHeader().getId(), received.getParentHeader().getId());
+            assertEquals(Map.of("k", "v"), received.getMetadata());
+            assertEquals("abc", received.getContent().getValue());
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    @Test
+    public void binaryDisplayData() {
+        PairSocket out = new PairSocket(context);
+        out.connect("inproc://received-message-test-3");
+        PairSocket in = new PairSocket(context);
+        in.bind("inproc://received-message-test-3");
+
+        try {
+            byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0, -1};
+            DisplayData data = new DisplayData();
+            data.putBinaryData(MIMEType.IMAGE_PNG, png);
+
+            // base64 fallback
+            out.sendMessage(new Message<>(new Header<>(PublishDisplayData.MESSAGE_TYPE), new PublishDisplayData(data)));
+            Message<PublishDisplayData> inline = in.readMessage(PublishDisplayData.MESSAGE_TYPE);
+            assertEquals(Base64.getEncoder().encodeToString(png), inline.getContent().getData(MIMEType.IMAGE_PNG));
+            assertTrue(inline.getBlobs().isEmpty());
+
+            // binary buffers
+            PublishDisplayData content = new PublishDisplayData(data);
+            List<byte[]> buffers = content.detachBinaryData();
+            out.sendMessage(new Message<>(new Header<>(PublishDisplayData.MESSAGE_TYPE), content, null, buffers));
+            Message<PublishDisplayData> binary = in.readMessage(PublishDisplayData.MESSAGE_TYPE);
+            assertNull(binary.getContent().getData(MIMEType.IMAGE_PNG));
+            assertEquals(1, binary.getBlobs().size());
+            assertArrayEquals(png, binary.getBlobs().get(0));
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    @Test
+    public void lazyContent() {
+        send(String.format(HEADER, "execute_request"), "{}", "{}", "{\"code\": ");
+
+        Message<?> message = receiver.readMessage();
+        assertSame(ExecuteRequest.MESSAGE_TYPE, message.getHeader().getType());
+        assertFalse(message.hasParentHeader());
+
+        // broken content is only detected when the content is actually requested
+        assertThrows(JsonSyntaxException.class, message::getContent);
+    }
+
+    @Test
+    public void errorReply() {
+        send(String.format(HEADER, "input_reply"), "{}", "{}", "{\"status\":\"error\",\"ename\":\"E\",\"evalue\":\"V\",\"traceback\":[]}");
+
+        Message<?> message = receiver.readMessage();
+        assertSame(MessageType.INPUT_REPLY.error(), message.getHeader().getType());
+        assertTrue(message.getContent() instanceof ErrorReply);
+    }
+
+    private void send(String header, String parentHeader, String metadata, String content) {
+        sender.sendMore("<IDS|MSG>");
+        sender.sendMore("");
+        sender.sendMore(header.getBytes(StandardCharsets.UTF_8));
+        sender.sendMore(parentHeader.getBytes(StandardCharsets.UTF_8));
+        sender.sendMore(metadata.getBytes(StandardCharsets.UTF_8));
+        sender.send(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static class PairSocket extends JupyterSocket {
+
+        PairSocket(ZMQ.Context context) {
+            super(context, SocketType.PAIR, HMACGenerator.NO_AUTH_INSTANCE, LoggerFactory.getLogger("PairSocket"));
+            setLinger(0);
+        }
+
+        @Override
+        public void bind(KernelConnectionProperties connProps) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.dflib.jjava.jupyter.channels;
+
+import org.dflib.jjava.jupyter.kernel.KernelConnectionProperties;
+import org.dflib.jjava.jupyter.messages.HMACGenerator;
+import org.dflib.jjava.jupyter.messages.Header;
+import org.dflib.jjava.jupyter.messages.Message;
+import org.dflib.jjava.jupyter.messages.MessageType;
+import org.dflib.jjava.jupyter.messages.reply.CompleteReply;
+import org.dflib.jjava.jupyter.messages.reply.IsCompleteReply;
+import org.dflib.jjava.jupyter.messages.request.CompleteRequest;
+import org.dflib.jjava.jupyter.messages.request.IsCompleteRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.zeromq.SocketType;
+import org.zeromq.ZMQ;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.dflib.jjava.jupyter.channels.JupyterSocket.formatAddress;
+import static org.dflib.jjava.jupyter.channels.TestConnections.newConnProps;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShellChannelTest {
+
+    private static final int REQUESTS = 40;
+
+    private ZMQ.Context context;
+    private JupyterConnection connection;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        connection = new JupyterConnection(newConnProps());
+        connection.setHandler(MessageType.IS_COMPLETE_REQUEST, (env, m) -> env.reply(IsCompleteReply.VALID_CODE));
+        context = ZMQ.context(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void blockingPoll_latency() throws IOException {
+        ShellChannel shell = new ShellChannel(context, HMACGenerator.NO_AUTH_INSTANCE, false, connection);
+        long blockingNanos = medianRoundTripNanos(shell);
+
+        // a 50 ms poll/sleep loop has an average overhead of ~25 ms per request. Blocking poll should be
+        // below 1 ms, but let's leave some slack for slow CI machines.
+        assertTrue(blockingNanos < TimeUnit.MILLISECONDS.toNanos(10), "Median round trip too slow: " + blockingNanos + " ns");
+    }
+
+    @Test
+    public void blockingPoll_fasterThanSleepingPoll() throws IOException {
+        long sleepingNanos = medianRoundTripNanos(new ShellChannel(context, HMACGenerator.NO_AUTH_INSTANCE, false, connection, 50));
+        long blockingNanos = medianRoundTripNanos(new ShellChannel(context, HMACGenerator.NO_AUTH_INSTANCE, false, connection));
+
+        assertTrue(sleepingNanos > TimeUnit.MILLISECONDS.toNanos(5), "Unexpectedly fast sleeping poll: " + sleepingNanos + " ns");
+        assertTrue(blockingNanos * 5 < sleepingNanos, "Blocking: " + blockingNanos + " ns, sleeping: " + sleepingNanos + " ns");
+    }
+
+    @Test
+    public void blockingPoll_drainsQueuedMessages() throws IOException {
+        KernelConnectionProperties connProps = newConnProps();
+        ShellChannel shell = new ShellChannel(context, HMACGenerator.NO_AUTH_INSTANCE, false, connection);
+        shell.bind(connProps);
+
+        TestClient client = new TestClient(context);
+        try {
+            client.connect(formatAddress(connProps.getTransport(), connProps.getIp(), connProps.getShellPort()));
+
+            for (int i = 0; i < REQUESTS; i++) {
+                client.sendMessage(new Message<>(new Header<>(IsCompleteRequest.MESSAGE_TYPE), new IsCompleteRequest("1")));
+            }
+
+            for (int i = 0; i < REQUESTS; i++) {
+                assertEquals(IsCompleteReply.Status.VALID_CODE, client.readMessage(IsCompleteReply.MESSAGE_TYPE).getContent().getStatus());
+            }
+        } finally {
+            client.close();
+            shell.close();
+        }
+    }
+
+    @Test
+    public void supersededRequests() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        connection.setHandler(MessageType.COMPLETE_REQUEST, (env, m) -> {
+            if (m.getContent().getCode().equals("slow")) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            String result = env.isSuperseded() ? "superseded" : "handled";
+            env.reply(new CompleteReply(List.of(result), 0, 0, Map.of()));
+        });
+
+        KernelConnectionProperties connProps = newConnProps();
+        ShellChannel shell = new ShellChannel(context, HMACGenerator.NO_AUTH_INSTANCE, false, connection);
+        shell.bind(connProps);
+
+        TestClient client = new TestClient(context);
+        try {
+            client.connect(formatAddress(connProps.getTransport(), connProps.getIp(), connProps.getShellPort()));
+
+            sendComplete(client, "a", "slow", 4);
+            Thread.sleep(200);
+
+            // these queue up while the first one is handled
+            sendComplete(client, "a", "Math.m;\nx", 6);
+            sendComplete(client, "a", "Math.ma;\nx", 7);
+            sendComplete(client, "b", "Math.max;\nx", 8);
+            sendComplete(client, "a", "Math.max;\ny.", 12);
+            sendComplete(client, "a", "Math.ma;\nxy", 7);
+            Thread.sleep(200);
+            release.countDown();
+
+            String[] expected = {
+                    "handled",
+                    // more text typed at the cursor
+                    "superseded",
+                    // the later ones are from another session, or change the code after the cursor
+                    "handled",
+                    "handled",
+                    "handled",
+                    "handled"
+            };
+
+            for (String result : expected) {
+                assertEquals(List.of(result), client.readMessage(CompleteReply.MESSAGE_TYPE).getContent().getMatches());
+            }
+        } finally {
+            client.close();
+            shell.close();
+        }
+    }
+
+    @Test
+    public void blockingPoll_shutdown() throws InterruptedException, IOException {
+        KernelConnectionProperties connProps = newConnProps();
+        ShellChannel shell = new ShellChannel(context, HMACGenerator.NO_AUTH_INSTANCE, false, connection);
+        shell.bind(connProps);
+
+        Thread closer = new Thread(shell::waitUntilClose);
+        closer.start();
+
+        long start = System.nanoTime();
+        shell.close();
+        closer.join(1000);
+
+        assertTrue(!closer.isAlive(), "Shell loop did not stop");
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500), "Shutdown took too long");
+    }
+
+    private long medianRoundTripNanos(ShellChannel shell) throws IOException {
+        KernelConnectionProperties connProps = newConnProps();
+        shell.bind(connProps);
+
+        TestClient client = new TestClient(context);
+        try {
+            client.connect(formatAddress(connProps.getTransport(), connProps.getIp(), connProps.getShellPort()));
+
+            // warm up the connection and the JIT
+            for (int i = 0; i < REQUESTS; i++) {
+                roundTrip(client);
+            }
+
+            long[] times = new long[REQUESTS];
+            for (int i = 0; i < REQUESTS; i++) {
+                long start = System.nanoTime();
+                roundTrip(client);
+                times[i] = System.nanoTime() - start;
+            }
+
+            Arrays.sort(times);
+            return times[REQUESTS / 2];
+        } finally {
+            client.close();
+            shell.close();
+        }
+    }
+
+    private static void sendComplete(TestClient client, String session, String code, int cursorPos) {
+        client.sendMessage(new Message<>(new Header<>(session, CompleteRequest.MESSAGE_TYPE), new CompleteRequest(code, cursorPos)));
+    }
+
+    private static void roundTrip(TestClient client) {
+        client.sendMessage(new Message<>(new Header<>(IsCompleteRequest.MESSAGE_TYPE), new IsCompleteRequest("1")));
+        client.readMessage(IsCompleteReply.MESSAGE_TYPE);
+    }
+
+    static class TestClient extends JupyterSocket {
+
+        TestClient(ZMQ.Context context) {
+            super(context, SocketType.DEALER, HMACGenerator.NO_AUTH_INSTANCE, LoggerFactory.getLogger("TestClient"));
+            setLinger(0);
+        }
+
+        @Override
+        public void bind(KernelConnectionProperties connProps) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
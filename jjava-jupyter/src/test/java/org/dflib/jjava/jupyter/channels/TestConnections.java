@@ -0,0 +1,25 @@
+package org.dflib.jjava.jupyter.channels;
+
+import org.dflib.jjava.jupyter.kernel.KernelConnectionProperties;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * Connection fixtures shared by the channel tests and the tests of the kernels.
+ */
+public class TestConnections {
+
+    /**
+     * Returns the local connection properties with a free port for each channel.
+     */
+    public static KernelConnectionProperties newConnProps() throws IOException {
+        return new KernelConnectionProperties("127.0.0.1", freePort(), freePort(), freePort(), freePort(), freePort(), "tcp", "hmac-sha256", "");
+    }
+
+    public static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.dflib.jjava.jupyter.kernel.display;
+
+import org.dflib.jjava.jupyter.kernel.display.mime.MIMEType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DisplayDataTest {
+
+    @Test
+    public void detachBinaryData() {
+        byte[] png = {1, 2, 3};
+        byte[] parquet = {4, 5};
+
+        DisplayData data = new DisplayData("img");
+        data.putBinaryData(MIMEType.IMAGE_PNG, png);
+        data.putBinaryData(MIMEType.parse("application/vnd.apache.parquet"), parquet);
+        assertTrue(data.hasBinaryData());
+
+        DisplayData copy = new DisplayData(data);
+        List<byte[]> buffers = copy.detachBinaryData();
+
+        assertEquals(2, buffers.size());
+        assertSame(png, buffers.get(0));
+        assertSame(parquet, buffers.get(1));
+
+        assertFalse(copy.hasBinaryData());
+        assertEquals("img", copy.getData(MIMEType.TEXT_PLAIN));
+        assertNull(copy.getData(MIMEType.IMAGE_PNG));
+
+        // the original bundle is not modified
+        assertArrayEquals(png, (byte[]) data.getData(MIMEType.IMAGE_PNG));
+        assertTrue(data.hasBinaryData());
+    }
+
+    @Test
+    public void detachBinaryData_noBinaryData() {
+        DisplayData data = new DisplayData("text");
+        assertTrue(data.detachBinaryData().isEmpty());
+        assertEquals("text", data.getData(MIMEType.TEXT_PLAIN));
+    }
+}
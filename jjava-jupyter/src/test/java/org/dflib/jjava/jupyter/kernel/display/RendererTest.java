@@ -1,16 +1,21 @@
 package org.dflib.jjava.jupyter.kernel.display;
 
+import org.dflib.jjava.jupyter.kernel.display.common.Image;
 import org.dflib.jjava.jupyter.kernel.display.mime.MIMEType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.awt.image.BufferedImage;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RendererTest {
     private Renderer renderer;
@@ -49,6 +54,19 @@ public class RendererTest {
                 });
     }
 
+    @Test
+    public void rendersImage() {
+        Image.registerAll(this.renderer);
+        BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+
+        Object png = this.renderer.render(image).getData(MIMEType.IMAGE_PNG);
+        assertTrue(png instanceof String);
+
+        this.renderer.setBinaryData(true);
+        byte[] binaryPng = (byte[]) this.renderer.render(image).getData(MIMEType.IMAGE_PNG);
+        assertArrayEquals(binaryPng, Base64.getDecoder().decode((String) png));
+    }
+
     @Test
     public void rendersPlainText() {
         DisplayData data = this.renderer.render(new A());
@@ -3,9 +3,16 @@ package org.dflib.jjava.jupyter.kernel.magic;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class MagicsResolverTest {
 
@@ -87,6 +94,176 @@ public class MagicsResolverTest {
         assertEquals(expectedTransformedCell, transformedCell);
     }
 
+    @Test
+    public void parseCellMagic_kernelSyntax() {
+        MagicsResolver resolver = kernelParser(emptyTranspiler);
+
+        ParsedCellMagic parsed = resolver.parseCellMagic("%%bash -x\r\necho 1\necho 2\n");
+        assertNotNull(parsed);
+        assertEquals("bash", parsed.name);
+        assertEquals(Arrays.asList("-x"), parsed.args);
+        assertEquals("echo 1\necho 2\n", parsed.cellBodyAfterMagic);
+
+        assertNull(resolver.parseCellMagic("%%bash"));
+        assertNull(resolver.parseCellMagic(" %%bash\necho 1"));
+        assertNull(resolver.parseCellMagic("int x = 1;\n%%bash\necho 1"));
+    }
+
+    @Test
+    public void resolveLineMagics_kernelSyntax() {
+        String cell = String.join("\n",
+                "%maven org:lib:1.0",
+                "  %load file.jsh",
+                "var x = %time 1 + 1",
+                "int y = 10 % 3;",
+                "int z = 10",
+                "    % 3;"
+        );
+
+        String expected = String.join("\n",
+                "maven",
+                "load",
+                "var x =time",
+                "int y = 10 % 3;",
+                "int z = 10",
+                "    % 3;"
+        );
+
+        assertEquals(expected, kernelParser(nameTranspiler).resolveLineMagics(cell));
+    }
+
+    @Test
+    public void resolveLineMagics_skipsLiteralsAndComments() {
+        String cell = String.join("\n",
+                "String s = \"\"\"",
+                "%notMagic in a text block \\\"\"\" still in the text block",
+                "  %notMagic",
+                "  \"\"\";",
+                "/* a comment",
+                "%notMagic",
+                "*/ %magic1",
+                "// %notMagic",
+                "String f = \"%notMagic \\\" %notMagic\";",
+                "char c = '\"';",
+                "%magic2 \"a b\""
+        );
+
+        String expected = String.join("\n",
+                "String s = \"\"\"",
+                "%notMagic in a text block \\\"\"\" still in the text block",
+                "  %notMagic",
+                "  \"\"\";",
+                "/* a comment",
+                "%notMagic",
+                "*/ %magic1",
+                "// %notMagic",
+                "String f = \"%notMagic \\\" %notMagic\";",
+                "char c = '\"';",
+                "magic2"
+        );
+
+        assertEquals(expected, kernelParser(nameTranspiler).resolveLineMagics(cell));
+    }
+
+    @Test
+    public void resolve_noMagics() {
+        String cell = String.join("\n",
+                "int x = 10 % 3;",
+                "System.out.printf(\"%d%n\", x);"
+        );
+
+        assertSame(cell, kernelParser(emptyTranspiler).resolve(cell));
+    }
+
+    @Test
+    public void resolveLineMagics_emptyMarker() {
+        String cell = String.join("\n",
+                "%magicName arg1",
+                "String s = \"%inString\"; // %inComment",
+                "Inline magic = !magicName2 arg2"
+        );
+
+        MagicsResolver resolver = new MagicsResolver("(?:%|!)", "%%", joinTranspiler);
+
+        String transpiledExpected = String.join("\n",
+                "**magicName-arg1",
+                "String s = \"%inString\"; // %inComment",
+                "Inline magic = **magicName2-arg2"
+        );
+        assertEquals(transpiledExpected, resolver.resolveLineMagics(cell));
+        assertNull(resolver.parseLineMagicsOnly(cell));
+        assertEquals(2, resolver.parseLineMagicsOnly("%magicName arg1\n!magicName2").size());
+    }
+
+    @Test
+    public void transpileLine_inString() {
+        MagicTranspiler transpiler = new MagicTranspiler();
+
+        ParsedLineMagic inString = new ParsedLineMagic("time", List.of(), "String s = \"", "%time");
+        assertEquals("%time", transpiler.transpileLine(inString));
+
+        ParsedLineMagic afterString = new ParsedLineMagic("time", List.of(), "String s = \"\\\"\" + ", "%time");
+        assertTrue(transpiler.transpileLine(afterString).contains(".lineMagic("));
+    }
+
+    // Compares the resolver with the regex matching it replaced on a large cell of data literals
+    @Test
+    public void resolve_latencyLargeCell() {
+        StringBuilder cell = new StringBuilder("%time\n");
+        for (int i = 0; i < 5_000; i++) {
+            cell.append("rows.add(new Row(").append(i).append(", \"name ").append(i).append(" 10%\", ")
+                    .append(i * 0.5).append(", '%'));\n");
+        }
+        String code = cell.toString();
+        String noMagics = code.substring(code.indexOf('\n') + 1);
+
+        MagicsResolver resolver = kernelParser(nameTranspiler);
+        Pattern lineMagic = Pattern.compile("(?<=(?:^|=))\\s*%(?<args>\\w.*?)$", Pattern.MULTILINE);
+        Pattern cellMagic = Pattern.compile("^(?<argsLine>%%(?<args>\\w.*?))\\R(?<body>(?sU).+?)$");
+
+        long[] resolved = new long[9];
+        long[] matched = new long[9];
+        for (int i = 0; i < resolved.length; i++) {
+            long t0 = System.nanoTime();
+            assertEquals("time", resolver.resolve(code).substring(0, 4));
+            assertSame(noMagics, resolver.resolve(noMagics));
+            resolved[i] = System.nanoTime() - t0;
+
+            long t1 = System.nanoTime();
+            assertEquals("time", regexResolve(code, lineMagic, cellMagic).substring(0, 4));
+            regexResolve(noMagics, lineMagic, cellMagic);
+            matched[i] = System.nanoTime() - t1;
+        }
+
+        Arrays.sort(resolved);
+        Arrays.sort(matched);
+        String report = String.format("Magics of 5000 lines: resolved %d us, matched with regex %d us",
+                TimeUnit.NANOSECONDS.toMicros(resolved[resolved.length / 2]),
+                TimeUnit.NANOSECONDS.toMicros(matched[matched.length / 2]));
+
+        assertTrue(resolved[resolved.length / 2] * 2 < matched[matched.length / 2], report);
+    }
+
+    // the matching done by the resolver before it had the lexer
+    private static String regexResolve(String cell, Pattern lineMagic, Pattern cellMagic) {
+        if (cellMagic.matcher(cell).matches()) {
+            return cell;
+        }
+
+        StringBuffer out = new StringBuffer();
+        Matcher m = lineMagic.matcher(cell);
+        while (m.find()) {
+            m.appendReplacement(out, Matcher.quoteReplacement(MagicsResolver.split(m.group("args")).get(0)));
+        }
+
+        m.appendTail(out);
+        return out.toString();
+    }
+
+    static MagicsResolver kernelParser(MagicTranspiler transpiler) {
+        return new MagicsResolver("(?<=(?:^|=))\\s*%", "%%", transpiler);
+    }
+
     static MagicsResolver inlineParser(MagicTranspiler transpiler) {
         return new MagicsResolver("//%", "//%%", transpiler);
     }
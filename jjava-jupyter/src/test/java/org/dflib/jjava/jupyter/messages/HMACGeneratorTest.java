@@ -0,0 +1,88 @@
+package org.dflib.jjava.jupyter.messages;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HMACGeneratorTest {
+
+    // RFC 4231, test case 2
+    private static final String KEY = "Jefe";
+    private static final String DATA = "what do ya want for nothing?";
+    private static final String SIGNATURE = "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843";
+
+    @Test
+    public void calculateSignature() throws Exception {
+        HMACGenerator hmac = new HMACGenerator("hmac-sha256", KEY);
+
+        assertEquals(SIGNATURE, hmac.calculateSignature(bytes(DATA)));
+        assertEquals(SIGNATURE, hmac.calculateSignature(bytes("what do "), bytes("ya want "), bytes("for nothing?")));
+    }
+
+    @Test
+    public void verify() throws Exception {
+        HMACGenerator hmac = new HMACGenerator("hmac-sha256", KEY);
+
+        assertTrue(hmac.verify(bytes(SIGNATURE), bytes(DATA)));
+        assertFalse(hmac.verify(bytes(SIGNATURE.replace('5', '6')), bytes(DATA)));
+        assertFalse(hmac.verify(bytes(SIGNATURE.substring(1)), bytes(DATA)));
+        assertFalse(hmac.verify(new byte[0], bytes(DATA)));
+    }
+
+    @Test
+    public void verify_noAuth() {
+        assertTrue(HMACGenerator.NO_AUTH_INSTANCE.verify(new byte[0], bytes(DATA)));
+        assertFalse(HMACGenerator.NO_AUTH_INSTANCE.verify(bytes(SIGNATURE), bytes(DATA)));
+        assertEquals("", HMACGenerator.NO_AUTH_INSTANCE.calculateSignature(bytes(DATA)));
+    }
+
+    // Four threads sign messages concurrently, each must get its own correct signatures
+    @Test
+    public void sign_concurrent() throws Exception {
+        HMACGenerator hmac = new HMACGenerator("hmac-sha256", KEY);
+        HMACGenerator reference = new HMACGenerator("hmac-sha256", KEY);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                Callable<Boolean> signer = () -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        byte[] content = bytes("{\"thread\":" + thread + ",\"i\":" + i + "}");
+                        byte[] expected = reference.sign(content).clone();
+
+                        if (!Arrays.equals(expected, hmac.sign(content)) || !hmac.verify(expected, content)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                };
+
+                results.add(executor.submit(signer));
+            }
+
+            for (Future<Boolean> r : results) {
+                assertTrue(r.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
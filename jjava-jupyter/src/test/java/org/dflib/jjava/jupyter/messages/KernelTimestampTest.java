@@ -0,0 +1,43 @@
+package org.dflib.jjava.jupyter.messages;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class KernelTimestampTest {
+
+    @Test
+    public void getDateString() {
+        assertEquals("2024-03-05T07:08:09.012345Z", new KernelTimestamp(Instant.parse("2024-03-05T07:08:09.012345678Z")).getDateString());
+        assertEquals("2024-03-05T07:08:09.000000Z", new KernelTimestamp(Instant.parse("2024-03-05T07:08:09Z")).getDateString());
+
+        // same second as the cached one
+        assertEquals("2024-03-05T07:08:09.999999Z", new KernelTimestamp(Instant.parse("2024-03-05T07:08:09.999999Z")).getDateString());
+        assertEquals("2024-03-05T07:08:10.000001Z", new KernelTimestamp(Instant.parse("2024-03-05T07:08:10.000001Z")).getDateString());
+    }
+
+    @Test
+    public void getInstant() {
+        assertEquals(Instant.parse("2024-03-05T07:08:09.012345Z"), new KernelTimestamp("2024-03-05T07:08:09.012345Z").getInstant());
+        assertEquals(Instant.parse("2024-03-05T05:08:09.012Z"), new KernelTimestamp("2024-03-05T07:08:09.012+02:00").getInstant());
+        assertEquals(Instant.parse("2024-03-05T07:08:00Z"), new KernelTimestamp("2024-03-05T07:08+0000").getInstant());
+        assertEquals(Instant.parse("2024-03-05T07:08:09Z"), new KernelTimestamp("2024-03-05T07:08:09").getInstant());
+    }
+
+    @Test
+    public void now() {
+        KernelTimestamp t1 = KernelTimestamp.now();
+        KernelTimestamp t2 = KernelTimestamp.now();
+
+        // truncated to microseconds
+        Instant roundTrip = new KernelTimestamp(t1.getDateString()).getInstant();
+        assertEquals(t1.getInstant().getNano() / 1000, roundTrip.getNano() / 1000);
+        assertEquals(t1.getInstant().getEpochSecond(), roundTrip.getEpochSecond());
+
+        // the strings are ordered chronologically
+        assertTrue(t1.getDateString().compareTo(t2.getDateString()) <= 0);
+    }
+}
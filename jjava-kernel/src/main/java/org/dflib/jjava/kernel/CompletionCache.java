@@ -0,0 +1,168 @@
+package org.dflib.jjava.kernel;
+
+import jdk.jshell.SourceCodeAnalysis;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the JShell completion suggestions, so that typing an identifier doesn't analyze the code on every keystroke.
+ * JShell completes the identifier before the cursor in the context of the code preceding it, and only keeps the
+ * suggestions that start with the identifier. So the suggestions for a longer identifier in the same context are
+ * found by filtering the cached suggestions for a shorter one. The cache must be invalidated when the snippets or the
+ * classpath change, as they change the suggestions for any context.
+ */
+class CompletionCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("CompletionCache");
+
+    private static final int MAX_CONTEXTS = 16;
+
+    private static final MethodHandle CLASSPATH_VERSION;
+    private static final MethodHandle INDEX_VERSION;
+
+    static {
+        MethodHandle classpathVersion = null;
+        MethodHandle indexVersion = null;
+        try {
+            Class<?> scaType = Class.forName("jdk.jshell.SourceCodeAnalysisImpl");
+            classpathVersion = getter(scaType, "classpathVersion");
+            indexVersion = getter(scaType, "indexVersion");
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("JShell classpath index state is not accessible, completions will not be cached", e);
+        }
+
+        CLASSPATH_VERSION = classpathVersion;
+        INDEX_VERSION = indexVersion;
+    }
+
+    private static MethodHandle getter(Class<?> type, String name) throws ReflectiveOperationException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return MethodHandles.lookup().unreflectGetter(field);
+    }
+
+    private final Map<String, CachedSuggestions> entries;
+
+    // incremented on invalidation, to reject the suggestions computed before it
+    private long version;
+
+    CompletionCache() {
+        this.entries = new LinkedHashMap<>(MAX_CONTEXTS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSuggestions> eldest) {
+                return size() > MAX_CONTEXTS;
+            }
+        };
+    }
+
+    /**
+     * Returns the position of the identifier that JShell would complete at the cursor, i.e. the cursor position moved
+     * back over the Java identifier characters.
+     */
+    static int identifierStart(String code, int cursor) {
+        int start = cursor;
+        while (start > 0 && Character.isJavaIdentifierPart(code.charAt(start - 1))) {
+            start--;
+        }
+
+        // skip the leading chars that can't start an identifier (e.g. digits), same as JShell
+        while (start < cursor && !Character.isJavaIdentifierStart(code.charAt(start))) {
+            start++;
+        }
+
+        return start;
+    }
+
+    /**
+     * Returns true if JShell is done indexing the classpath in background. Until then, the suggestions of packages and
+     * classes may be incomplete, and must not be cached.
+     */
+    static boolean isClasspathIndexed(SourceCodeAnalysis sca) {
+        if (CLASSPATH_VERSION == null) {
+            return false;
+        }
+
+        try {
+            return (int) CLASSPATH_VERSION.invoke(sca) == (int) INDEX_VERSION.invoke(sca);
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the suggestions for the code before the cursor, narrowed from a cached shorter identifier in the same
+     * context, or null if there are none cached.
+     *
+     * @param anchor receives the start of the text to replace with a suggestion
+     */
+    synchronized List<SourceCodeAnalysis.Suggestion> get(String code, int cursor, int[] anchor) {
+        int start = identifierStart(code, cursor);
+        CachedSuggestions entry = entries.get(code.substring(0, start));
+        if (entry == null) {
+            return null;
+        }
+
+        String identifier = code.substring(start, cursor);
+        if (!identifier.startsWith(entry.identifier)) {
+            return null;
+        }
+
+        List<SourceCodeAnalysis.Suggestion> narrowed = new ArrayList<>();
+        for (SourceCodeAnalysis.Suggestion s : entry.suggestions) {
+            if (s.continuation().startsWith(identifier)) {
+                narrowed.add(s);
+            }
+        }
+
+        anchor[0] = entry.anchor;
+        return narrowed;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Caches the suggestions computed by JShell, unless the cache was invalidated since the given version.
+     */
+    synchronized void put(
+            String code,
+            int cursor,
+            int anchor,
+            List<SourceCodeAnalysis.Suggestion> suggestions,
+            long computedAtVersion) {
+
+        if (computedAtVersion != version) {
+            return;
+        }
+
+        int start = identifierStart(code, cursor);
+        entries.put(code.substring(0, start), new CachedSuggestions(code.substring(start, cursor), anchor, suggestions));
+    }
+
+    synchronized void invalidate() {
+        version++;
+        entries.clear();
+    }
+
+    private static class CachedSuggestions {
+
+        final String identifier;
+        final int anchor;
+        final List<SourceCodeAnalysis.Suggestion> suggestions;
+
+        CachedSuggestions(String identifier, int anchor, List<SourceCodeAnalysis.Suggestion> suggestions) {
+            this.identifier = identifier;
+            this.anchor = anchor;
+            this.suggestions = suggestions;
+        }
+    }
+}
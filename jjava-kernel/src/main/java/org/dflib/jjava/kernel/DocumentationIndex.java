@@ -0,0 +1,364 @@
+package org.dflib.jjava.kernel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk index of the javadoc of the JDK modules and of the jars added to the classpath, so that the documentation
+ * of the inspected code is found without parsing the sources on every request. Each source root (a module of the JDK
+ * "src.zip", or a "-sources.jar" next to a classpath jar) is indexed into its own {@link DocumentationIndexFile} by a
+ * background thread, and is only indexed once, as the files are kept in the index directory between the kernel runs.
+ * The javadoc is looked up by the signatures printed by JShell, see {@link #keys(String)}. The index is not owned by
+ * the kernel, and can be shared between multiple kernels.
+ */
+public class DocumentationIndex implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("DocumentationIndex");
+
+    private static final String SOURCES_JAR_SUFFIX = "-sources.jar";
+
+    /**
+     * The JDK modules that are indexed by default, i.e. the Java SE API.
+     */
+    public static final Predicate<String> JAVA_SE_MODULES = m -> m.startsWith("java.");
+
+    private final Path dir;
+    private final Predicate<String> jdkModules;
+    private final List<DocumentationIndexFile> files;
+    private final Set<Path> sourceRoots;
+    private final ExecutorService indexer;
+
+    // completes when all the source roots submitted so far are indexed
+    private volatile CompletableFuture<Void> indexed;
+
+    public DocumentationIndex(Path dir) {
+        this(dir, JAVA_SE_MODULES);
+    }
+
+    public DocumentationIndex(Path dir, Predicate<String> jdkModules) {
+        this.dir = Objects.requireNonNull(dir);
+        this.jdkModules = Objects.requireNonNull(jdkModules);
+        this.files = new CopyOnWriteArrayList<>();
+        this.sourceRoots = new HashSet<>();
+        this.indexed = CompletableFuture.completedFuture(null);
+        this.indexer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "JJava-doc-indexer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts indexing the sources of the JDK modules in background, unless they are already indexed.
+     */
+    public synchronized void indexJdk() {
+        Path srcZip = Paths.get(System.getProperty("java.home"), "lib", "src.zip");
+        if (!Files.isReadable(srcZip)) {
+            LOGGER.info("JDK sources are not found at {}, JDK documentation is not indexed", srcZip);
+            return;
+        }
+
+        if (sourceRoots.add(srcZip)) {
+            submit(() -> indexJdk(srcZip));
+        }
+    }
+
+    /**
+     * Starts indexing the sources of the classpath jars in background. Only the jars with the sources jar next to
+     * them (e.g. "foo-1.0-sources.jar" next to "foo-1.0.jar", as in a Maven repository) are indexed, and only once.
+     *
+     * @param classpath the jars to index
+     */
+    public synchronized void indexClasspath(List<Path> classpath) {
+        for (Path jar : classpath) {
+            String name = jar.getFileName() != null ? jar.getFileName().toString() : "";
+            if (!name.endsWith(".jar") || name.endsWith(SOURCES_JAR_SUFFIX)) {
+                continue;
+            }
+
+            Path sourcesJar = jar.resolveSibling(name.substring(0, name.length() - 4) + SOURCES_JAR_SUFFIX);
+            if (Files.isReadable(sourcesJar) && sourceRoots.add(sourcesJar.toAbsolutePath())) {
+                submit(() -> indexSourcesJar(sourcesJar));
+            }
+        }
+    }
+
+    /**
+     * Returns a future that completes when all the source roots submitted so far are indexed.
+     */
+    public CompletableFuture<Void> whenIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Returns the indexed javadoc of the class or member with the given JShell signature, or null if it is not
+     * indexed.
+     *
+     * @param signature the signature as returned by {@link jdk.jshell.SourceCodeAnalysis.Documentation#signature()}
+     * @param imports   the fully qualified names of the JShell imports, e.g. "java.util.List" or "java.util.*". These
+     *                  are needed to resolve the class names JShell prints as simple names.
+     */
+    public String javadoc(String signature, List<String> imports) {
+        if (files.isEmpty()) {
+            return null;
+        }
+
+        for (String[] key : keys(signature)) {
+            for (String className : classNames(key[0], imports)) {
+                String resolvedKey = key[1].isEmpty() ? className : className + "#" + key[1];
+                for (DocumentationIndexFile file : files) {
+                    String javadoc = file.get(resolvedKey);
+                    if (javadoc != null) {
+                        return javadoc;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public void close() {
+        indexer.shutdownNow();
+    }
+
+    /**
+     * Returns the index keys of the element with the JShell signature, as pairs of the class name and the member.
+     * JShell prints a method as "[return type] [class].[type params][name]([param type] [param name], ...)", a
+     * constructor as "[class]([param type] [param name], ...)", a field as "[class].[name]:[type]" and a class as its
+     * name, with the type arguments. The member keys consist of the name and the erased parameter types. The types
+     * that JShell prints qualified are looked up qualified first, e.g. "foo(java.sql.Date)", which tells the overloads
+     * that only differ by the type package apart, and then by their simple names, e.g. "valueOf(char[],int,int)", as
+     * the sources are indexed without resolving the types. An enum constant can't be told from a nested class, so both
+     * keys are returned for the signatures without the parentheses.
+     */
+    static List<String[]> keys(String signature) {
+        String erased = eraseTypeArguments(signature).trim();
+
+        int open = erased.indexOf('(');
+        if (open >= 0) {
+            int close = erased.indexOf(')', open);
+            String target = erased.substring(0, open).trim();
+
+            StringJoiner params = new StringJoiner(",", "(", ")");
+            StringJoiner qualifiedParams = new StringJoiner(",", "(", ")");
+            for (String param : erased.substring(open + 1, close > 0 ? close : erased.length()).split(",")) {
+                String[] tokens = param.trim().split("\\s+");
+                if (!tokens[0].isEmpty()) {
+                    String type = typeName(tokens.length > 1 ? tokens[tokens.length - 2] : tokens[0]);
+                    params.add(type.substring(type.lastIndexOf('.') + 1));
+                    qualifiedParams.add(type);
+                }
+            }
+
+            String className;
+            String member;
+            int space = target.lastIndexOf(' ');
+            if (space < 0) {
+                className = target;
+                member = "<init>";
+            } else {
+                String method = target.substring(space + 1);
+                int dot = method.lastIndexOf('.');
+                if (dot < 0) {
+                    return List.of();
+                }
+
+                className = method.substring(0, dot);
+                member = method.substring(dot + 1);
+            }
+
+            String key = member + params;
+            String qualifiedKey = member + qualifiedParams;
+            return qualifiedKey.equals(key)
+                    ? List.<String[]>of(new String[]{className, key})
+                    : List.of(new String[]{className, qualifiedKey}, new String[]{className, key});
+        }
+
+        int colon = erased.indexOf(':');
+        String name = colon >= 0 ? erased.substring(0, colon) : erased;
+        int dot = name.lastIndexOf('.');
+        String[] member = dot > 0 ? new String[]{name.substring(0, dot), name.substring(dot + 1)} : null;
+
+        if (colon >= 0) {
+            return member != null ? List.<String[]>of(member) : List.of();
+        }
+
+        return member != null
+                ? List.of(new String[]{name, ""}, member)
+                : List.<String[]>of(new String[]{name, ""});
+    }
+
+    /**
+     * Returns the fully qualified names of the class printed by JShell. JShell prints the classes of java.lang and
+     * the imported classes by their simple names, so these are resolved against the imports, the same way as JShell
+     * does it.
+     */
+    static List<String> classNames(String className, List<String> imports) {
+        int firstDot = className.indexOf('.');
+        if (firstDot > 0 && Character.isLowerCase(className.charAt(0))) {
+            return List.of(className);
+        }
+
+        String outerClass = firstDot > 0 ? className.substring(0, firstDot) : className;
+        String nested = firstDot > 0 ? className.substring(firstDot) : "";
+
+        List<String> names = new ArrayList<>();
+        for (String imported : imports) {
+            if (imported.endsWith("." + outerClass)) {
+                names.add(imported + nested);
+            }
+        }
+
+        names.add("java.lang." + className);
+        for (String imported : imports) {
+            if (imported.endsWith(".*")) {
+                names.add(imported.substring(0, imported.length() - 1) + className);
+            }
+        }
+
+        // the classes in the default package
+        names.add(className);
+        return names;
+    }
+
+    private static String eraseTypeArguments(String signature) {
+        StringBuilder erased = new StringBuilder(signature.length());
+        int depth = 0;
+        for (int i = 0; i < signature.length(); i++) {
+            char c = signature.charAt(i);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (depth == 0) {
+                erased.append(c);
+            }
+        }
+
+        return erased.toString();
+    }
+
+    private static String typeName(String type) {
+        return type.endsWith("...") ? type.substring(0, type.length() - 3) + "[]" : type;
+    }
+
+    private synchronized void submit(IndexTask task) {
+        CompletableFuture<Void> previous = indexed;
+        CompletableFuture<Void> next = new CompletableFuture<>();
+        indexed = next;
+
+        indexer.execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                LOGGER.warn("Documentation indexing failed", e);
+            } finally {
+                previous.whenComplete((r, e) -> next.complete(null));
+            }
+        });
+    }
+
+    private void indexJdk(Path srcZip) throws IOException {
+        try (FileSystem zip = FileSystems.newFileSystem(srcZip, (ClassLoader) null)) {
+            Path root = zip.getRootDirectories().iterator().next();
+
+            // "java.base" first, as it is the most used one
+            List<Path> modules = new ArrayList<>();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(root, Files::isDirectory)) {
+                for (Path module : ds) {
+                    if (jdkModules.test(moduleName(module))) {
+                        modules.add(module);
+                    }
+                }
+            }
+            modules.sort(Comparator.comparing((Path m) -> !moduleName(m).equals("java.base")));
+
+            for (Path module : modules) {
+                index(module, "jdk-" + Runtime.version() + "-" + moduleName(module));
+            }
+        }
+    }
+
+    private void indexSourcesJar(Path sourcesJar) throws IOException {
+        String name = sourcesJar.getFileName().toString();
+        String version = Integer.toHexString(Objects.hash(
+                sourcesJar.toAbsolutePath().toString(),
+                Files.size(sourcesJar),
+                Files.getLastModifiedTime(sourcesJar).toMillis()));
+
+        try (FileSystem jar = FileSystems.newFileSystem(sourcesJar, (ClassLoader) null)) {
+            index(jar.getRootDirectories().iterator().next(), name.substring(0, name.length() - 4) + "-" + version);
+        }
+    }
+
+    private void index(Path sourceRoot, String indexName) throws IOException {
+        Path file = dir.resolve(indexName + ".idx");
+        if (Files.exists(file)) {
+            try {
+                files.add(DocumentationIndexFile.open(file));
+                return;
+            } catch (IOException e) {
+                // e.g. written by an older kernel version with a different format
+                LOGGER.info("Reindexing {}: {}", indexName, e.getMessage());
+            }
+        }
+
+        long t0 = System.nanoTime();
+
+        List<Path> sources;
+        try (Stream<Path> s = Files.walk(sourceRoot)) {
+            sources = s
+                    .filter(p -> p.toString().endsWith(".java"))
+                    .filter(p -> !p.getFileName().toString().contains("-"))
+                    .collect(Collectors.toList());
+        }
+
+        Map<String, String> javadocs = new JavadocExtractor().extract(sources);
+        Files.createDirectories(dir);
+        DocumentationIndexFile.write(file, javadocs);
+
+        LOGGER.info("Indexed {} javadoc comments of {} in {} ms",
+                javadocs.size(),
+                indexName,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+
+        files.add(DocumentationIndexFile.open(file));
+    }
+
+    private static String moduleName(Path module) {
+        String name = module.getFileName().toString();
+        return name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+    }
+
+    @FunctionalInterface
+    private interface IndexTask {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,155 @@
+package org.dflib.jjava.kernel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A memory-mapped file of javadoc comments, keyed by the member signatures. The file starts with a table of the keys
+ * sorted by their UTF-8 bytes, each pointing to its key and javadoc bytes in the data section after the table, so
+ * that a lookup is a binary search over the mapped memory:
+ *
+ * <pre>
+ * int magic, int version, int count
+ * count x (int keyOffset, int keyLength, int docOffset, int docLength)
+ * UTF-8 keys and javadoc
+ * </pre>
+ */
+class DocumentationIndexFile {
+
+    private static final int MAGIC = 0x4A4A4449; // "JJDI"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 12;
+    private static final int RECORD_SIZE = 16;
+
+    /**
+     * Writes the javadoc comments to a file, replacing it atomically, so that a concurrent reader never sees a partial
+     * file.
+     */
+    static void write(Path file, Map<String, String> javadocs) throws IOException {
+        List<byte[]> keys = new ArrayList<>(javadocs.size());
+        for (String key : javadocs.keySet()) {
+            keys.add(key.getBytes(StandardCharsets.UTF_8));
+        }
+        keys.sort(Arrays::compareUnsigned);
+
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(keys.size());
+
+                List<byte[]> docs = new ArrayList<>(keys.size());
+                int offset = HEADER_SIZE + keys.size() * RECORD_SIZE;
+                for (byte[] key : keys) {
+                    byte[] doc = javadocs.get(new String(key, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+                    docs.add(doc);
+
+                    out.writeInt(offset);
+                    out.writeInt(key.length);
+                    out.writeInt(offset + key.length);
+                    out.writeInt(doc.length);
+                    offset += key.length + doc.length;
+                }
+
+                for (int i = 0; i < keys.size(); i++) {
+                    out.write(keys.get(i));
+                    out.write(docs.get(i));
+                }
+            }
+
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Maps an index file into memory.
+     *
+     * @throws IOException if the file can't be read or is not a valid index file
+     */
+    static DocumentationIndexFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a documentation index file: " + file);
+            }
+
+            return new DocumentationIndexFile(file, buffer, buffer.getInt(8));
+        }
+    }
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final int count;
+
+    private DocumentationIndexFile(Path file, ByteBuffer buffer, int count) {
+        this.file = file;
+        this.buffer = buffer;
+        this.count = count;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Returns the javadoc stored for the key, or null if there is none.
+     */
+    String get(String key) {
+        byte[] probe = key.getBytes(StandardCharsets.UTF_8);
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int record = HEADER_SIZE + mid * RECORD_SIZE;
+            int c = compare(buffer.getInt(record), buffer.getInt(record + 4), probe);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return string(buffer.getInt(record + 8), buffer.getInt(record + 12));
+            }
+        }
+
+        return null;
+    }
+
+    private int compare(int offset, int length, byte[] probe) {
+        int n = Math.min(length, probe.length);
+        for (int i = 0; i < n; i++) {
+            int c = Byte.compareUnsigned(buffer.get(offset + i), probe[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+
+        return length - probe.length;
+    }
+
+    private String string(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.duplicate().position(offset).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
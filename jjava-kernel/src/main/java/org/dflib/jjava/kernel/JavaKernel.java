@@ -2,6 +2,7 @@ package org.dflib.jjava.kernel;
 
 import jdk.jshell.DeclarationSnippet;
 import jdk.jshell.EvalException;
+import jdk.jshell.ImportSnippet;
 import jdk.jshell.JShell;
 import jdk.jshell.Snippet;
 import jdk.jshell.SnippetEvent;
@@ -27,11 +28,20 @@ import org.dflib.jjava.kernel.execution.CompilationException;
 import org.dflib.jjava.kernel.execution.EvaluationInterruptedException;
 import org.dflib.jjava.kernel.execution.EvaluationTimeoutException;
 import org.dflib.jjava.kernel.execution.IncompleteSourceException;
+import org.dflib.jjava.kernel.execution.WorkerTerminatedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -41,6 +51,14 @@ import java.util.stream.Collectors;
  */
 public class JavaKernel extends BaseKernel {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger("JavaKernel");
+
+    // exercises lambdas, generics, streams and boxing, so that the bulk of javac gets loaded and compiled by the JIT
+    private static final String WARM_UP_SNIPPET = "java.util.stream.IntStream.range(0, 10)" +
+            ".mapToObj(i -> java.util.List.of(String.valueOf(i)))" +
+            ".flatMap(java.util.List::stream)" +
+            ".collect(java.util.stream.Collectors.joining(\",\"))";
+
     private static final CharPredicate IDENTIFIER_CHAR = CharPredicate.builder()
             .inRange('a', 'z')
             .inRange('A', 'Z')
@@ -61,6 +79,13 @@ public class JavaKernel extends BaseKernel {
 
     private final JShell jShell;
     private final CodeEvaluator evaluator;
+    private final AtomicBoolean firstEval;
+    private final AtomicBoolean initFailureReported;
+    private final CompletionCache completionCache;
+    private final DocumentationIndex documentationIndex;
+
+    private volatile CompletableFuture<Void> warmUp;
+    private volatile Thread warmUpThread;
 
     protected JavaKernel(
             String name,
@@ -76,7 +101,8 @@ public class JavaKernel extends BaseKernel {
             boolean extensionsEnabled,
             StringStyler errorStyler,
             JShell jShell,
-            CodeEvaluator evaluator) {
+            CodeEvaluator evaluator,
+            DocumentationIndex documentationIndex) {
 
         super(
                 name,
@@ -94,6 +120,138 @@ public class JavaKernel extends BaseKernel {
 
         this.jShell = jShell;
         this.evaluator = evaluator;
+        this.firstEval = new AtomicBoolean(true);
+        this.initFailureReported = new AtomicBoolean(false);
+        this.completionCache = new CompletionCache();
+        this.documentationIndex = documentationIndex;
+
+        // any snippet change may change the completions, no matter who evaluated the snippet
+        jShell.onSnippetEvent(e -> completionCache.invalidate());
+        this.warmUp = CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Starts a background thread that runs the "init" action (e.g. the kernel startup and the startup snippets), and
+     * then warms up JShell: compiles and runs a throwaway snippet, and loads the completion and documentation
+     * machinery. Until this is done, the methods that need JShell wait for it. This allows to connect to Jupyter
+     * while the kernel is still initializing. If the initialization fails, the error is reported to the first request
+     * that needs JShell, and the following requests run as if there was no initialization.
+     *
+     * @param init an action to run before the warm-up on the same thread. May be null.
+     * @return a future that completes when the warm-up is done
+     */
+    public CompletableFuture<Void> startWarmUp(Runnable init) {
+        return startWarmUp(init, true);
+    }
+
+    /**
+     * Same as {@link #startWarmUp(Runnable)}, but the JShell warm-up can be skipped. This makes sense when the JVM was
+     * already warmed up by a previous kernel, e.g. on a warm restart, so the first cell would only pay for the
+     * initialization of the new JShell instance.
+     */
+    public CompletableFuture<Void> startWarmUp(Runnable init, boolean warmUpJShell) {
+        CompletableFuture<Void> warmUp = new CompletableFuture<>();
+
+        Thread thread = new Thread(() -> {
+            try {
+                if (init != null) {
+                    long t0 = System.nanoTime();
+                    init.run();
+                    LOGGER.info("Kernel initialized in {} ms", elapsedMs(t0));
+                }
+            } catch (Throwable e) {
+                LOGGER.error("Kernel initialization failed", e);
+                warmUp.completeExceptionally(e);
+                return;
+            }
+
+            if (warmUpJShell) {
+                warmUpJShell();
+            }
+
+            warmUp.complete(null);
+        }, "JJava-warmup");
+
+        thread.setDaemon(true);
+
+        // the startup magics and extensions see the notebook classpath, same as the ones run by the requests
+        thread.setContextClassLoader(getClassLoader());
+        this.initFailureReported.set(false);
+        this.warmUpThread = thread;
+        this.warmUp = warmUp;
+        thread.start();
+
+        return warmUp;
+    }
+
+    private void warmUpJShell() {
+        long t0 = System.nanoTime();
+        try {
+            SourceCodeAnalysis sca = jShell.sourceCodeAnalysis();
+            sca.analyzeCompletion(WARM_UP_SNIPPET);
+            long analysisDone = System.nanoTime();
+
+            evaluator.warmUp(jShell, WARM_UP_SNIPPET);
+            long evalDone = System.nanoTime();
+
+            String completed = "String.valueOf(1).";
+            sca.completionSuggestions(completed, completed.length(), new int[1]);
+            String documented = "String.format(";
+            sca.documentation(documented, documented.length(), true);
+
+            LOGGER.info("JShell warmed up in {} ms (analysis: {} ms, eval: {} ms, completion and docs: {} ms)",
+                    elapsedMs(t0),
+                    TimeUnit.NANOSECONDS.toMillis(analysisDone - t0),
+                    TimeUnit.NANOSECONDS.toMillis(evalDone - analysisDone),
+                    elapsedMs(evalDone));
+        } catch (Exception e) {
+            // not critical, the first cell would just be slower
+            LOGGER.warn("JShell warm-up failed", e);
+        }
+    }
+
+    /**
+     * Blocks until the warm-up started by {@link #startWarmUp(Runnable)} is done. Rethrows the initialization error
+     * to the first caller.
+     */
+    protected void awaitWarmUp() {
+        CompletableFuture<Void> warmUp = this.warmUp;
+        if (isWarmUpCall()) {
+            return;
+        }
+
+        if (!warmUp.isDone()) {
+            long t0 = System.nanoTime();
+            LOGGER.info("Waiting for the warm-up to finish...");
+            joinWarmUp(warmUp);
+            LOGGER.info("Waited {} ms for the warm-up", elapsedMs(t0));
+        } else {
+            joinWarmUp(warmUp);
+        }
+    }
+
+    /**
+     * Returns true if the call is made by the warm-up itself, i.e. from the warm-up thread, or from a snippet. The
+     * latter covers the snippets evaluated by the initialization, which run on the executor threads and may call back
+     * into the kernel (e.g. via the notebook statics or the magics). Any other snippet only runs after its evaluation
+     * waited for the warm-up, so there's nothing to wait for.
+     */
+    private boolean isWarmUpCall() {
+        return Thread.currentThread() == warmUpThread || evaluator.isSnippetThread();
+    }
+
+    private void joinWarmUp(CompletableFuture<Void> warmUp) {
+        try {
+            warmUp.join();
+        } catch (CompletionException e) {
+            if (initFailureReported.compareAndSet(false, true)) {
+                throw new RuntimeException("Kernel initialization failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
     }
 
     /**
@@ -106,8 +264,15 @@ public class JavaKernel extends BaseKernel {
             return;
         }
 
-        String classpathResolved = PathsHandler.joinPaths(PathsHandler.splitAndResolveGlobs(classpath));
+        awaitWarmUp();
+
+        List<Path> paths = PathsHandler.splitAndResolveGlobs(classpath);
+        String classpathResolved = PathsHandler.joinPaths(paths);
         jShell.addToClasspath(classpathResolved);
+        completionCache.invalidate();
+        if (documentationIndex != null) {
+            documentationIndex.indexClasspath(paths);
+        }
         if (extensionsEnabled) {
             installExtensions(classpathResolved);
         }
@@ -127,6 +292,8 @@ public class JavaKernel extends BaseKernel {
             return formatEvaluationTimeoutException((EvaluationTimeoutException) e);
         } else if (e instanceof EvaluationInterruptedException) {
             return formatEvaluationInterruptedException((EvaluationInterruptedException) e);
+        } else if (e instanceof WorkerTerminatedException) {
+            return formatWorkerTerminatedException((WorkerTerminatedException) e);
         } else {
             return new ArrayList<>(super.formatError(e));
         }
@@ -219,6 +386,14 @@ public class JavaKernel extends BaseKernel {
         return fmt;
     }
 
+    private List<String> formatWorkerTerminatedException(WorkerTerminatedException e) {
+        List<String> fmt = new ArrayList<>(errorStyler.primaryLines(e.getSource()));
+        fmt.add(errorStyler.secondary(e.getReason() + ". A new worker JVM was started."));
+        fmt.add(errorStyler.secondary("The variables, methods and classes defined so far were lost, and the cells that "
+                + "define them must be run again. The imports and the classpath were kept."));
+        return fmt;
+    }
+
     private List<String> formatEvaluationInterruptedException(EvaluationInterruptedException e) {
         List<String> fmt = new ArrayList<>(errorStyler.primaryLines(e.getSource()));
         fmt.add(errorStyler.secondary("Evaluation interrupted."));
@@ -227,13 +402,32 @@ public class JavaKernel extends BaseKernel {
 
     @Override
     protected Object doEval(String source) {
-        return evaluator.eval(jShell, source);
+        // the evaluations of the initialization are not counted
+        boolean first = !isWarmUpCall() && firstEval.compareAndSet(true, false);
+
+        long t0 = System.nanoTime();
+        awaitWarmUp();
+        try {
+            return evaluator.eval(jShell, source);
+        } finally {
+            if (first) {
+                LOGGER.info("First evaluation took {} ms, including the wait for the warm-up", elapsedMs(t0));
+            }
+        }
+    }
+
+    @Override
+    protected <T> T doEvalMagics(String source, Supplier<T> magics) {
+        awaitWarmUp();
+        return evaluator.evalMagics(source, magics);
     }
 
     @Override
     public DisplayData inspect(String code, int at, boolean extraDetail) {
         // Move the code position to the end of the identifier to make the inspection work at any
         // point in the identifier. i.e "System.o|ut" or "System.out|" will return the same result.
+        awaitWarmUp();
+
         while (at + 1 < code.length() && IDENTIFIER_CHAR.test(code.charAt(at + 1))) at++;
 
         // If the next non-whitespace character is an opening paren '(' then this must be included
@@ -242,7 +436,9 @@ public class JavaKernel extends BaseKernel {
         while (parenIdx + 1 < code.length() && WS.test(code.charAt(parenIdx + 1))) parenIdx++;
         if (parenIdx + 1 < code.length() && code.charAt(parenIdx + 1) == '(') at = parenIdx + 1;
 
-        List<SourceCodeAnalysis.Documentation> documentations = jShell.sourceCodeAnalysis().documentation(code, at + 1, true);
+        List<SourceCodeAnalysis.Documentation> documentations = documentationIndex != null
+                ? indexedDocumentation(code, at + 1)
+                : jShell.sourceCodeAnalysis().documentation(code, at + 1, true);
         if (documentations == null || documentations.isEmpty()) {
             return null;
         }
@@ -277,6 +473,39 @@ public class JavaKernel extends BaseKernel {
         return fmtDocs;
     }
 
+    // Reads the javadoc from the index, and only when some of it is not indexed, falls back to JShell reading it from
+    // the sources
+    private List<SourceCodeAnalysis.Documentation> indexedDocumentation(String code, int cursor) {
+        SourceCodeAnalysis sca = jShell.sourceCodeAnalysis();
+        List<SourceCodeAnalysis.Documentation> signatures = sca.documentation(code, cursor, false);
+        if (signatures.isEmpty()) {
+            return signatures;
+        }
+
+        List<String> imports = jShell.imports().map(ImportSnippet::fullname).collect(Collectors.toList());
+        List<SourceCodeAnalysis.Documentation> documentations = new ArrayList<>(signatures.size());
+        List<SourceCodeAnalysis.Documentation> fromSources = null;
+        for (int i = 0; i < signatures.size(); i++) {
+            String signature = signatures.get(i).signature();
+            String javadoc = documentationIndex.javadoc(signature, imports);
+
+            if (javadoc == null) {
+                if (fromSources == null) {
+                    fromSources = sca.documentation(code, cursor, true);
+                }
+
+                // same elements in the same order, unless the snippets changed in between
+                if (fromSources.size() == signatures.size()) {
+                    javadoc = fromSources.get(i).javadoc();
+                }
+            }
+
+            documentations.add(new IndexedDocumentation(signature, javadoc));
+        }
+
+        return documentations;
+    }
+
     @Override
     public ReplacementOptions complete(String code, int at) {
         int[] replaceStart = new int[1]; // As of now this is always the same as the cursor...
@@ -306,9 +535,19 @@ public class JavaKernel extends BaseKernel {
             }
         }
 
-        List<SourceCodeAnalysis.Suggestion> suggestions = jShell
-                .sourceCodeAnalysis()
-                .completionSuggestions(code, at, replaceStart);
+        awaitWarmUp();
+
+        List<SourceCodeAnalysis.Suggestion> suggestions = completionCache.get(code, at, replaceStart);
+        if (suggestions == null) {
+            SourceCodeAnalysis sca = jShell.sourceCodeAnalysis();
+            long cacheVersion = completionCache.version();
+            boolean cacheable = CompletionCache.isClasspathIndexed(sca);
+
+            suggestions = sca.completionSuggestions(code, at, replaceStart);
+            if (suggestions != null && cacheable) {
+                completionCache.put(code, at, replaceStart[0], suggestions, cacheVersion);
+            }
+        }
 
         if (suggestions == null || suggestions.isEmpty()) {
             return null;
@@ -329,11 +568,18 @@ public class JavaKernel extends BaseKernel {
 
     @Override
     public String isComplete(String code) {
+        awaitWarmUp();
         return evaluator.isComplete(jShell.sourceCodeAnalysis(), code);
     }
 
     @Override
     public void onShutdown(boolean isRestarting) {
+        try {
+            awaitWarmUp();
+        } catch (RuntimeException e) {
+            // still shutting down
+        }
+
         super.onShutdown(isRestarting);
         jShell.close();
     }
@@ -362,6 +608,27 @@ public class JavaKernel extends BaseKernel {
         return evaluator;
     }
 
+    private static class IndexedDocumentation implements SourceCodeAnalysis.Documentation {
+
+        private final String signature;
+        private final String javadoc;
+
+        IndexedDocumentation(String signature, String javadoc) {
+            this.signature = signature;
+            this.javadoc = javadoc;
+        }
+
+        @Override
+        public String signature() {
+            return signature;
+        }
+
+        @Override
+        public String javadoc() {
+            return javadoc;
+        }
+    }
+
     public static class Builder extends JavaKernelBuilder<Builder, JavaKernel> {
         private Builder() {
         }
@@ -391,7 +658,8 @@ public class JavaKernel extends BaseKernel {
                     buildExtensionsEnabled(),
                     buildErrorStyler(),
                     jShell,
-                    evaluator
+                    evaluator,
+                    documentationIndex
             );
         }
 
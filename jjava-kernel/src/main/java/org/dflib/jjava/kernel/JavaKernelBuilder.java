@@ -6,6 +6,8 @@ import org.dflib.jjava.jupyter.kernel.LanguageInfo;
 import org.dflib.jjava.jupyter.kernel.magic.MagicTranspiler;
 import org.dflib.jjava.jupyter.kernel.magic.MagicsResolver;
 import org.dflib.jjava.kernel.execution.CodeEvaluator;
+import org.dflib.jjava.kernel.execution.ExecutionStrategy;
+import org.dflib.jjava.kernel.execution.WorkerPool;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -22,6 +24,10 @@ public abstract class JavaKernelBuilder<
 
     protected long timeoutDuration;
     protected TimeUnit timeoutUnit;
+    protected ExecutionStrategy executionStrategy;
+    protected WorkerPool workerPool;
+    protected boolean batchDeclarations;
+    protected DocumentationIndex documentationIndex;
     protected final List<String> compilerOpts;
 
     protected JavaKernelBuilder() {
@@ -39,23 +45,66 @@ public abstract class JavaKernelBuilder<
         return (B) this;
     }
 
+    /**
+     * Sets the kind of threads that run the code snippets. The default is {@link ExecutionStrategy#PLATFORM_THREADS}.
+     */
+    public B executionStrategy(ExecutionStrategy executionStrategy) {
+        this.executionStrategy = executionStrategy;
+        return (B) this;
+    }
+
+    /**
+     * Makes the kernel run the code snippets in a worker JVM taken from the pool, instead of the kernel JVM. The pool
+     * is not owned by the kernel, and can be shared between multiple kernels.
+     */
+    public B workerPool(WorkerPool workerPool) {
+        this.workerPool = workerPool;
+        return (B) this;
+    }
+
+    /**
+     * Makes the kernel compile the consecutive class, method and import declarations of a cell together, instead of
+     * one by one. Ignored if not supported by the JDK.
+     */
+    public B batchDeclarations(boolean batchDeclarations) {
+        this.batchDeclarations = batchDeclarations;
+        return (B) this;
+    }
+
+    /**
+     * Makes the kernel look up the javadoc of the inspected code in the index, and add the jars added to the classpath
+     * to the index. The index is not owned by the kernel, and can be shared between multiple kernels.
+     */
+    public B documentationIndex(DocumentationIndex documentationIndex) {
+        this.documentationIndex = documentationIndex;
+        return (B) this;
+    }
+
     @Override
     public abstract K build();
 
     protected JShell buildJShell(CodeEvaluator evaluator) {
-        return JShell.builder()
+        JShell jShell = JShell.builder()
                 .out(System.out)
                 .err(System.err)
                 .in(System.in)
                 .executionEngine(evaluator.getExecControlProvider(), Map.of())
                 .compilerOptions(compilerOpts.toArray(new String[0]))
                 .build();
+
+        jShell.onSnippetEvent(evaluator::onSnippetEvent);
+        return jShell;
     }
 
     protected CodeEvaluator buildCodeEvaluator(String name) {
         long timeoutDuration = this.timeoutUnit != null ? this.timeoutDuration : -1;
         TimeUnit timeoutUnit = this.timeoutUnit != null ? this.timeoutUnit : TimeUnit.MILLISECONDS;
-        return new CodeEvaluator(name, timeoutDuration, timeoutUnit);
+        return new CodeEvaluator(name, timeoutDuration, timeoutUnit, buildExecutionStrategy(), workerPool,
+                batchDeclarations);
+    }
+
+    protected ExecutionStrategy buildExecutionStrategy() {
+        return executionStrategy != null ? executionStrategy : ExecutionStrategy.PLATFORM_THREADS;
     }
 
     protected MagicsResolver buildMagicsResolver(MagicTranspiler transpiler) {
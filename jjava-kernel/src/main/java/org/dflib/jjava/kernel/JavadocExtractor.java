@@ -0,0 +1,198 @@
+package org.dflib.jjava.kernel;
+
+import com.sun.source.tree.AnnotatedTypeTree;
+import com.sun.source.tree.ArrayTypeTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ModifiersTree;
+import com.sun.source.tree.ParameterizedTypeTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+import javax.lang.model.element.Modifier;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Reads the javadoc comments from Java sources, keyed by the fully qualified signatures of the commented classes and
+ * members, e.g. "java.lang.String#valueOf(char[],int,int)". The sources are only parsed, not compiled, so the parameter
+ * types are keyed by their simple erased names as written in the source. A method with the parameter types that are
+ * qualified in the source or imported by name is also keyed by these qualified names, e.g. "foo(java.sql.Date)", to
+ * tell it from the overloads that only differ by the type package. See {@link DocumentationIndex#keys(String)} for the
+ * keys of the JShell signatures.
+ */
+class JavadocExtractor {
+
+    // the number of files parsed by a single javac task, to keep the parse trees of a large source root out of memory
+    private static final int BATCH_SIZE = 200;
+
+    private final JavaCompiler javac;
+    private final StandardJavaFileManager fileManager;
+
+    JavadocExtractor() {
+        this.javac = ToolProvider.getSystemJavaCompiler();
+        this.fileManager = javac.getStandardFileManager(null, null, null);
+    }
+
+    /**
+     * Returns the javadoc comments of the non-private classes and members declared in the source files. The comments
+     * that inherit their text with "{@inheritDoc}" are skipped, as this requires the overridden members.
+     */
+    Map<String, String> extract(List<Path> sources) throws IOException {
+        Map<String, String> javadocs = new HashMap<>();
+        for (int i = 0; i < sources.size(); i += BATCH_SIZE) {
+            List<Path> batch = sources.subList(i, Math.min(sources.size(), i + BATCH_SIZE));
+            JavacTask task = (JavacTask) javac.getTask(
+                    null,
+                    fileManager,
+                    d -> {
+                    },
+                    List.of("-proc:none"),
+                    null,
+                    fileManager.getJavaFileObjectsFromPaths(batch));
+
+            Trees trees = Trees.instance(task);
+            for (CompilationUnitTree unit : task.parse()) {
+                new Scanner(trees, javadocs).scan(new TreePath(unit), null);
+            }
+        }
+
+        return javadocs;
+    }
+
+    // with the imports, the parameter types are qualified where the source makes it possible without compiling it
+    private static String memberKey(String className, MethodTree method, Map<String, String> imports) {
+        StringJoiner params = new StringJoiner(",", method.getName() + "(", ")");
+        for (VariableTree p : method.getParameters()) {
+            params.add(typeName(p.getType(), imports));
+        }
+
+        return className + "#" + params;
+    }
+
+    private static String typeName(Tree type, Map<String, String> imports) {
+        switch (type.getKind()) {
+            case IDENTIFIER:
+                String name = ((IdentifierTree) type).getName().toString();
+                return imports != null ? imports.getOrDefault(name, name) : name;
+            case MEMBER_SELECT:
+                return imports != null ? type.toString() : ((MemberSelectTree) type).getIdentifier().toString();
+            case PARAMETERIZED_TYPE:
+                return typeName(((ParameterizedTypeTree) type).getType(), imports);
+            case ARRAY_TYPE:
+                return typeName(((ArrayTypeTree) type).getType(), imports) + "[]";
+            case ANNOTATED_TYPE:
+                return typeName(((AnnotatedTypeTree) type).getUnderlyingType(), imports);
+            default:
+                // primitive types
+                return type.toString();
+        }
+    }
+
+    private static class Scanner extends TreePathScanner<Void, String> {
+
+        private final Trees trees;
+        private final Map<String, String> javadocs;
+
+        // the qualified names of the classes imported by name in the current unit, by their simple names
+        private final Map<String, String> imports;
+
+        Scanner(Trees trees, Map<String, String> javadocs) {
+            this.trees = trees;
+            this.javadocs = javadocs;
+            this.imports = new HashMap<>();
+        }
+
+        @Override
+        public Void visitCompilationUnit(CompilationUnitTree unit, String prefix) {
+            // scanning a path resets the current path, so it is kept here
+            TreePath unitPath = getCurrentPath();
+            String pkg = unit.getPackageName() != null ? unit.getPackageName().toString() + "." : "";
+
+            imports.clear();
+            for (ImportTree imported : unit.getImports()) {
+                if (!imported.isStatic() && imported.getQualifiedIdentifier() instanceof MemberSelectTree) {
+                    MemberSelectTree name = (MemberSelectTree) imported.getQualifiedIdentifier();
+                    if (!name.getIdentifier().contentEquals("*")) {
+                        imports.put(name.getIdentifier().toString(), name.toString());
+                    }
+                }
+            }
+
+            for (Tree type : unit.getTypeDecls()) {
+                if (type instanceof ClassTree) {
+                    scan(new TreePath(unitPath, type), pkg);
+                }
+            }
+
+            return null;
+        }
+
+        // the arg is the name of the enclosing class, or the package prefix for the top level classes
+        @Override
+        public Void visitClass(ClassTree type, String prefix) {
+            if (isPrivate(type.getModifiers())) {
+                return null;
+            }
+
+            TreePath typePath = getCurrentPath();
+            String className = prefix + type.getSimpleName();
+            put(typePath, className);
+
+            for (Tree member : type.getMembers()) {
+                TreePath path = new TreePath(typePath, member);
+                switch (member.getKind()) {
+                    case METHOD:
+                        MethodTree method = (MethodTree) member;
+                        if (!isPrivate(method.getModifiers())) {
+                            String key = memberKey(className, method, null);
+                            String qualifiedKey = memberKey(className, method, imports);
+                            put(path, key);
+                            if (!qualifiedKey.equals(key)) {
+                                put(path, qualifiedKey);
+                            }
+                        }
+                        break;
+                    case VARIABLE:
+                        VariableTree field = (VariableTree) member;
+                        if (!isPrivate(field.getModifiers())) {
+                            put(path, className + "#" + field.getName());
+                        }
+                        break;
+                    default:
+                        if (member instanceof ClassTree) {
+                            scan(path, className + ".");
+                        }
+                }
+            }
+
+            return null;
+        }
+
+        private void put(TreePath path, String key) {
+            String javadoc = trees.getDocComment(path);
+            if (javadoc != null && !javadoc.contains("{@inheritDoc")) {
+                javadocs.put(key, javadoc);
+            }
+        }
+
+        private static boolean isPrivate(ModifiersTree modifiers) {
+            return modifiers.getFlags().contains(Modifier.PRIVATE);
+        }
+    }
+}
@@ -1,55 +1,90 @@
 package org.dflib.jjava.kernel.execution;
 
 import jdk.jshell.EvalException;
+import jdk.jshell.ImportSnippet;
 import jdk.jshell.JShell;
 import jdk.jshell.JShellException;
 import jdk.jshell.Snippet;
 import jdk.jshell.SnippetEvent;
 import jdk.jshell.SourceCodeAnalysis;
+import jdk.jshell.VarSnippet;
 import jdk.jshell.spi.ExecutionControl;
 import jdk.jshell.spi.ExecutionControlProvider;
 import jdk.jshell.spi.ExecutionEnv;
 import org.dflib.jjava.jupyter.kernel.BaseKernel;
 import org.dflib.jjava.jupyter.telemetry.TelemetryCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import javax.lang.model.SourceVersion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class CodeEvaluator {
-    private static final Pattern WHITESPACE_PREFIX = Pattern.compile("(?:^|\r?\n)(?<ws>\\s*).*$");
-    private static final Pattern LAST_LINE = Pattern.compile("(?:^|\r?\n)(?<last>.*)$");
-
-    private static final String NO_MAGIC_RETURN = "\"__NO_MAGIC_RETURN\"";
-    private static final String INDENTATION = "  ";
 
-    private static final Method SNIPPET_CLASS_NAME_METHOD;
+    private static final Logger LOGGER = LoggerFactory.getLogger("CodeEvaluator");
 
-    static {
-        try {
-            SNIPPET_CLASS_NAME_METHOD = Snippet.class.getDeclaredMethod("classFullName");
-            SNIPPET_CLASS_NAME_METHOD.setAccessible(true);
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException("Unable to access jdk.jshell.Snippet.classFullName() method.", e);
-        }
-    }
+    private static final String NO_MAGIC_RETURN = "\"__NO_MAGIC_RETURN\"";
 
     private final String name;
     private final long timeoutDuration;
     private final TimeUnit timeoutUnit;
-    private final JJavaLoaderDelegate loaderDelegate;
-    private final JJavaExecutionControl execControl;
+    private final KernelExecutionControl execControl;
+    private final SnippetClassIndex snippetClasses;
+    private final CompletenessScanner completenessScanner;
+    private final boolean batchDeclarations;
 
     public CodeEvaluator(String name, long timeoutDuration, TimeUnit timeoutUnit) {
+        this(name, timeoutDuration, timeoutUnit, ExecutionStrategy.PLATFORM_THREADS);
+    }
+
+    public CodeEvaluator(String name, long timeoutDuration, TimeUnit timeoutUnit, ExecutionStrategy executionStrategy) {
+        this(name, timeoutDuration, timeoutUnit, executionStrategy, null);
+    }
+
+    /**
+     * @param workers if not null, the snippets are executed in a worker JVM taken from the pool instead of the kernel
+     *                JVM
+     */
+    public CodeEvaluator(
+            String name,
+            long timeoutDuration,
+            TimeUnit timeoutUnit,
+            ExecutionStrategy executionStrategy,
+            WorkerPool workers) {
+        this(name, timeoutDuration, timeoutUnit, executionStrategy, workers, false);
+    }
+
+    /**
+     * @param workers           if not null, the snippets are executed in a worker JVM taken from the pool instead of
+     *                          the kernel JVM
+     * @param batchDeclarations if true, the consecutive declarations of a cell are compiled together instead of one by
+     *                          one, when supported by the JDK
+     */
+    public CodeEvaluator(
+            String name,
+            long timeoutDuration,
+            TimeUnit timeoutUnit,
+            ExecutionStrategy executionStrategy,
+            WorkerPool workers,
+            boolean batchDeclarations) {
+
         this.name = name;
         this.timeoutDuration = timeoutDuration;
         this.timeoutUnit = timeoutUnit;
-        this.loaderDelegate = new JJavaLoaderDelegate();
-        this.execControl = new JJavaExecutionControl(loaderDelegate, timeoutDuration, timeoutUnit);
+        this.execControl = workers != null
+                ? WorkerExecutionControl.create(workers, timeoutDuration, timeoutUnit, executionStrategy)
+                : new JJavaExecutionControl(new JJavaLoaderDelegate(), timeoutDuration, timeoutUnit, executionStrategy);
+        this.snippetClasses = new SnippetClassIndex();
+        this.completenessScanner = new CompletenessScanner();
+        this.batchDeclarations = batchDeclarations && DeclarationBatch.isAvailable();
     }
 
     public void startThreadTelemetryCollection(TelemetryCollector<?> collector) {
@@ -69,32 +104,201 @@ public class CodeEvaluator {
 
     public Object eval(JShell shell, String code) {
 
+        // a worker that died between the cells (e.g. killed by the OS) took the notebook state with it
+        replaceTerminatedEngine(shell, code);
+
+        // a cell that is just the name of a variable doesn't need to be compiled to show the variable value
+        VarSnippet variable = existingVariable(shell, code);
+        if (variable != null) {
+            try {
+                Object value = execControl.readVariable(SnippetClassIndex.className(variable), variable.name());
+                return NO_MAGIC_RETURN.equals(value) ? null : value;
+            } catch (IllegalStateException e) {
+                LOGGER.debug("Falling back to the evaluation of '{}'", variable.name(), e);
+            }
+        }
+
         SourceCodeAnalysis sca = shell.sourceCodeAnalysis();
+        CellResults results = new CellResults();
 
-        Object lastResult = null;
-        SourceCodeAnalysis.CompletionInfo info = sca.analyzeCompletion(code);
+        try {
+            SourceCodeAnalysis.CompletionInfo info = sca.analyzeCompletion(code);
+            DeclarationBatch batch = batchDeclarations ? new DeclarationBatch(shell) : null;
 
-        while (info.completeness().isComplete()) {
+            while (info.completeness().isComplete()) {
+
+                String source = info.source();
+                Snippet declaration = batch != null ? batch.parseDeclaration(source) : null;
+
+                if (declaration != null) {
+
+                    // a declaration replacing another one from the same batch must be compiled after it
+                    if (!batch.add(source, declaration)) {
+                        evalBatch(shell, batch, results);
+                        batch = new DeclarationBatch(shell);
+                        batch.add(source, declaration);
+                    }
+
+                    results.noValue();
+                } else {
+                    if (batch != null && batch.size() > 0) {
+                        evalBatch(shell, batch, results);
+                        batch = new DeclarationBatch(shell);
+                    }
 
-            lastResult = evalSingle(shell, info.source());
-            info = sca.analyzeCompletion(info.remaining());
+                    evalSingle(shell, source, results);
+                }
+
+                info = sca.analyzeCompletion(info.remaining());
+            }
+
+            if (batch != null && batch.size() > 0) {
+                evalBatch(shell, batch, results);
+            }
+
+            if (info.completeness() != SourceCodeAnalysis.Completeness.EMPTY) {
+                throw new IncompleteSourceException(info.remaining().trim());
+            }
+        } catch (RuntimeException e) {
+            results.discard();
+            throw e;
         }
 
-        if (info.completeness() != SourceCodeAnalysis.Completeness.EMPTY) {
-            throw new IncompleteSourceException(info.remaining().trim());
+        return results.takeValue();
+    }
+
+    /**
+     * Runs the magics of a cell that consists of nothing but magics, that the kernel invokes directly instead of
+     * compiling any code. They run on the snippet threads, so that they are interrupted and timed out the same way as
+     * the compiled code.
+     */
+    public <T> T evalMagics(String code, Supplier<T> magics) {
+        try {
+            return (T) execControl.execute(magics::get);
+        } catch (ExecutionControl.UserException e) {
+            switch (e.causeExceptionClass()) {
+                case JJavaExecutionControl.EXECUTION_TIMEOUT_NAME:
+                    throw new EvaluationTimeoutException(timeoutDuration, timeoutUnit, code.trim());
+                case JJavaExecutionControl.EXECUTION_INTERRUPTED_NAME:
+                    throw new EvaluationInterruptedException(code.trim());
+                default:
+                    throw new RuntimeException(e.getMessage(), e);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
+    }
 
-        return lastResult;
+    /**
+     * Returns the variable that the code refers to, if the code is nothing but the name of a valid variable, so that
+     * evaluating it would return the variable value without side effects.
+     */
+    private static VarSnippet existingVariable(JShell shell, String code) {
+        String name = code.strip();
+        if (!SourceVersion.isIdentifier(name) || SourceVersion.isKeyword(name)) {
+            return null;
+        }
+
+        // a static import may make the name ambiguous or refer to something else
+        if (shell.imports().anyMatch(ImportSnippet::isStatic)) {
+            return null;
+        }
+
+        return shell.variables()
+                .filter(v -> v.name().equals(name) && shell.status(v) == Snippet.Status.VALID)
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Evaluates a throwaway snippet to initialize javac and the execution engine, and drops the snippets it created.
+     */
+    public void warmUp(JShell shell, String code) {
+        Set<Snippet> existing = shell.snippets().collect(Collectors.toSet());
+        try {
+            eval(shell, code);
+        } finally {
+            shell.snippets()
+                    .filter(s -> !existing.contains(s))
+                    .collect(Collectors.toList())
+                    .forEach(s -> dropSnippet(shell, s));
+        }
     }
 
     protected Object evalSingle(JShell shell, String code) {
+        CellResults results = new CellResults();
+        try {
+            evalSingle(shell, code, results);
+        } catch (RuntimeException e) {
+            results.discard();
+            throw e;
+        }
 
-        List<SnippetEvent> events = shell.eval(code);
+        return results.takeValue();
+    }
 
-        Object result = null;
+    private void evalSingle(JShell shell, String code, CellResults results) {
+
+        List<SnippetEvent> events = shell.eval(code);
 
         // We iterate twice to make sure throwing an early exception doesn't leak the memory
         // and we `takeResult` everything.
+        collectResults(shell, events, results);
+
+        for (SnippetEvent event : events) {
+            // If fresh snippet
+            if (event.causeSnippet() == null) {
+                checkFreshSnippet(shell, code, event);
+            }
+        }
+    }
+
+    /**
+     * Declares the batch snippets with a single compilation. Same as when evaluating the snippets one by one, the
+     * declarations following the first failed one are not defined. The difference is that the snippets they replace
+     * are already dropped at that point.
+     */
+    private void evalBatch(JShell shell, DeclarationBatch batch, CellResults results) {
+
+        List<String> sources = batch.getSources();
+        if (sources.size() == 1) {
+            evalSingle(shell, sources.get(0), results);
+            results.noValue();
+            return;
+        }
+
+        List<SnippetEvent> events = batch.declare();
+        collectResults(shell, events, results);
+        results.noValue();
+
+        Map<Snippet, SnippetEvent> freshEvents = new HashMap<>();
+        for (SnippetEvent event : events) {
+            if (event.causeSnippet() == null) {
+                freshEvents.put(event.snippet(), event);
+            }
+        }
+
+        List<Snippet> snippets = batch.getSnippets();
+        for (int i = 0; i < snippets.size(); i++) {
+            SnippetEvent event = freshEvents.get(snippets.get(i));
+            try {
+                checkFreshSnippet(shell, sources.get(i), event);
+            } catch (RuntimeException e) {
+                for (Snippet later : snippets.subList(i + 1, snippets.size())) {
+                    if (shell.status(later).isActive()) {
+                        dropSnippet(shell, later);
+                    }
+                }
+
+                throw e;
+            }
+        }
+    }
+
+    private void collectResults(JShell shell, List<SnippetEvent> events, CellResults results) {
+
         for (SnippetEvent event : events) {
             if (event.status() == Snippet.Status.OVERWRITTEN) {
                 // if a new snippet changed some other definition, drop the older one
@@ -112,53 +316,75 @@ public class CodeEvaluator {
             // Only executable snippets make their way through the machinery we have setup in the
             // JJavaExecutionControl. Declarations for example simply take their default value without
             // being executed.
-            Object value = subKind.isExecutable()
-                    ? execControl.takeResult(key)
-                    : event.value();
+            if (!subKind.isExecutable()) {
+                results.noValue();
+                continue;
+            }
 
             switch (subKind) {
                 case VAR_VALUE_SUBKIND:
                 case OTHER_EXPRESSION_SUBKIND:
                 case TEMP_VAR_EXPRESSION_SUBKIND:
-                    result = NO_MAGIC_RETURN.equals(value) ? null : value;
+                    results.add(key, true);
                     break;
                 default:
-                    result = null;
+                    results.add(key, false);
                     break;
             }
         }
+    }
 
-        for (SnippetEvent event : events) {
-            // If fresh snippet
-            if (event.causeSnippet() == null) {
-                JShellException e = event.exception();
-                if (e != null) {
-
-                    if (e instanceof EvalException) {
-                        EvalException ee = (EvalException) e;
-                        switch (ee.getExceptionClassName()) {
-                            case JJavaExecutionControl.EXECUTION_TIMEOUT_NAME:
-                                throw new EvaluationTimeoutException(timeoutDuration, timeoutUnit, code.trim());
-                            case JJavaExecutionControl.EXECUTION_INTERRUPTED_NAME:
-                                throw new EvaluationInterruptedException(code.trim());
-                            default:
-                                throw new RuntimeException(ee.getExceptionClassName() + ", " + e.getMessage(), e);
-                        }
-                    }
-
-                    throw new RuntimeException(e);
+    private void checkFreshSnippet(JShell shell, String code, SnippetEvent event) {
+        JShellException e = event.exception();
+        if (e != null) {
+
+            if (e instanceof EvalException) {
+                EvalException ee = (EvalException) e;
+                switch (ee.getExceptionClassName()) {
+                    case JJavaExecutionControl.EXECUTION_TIMEOUT_NAME:
+                        throw new EvaluationTimeoutException(timeoutDuration, timeoutUnit, code.trim());
+                    case JJavaExecutionControl.EXECUTION_INTERRUPTED_NAME:
+                        throw new EvaluationInterruptedException(code.trim());
+                    case WorkerExecutionControl.WORKER_TERMINATED_NAME:
+                        replaceTerminatedEngine(shell, code);
+                        throw new RuntimeException(ee.getExceptionClassName() + ", " + e.getMessage(), e);
+                    default:
+                        throw new RuntimeException(ee.getExceptionClassName() + ", " + e.getMessage(), e);
                 }
+            }
 
-                // Undefined snippets are generally bad, unless we can still recover from them. E.g.,
-                // "Unresolved dependencies" errors are recoverable when those dependencies are defined in the later
-                // snippets.
-                if (event.status() != Snippet.Status.RECOVERABLE_NOT_DEFINED && !event.status().isDefined()) {
-                    throw new CompilationException(event);
-                }
+            throw new RuntimeException(e);
+        }
+
+        // Undefined snippets are generally bad, unless we can still recover from them. E.g.,
+        // "Unresolved dependencies" errors are recoverable when those dependencies are defined in the later
+        // snippets.
+        if (event.status() != Snippet.Status.RECOVERABLE_NOT_DEFINED && !event.status().isDefined()) {
+            throw new CompilationException(event);
+        }
+    }
+
+    /**
+     * Replaces the terminated execution engine, if any, and drops all the snippets but the imports, as their classes
+     * only existed in the terminated engine. Reports the lost state as an evaluation error.
+     */
+    private void replaceTerminatedEngine(JShell shell, String code) {
+        String reason = execControl.replaceIfTerminated();
+        if (reason == null) {
+            return;
+        }
+
+        List<Snippet> lost = shell.snippets()
+                .filter(s -> s.kind() != Snippet.Kind.IMPORT)
+                .collect(Collectors.toList());
+
+        for (Snippet snippet : lost) {
+            if (shell.status(snippet).isActive()) {
+                dropSnippet(shell, snippet);
             }
         }
 
-        return result;
+        throw new WorkerTerminatedException(reason, code.trim());
     }
 
     /**
@@ -166,69 +392,30 @@ public class CodeEvaluator {
      */
     private void dropSnippet(JShell shell, Snippet snippet) {
         shell.drop(snippet);
-        // snippet.classFullName() returns name of a wrapper class created for a snippet
-        String className = snippetClassName(snippet);
-        // check that this class is not used by other snippets
-        if (shell.snippets()
-                .map(this::snippetClassName)
-                .noneMatch(className::equals)) {
-            execControl.unloadClass(className);
-        }
     }
 
-    private String snippetClassName(Snippet snippet) {
-        try {
-            return SNIPPET_CLASS_NAME_METHOD.invoke(snippet).toString();
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException(e);
+    /**
+     * Unloads the wrapper classes that are no longer used by any active snippet after a snippet status change. Must be
+     * subscribed to the JShell snippet events with {@link JShell#onSnippetEvent(java.util.function.Consumer)}, so that
+     * the snippets evaluated or dropped directly on the JShell instance are tracked too. Besides the overwritten and
+     * dropped snippets, this covers the old classes of the snippets recompiled because of a change in their
+     * dependencies.
+     */
+    public void onSnippetEvent(SnippetEvent event) {
+        String unused = snippetClasses.update(event);
+        if (unused != null) {
+            execControl.unloadClass(unused);
         }
     }
 
-    private String computeIndentation(String partialStatement) {
-        // Find the indentation of the last line
-        Matcher m = WHITESPACE_PREFIX.matcher(partialStatement);
-        String currentIndentation = m.find() ? m.group("ws") : "";
-
-        m = LAST_LINE.matcher(partialStatement);
-        if (!m.find())
-            throw new Error("Pattern broken. Every string should have a last line.");
-
-        // If a brace or paren was opened on the last line and not closed, indent some more.
-        String lastLine = m.group("last");
-        int newlyOpenedBraces = -1;
-        int newlyOpenedParens = -1;
-        for (int i = 0; i < lastLine.length(); i++) {
-            switch (lastLine.charAt(i)) {
-                case '}':
-                    // Ignore closing if one has not been opened on this line yet
-                    if (newlyOpenedBraces == -1) continue;
-                    // Otherwise close an opened one from this line
-                    newlyOpenedBraces--;
-                    break;
-                case ')':
-                    // Same as for braces, but with the parens
-                    if (newlyOpenedParens == -1) continue;
-                    newlyOpenedParens--;
-                    break;
-                case '{':
-                    // A brace was opened on this line!
-                    // If the first then get out og the -1 special case with an extra addition
-                    if (newlyOpenedBraces == -1) newlyOpenedBraces++;
-                    newlyOpenedBraces++;
-                    break;
-                case '(':
-                    if (newlyOpenedParens == -1) newlyOpenedParens++;
-                    newlyOpenedParens++;
-                    break;
-            }
-        }
+    public String isComplete(SourceCodeAnalysis sourceAnalyzer, String code) {
 
-        return newlyOpenedBraces > 0 || newlyOpenedParens > 0
-                ? currentIndentation + INDENTATION
-                : currentIndentation;
+        // the common cases are answered by a lexer, without the JShell analysis of the whole cell
+        String scanned = completenessScanner.scan(code);
+        return scanned != null ? scanned : analyzeCompleteness(sourceAnalyzer, code);
     }
 
-    public String isComplete(SourceCodeAnalysis sourceAnalyzer, String code) {
+    String analyzeCompleteness(SourceCodeAnalysis sourceAnalyzer, String code) {
         SourceCodeAnalysis.CompletionInfo info = sourceAnalyzer.analyzeCompletion(code);
         while (info.completeness().isComplete()) {
             info = sourceAnalyzer.analyzeCompletion(info.remaining());
@@ -245,7 +432,7 @@ public class CodeEvaluator {
             case CONSIDERED_INCOMPLETE:
             case DEFINITELY_INCOMPLETE:
                 // Compute the indent of the last line and match it
-                return computeIndentation(info.remaining());
+                return CompletenessScanner.indentation(code);
             default:
                 // For completeness, return an "I don't know" if we somehow get down here
                 return BaseKernel.IS_COMPLETE_MAYBE;
@@ -256,8 +443,72 @@ public class CodeEvaluator {
         execControl.interrupt();
     }
 
+    /**
+     * Returns true if the current thread is running a snippet, i.e. the call comes from the notebook code.
+     */
+    public boolean isSnippetThread() {
+        return execControl.isSnippetThread();
+    }
+
     public ClassLoader getClassLoader() {
-        return loaderDelegate.getClassLoader();
+        return execControl.getClassLoader();
+    }
+
+    /**
+     * Returns the current memory use of the snippet classes, to monitor that the classes of the overwritten snippets
+     * are actually unloaded.
+     */
+    public SnippetClassStats getClassStats() {
+        return execControl.getClassStats();
+    }
+
+    /**
+     * The results of the snippets executed by a cell. They are taken from the execution engine together once the cell
+     * is done, so that a worker JVM sends them in one message instead of one per snippet.
+     */
+    private class CellResults {
+
+        private final List<String> keys = new ArrayList<>();
+
+        // the index of the cell result among the keys, or -1 if the last snippet has no value
+        private int valueIndex = -1;
+
+        void add(String key, boolean value) {
+            keys.add(key);
+            valueIndex = value ? keys.size() - 1 : -1;
+        }
+
+        void noValue() {
+            valueIndex = -1;
+        }
+
+        /**
+         * Takes all the results, as not taking them would leak the memory, and returns the cell result.
+         */
+        Object takeValue() {
+            if (keys.isEmpty()) {
+                return null;
+            }
+
+            Object[] values = execControl.takeResults(keys.toArray(new String[0]));
+            keys.clear();
+
+            Object value = valueIndex >= 0 ? values[valueIndex] : null;
+            return NO_MAGIC_RETURN.equals(value) ? null : value;
+        }
+
+        /**
+         * Takes the results of a failed cell, without failing again.
+         */
+        void discard() {
+            try {
+                noValue();
+                takeValue();
+            } catch (RuntimeException e) {
+                // the engine is gone together with the results
+                LOGGER.debug("Failed to take the results of a failed cell", e);
+            }
+        }
     }
 
     static final class SimpleExecControlProvider implements ExecutionControlProvider {
@@ -0,0 +1,432 @@
+package org.dflib.jjava.kernel.execution;
+
+import org.dflib.jjava.jupyter.kernel.BaseKernel;
+
+import javax.lang.model.SourceVersion;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * A Java lexer that tells if a cell is complete without the JShell analysis, by tracking the brackets, the string
+ * literals, the comments and the text blocks. It answers the common cases: a cell inside an open bracket, comment or
+ * text block, or ending with a binary operator, is incomplete, and a cell ending with a semicolon or a closing brace of
+ * a statement, or with a plain expression, is complete. For anything else (e.g. a method declaration without the body,
+ * or a "try" without the "catch") it gives up, and the JShell analysis must be used instead.
+ * <p>
+ * The console frontends check the completeness of a cell on every Enter, so the cell grows by a line between the
+ * checks. The scanner state at the start of the last line is kept, and the scanning resumes from there, if the next
+ * cell starts with the same code.
+ */
+class CompletenessScanner {
+
+    private static final String INDENTATION = "  ";
+
+    private static final int CODE = 0;
+    private static final int BLOCK_COMMENT = 1;
+    private static final int TEXT_BLOCK = 2;
+
+    private static final int NO_TOKEN = 0;
+    private static final int SEMICOLON = 1;
+    private static final int CLOSING_BRACE = 2;
+    private static final int CONTINUATION = 3;
+    private static final int OPERAND = 4;
+    private static final int OTHER = 5;
+
+    // operators that can't end a statement
+    private static final Set<String> CONTINUATIONS = Set.of(
+            "=", "+", "-", "*", "/", "%", "&", "|", "^", "<", "<<", "&&", "||", "?", ":", "::", ".", ",", "->",
+            "==", "!=", "<=", ">=", "+=", "-=", "*=", "/=", "%=", "&=", "|=", "^=", "<<=", ">>=", ">>>=");
+
+    // the statements that JShell may consider incomplete even after a semicolon or a closing brace, e.g. "try {}"
+    private static final Set<String> UNFINISHED_STATEMENTS = Set.of(
+            "do", "try", "else", "catch", "finally", "case", "default", "@");
+
+    // the types of the declarations that JShell completes with a semicolon once initialized, e.g. "int x = 1"
+    private static final Set<String> PRIMITIVE_TYPES = Set.of(
+            "boolean", "byte", "char", "short", "int", "long", "float", "double");
+
+    // the keywords that may start an expression
+    private static final Set<String> EXPRESSION_KEYWORDS = Set.of("this", "super", "new", "true", "false", "null");
+
+    private final State resumeState;
+    private String resumeCode;
+
+    CompletenessScanner() {
+        this.resumeState = new State();
+    }
+
+    /**
+     * Returns {@link BaseKernel#IS_COMPLETE_YES}, or the indentation of the next line if the code is incomplete, or
+     * null if the code needs the JShell analysis.
+     */
+    synchronized String scan(String code) {
+        State state = new State();
+        if (resumeCode != null && code.regionMatches(0, resumeCode, 0, resumeState.offset)) {
+            state.copyFrom(resumeState);
+        } else {
+            resumeState.copyFrom(state);
+        }
+
+        scan(code, state);
+        resumeCode = code;
+
+        if (state.malformed) {
+            return null;
+        }
+
+        if (state.mode != CODE || state.depth > 0) {
+            return indentation(code);
+        }
+
+        switch (state.lastToken) {
+            case NO_TOKEN:
+                return BaseKernel.IS_COMPLETE_YES;
+            case SEMICOLON:
+            case CLOSING_BRACE:
+                return UNFINISHED_STATEMENTS.contains(state.statement) ? null : BaseKernel.IS_COMPLETE_YES;
+            case CONTINUATION:
+                return indentation(code);
+            case OPERAND:
+                // a plain expression or an initialized variable, as opposed to a declaration like "int f()" or a
+                // statement like "if (x)"
+                boolean expression = state.statement.isEmpty()
+                        || state.initialized && PRIMITIVE_TYPES.contains(state.statement);
+                return expression && !state.adjacentWords ? BaseKernel.IS_COMPLETE_YES : null;
+            default:
+                return null;
+        }
+    }
+
+    private void scan(String code, State state) {
+        int n = code.length();
+        int i = state.offset;
+        while (i < n) {
+
+            // keep the state at the start of each line to resume from it on the next scan
+            if (i > 0 && code.charAt(i - 1) == '\n') {
+                state.offset = i;
+                resumeState.copyFrom(state);
+            }
+
+            char c = code.charAt(i);
+            switch (state.mode) {
+                case BLOCK_COMMENT:
+                    if (c == '*' && i + 1 < n && code.charAt(i + 1) == '/') {
+                        state.mode = CODE;
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                    continue;
+                case TEXT_BLOCK:
+                    if (c == '\\') {
+                        i += 2;
+                    } else if (code.startsWith("\"\"\"", i)) {
+                        state.mode = CODE;
+                        state.token(OPERAND);
+                        i += 3;
+                    } else {
+                        i++;
+                    }
+                    continue;
+                default:
+                    i = scanCode(code, i, state);
+            }
+        }
+
+        state.offset = n;
+    }
+
+    // scans a single token or a comment, returns the position after it
+    private static int scanCode(String code, int i, State state) {
+        int n = code.length();
+        char c = code.charAt(i);
+
+        if (Character.isWhitespace(c)) {
+            return i + 1;
+        }
+
+        if (c == '/' && i + 1 < n && code.charAt(i + 1) == '/') {
+            int eol = code.indexOf('\n', i);
+            return eol >= 0 ? eol : n;
+        }
+
+        if (c == '/' && i + 1 < n && code.charAt(i + 1) == '*') {
+            state.mode = BLOCK_COMMENT;
+            return i + 2;
+        }
+
+        if (code.startsWith("\"\"\"", i)) {
+            state.startToken(null);
+            state.mode = TEXT_BLOCK;
+            return i + 3;
+        }
+
+        if (c == '"' || c == '\'') {
+            state.startToken(null);
+            state.token(OPERAND);
+            return scanLiteral(code, i, c, state);
+        }
+
+        if (Character.isJavaIdentifierStart(c)) {
+            int end = i + 1;
+            while (end < n && Character.isJavaIdentifierPart(code.charAt(end))) {
+                end++;
+            }
+
+            state.word(code.substring(i, end));
+            return end;
+        }
+
+        if (Character.isDigit(c) || (c == '.' && i + 1 < n && Character.isDigit(code.charAt(i + 1)))) {
+            int end = i + 1;
+            while (end < n) {
+                char d = code.charAt(end);
+                boolean exponentSign = (d == '+' || d == '-') && "eEpP".indexOf(code.charAt(end - 1)) >= 0;
+                if (!Character.isJavaIdentifierPart(d) && d != '.' && !exponentSign) {
+                    break;
+                }
+                end++;
+            }
+
+            state.startToken(null);
+            state.token(OPERAND);
+            return end;
+        }
+
+        switch (c) {
+            case '(':
+            case '[':
+            case '{':
+                state.startToken(null);
+                state.open(c);
+                state.token(OTHER);
+                return i + 1;
+            case ')':
+            case ']':
+            case '}':
+                state.close(c);
+                return i + 1;
+            case ';':
+                state.startToken(null);
+                state.token(state.depth == 0 ? SEMICOLON : OTHER);
+                state.statementEnd |= state.depth == 0;
+                return i + 1;
+            case '@':
+                state.startToken("@");
+                state.token(OTHER);
+                return i + 1;
+            default:
+                return scanOperator(code, i, state);
+        }
+    }
+
+    private static int scanLiteral(String code, int i, char quote, State state) {
+        int n = code.length();
+        int end = i + 1;
+        while (end < n) {
+            char c = code.charAt(end);
+            if (c == quote) {
+                return end + 1;
+            }
+
+            if (c == '\n') {
+                break;
+            }
+
+            end += c == '\\' && end + 1 < n && code.charAt(end + 1) != '\n' ? 2 : 1;
+        }
+
+        // not closed on its line
+        state.malformed = true;
+        return end;
+    }
+
+    private static int scanOperator(String code, int i, State state) {
+        int n = code.length();
+        int end = i;
+        while (end < n && "=+-*/%&|^!~<>?:.,".indexOf(code.charAt(end)) >= 0) {
+
+            // a comment right after the operator
+            if (code.charAt(end) == '/' && end + 1 < n && "/*".indexOf(code.charAt(end + 1)) >= 0) {
+                break;
+            }
+            end++;
+        }
+
+        if (end == i) {
+            // not a Java token, e.g. "#"
+            state.malformed = true;
+            return i + 1;
+        }
+
+        String operator = code.substring(i, end);
+        state.startToken(null);
+        if (operator.equals("++") || operator.equals("--")) {
+            state.token(OPERAND);
+        } else {
+            state.token(CONTINUATIONS.contains(operator) ? CONTINUATION : OTHER);
+        }
+
+        // the initializer of a variable, e.g. "String x = f()", the words before it are the declaration
+        if (operator.equals("=") && state.depth == 0) {
+            state.initialized = true;
+            state.adjacentWords = false;
+        }
+
+        // the end of a type argument, e.g. "List<String> f()"
+        state.afterType = operator.endsWith(">") && !operator.equals("->");
+        return end;
+    }
+
+    /**
+     * Returns the indentation of the next line of the incomplete code: the indentation of the last line, increased if
+     * the last line opens a brace or a paren.
+     */
+    static String indentation(String code) {
+        int end = code.length();
+        if (end > 0 && code.charAt(end - 1) == '\n') {
+            end--;
+            if (end > 0 && code.charAt(end - 1) == '\r') {
+                end--;
+            }
+        }
+
+        int lineStart = code.lastIndexOf('\n', end - 1) + 1;
+        int textStart = lineStart;
+        while (textStart < end && Character.isWhitespace(code.charAt(textStart))) {
+            textStart++;
+        }
+
+        // If a brace or paren was opened on the last line and not closed, indent some more
+        int newlyOpenedBraces = -1;
+        int newlyOpenedParens = -1;
+        for (int i = textStart; i < end; i++) {
+            switch (code.charAt(i)) {
+                case '}':
+                    // Ignore closing if one has not been opened on this line yet
+                    if (newlyOpenedBraces == -1) continue;
+                    newlyOpenedBraces--;
+                    break;
+                case ')':
+                    if (newlyOpenedParens == -1) continue;
+                    newlyOpenedParens--;
+                    break;
+                case '{':
+                    if (newlyOpenedBraces == -1) newlyOpenedBraces++;
+                    newlyOpenedBraces++;
+                    break;
+                case '(':
+                    if (newlyOpenedParens == -1) newlyOpenedParens++;
+                    newlyOpenedParens++;
+                    break;
+            }
+        }
+
+        String currentIndentation = code.substring(lineStart, textStart);
+        return newlyOpenedBraces > 0 || newlyOpenedParens > 0
+                ? currentIndentation + INDENTATION
+                : currentIndentation;
+    }
+
+    private static class State {
+
+        int offset;
+        int mode;
+        char[] brackets = new char[16];
+        int depth;
+        boolean malformed;
+        int lastToken;
+
+        // the keyword starting the current top level statement, or an empty string if it doesn't start with one
+        String statement = "";
+        boolean statementEnd = true;
+
+        // a top level word follows a word or a type, e.g. a declaration "int x" or "String[] f()"
+        boolean adjacentWords;
+        boolean afterType;
+        boolean initialized;
+
+        void copyFrom(State that) {
+            if (this.brackets.length < that.depth) {
+                this.brackets = new char[that.brackets.length];
+            }
+            System.arraycopy(that.brackets, 0, this.brackets, 0, that.depth);
+
+            this.offset = that.offset;
+            this.mode = that.mode;
+            this.depth = that.depth;
+            this.malformed = that.malformed;
+            this.lastToken = that.lastToken;
+            this.statement = that.statement;
+            this.statementEnd = that.statementEnd;
+            this.adjacentWords = that.adjacentWords;
+            this.afterType = that.afterType;
+            this.initialized = that.initialized;
+        }
+
+        void token(int kind) {
+            lastToken = kind;
+        }
+
+        void word(String word) {
+            boolean adjacent = afterType;
+            startToken(word);
+            adjacentWords |= adjacent && depth == 0;
+
+            // "new X()" is not a declaration
+            afterType = !word.equals("new");
+            lastToken = SourceVersion.isKeyword(word) && !EXPRESSION_KEYWORDS.contains(word) ? OTHER : OPERAND;
+        }
+
+        // tracks the statements at the top level, "word" is null if the token is not a word
+        void startToken(String word) {
+            afterType = false;
+            if (!statementEnd || depth > 0) {
+                return;
+            }
+
+            statementEnd = false;
+            adjacentWords = false;
+            initialized = false;
+
+            String previous = statement;
+            if ("else".equals(word) && previous.equals("if")) {
+                // same "if" statement
+            } else if (("catch".equals(word) || "finally".equals(word))
+                    && (previous.equals("try") || previous.equals("try-catch"))) {
+                statement = "try-catch";
+            } else if ("while".equals(word) && previous.equals("do")) {
+                statement = "do-while";
+            } else if ("@".equals(word) || word != null && SourceVersion.isKeyword(word) && !EXPRESSION_KEYWORDS.contains(word)) {
+                statement = word;
+            } else {
+                statement = "";
+            }
+        }
+
+        void open(char bracket) {
+            if (depth == brackets.length) {
+                brackets = Arrays.copyOf(brackets, depth * 2);
+            }
+            brackets[depth++] = bracket;
+        }
+
+        void close(char bracket) {
+            char expected = bracket == ')' ? '(' : bracket == ']' ? '[' : '{';
+            if (depth == 0 || brackets[depth - 1] != expected) {
+                malformed = true;
+                return;
+            }
+
+            afterType = bracket == ']';
+            depth--;
+            if (bracket == '}' && depth == 0) {
+                lastToken = CLOSING_BRACE;
+                statementEnd = true;
+            } else {
+                lastToken = bracket == ')' || bracket == ']' ? OPERAND : OTHER;
+            }
+        }
+    }
+}
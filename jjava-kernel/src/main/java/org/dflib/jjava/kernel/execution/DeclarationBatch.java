@@ -0,0 +1,349 @@
+package org.dflib.jjava.kernel.execution;
+
+import jdk.jshell.JShell;
+import jdk.jshell.JShellException;
+import jdk.jshell.MethodSnippet;
+import jdk.jshell.Snippet;
+import jdk.jshell.SnippetEvent;
+import jdk.jshell.SourceCodeAnalysis;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.AccessibleObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Declares a group of consecutive declaration snippets (methods, classes, records, imports, etc.) with a single JShell
+ * compilation instead of one compilation per snippet. JShell has no public API for that, so this calls the same
+ * internal methods that {@code JShell.eval(..)} calls for a single snippet, and that JShell itself uses to recompile
+ * multiple dependent snippets together. The internals differ between the JDK versions, so batching is only available
+ * on the JDK versions it was tested with, and if a batch of test declarations declared at the class initialization
+ * works as expected. Otherwise the snippets should be evaluated one by one.
+ */
+class DeclarationBatch {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("DeclarationBatch");
+
+    // the range of the JDK feature versions whose JShell internals work the way this class expects. Checked with 17 and
+    // 21, the versions in between are covered by the self-check
+    private static final int MIN_FEATURE_VERSION = 17;
+    private static final int MAX_FEATURE_VERSION = 21;
+
+    // A cheap check for something that may be a class, method or import declaration: optional comments, annotations
+    // and modifiers, followed by either a type declaration keyword, or a (generic) type and a name with an opening
+    // parenthesis. Statements and expressions that happen to match are rejected by the JShell parser
+    private static final Pattern DECLARATION_START = Pattern.compile(
+            "(?:\\s|//[^\\n]*\\n|/\\*.*?\\*/)*"
+                    + "(?:@[\\w.]+(?:\\([^)]*\\))?\\s*)*"
+                    + "(?:(?:public|protected|private|static|final|abstract|strictfp|synchronized|native)\\s+)*"
+                    + "(?:(?:class|interface|enum|record|@\\s*interface)\\s"
+                    + "|(?<import>import)\\s"
+                    + "|(?:<[^;{]*?>\\s*)?(?!new\\b|return\\b|else\\b|throw\\b|yield\\b)"
+                    + "[\\w$.]+(?:<[^;{]*?>)?(?:\\s*\\[\\s*])*\\s+[\\w$]+\\s*\\()",
+            Pattern.DOTALL);
+
+    private static final MethodHandle SHELL_EVAL;
+    private static final MethodHandle CHECK_IF_ALIVE;
+    private static final MethodHandle NOTIFY_KEY_STATUS_EVENT;
+    private static final MethodHandle SOURCE_TO_SNIPPETS;
+    private static final MethodHandle COMPILE_AND_LOAD;
+    private static final MethodHandle EVENTS;
+    private static final MethodHandle NEW_UNIT;
+    private static final MethodHandle SNIPPET_KEY;
+    private static final MethodHandle SYNTHETIC_DIAGS;
+    private static final MethodHandle UNRESOLVED_SELF;
+    private static final MethodHandle SUSPEND_INDEXING;
+    private static final MethodHandle RESUME_INDEXING;
+    private static final MethodHandle OUTER_MAP;
+    private static final MethodHandle WRAP_IN_CLASS;
+    private static final MethodHandle SET_OUTER_WRAP;
+    private static final MethodHandle GUTS;
+
+    private static final boolean AVAILABLE;
+
+    static {
+        MethodHandle[] handles = new MethodHandle[16];
+        int feature = Runtime.version().feature();
+        if (feature < MIN_FEATURE_VERSION || feature > MAX_FEATURE_VERSION) {
+            LOGGER.info("Declaration batching is not supported on Java {}, declarations will be compiled one by one",
+                    feature);
+        } else {
+            try {
+                handles = resolveHandles();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.info("JShell internals are not accessible, declarations will be compiled one by one", e);
+            }
+        }
+
+        SHELL_EVAL = handles[0];
+        CHECK_IF_ALIVE = handles[1];
+        NOTIFY_KEY_STATUS_EVENT = handles[2];
+        SOURCE_TO_SNIPPETS = handles[3];
+        COMPILE_AND_LOAD = handles[4];
+        EVENTS = handles[5];
+        NEW_UNIT = handles[6];
+        SNIPPET_KEY = handles[7];
+        SYNTHETIC_DIAGS = handles[8];
+        UNRESOLVED_SELF = handles[9];
+        SUSPEND_INDEXING = handles[10];
+        RESUME_INDEXING = handles[11];
+        OUTER_MAP = handles[12];
+        WRAP_IN_CLASS = handles[13];
+        SET_OUTER_WRAP = handles[14];
+        GUTS = handles[15];
+
+        AVAILABLE = SHELL_EVAL != null && selfCheck();
+    }
+
+    private static MethodHandle[] resolveHandles() throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        Class<?> evalType = Class.forName("jdk.jshell.Eval");
+        Class<?> unitType = Class.forName("jdk.jshell.Unit");
+        Class<?> diagListType = Class.forName("jdk.jshell.DiagList");
+        Class<?> scaType = Class.forName("jdk.jshell.SourceCodeAnalysisImpl");
+        Class<?> outerMapType = Class.forName("jdk.jshell.OuterWrapMap");
+        Class<?> outerWrapType = Class.forName("jdk.jshell.OuterWrap");
+
+        return new MethodHandle[]{
+                lookup.unreflectGetter(accessible(JShell.class.getDeclaredField("eval"))),
+                lookup.unreflect(accessible(JShell.class.getDeclaredMethod("checkIfAlive"))),
+                lookup.unreflect(accessible(JShell.class.getDeclaredMethod("notifyKeyStatusEvent", SnippetEvent.class))),
+                lookup.unreflect(accessible(evalType.getDeclaredMethod("sourceToSnippets", String.class))),
+                lookup.unreflect(accessible(evalType.getDeclaredMethod("compileAndLoad", Set.class))),
+                lookup.unreflect(accessible(evalType.getDeclaredMethod(
+                        "events", unitType, Collection.class, String.class, JShellException.class))),
+                lookup.unreflectConstructor(accessible(unitType.getDeclaredConstructor(
+                        JShell.class, Snippet.class, Snippet.class, diagListType))),
+                lookup.unreflect(accessible(Snippet.class.getDeclaredMethod("key"))),
+                lookup.unreflect(accessible(Snippet.class.getDeclaredMethod("syntheticDiags"))),
+                lookup.unreflectGetter(accessible(MethodSnippet.class.getDeclaredField("unresolvedSelf"))),
+                lookup.unreflect(accessible(scaType.getMethod("suspendIndexing"))),
+                lookup.unreflect(accessible(scaType.getMethod("resumeIndexing"))),
+                lookup.unreflectGetter(accessible(JShell.class.getDeclaredField("outerMap"))),
+                lookup.unreflect(accessible(outerMapType.getDeclaredMethod(
+                        "wrapInClass", Set.class, Collection.class, List.class, List.class))),
+                lookup.unreflect(accessible(Snippet.class.getDeclaredMethod("setOuterWrap", outerWrapType))),
+                lookup.unreflect(accessible(Snippet.class.getDeclaredMethod("guts")))
+        };
+    }
+
+    private static <T extends AccessibleObject> T accessible(T member) {
+        member.setAccessible(true);
+        return member;
+    }
+
+    // Declares a batch of a method and the method and class it references forward, and calls it
+    private static boolean selfCheck() {
+        String[] sources = {
+                "int jjavaCheckA() { return jjavaCheckB() + JJavaCheckC.VALUE; }",
+                "int jjavaCheckB() { return 40; }",
+                "class JJavaCheckC { static final int VALUE = 2; }"
+        };
+
+        try (JShell shell = JShell.builder().executionEngine("local").build()) {
+            DeclarationBatch batch = new DeclarationBatch(shell);
+            for (String source : sources) {
+                Snippet snippet = batch.parseDeclaration(source);
+                if (snippet == null || !batch.add(source, snippet)) {
+                    LOGGER.info("Declaration batching self-check failed to parse '{}', "
+                            + "declarations will be compiled one by one", source);
+                    return false;
+                }
+            }
+
+            List<SnippetEvent> events = batch.declare();
+            List<SnippetEvent> result = shell.eval("jjavaCheckA()");
+            boolean ok = events.size() >= sources.length
+                    && events.stream().limit(sources.length).allMatch(e -> e.status() == Snippet.Status.VALID)
+                    && result.size() == 1
+                    && "42".equals(result.get(0).value());
+
+            if (!ok) {
+                LOGGER.info("Declaration batching self-check failed, declarations will be compiled one by one");
+            }
+            return ok;
+        } catch (RuntimeException e) {
+            LOGGER.info("Declaration batching self-check failed, declarations will be compiled one by one", e);
+            return false;
+        }
+    }
+
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    private final JShell shell;
+    private final List<String> sources;
+    private final List<Snippet> snippets;
+    private final Set<Object> keys;
+
+    DeclarationBatch(JShell shell) {
+        this.shell = shell;
+        this.sources = new ArrayList<>();
+        this.snippets = new ArrayList<>();
+        this.keys = new HashSet<>();
+    }
+
+    /**
+     * Parses the source, if it is a single declaration that can be compiled in a batch.
+     *
+     * @return the parsed declaration snippet, or null if the source should be evaluated on its own
+     */
+    @SuppressWarnings("unchecked")
+    Snippet parseDeclaration(String source) {
+
+        // parsing other snippets with the JShell internals may change the JShell state (e.g., expressions take the
+        // next "$N" variable name), and is expensive, so the sources that are definitely not declarations are skipped
+        Matcher m = DECLARATION_START.matcher(source);
+        if (!m.lookingAt()) {
+            return null;
+        }
+
+        // the declarations other than imports end with a body
+        if (m.group("import") == null && !source.stripTrailing().endsWith("}")) {
+            return null;
+        }
+
+        List<Snippet> parsed = invoke(() -> (List<Snippet>) SOURCE_TO_SNIPPETS.invoke(SHELL_EVAL.invoke(shell), source));
+        return parsed.size() == 1 && isBatchable(parsed.get(0)) ? parsed.get(0) : null;
+    }
+
+    private static boolean isBatchable(Snippet snippet) {
+        switch (snippet.kind()) {
+            case IMPORT:
+            case TYPE_DECL:
+                return true;
+            case METHOD:
+                // a method without a body is made "recoverable" by some extra processing after the compilation
+                return invoke(() -> UNRESOLVED_SELF.invoke((MethodSnippet) snippet)) == null;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Adds a declaration to the batch, unless the batch already has a declaration that it would replace.
+     */
+    boolean add(String source, Snippet declaration) {
+        Object key = invoke(() -> SNIPPET_KEY.invoke(declaration));
+        if (!keys.add(key)) {
+            return false;
+        }
+
+        sources.add(source);
+        snippets.add(declaration);
+        return true;
+    }
+
+    int size() {
+        return sources.size();
+    }
+
+    List<String> getSources() {
+        return sources;
+    }
+
+    List<Snippet> getSnippets() {
+        return snippets;
+    }
+
+    /**
+     * Compiles and loads all the snippets of the batch together, same as {@code JShell.eval(..)} does for one.
+     *
+     * @return the events of the batch snippets in the source order, followed by the events of the other snippets
+     * affected by the batch
+     */
+    @SuppressWarnings("unchecked")
+    List<SnippetEvent> declare() {
+        SourceCodeAnalysis sca = shell.sourceCodeAnalysis();
+        invoke(() -> SUSPEND_INDEXING.invoke(sca));
+        try {
+            invoke(() -> CHECK_IF_ALIVE.invoke(shell));
+
+            Object eval = invoke(() -> SHELL_EVAL.invoke(shell));
+            Set<Object> units = new LinkedHashSet<>();
+            for (Snippet snippet : snippets) {
+                units.add(invoke(() -> NEW_UNIT.invoke(shell, snippet, (Snippet) null, SYNTHETIC_DIAGS.invoke(snippet))));
+            }
+
+            presetClassNames();
+
+            Set<Object> outs = invoke(() -> (Set<Object>) COMPILE_AND_LOAD.invoke(eval, units));
+
+            // Starts with the event of the given unit, followed by the events of the other units compiled together, in
+            // the batch order, then the events of the affected dependents and of the replaced snippets
+            Object first = units.iterator().next();
+            List<SnippetEvent> events = invoke(() -> (List<SnippetEvent>) EVENTS.invoke(
+                    eval, first, outs, (String) null, (JShellException) null));
+
+            for (SnippetEvent event : events) {
+                invoke(() -> NOTIFY_KEY_STATUS_EVENT.invoke(shell, event));
+            }
+
+            return events;
+        } finally {
+            invoke(() -> RESUME_INDEXING.invoke(sca));
+        }
+    }
+
+    // When wrapping a snippet, JShell imports the other snippets compiled together with it, so their wrapper class names
+    // must be known before their own turn to be wrapped. Unlike the dependent snippets that JShell recompiles together,
+    // the new snippets don't have a wrapper yet, so a provisional one is created the same way JShell does. The class
+    // name only depends on the snippets wrapped together, so it matches the one assigned during the compilation
+    private void presetClassNames() {
+        Object outerMap = invoke(() -> OUTER_MAP.invoke(shell));
+
+        for (Snippet snippet : snippets) {
+            if (snippet.kind() == Snippet.Kind.IMPORT) {
+                continue;
+            }
+
+            // overloaded methods are wrapped in the same class
+            List<Snippet> wrapped = new ArrayList<>();
+            if (snippet.kind() == Snippet.Kind.METHOD) {
+                String name = ((MethodSnippet) snippet).name();
+                for (Snippet s : snippets) {
+                    if (s.kind() == Snippet.Kind.METHOD && ((MethodSnippet) s).name().equals(name)) {
+                        wrapped.add(s);
+                    }
+                }
+            } else {
+                wrapped.add(snippet);
+            }
+
+            List<Object> wraps = new ArrayList<>(wrapped.size());
+            for (Snippet s : wrapped) {
+                wraps.add(invoke(() -> GUTS.invoke(s)));
+            }
+
+            Object outer = invoke(() -> WRAP_IN_CLASS.invoke(
+                    outerMap, Set.of(), (Collection<?>) null, wrapped, wraps));
+            invoke(() -> SET_OUTER_WRAP.invoke(snippet, outer));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Invocation<T> {
+        T invoke() throws Throwable;
+    }
+
+    private static <T> T invoke(Invocation<T> invocation) {
+        try {
+            return invocation.invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("JShell internal call failed", e);
+        }
+    }
+}
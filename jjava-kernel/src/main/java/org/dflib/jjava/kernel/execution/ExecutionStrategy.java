@@ -0,0 +1,46 @@
+package org.dflib.jjava.kernel.execution;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Defines the kind of threads that run the code snippets.
+ */
+public enum ExecutionStrategy {
+
+    /**
+     * Each snippet runs on a thread from a cached pool of platform threads.
+     */
+    PLATFORM_THREADS,
+
+    /**
+     * Each snippet runs on a new virtual thread. Requires Java 21 or newer, falls back to {@link #PLATFORM_THREADS}
+     * on older JVMs.
+     */
+    VIRTUAL_THREADS;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("ExecutionStrategy");
+
+    /**
+     * Parses a case-insensitive strategy name, with "platform" and "virtual" as shortcuts. Returns the
+     * {@link #PLATFORM_THREADS} default for null or empty names, and logs a warning and returns the default for the
+     * unknown ones, so that a typo in the configuration doesn't prevent the kernel from starting.
+     */
+    public static ExecutionStrategy parse(String name) {
+        if (name == null || name.isBlank()) {
+            return PLATFORM_THREADS;
+        }
+
+        switch (name.trim().toLowerCase()) {
+            case "platform":
+            case "platform_threads":
+                return PLATFORM_THREADS;
+            case "virtual":
+            case "virtual_threads":
+                return VIRTUAL_THREADS;
+            default:
+                LOGGER.warn("Unknown execution strategy '{}', using {}", name.trim(), PLATFORM_THREADS);
+                return PLATFORM_THREADS;
+        }
+    }
+}
@@ -4,12 +4,16 @@ import jdk.jshell.EvalException;
 import jdk.jshell.execution.DirectExecutionControl;
 import jdk.jshell.spi.SPIResolutionException;
 import org.dflib.jjava.jupyter.telemetry.TelemetryCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -17,6 +21,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -26,9 +31,11 @@ import java.util.concurrent.atomic.AtomicInteger;
  * An ExecutionControl very similar to {@link jdk.jshell.execution.LocalExecutionControl} but which
  * also logs the actual result of an invocation before being serialized.
  */
-class JJavaExecutionControl extends DirectExecutionControl {
+class JJavaExecutionControl extends DirectExecutionControl implements KernelExecutionControl {
 
-    // generate a semi-unique thread name prefix for each JVM run for easier detection of JJavaExecutionControl-produced threads
+    private static final Logger LOGGER = LoggerFactory.getLogger("JJavaExecutionControl");
+
+    // generate a semi-unique thread name prefix for each JVM run for easier identification of JJavaExecutionControl-produced threads
     private static final String THREAD_NAME_PREFIX = "jjava-exec-"
             + ThreadLocalRandom.current().ints(6, 'a', 'z' + 1).collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append)
             + "-";
@@ -58,7 +65,19 @@ class JJavaExecutionControl extends DirectExecutionControl {
     private final JJavaLoaderDelegate loaderDelegate;
     private final ThreadLocal<TelemetryCollector<?>> telemetryCollector;
 
+    // set while a snippet is running on the current thread, to detect the nested invocations
+    private final ThreadLocal<Boolean> invoking;
+
     public JJavaExecutionControl(JJavaLoaderDelegate loaderDelegate, long timeoutDuration, TimeUnit timeoutUnit) {
+        this(loaderDelegate, timeoutDuration, timeoutUnit, ExecutionStrategy.PLATFORM_THREADS);
+    }
+
+    public JJavaExecutionControl(
+            JJavaLoaderDelegate loaderDelegate,
+            long timeoutDuration,
+            TimeUnit timeoutUnit,
+            ExecutionStrategy strategy) {
+
         super(loaderDelegate);
 
         this.loaderDelegate = loaderDelegate;
@@ -67,8 +86,52 @@ class JJavaExecutionControl extends DirectExecutionControl {
 
         this.timeoutDuration = timeoutDuration;
         this.timeoutUnit = timeoutDuration > 0 ? Objects.requireNonNull(timeoutUnit) : TimeUnit.MILLISECONDS;
-        this.executor = Executors.newCachedThreadPool(r -> new Thread(r, THREAD_NAME_PREFIX + EXECUTOR_THREAD_ID.getAndIncrement()));
+        this.executor = createExecutor(strategy, loaderDelegate.getClassLoader());
         this.telemetryCollector = new ThreadLocal<>();
+        this.invoking = new ThreadLocal<>();
+    }
+
+    // The snippets see the JShell class loader as the context class loader. It is set explicitly, instead of being
+    // inherited from the thread that happened to start the executor thread, which may belong to a different kernel
+    private static ExecutorService createExecutor(ExecutionStrategy strategy, ClassLoader classLoader) {
+        if (strategy == ExecutionStrategy.VIRTUAL_THREADS) {
+            ExecutorService executor = createVirtualThreadExecutor(classLoader);
+            if (executor != null) {
+                return executor;
+            }
+
+            LOGGER.warn("Virtual threads are not available in Java {}, running snippets on platform threads", Runtime.version().feature());
+        }
+
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, THREAD_NAME_PREFIX + EXECUTOR_THREAD_ID.getAndIncrement());
+            t.setContextClassLoader(classLoader);
+            return t;
+        });
+    }
+
+    /**
+     * Returns an executor that starts a new virtual thread per task, or null if the JVM has no virtual threads. The
+     * API is accessed reflectively, as the kernel is compiled for Java 11.
+     */
+    private static ExecutorService createVirtualThreadExecutor(ClassLoader classLoader) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME_PREFIX + "v-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            ThreadFactory withClassLoader = r -> {
+                Thread t = factory.newThread(r);
+                t.setContextClassLoader(classLoader);
+                return t;
+            };
+
+            return (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, withClassLoader);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
     }
 
     @Override
@@ -76,6 +139,14 @@ class JJavaExecutionControl extends DirectExecutionControl {
         executor.shutdownNow();
     }
 
+    @Override
+    public void close() {
+        // the idle executor threads would otherwise keep the snippet classes reachable for a while
+        executor.shutdownNow();
+        super.close();
+    }
+
+    @Override
     public Object takeResult(String id) {
         Object result = this.results.remove(id);
         if (result == null) {
@@ -85,18 +156,76 @@ class JJavaExecutionControl extends DirectExecutionControl {
         return result;
     }
 
+    @Override
+    public Object[] takeResults(String[] ids) {
+        Object[] results = new Object[ids.length];
+        String missing = null;
+
+        // takes all the results even if some are missing, not to leak the others
+        for (int i = 0; i < ids.length; i++) {
+            results[i] = this.results.remove(ids[i]);
+            if (results[i] == null) {
+                missing = ids[i];
+            }
+        }
+
+        if (missing != null) {
+            throw new IllegalStateException("No result with key: " + missing);
+        }
+
+        return results;
+    }
+
+    @Override
+    public Object readVariable(String className, String varName) {
+        try {
+            Field field = loaderDelegate.findClass(className).getDeclaredField(varName);
+            field.setAccessible(true);
+            return field.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalStateException("Unable to read variable '" + varName + "' of " + className, e);
+        }
+    }
+
+    @Override
     public void unloadClass(String className) {
         loaderDelegate.unloadClass(className);
     }
 
+    @Override
+    public ClassLoader getClassLoader() {
+        return loaderDelegate.getClassLoader();
+    }
+
+    @Override
+    public SnippetClassStats getClassStats() {
+        return loaderDelegate.getStats();
+    }
+
+    @Override
     public void interrupt() {
         running.forEach((id, f) -> f.cancel(true));
     }
 
+    /**
+     * Always null, as the snippets run in the kernel JVM, that can not outlive them.
+     */
+    @Override
+    public String replaceIfTerminated() {
+        return null;
+    }
+
+    @Override
+    public boolean isSnippetThread() {
+        return isNestedCall();
+    }
+
+    @Override
     public void startThreadTelemetryCollection(TelemetryCollector<?> collector) {
         telemetryCollector.set(Objects.requireNonNull(collector));
     }
 
+    @Override
     public void stopThreadTelemetryCollection() {
         TelemetryCollector<?> collector = telemetryCollector.get();
         if (collector != null) {
@@ -115,28 +244,66 @@ class JJavaExecutionControl extends DirectExecutionControl {
     @Override
     protected String invoke(Method doitMethod) throws Exception {
         String id = UUID.randomUUID().toString();
-        Object value;
+        Object value = doInvoke(id, doitMethod, threadTelemetryCollector());
+        results.put(id, value);
+        return id;
+    }
 
-        TelemetryCollector tc = threadTelemetryCollector();
-        Object m = tc.measurementStart();
+    /**
+     * Runs the task on a snippet thread, unless already on one, so that it is interrupted and timed out the same way as
+     * the snippets. Unlike a snippet, the task is not measured, and its own exceptions are rethrown as is.
+     */
+    @Override
+    public Object execute(Callable<Object> task) throws Exception {
+        String id = UUID.randomUUID().toString();
         try {
-            value = doInvoke(id, doitMethod);
-        } finally {
-            // use the same collector used for "measurementStart" call, so if the thread local is reset inside
-            // "doInvoke", we are still calling the matching collector
-            tc.measurementEnd(m);
-        }
+            return await(id, submit(task));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
 
-        results.put(id, value);
-        return id;
+            throw (Exception) cause;
+        }
     }
 
-    private Object doInvoke(String id, Method doitMethod) throws Exception {
+    // the telemetry collector of the calling thread measures the snippet on the thread that runs it, so that the CPU
+    // times are counted when a magic like "%%time" is invoked by the kernel directly, outside any snippet
+    private Object doInvoke(String id, Method doitMethod, TelemetryCollector<?> tc) throws Exception {
+        try {
+            return await(id, submit(() -> invokeMeasured(doitMethod, tc)));
+        } catch (ExecutionException e) {
+
+            Throwable cause = e.getCause();
+            if (cause instanceof InvocationTargetException) {
+                cause = cause.getCause();
+            }
+            if (cause == null) {
+                throw new UserException("null", "Unknown Invocation Exception", e.getStackTrace());
+            } else if (cause instanceof SPIResolutionException) {
+                throw new ResolutionException(((SPIResolutionException) cause).id(), cause.getStackTrace());
+            } else {
+                throw new UserException(String.valueOf(cause.getMessage()), cause.getClass().getName(), cause.getStackTrace());
+            }
+        }
+    }
 
-        Future<Object> task = isNestedCall()
+    private Future<Object> submit(Callable<Object> call) throws Exception {
+        return isNestedCall()
                 // run on the same thread if the invocation is done within another invocation
-                ? CompletableFuture.completedFuture(doitMethod.invoke(null))
-                : executor.submit(() -> doitMethod.invoke(null));
+                ? CompletableFuture.completedFuture(call.call())
+                : executor.submit(() -> {
+                    invoking.set(Boolean.TRUE);
+                    try {
+                        return call.call();
+                    } finally {
+                        invoking.remove();
+                    }
+                });
+    }
+
+    private Object await(String id, Future<Object> task) throws Exception {
 
         running.put(id, task);
 
@@ -152,19 +319,6 @@ class JJavaExecutionControl extends DirectExecutionControl {
                 // The execution was purposely interrupted.
                 throw new UserException("Execution interrupted.", EXECUTION_INTERRUPTED_NAME, e.getStackTrace());
             }
-        } catch (ExecutionException e) {
-
-            Throwable cause = e.getCause();
-            if (cause instanceof InvocationTargetException) {
-                cause = cause.getCause();
-            }
-            if (cause == null) {
-                throw new UserException("null", "Unknown Invocation Exception", e.getStackTrace());
-            } else if (cause instanceof SPIResolutionException) {
-                throw new ResolutionException(((SPIResolutionException) cause).id(), cause.getStackTrace());
-            } else {
-                throw new UserException(String.valueOf(cause.getMessage()), cause.getClass().getName(), cause.getStackTrace());
-            }
         } catch (TimeoutException e) {
             String message = String.format("Execution timed out after configured timeout of %d %s.",
                     timeoutDuration,
@@ -175,8 +329,17 @@ class JJavaExecutionControl extends DirectExecutionControl {
         }
     }
 
+    private static <M> Object invokeMeasured(Method doitMethod, TelemetryCollector<M> tc) throws Exception {
+        M m = tc.measurementStart();
+        try {
+            return doitMethod.invoke(null);
+        } finally {
+            tc.measurementEnd(m);
+        }
+    }
+
     private boolean isNestedCall() {
-        return Thread.currentThread().getName().startsWith(THREAD_NAME_PREFIX);
+        return invoking.get() != null;
     }
 
     private TelemetryCollector<?> threadTelemetryCollector() {
@@ -4,28 +4,36 @@ import jdk.jshell.execution.LoaderDelegate;
 import jdk.jshell.spi.ExecutionControl;
 import org.dflib.jjava.jupyter.kernel.util.PathsHandler;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Path;
-import java.security.CodeSource;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Defines the snippet classes. Each batch of classes loaded by JShell gets its own "generation" ClassLoader, so that
+ * once all the classes of a generation are unloaded (i.e., their snippets are overwritten or dropped), the generation
+ * with its classes can be garbage-collected, releasing their metaspace. The snippet classes of different generations
+ * see each other via a shared index of the live classes, and the classpath via the common parent loader.
+ */
 class JJavaLoaderDelegate implements LoaderDelegate {
 
     private static final String CLASSPATH_PROPERTY = "java.class.path";
     private static final String PATH_SEPARATOR = System.getProperty("path.separator");
 
-    private final Map<String, byte[]> declaredClasses;
-    private final Map<String, Class<?>> loadedClasses;
+    // the generations of all the live snippet classes, by class name
+    private final Map<String, Generation> generations;
     private final JJavaClassLoader classLoader;
 
     public JJavaLoaderDelegate() {
-        this.declaredClasses = new ConcurrentHashMap<>();
-        this.loadedClasses = new ConcurrentHashMap<>();
-        this.classLoader = new JJavaClassLoader();
-        Thread.currentThread().setContextClassLoader(classLoader);
+        this.generations = new ConcurrentHashMap<>();
+        this.classLoader = new JJavaClassLoader(generations);
     }
 
     @Override
@@ -34,15 +42,12 @@ class JJavaLoaderDelegate implements LoaderDelegate {
 
         // Must record all defined classes before attempting to load them. Otherwise, classes depending on other,
         // not yet loaded classes, may fail (see https://github.com/dflib/jjava/issues/65)
-        for (ExecutionControl.ClassBytecodes cbc : cbcs) {
-            declaredClasses.put(cbc.name(), cbc.bytecodes());
-        }
+        Generation generation = declare(cbcs);
 
         int i = 0;
         for (ExecutionControl.ClassBytecodes cbc : cbcs) {
             try {
-                Class<?> loaderClass = classLoader.findClass(cbc.name());
-                loadedClasses.put(cbc.name(), loaderClass);
+                generation.loadClass(cbc.name());
             } catch (ClassNotFoundException e) {
                 throw new ExecutionControl.ClassInstallException("Unable to load class " + cbc.name()
                         + ": " + e.getMessage(), installed);
@@ -53,9 +58,17 @@ class JJavaLoaderDelegate implements LoaderDelegate {
 
     @Override
     public void classesRedefined(ExecutionControl.ClassBytecodes[] cbcs) {
+        // the redefined classes are defined on the first access
+        declare(cbcs);
+    }
+
+    private Generation declare(ExecutionControl.ClassBytecodes[] cbcs) {
+        Generation generation = new Generation(classLoader, generations, cbcs);
         for (ExecutionControl.ClassBytecodes cbc : cbcs) {
-            declaredClasses.put(cbc.name(), cbc.bytecodes());
+            generations.put(cbc.name(), generation);
         }
+
+        return generation;
     }
 
     @Override
@@ -77,34 +90,74 @@ class JJavaLoaderDelegate implements LoaderDelegate {
 
     @Override
     public Class<?> findClass(String name) throws ClassNotFoundException {
-        Class<?> klass = loadedClasses.get(name);
-        if (klass == null && declaredClasses.containsKey(name)) {
-            // check if it was removed
-            klass = loadClass(name);
-        }
-        if (klass == null) {
+        Generation generation = generations.get(name);
+        if (generation == null) {
             throw new ClassNotFoundException(name + " not found");
         }
-        return klass;
-    }
-
-    private Class<?> loadClass(String name) throws ClassNotFoundException {
-        return classLoader.loadClass(name);
+        return generation.loadClass(name);
     }
 
+    /**
+     * Forgets a snippet class and its nested classes. The classes are actually unloaded by the JVM when no other class
+     * of their generation is live, and none of their objects are reachable.
+     */
     public void unloadClass(String name) {
-        loadedClasses.remove(name);
-        declaredClasses.remove(name);
+        Generation generation = generations.remove(name);
+        if (generation == null) {
+            return;
+        }
+
+        generation.forget(name);
+
+        String nestedPrefix = name + "$";
+        for (String nested : generation.names) {
+            if (nested.startsWith(nestedPrefix) && generations.remove(nested, generation)) {
+                generation.forget(nested);
+            }
+        }
     }
 
     public ClassLoader getClassLoader() {
         return classLoader;
     }
 
-    class JJavaClassLoader extends URLClassLoader {
+    public SnippetClassStats getStats() {
+        Set<Generation> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        live.addAll(generations.values());
+
+        long retainedBytecode = 0;
+        for (Generation g : live) {
+            retainedBytecode += g.retainedBytecodeSize();
+        }
+
+        return new SnippetClassStats(generations.size(), live.size(), retainedBytecode, metaspaceUsed());
+    }
+
+    private static long metaspaceUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                return pool.getUsage().getUsed();
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * The parent of all generations, that loads the notebook classpath. Also resolves the live snippet classes, so
+     * that the snippets can see each other via the context ClassLoader.
+     */
+    static class JJavaClassLoader extends URLClassLoader {
 
-        public JJavaClassLoader() {
+        static {
+            registerAsParallelCapable();
+        }
+
+        private final Map<String, Generation> generations;
+
+        JJavaClassLoader(Map<String, Generation> generations) {
             super(new URL[0]);
+            this.generations = generations;
         }
 
         // redefine here for access from the parent class. Otherwise, the "protected" method would be inaccessible
@@ -115,17 +168,82 @@ class JJavaLoaderDelegate implements LoaderDelegate {
 
         @Override
         protected Class<?> findClass(String name) throws ClassNotFoundException {
-            byte[] data = declaredClasses.get(name);
-            if (data == null) {
-                return super.findClass(name);
+            Generation generation = generations.get(name);
+            return generation != null ? generation.loadClass(name) : super.findClass(name);
+        }
+    }
+
+    /**
+     * A ClassLoader of a single batch of snippet classes.
+     */
+    static class Generation extends ClassLoader {
+
+        static {
+            registerAsParallelCapable();
+        }
+
+        private final Map<String, Generation> generations;
+
+        private final String[] names;
+
+        // the bytecode of the classes not defined yet, dropped once a class is defined
+        private final Map<String, byte[]> pending;
+
+        Generation(ClassLoader parent, Map<String, Generation> generations, ExecutionControl.ClassBytecodes[] cbcs) {
+            super(parent);
+            this.generations = generations;
+            this.names = new String[cbcs.length];
+            this.pending = new ConcurrentHashMap<>();
+            for (int i = 0; i < cbcs.length; i++) {
+                ExecutionControl.ClassBytecodes cbc = cbcs[i];
+                names[i] = cbc.name();
+                pending.put(cbc.name(), SnippetClassFiles.widenAccess(cbc.bytecodes()));
             }
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> c = findLoadedClass(name);
+                if (c != null) {
+                    return c;
+                }
+
+                byte[] data = pending.get(name);
+                if (data != null) {
+                    return define(name, data);
+                }
+
+                // a snippet class from another generation
+                Generation owner = generations.get(name);
+                return owner != null && owner != this
+                        ? owner.loadClass(name)
+                        : super.loadClass(name, resolve);
+            }
+        }
+
+        private Class<?> define(String name, byte[] data) throws ClassNotFoundException {
             try {
-                return super.defineClass(name, data, 0, data.length, (CodeSource) null);
+                Class<?> c = defineClass(name, data, 0, data.length);
+                pending.remove(name);
+                return c;
             } catch (LinkageError er) {
                 // rethrow as ClassNotFoundException to let the caller properly handle this case
                 // this error could be thrown in some cases (like static method signature change)
                 throw new ClassNotFoundException(name, er);
             }
         }
+
+        void forget(String name) {
+            pending.remove(name);
+        }
+
+        long retainedBytecodeSize() {
+            long size = 0;
+            for (byte[] data : pending.values()) {
+                size += data.length;
+            }
+            return size;
+        }
     }
 }
@@ -0,0 +1,156 @@
+package org.dflib.jjava.kernel.execution;
+
+import jdk.jshell.execution.Util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The main class of a worker JVM started by {@link WorkerPool}. Connects to the kernel, waits until the kernel takes
+ * it from the pool and sends the execution settings, and then runs the snippets with a {@link JJavaExecutionControl}
+ * serving the JShell remote execution protocol. Exits when the kernel disconnects.
+ */
+public class JJavaWorker {
+
+    static final String TAKE_RESULTS_COMMAND = "jjava.takeResults";
+    static final String READ_VARIABLE_COMMAND = "jjava.readVariable";
+    static final String UNLOAD_CLASS_COMMAND = "jjava.unloadClass";
+    static final String CLASS_STATS_COMMAND = "jjava.classStats";
+
+    // written by the kernel to the worker stdin
+    static final int INTERRUPT = 'i';
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        int id = Integer.parseInt(args[1]);
+        byte[] secret = Base64.getDecoder().decode(System.getenv(WorkerPool.SECRET_ENV));
+
+        // the process stdin is the interrupt channel, the snippets get their stdin from the kernel
+        InputStream control = System.in;
+
+        warmUp();
+
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        Worker.setNoDelay(socket);
+        DataOutputStream handshake = new DataOutputStream(socket.getOutputStream());
+        handshake.writeInt(id);
+        handshake.write(secret);
+        handshake.flush();
+
+        // blocks while the worker is idle in the pool
+        DataInputStream settings = new DataInputStream(socket.getInputStream());
+        long timeoutDuration;
+        TimeUnit timeoutUnit;
+        ExecutionStrategy strategy;
+        try {
+            timeoutDuration = settings.readLong();
+            timeoutUnit = TimeUnit.valueOf(settings.readUTF());
+            strategy = ExecutionStrategy.valueOf(settings.readUTF());
+        } catch (EOFException e) {
+            // the pool was closed before the worker was used
+            System.exit(0);
+            return;
+        }
+
+        ResultServingControl ec = new ResultServingControl(timeoutDuration, timeoutUnit, strategy);
+        listenForInterrupts(control, ec);
+
+        Map<String, Consumer<OutputStream>> outputs = Map.of(
+                "out", st -> System.setOut(new PrintStream(st, true)),
+                "err", st -> System.setErr(new PrintStream(st, true)));
+        Map<String, Consumer<InputStream>> inputs = Map.of("in", System::setIn);
+
+        Util.forwardExecutionControlAndIO(ec, socket.getInputStream(), socket.getOutputStream(), outputs, inputs);
+
+        // the executor threads are not daemons
+        System.exit(0);
+    }
+
+    // loads the execution machinery while the worker is waiting in the pool
+    private static void warmUp() throws Exception {
+        JJavaExecutionControl ec = new JJavaExecutionControl(new JJavaLoaderDelegate(), -1, TimeUnit.MILLISECONDS);
+        try {
+            ec.takeResult(ec.invoke(JJavaWorker.class.getDeclaredMethod("warmUpSnippet")));
+        } finally {
+            ec.close();
+        }
+    }
+
+    static Object warmUpSnippet() {
+        return Boolean.TRUE;
+    }
+
+    private static void listenForInterrupts(InputStream control, JJavaExecutionControl ec) {
+        Thread listener = new Thread(() -> {
+            try {
+                int b;
+                while ((b = control.read()) >= 0) {
+                    if (b == INTERRUPT) {
+                        ec.interrupt();
+                    }
+                }
+            } catch (IOException e) {
+                // treat as a closed channel
+            }
+
+            // the kernel is gone
+            System.exit(0);
+        }, "jjava-worker-interrupts");
+
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    /**
+     * Serves the kernel requests for the snippet results, that are sent as {@link WorkerResult}. The results of a cell are
+     * requested and sent together.
+     */
+    static class ResultServingControl extends JJavaExecutionControl {
+
+        ResultServingControl(long timeoutDuration, TimeUnit timeoutUnit, ExecutionStrategy strategy) {
+            super(new JJavaLoaderDelegate(), timeoutDuration, timeoutUnit, strategy);
+        }
+
+        @Override
+        public Object extensionCommand(String command, Object arg) throws RunException, EngineTerminationException, InternalException {
+            switch (command) {
+                case TAKE_RESULTS_COMMAND:
+                    Object[] results = takeResults((String[]) arg);
+                    for (int i = 0; i < results.length; i++) {
+                        results[i] = WorkerResult.of(results[i]);
+                    }
+                    return results;
+                case READ_VARIABLE_COMMAND:
+                    String[] variable = (String[]) arg;
+                    try {
+                        return WorkerResult.of(readVariable(variable[0], variable[1]));
+                    } catch (IllegalStateException e) {
+                        throw new InternalException(e.getMessage());
+                    }
+                case UNLOAD_CLASS_COMMAND:
+                    unloadClass((String) arg);
+                    return null;
+                case CLASS_STATS_COMMAND:
+                    SnippetClassStats stats = getClassStats();
+                    return new long[]{
+                            stats.getLiveClasses(),
+                            stats.getLiveGenerations(),
+                            stats.getRetainedBytecodeSize(),
+                            stats.getMetaspaceUsed()};
+                default:
+                    return super.extensionCommand(command, arg);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.dflib.jjava.kernel.execution;
+
+import jdk.jshell.spi.ExecutionControl;
+import org.dflib.jjava.jupyter.telemetry.TelemetryCollector;
+
+import java.util.concurrent.Callable;
+
+/**
+ * An {@link ExecutionControl} that {@link CodeEvaluator} also talks to directly, bypassing JShell, to get the actual
+ * snippet results and to manage the snippet classes.
+ */
+interface KernelExecutionControl extends ExecutionControl {
+
+    /**
+     * Returns and forgets the result of an invocation, identified by the key returned to JShell as the invocation
+     * value.
+     */
+    Object takeResult(String key);
+
+    /**
+     * Returns and forgets the results of several invocations at once, in the order of the keys.
+     */
+    Object[] takeResults(String[] keys);
+
+    /**
+     * Returns the current value of a snippet variable, read from the static field of its wrapper class without running
+     * any snippet code.
+     */
+    Object readVariable(String className, String varName);
+
+    void unloadClass(String className);
+
+    void interrupt();
+
+    /**
+     * Runs a task of the kernel itself, e.g. the magics of a cell invoked directly, in the kernel JVM on a thread that
+     * is interrupted and timed out the same way as the snippets. {@link #isSnippetThread()} is true within the task, as
+     * it may call back into the kernel the same way as the notebook code. Throws a {@link UserException} on a timeout
+     * or an interrupt, and the task exceptions as is.
+     */
+    Object execute(Callable<Object> task) throws Exception;
+
+    /**
+     * Replaces the execution engine if it terminated, e.g. a worker JVM that exited, with a new one that has none of
+     * the snippet classes. Returns the reason of the termination, or null if the engine is alive.
+     */
+    String replaceIfTerminated();
+
+    /**
+     * Returns true if the current thread is running a snippet of this execution control, i.e. the call comes from the
+     * notebook code.
+     */
+    boolean isSnippetThread();
+
+    /**
+     * Returns the ClassLoader that can see the notebook classpath.
+     */
+    ClassLoader getClassLoader();
+
+    SnippetClassStats getClassStats();
+
+    void startThreadTelemetryCollection(TelemetryCollector<?> collector);
+
+    void stopThreadTelemetryCollection();
+}
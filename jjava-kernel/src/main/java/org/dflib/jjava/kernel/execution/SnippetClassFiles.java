@@ -0,0 +1,150 @@
+package org.dflib.jjava.kernel.execution;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Adjusts the snippet class files before they are defined. All the snippets are compiled in the same "REPL" package,
+ * but the classes defined by different ClassLoaders end up in different runtime packages, so package-private access
+ * between them fails. To preserve the source semantics, the package-private and protected classes and members are made
+ * public. Private access is unaffected, as a class and its nested classes are always defined together.
+ */
+final class SnippetClassFiles {
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+
+    private static final String INNER_CLASSES = "InnerClasses";
+
+    private SnippetClassFiles() {
+    }
+
+    /**
+     * Returns a copy of the class file with the package-private and protected access widened to public, or the
+     * original class file if it can't be parsed.
+     */
+    static byte[] widenAccess(byte[] classFile) {
+        byte[] copy = classFile.clone();
+        try {
+            widenAccess(ByteBuffer.wrap(copy));
+            return copy;
+        } catch (RuntimeException e) {
+            return classFile;
+        }
+    }
+
+    private static void widenAccess(ByteBuffer in) {
+
+        // magic, minor and major versions
+        in.position(8);
+
+        String[] utf8 = readConstantPool(in);
+
+        // the class itself (a private nested class is package-private in its class file)
+        int classFlags = in.position();
+        in.putShort(classFlags, (short) (in.getShort(classFlags) | ACC_PUBLIC));
+
+        // this_class, super_class, interfaces
+        in.position(classFlags + 6);
+        skip(in, 2 * u2(in));
+
+        // fields, then methods
+        for (int group = 0; group < 2; group++) {
+            int count = u2(in);
+            for (int i = 0; i < count; i++) {
+                widenMember(in, in.position());
+                skip(in, 6);
+                skipAttributes(in);
+            }
+        }
+
+        // the class attributes, to keep the reflection view consistent with the class files
+        int attributes = u2(in);
+        for (int i = 0; i < attributes; i++) {
+            String name = utf8[u2(in)];
+            int length = in.getInt();
+            int end = in.position() + length;
+
+            if (INNER_CLASSES.equals(name)) {
+                int classes = u2(in);
+                for (int j = 0; j < classes; j++) {
+                    // inner_class_info, outer_class_info, inner_name, then the flags
+                    widenMember(in, in.position() + 6);
+                    skip(in, 8);
+                }
+            }
+
+            in.position(end);
+        }
+    }
+
+    private static String[] readConstantPool(ByteBuffer in) {
+        int count = u2(in);
+        String[] utf8 = new String[count];
+
+        for (int i = 1; i < count; i++) {
+            int tag = in.get();
+            switch (tag) {
+                case 1: // Utf8
+                    int length = u2(in);
+                    utf8[i] = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+                    skip(in, length);
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    skip(in, 2);
+                    break;
+                case 15: // MethodHandle
+                    skip(in, 3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    skip(in, 4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    skip(in, 8);
+                    // takes two entries
+                    i++;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown constant pool tag: " + tag);
+            }
+        }
+
+        return utf8;
+    }
+
+    private static void widenMember(ByteBuffer in, int flagsAt) {
+        int flags = in.getShort(flagsAt) & 0xFFFF;
+        if ((flags & ACC_PRIVATE) == 0) {
+            in.putShort(flagsAt, (short) ((flags & ~ACC_PROTECTED) | ACC_PUBLIC));
+        }
+    }
+
+    private static void skipAttributes(ByteBuffer in) {
+        int count = u2(in);
+        for (int i = 0; i < count; i++) {
+            skip(in, 2);
+            skip(in, in.getInt());
+        }
+    }
+
+    private static int u2(ByteBuffer in) {
+        return in.getShort() & 0xFFFF;
+    }
+
+    private static void skip(ByteBuffer in, int bytes) {
+        in.position(in.position() + bytes);
+    }
+}
@@ -0,0 +1,89 @@
+package org.dflib.jjava.kernel.execution;
+
+import jdk.jshell.Snippet;
+import jdk.jshell.SnippetEvent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks which active snippets use each snippet wrapper class, so that telling whether a class is still used doesn't
+ * require scanning all the snippets of the session. Kept up to date from the {@link SnippetEvent}s of the JShell
+ * instance, including the evals and drops done directly on it.
+ */
+class SnippetClassIndex {
+
+    private static final MethodHandle SNIPPET_CLASS_NAME;
+
+    static {
+        try {
+            Method classFullName = Snippet.class.getDeclaredMethod("classFullName");
+            classFullName.setAccessible(true);
+            SNIPPET_CLASS_NAME = MethodHandles.lookup().unreflect(classFullName);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Unable to access jdk.jshell.Snippet.classFullName() method.", e);
+        }
+    }
+
+    private final Map<String, Set<Snippet>> activeSnippets;
+    private final Map<Snippet, String> snippetClasses;
+
+    SnippetClassIndex() {
+        this.activeSnippets = new HashMap<>();
+        this.snippetClasses = new HashMap<>();
+    }
+
+    /**
+     * Returns the name of the wrapper class created by JShell for a snippet. It changes when the snippet is recompiled
+     * because of a change in its dependencies.
+     */
+    static String className(Snippet snippet) {
+        try {
+            return (String) SNIPPET_CLASS_NAME.invokeExact(snippet);
+        } catch (Throwable e) {
+            throw new RuntimeException("Unable to get the class name of a snippet", e);
+        }
+    }
+
+    /**
+     * Updates the index with a snippet status change.
+     *
+     * @return the name of the class that the snippet no longer uses and no other active snippet uses, or null
+     */
+    String update(SnippetEvent event) {
+        Snippet snippet = event.snippet();
+        return update(snippet, event.status().isActive() ? className(snippet) : null);
+    }
+
+    /**
+     * Updates the index with the current class of a snippet, or null if the snippet is no longer active.
+     *
+     * @return the name of the class that the snippet no longer uses and no other active snippet uses, or null
+     */
+    synchronized String update(Snippet snippet, String newClass) {
+        String oldClass = snippetClasses.remove(snippet);
+
+        if (newClass != null) {
+            snippetClasses.put(snippet, newClass);
+            activeSnippets.computeIfAbsent(newClass, c -> new HashSet<>()).add(snippet);
+        }
+
+        if (oldClass == null || oldClass.equals(newClass)) {
+            return null;
+        }
+
+        Set<Snippet> users = activeSnippets.get(oldClass);
+        users.remove(snippet);
+        if (!users.isEmpty()) {
+            return null;
+        }
+
+        activeSnippets.remove(oldClass);
+        return oldClass;
+    }
+}
@@ -0,0 +1,57 @@
+package org.dflib.jjava.kernel.execution;
+
+/**
+ * A snapshot of the memory held by the snippet classes of a kernel.
+ */
+public class SnippetClassStats {
+
+    private final int liveClasses;
+    private final int liveGenerations;
+    private final long retainedBytecodeSize;
+    private final long metaspaceUsed;
+
+    public SnippetClassStats(int liveClasses, int liveGenerations, long retainedBytecodeSize, long metaspaceUsed) {
+        this.liveClasses = liveClasses;
+        this.liveGenerations = liveGenerations;
+        this.retainedBytecodeSize = retainedBytecodeSize;
+        this.metaspaceUsed = metaspaceUsed;
+    }
+
+    /**
+     * Returns the number of the snippet classes that belong to the current (not overwritten or dropped) snippets.
+     */
+    public int getLiveClasses() {
+        return liveClasses;
+    }
+
+    /**
+     * Returns the number of the ClassLoaders that define the live snippet classes. The classes of the overwritten
+     * snippets are unloaded together with their ClassLoader once it has no live classes left.
+     */
+    public int getLiveGenerations() {
+        return liveGenerations;
+    }
+
+    /**
+     * Returns the size in bytes of the bytecode kept for the declared, but not yet defined snippet classes.
+     */
+    public long getRetainedBytecodeSize() {
+        return retainedBytecodeSize;
+    }
+
+    /**
+     * Returns the metaspace used by the JVM that runs the snippets, in bytes, or -1 if unknown.
+     */
+    public long getMetaspaceUsed() {
+        return metaspaceUsed;
+    }
+
+    @Override
+    public String toString() {
+        return "SnippetClassStats{liveClasses=" + liveClasses
+                + ", liveGenerations=" + liveGenerations
+                + ", retainedBytecodeSize=" + retainedBytecodeSize
+                + ", metaspaceUsed=" + metaspaceUsed
+                + "}";
+    }
+}
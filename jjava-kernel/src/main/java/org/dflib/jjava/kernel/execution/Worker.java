@@ -0,0 +1,106 @@
+package org.dflib.jjava.kernel.execution;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A started worker JVM connected to the kernel. The socket carries the JShell execution protocol and the snippet
+ * standard streams, while the process stdin is a side channel for interrupts.
+ */
+class Worker {
+
+    private static final long EXIT_WAIT_MS = 1000;
+
+    private final int id;
+    private final Process process;
+    private final Socket socket;
+
+    Worker(int id, Process process, Socket socket) {
+        this.id = id;
+        this.process = process;
+        this.socket = socket;
+        setNoDelay(socket);
+    }
+
+    // the protocol is a series of small request-response exchanges, which Nagle's algorithm would delay
+    static void setNoDelay(Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+        } catch (IOException e) {
+            // not critical
+        }
+    }
+
+    int getId() {
+        return id;
+    }
+
+    boolean isAlive() {
+        return process.isAlive() && !socket.isClosed();
+    }
+
+    /**
+     * Sends the execution settings to the idle worker, which makes it create its execution control and start serving
+     * the JShell protocol.
+     */
+    void configure(long timeoutDuration, TimeUnit timeoutUnit, ExecutionStrategy strategy) throws IOException {
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeLong(timeoutDuration);
+        out.writeUTF(timeoutUnit.name());
+        out.writeUTF(strategy.name());
+        out.flush();
+    }
+
+    InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+
+    OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+
+    /**
+     * Interrupts the snippet running in the worker, if any.
+     */
+    void interrupt() {
+        try {
+            OutputStream control = process.getOutputStream();
+            control.write(JJavaWorker.INTERRUPT);
+            control.flush();
+        } catch (IOException e) {
+            // the worker is dead, nothing to interrupt
+        }
+    }
+
+    /**
+     * Returns the worker exit code, or null if it is still running after a short wait. The wait covers the gap between
+     * the worker closing its end of the socket and the process actually exiting.
+     */
+    Integer exitCode() {
+        try {
+            return process.waitFor(EXIT_WAIT_MS, TimeUnit.MILLISECONDS) ? process.exitValue() : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    void destroy() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+
+        process.destroy();
+    }
+
+    @Override
+    public String toString() {
+        return "Worker{id=" + id + ", pid=" + process.pid() + "}";
+    }
+}
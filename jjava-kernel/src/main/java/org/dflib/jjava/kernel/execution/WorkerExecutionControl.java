@@ -0,0 +1,369 @@
+package org.dflib.jjava.kernel.execution;
+
+import jdk.jshell.execution.StreamingExecutionControl;
+import jdk.jshell.execution.Util;
+import jdk.jshell.spi.ExecutionControl;
+import org.dflib.jjava.jupyter.kernel.util.PathsHandler;
+import org.dflib.jjava.jupyter.telemetry.TelemetryCollector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The kernel side of the snippet execution in a worker JVM taken from a {@link WorkerPool}. The snippet stdout and
+ * stderr are forwarded to whatever {@link System#out} and {@link System#err} are in the kernel at the time of the
+ * output, which is the notebook output during a cell execution. The snippet stdin is read from {@link System#in}. A
+ * worker that terminated is replaced with a new one from the pool, that gets the same classpath.
+ */
+class WorkerExecutionControl implements KernelExecutionControl {
+
+    static final String WORKER_TERMINATED_NAME = "Worker Terminated";
+
+    // the JShell protocol and the extension commands only send these from the worker, so anything else is rejected
+    // before it is deserialized
+    private static final ObjectInputFilter PROTOCOL_FILTER = WorkerResult.withSerialFilter(ObjectInputFilter.Config.createFilter(
+            "java.lang.String;java.lang.StackTraceElement;java.lang.Object;" + WorkerResult.class.getName() + ";maxdepth=5;!*"));
+
+    private final WorkerPool pool;
+    private final long timeoutDuration;
+    private final TimeUnit timeoutUnit;
+    private final ExecutionStrategy strategy;
+
+    // replayed to a replacement worker
+    private final List<String> classpath;
+
+    // the same classpath in the kernel, to load the snippet results
+    private final NotebookClassLoader classLoader;
+
+    // runs the kernel tasks, that can't run in the worker
+    private final JJavaExecutionControl kernelTasks;
+
+    private volatile Worker worker;
+    private volatile ExecutionControl remote;
+    private volatile boolean terminated;
+    private volatile TelemetryCollector<?> telemetryCollector;
+
+    private WorkerExecutionControl(WorkerPool pool, long timeoutDuration, TimeUnit timeoutUnit, ExecutionStrategy strategy) {
+        this.pool = pool;
+        this.timeoutDuration = timeoutDuration;
+        this.timeoutUnit = timeoutUnit;
+        this.strategy = strategy;
+        this.classpath = new CopyOnWriteArrayList<>();
+        this.classLoader = new NotebookClassLoader(WorkerExecutionControl.class.getClassLoader());
+        this.kernelTasks = new JJavaExecutionControl(new JJavaLoaderDelegate(), timeoutDuration, timeoutUnit, strategy);
+    }
+
+    static WorkerExecutionControl create(WorkerPool pool, long timeoutDuration, TimeUnit timeoutUnit, ExecutionStrategy strategy) {
+        WorkerExecutionControl control = new WorkerExecutionControl(pool, timeoutDuration, timeoutUnit, strategy);
+        control.connect();
+        return control;
+    }
+
+    private void connect() {
+        Worker worker = pool.take();
+        try {
+            worker.configure(timeoutDuration, timeoutUnit, strategy);
+
+            Map<String, OutputStream> outputs = Map.of("out", new CurrentStdOut(false), "err", new CurrentStdOut(true));
+            Map<String, InputStream> inputs = Map.of("in", new CurrentStdIn());
+
+            this.remote = Util.remoteInputOutput(
+                    worker.getInputStream(),
+                    worker.getOutputStream(),
+                    outputs,
+                    inputs,
+                    (in, out) -> {
+                        ((ObjectInputStream) in).setObjectInputFilter(PROTOCOL_FILTER);
+                        return new StreamingExecutionControl(out, in);
+                    });
+            this.worker = worker;
+            this.terminated = false;
+        } catch (IOException e) {
+            worker.destroy();
+            throw new UncheckedIOException("Failed to connect to a worker JVM", e);
+        }
+    }
+
+    @Override
+    public String replaceIfTerminated() {
+        Worker worker = this.worker;
+        if (!terminated && worker.isAlive()) {
+            return null;
+        }
+
+        Integer exitCode = worker.exitCode();
+        worker.destroy();
+        remote.close();
+
+        connect();
+        for (String path : classpath) {
+            try {
+                remote.addToClasspath(path);
+            } catch (ExecutionControlException e) {
+                throw new IllegalStateException("Failed to restore the classpath of the replacement worker JVM", e);
+            }
+        }
+
+        return exitCode != null ? "Worker JVM exited with code " + exitCode : "Worker JVM terminated";
+    }
+
+    @Override
+    public void load(ClassBytecodes[] cbcs) throws ClassInstallException, NotImplementedException, EngineTerminationException {
+        try {
+            remote.load(cbcs);
+        } catch (EngineTerminationException e) {
+            terminated = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void redefine(ClassBytecodes[] cbcs) throws ClassInstallException, NotImplementedException, EngineTerminationException {
+        try {
+            remote.redefine(cbcs);
+        } catch (EngineTerminationException e) {
+            terminated = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public String invoke(String className, String methodName) throws RunException, EngineTerminationException, InternalException {
+
+        // measures the round trip, as the snippet thread is in the other JVM
+        TelemetryCollector tc = telemetryCollector != null ? telemetryCollector : TelemetryCollector.DO_NOTHING;
+        Object m = tc.measurementStart();
+        try {
+            return remote.invoke(className, methodName);
+        } catch (EngineTerminationException e) {
+            // JShell would silently close itself on this exception, so it is reported as a snippet failure instead,
+            // and the worker is replaced before the next evaluation
+            terminated = true;
+            throw new UserException(e.getMessage(), WORKER_TERMINATED_NAME, e.getStackTrace());
+        } finally {
+            tc.measurementEnd(m);
+        }
+    }
+
+    @Override
+    public String varValue(String className, String varName) throws RunException, EngineTerminationException, InternalException {
+        try {
+            return remote.varValue(className, varName);
+        } catch (EngineTerminationException e) {
+            terminated = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void addToClasspath(String path) throws EngineTerminationException, InternalException {
+        try {
+            remote.addToClasspath(path);
+        } catch (EngineTerminationException e) {
+            terminated = true;
+            throw e;
+        }
+
+        classpath.add(path);
+        for (String next : PathsHandler.split(path)) {
+            try {
+                classLoader.addURL(Path.of(next).toUri().toURL());
+            } catch (MalformedURLException e) {
+                throw new InternalException("Unable to resolve classpath " + next + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void stop() throws EngineTerminationException, InternalException {
+        remote.stop();
+    }
+
+    @Override
+    public Object extensionCommand(String command, Object arg) throws RunException, EngineTerminationException, InternalException {
+        try {
+            return remote.extensionCommand(command, arg);
+        } catch (EngineTerminationException e) {
+            terminated = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public Object takeResult(String key) {
+        return takeResults(new String[]{key})[0];
+    }
+
+    @Override
+    public Object[] takeResults(String[] keys) {
+        Object[] results;
+        try {
+            results = (Object[]) extensionCommand(JJavaWorker.TAKE_RESULTS_COMMAND, keys);
+        } catch (ExecutionControlException e) {
+            throw new IllegalStateException("Failed to get the results " + String.join(", ", keys) + " from the worker JVM", e);
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            results[i] = received(results[i]);
+        }
+
+        return results;
+    }
+
+    @Override
+    public Object readVariable(String className, String varName) {
+        try {
+            return received(extensionCommand(JJavaWorker.READ_VARIABLE_COMMAND, new String[]{className, varName}));
+        } catch (ExecutionControlException e) {
+            throw new IllegalStateException("Failed to read variable '" + varName + "' from the worker JVM", e);
+        }
+    }
+
+    @Override
+    public void unloadClass(String className) {
+        try {
+            extensionCommand(JJavaWorker.UNLOAD_CLASS_COMMAND, className);
+        } catch (ExecutionControlException e) {
+            // the worker is dead or the class is gone, either way there's nothing to unload
+        }
+    }
+
+    @Override
+    public void interrupt() {
+        worker.interrupt();
+        kernelTasks.interrupt();
+    }
+
+    @Override
+    public Object execute(Callable<Object> task) throws Exception {
+        return kernelTasks.execute(() -> {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            return task.call();
+        });
+    }
+
+    /**
+     * Only true within a kernel task, as the snippets run in the worker JVM, and can not call back into the kernel.
+     */
+    @Override
+    public boolean isSnippetThread() {
+        return kernelTasks.isSnippetThread();
+    }
+
+    /**
+     * Returns a kernel ClassLoader of the notebook classpath. The snippet classes only exist in the worker.
+     */
+    @Override
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    @Override
+    public SnippetClassStats getClassStats() {
+        try {
+            // sent as an array of JDK types, like the rest of the worker data
+            long[] stats = (long[]) extensionCommand(JJavaWorker.CLASS_STATS_COMMAND, null);
+            return new SnippetClassStats((int) stats[0], (int) stats[1], stats[2], stats[3]);
+        } catch (ExecutionControlException e) {
+            throw new IllegalStateException("Failed to get the class stats from the worker JVM", e);
+        }
+    }
+
+    @Override
+    public void startThreadTelemetryCollection(TelemetryCollector<?> collector) {
+        this.telemetryCollector = collector;
+    }
+
+    @Override
+    public void stopThreadTelemetryCollection() {
+        TelemetryCollector<?> collector = this.telemetryCollector;
+        if (collector != null) {
+            collector.stop();
+            this.telemetryCollector = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        remote.close();
+        worker.destroy();
+        kernelTasks.close();
+
+        try {
+            classLoader.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private Object received(Object value) {
+        return value instanceof WorkerResult ? ((WorkerResult) value).value(classLoader) : value;
+    }
+
+    private static class NotebookClassLoader extends URLClassLoader {
+
+        static {
+            registerAsParallelCapable();
+        }
+
+        NotebookClassLoader(ClassLoader parent) {
+            super(new URL[0], parent);
+        }
+
+        // redefine here for access from the outer class. Otherwise, the "protected" method would be inaccessible
+        @Override
+        protected void addURL(URL url) {
+            super.addURL(url);
+        }
+    }
+
+    private static class CurrentStdOut extends OutputStream {
+
+        private final boolean err;
+
+        CurrentStdOut(boolean err) {
+            this.err = err;
+        }
+
+        @Override
+        public void write(int b) {
+            (err ? System.err : System.out).write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            (err ? System.err : System.out).write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            (err ? System.err : System.out).flush();
+        }
+    }
+
+    private static class CurrentStdIn extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            return System.in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return System.in.read(b, off, len);
+        }
+    }
+}
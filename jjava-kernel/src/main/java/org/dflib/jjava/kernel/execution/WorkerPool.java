@@ -0,0 +1,237 @@
+package org.dflib.jjava.kernel.execution;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of pre-started worker JVMs that run the notebook snippets out of the kernel process, so that a crash, an
+ * OOM or a {@code System.exit(..)} in a cell only takes down the worker. Each kernel takes a ready worker from the
+ * pool, and the pool starts a replacement in the background, so a new or a restarted kernel doesn't wait for a JVM to
+ * boot. The pool is meant to be shared by all the kernels created in the process.
+ *
+ * <p>The workers connect to the pool over loopback, which any local process can connect to. A worker proves it was
+ * started by the pool with a random secret, that it gets via its environment, so that it is not visible on the command
+ * line.
+ */
+public class WorkerPool implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("WorkerPool");
+
+    private static final long START_TIMEOUT_MS = 60_000;
+    private static final long ACCEPT_POLL_MS = 500;
+    private static final int SECRET_LENGTH = 32;
+
+    static final String SECRET_ENV = "JJAVA_WORKER_SECRET";
+
+    private final int size;
+    private final List<String> jvmOptions;
+    private final ServerSocket serverSocket;
+    private final BlockingQueue<Worker> ready;
+    private final ExecutorService launcher;
+    private final AtomicInteger workerIds;
+    private final byte[] secret;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool and starts launching the workers in the background.
+     *
+     * @param size       the number of idle workers to keep ready
+     * @param jvmOptions extra options of the worker JVMs, e.g. "-Xmx1g"
+     */
+    public WorkerPool(int size, List<String> jvmOptions) throws IOException {
+        if (size < 1) {
+            throw new IllegalArgumentException("Worker pool size must be positive: " + size);
+        }
+
+        this.size = size;
+        this.jvmOptions = List.copyOf(jvmOptions);
+        this.serverSocket = new ServerSocket(0, size, InetAddress.getLoopbackAddress());
+        this.ready = new LinkedBlockingQueue<>();
+        this.workerIds = new AtomicInteger(0);
+        this.secret = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(secret);
+        this.launcher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "jjava-worker-launcher");
+            t.setDaemon(true);
+            return t;
+        });
+
+        for (int i = 0; i < size; i++) {
+            launcher.execute(this::launch);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Takes a ready worker out of the pool, waiting for one to start if needed, and launches its replacement.
+     */
+    Worker take() {
+        if (closed) {
+            throw new IllegalStateException("Worker pool is closed");
+        }
+
+        launcher.execute(this::launch);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(START_TIMEOUT_MS);
+        try {
+            while (true) {
+                Worker worker = ready.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (worker == null) {
+                    throw new IllegalStateException("No worker JVM became available in " + START_TIMEOUT_MS + " ms");
+                }
+
+                // may have died while idle
+                if (worker.isAlive()) {
+                    return worker;
+                }
+
+                LOGGER.warn("Discarding a dead idle worker {}", worker);
+                worker.destroy();
+                launcher.execute(this::launch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a worker JVM", e);
+        }
+    }
+
+    private void launch() {
+        if (closed) {
+            return;
+        }
+
+        int id = workerIds.incrementAndGet();
+        long t0 = System.nanoTime();
+
+        ProcessBuilder builder = new ProcessBuilder(buildCommand(id))
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT);
+        builder.environment().put(SECRET_ENV, Base64.getEncoder().encodeToString(secret));
+
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException e) {
+            LOGGER.error("Failed to start a worker JVM", e);
+            return;
+        }
+
+        try {
+            Socket socket = accept(id, process, t0);
+            Worker worker = new Worker(id, process, socket);
+            LOGGER.info("Worker {} ready in {} ms", worker, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+            ready.add(worker);
+        } catch (IOException e) {
+            LOGGER.error("Worker JVM {} failed to connect", id, e);
+            process.destroy();
+        }
+    }
+
+    private Socket accept(int id, Process process, long startedAt) throws IOException {
+        while (true) {
+            long remaining = START_TIMEOUT_MS - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            if (remaining <= 0) {
+                throw new SocketTimeoutException("Worker did not connect in " + START_TIMEOUT_MS + " ms");
+            }
+
+            // wakes up periodically to give up on a worker that died during startup
+            serverSocket.setSoTimeout((int) Math.min(remaining, ACCEPT_POLL_MS));
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketTimeoutException e) {
+                if (!process.isAlive()) {
+                    throw new IOException("Worker exited with code " + process.exitValue() + " before connecting");
+                }
+                continue;
+            }
+
+            // a late connection from a worker that was given up on is dropped, and so is any connection that is not
+            // from a worker of this pool
+            if (handshake(socket, id, remaining)) {
+                return socket;
+            }
+
+            socket.close();
+        }
+    }
+
+    private boolean handshake(Socket socket, int id, long timeoutMs) {
+        try {
+            // a connection that sends nothing must not block the launcher
+            socket.setSoTimeout((int) timeoutMs);
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            int connectedId = in.readInt();
+            byte[] connectedSecret = new byte[SECRET_LENGTH];
+            in.readFully(connectedSecret);
+
+            if (!MessageDigest.isEqual(secret, connectedSecret)) {
+                LOGGER.warn("Rejected a worker connection from {} with a wrong secret", socket.getRemoteSocketAddress());
+                return false;
+            }
+
+            socket.setSoTimeout(0);
+            return connectedId == id;
+        } catch (IOException e) {
+            LOGGER.warn("Rejected a worker connection from {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            return false;
+        }
+    }
+
+    private List<String> buildCommand(int id) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(JJavaWorker.class.getName());
+        command.add(String.valueOf(serverSocket.getLocalPort()));
+        command.add(String.valueOf(id));
+        return command;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        launcher.shutdownNow();
+
+        Worker worker;
+        while ((worker = ready.poll()) != null) {
+            worker.destroy();
+        }
+
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.dflib.jjava.kernel.execution;
+
+import org.dflib.jjava.jupyter.kernel.display.DisplayDataRenderable;
+import org.dflib.jjava.jupyter.kernel.display.Renderer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * A snippet value sent by a worker JVM to the kernel. The value is serialized once by the worker, and deserialized by
+ * the kernel with the notebook classpath, which the worker and the kernel share. The snippet classes only exist in the
+ * worker though, so a value that refers to them is rendered by the worker if it can render itself, and is sent as a
+ * String otherwise.
+ */
+final class WorkerResult implements Serializable {
+
+    // the worker side has no kernel, so only the values that render themselves are rendered
+    private static final Renderer RENDERER = new Renderer();
+
+    // the values are made of any classes of the notebook classpath, so only the shape of the object graph is bounded,
+    // on top of the JVM-wide filter ("jdk.serialFilter"), if any
+    private static final ObjectInputFilter VALUE_FILTER = withSerialFilter(ObjectInputFilter.Config.createFilter("maxdepth=1000"));
+
+    private final byte[] serialized;
+
+    private WorkerResult(byte[] serialized) {
+        this.serialized = serialized;
+    }
+
+    /**
+     * Converts a snippet value to the form that can be sent to the kernel. Called by the worker.
+     */
+    static Object of(Object value) {
+        if (value == null) {
+            return null;
+        }
+
+        byte[] serialized = serialize(value);
+        if (serialized == null && value instanceof DisplayDataRenderable) {
+            serialized = serialize(RENDERER.render(value));
+        }
+
+        return serialized != null ? new WorkerResult(serialized) : String.valueOf(value);
+    }
+
+    private static byte[] serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ClasspathObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            return null;
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores the value with the classes of the notebook classpath. Called by the kernel.
+     */
+    Object value(ClassLoader classLoader) {
+        try (ObjectInputStream in = new ClasspathObjectInputStream(new ByteArrayInputStream(serialized), classLoader)) {
+            in.setObjectInputFilter(VALUE_FILTER);
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Failed to read the value sent by the worker JVM", e);
+        }
+    }
+
+    /**
+     * Combines the filter with the JVM-wide one, rejecting what either of them rejects.
+     */
+    static ObjectInputFilter withSerialFilter(ObjectInputFilter filter) {
+        ObjectInputFilter serialFilter = ObjectInputFilter.Config.getSerialFilter();
+        if (serialFilter == null) {
+            return filter;
+        }
+
+        return info -> {
+            ObjectInputFilter.Status status = filter.checkInput(info);
+            return status != ObjectInputFilter.Status.REJECTED
+                    && serialFilter.checkInput(info) == ObjectInputFilter.Status.REJECTED
+                    ? ObjectInputFilter.Status.REJECTED
+                    : status;
+        };
+    }
+
+    /**
+     * Rejects the objects of the snippet classes, that the kernel can't load.
+     */
+    private static class ClasspathObjectOutputStream extends ObjectOutputStream {
+
+        ClasspathObjectOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj.getClass().getClassLoader() instanceof JJavaLoaderDelegate.Generation) {
+                throw new NotSerializableException(obj.getClass().getName());
+            }
+
+            return obj;
+        }
+    }
+
+    private static class ClasspathObjectInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        ClasspathObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                // primitive types
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
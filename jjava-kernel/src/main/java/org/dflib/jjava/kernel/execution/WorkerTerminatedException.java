@@ -0,0 +1,30 @@
+package org.dflib.jjava.kernel.execution;
+
+/**
+ * Thrown when the worker JVM running the snippets terminated. The worker is replaced with a new one, and the notebook
+ * state that only existed in the terminated worker is dropped.
+ */
+public class WorkerTerminatedException extends RuntimeException {
+    private final String reason;
+    private final String source;
+
+    public WorkerTerminatedException(String reason, String source) {
+        this.reason = reason;
+        this.source = source;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String getMessage() {
+        return String.format("%s while executing: '%s'. The notebook state was lost, the cells must be run again",
+                this.reason,
+                this.source);
+    }
+}
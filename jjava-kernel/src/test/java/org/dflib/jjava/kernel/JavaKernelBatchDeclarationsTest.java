@@ -0,0 +1,135 @@
+package org.dflib.jjava.kernel;
+
+import org.dflib.jjava.kernel.execution.CompilationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JavaKernelBatchDeclarationsTest {
+
+    private JavaKernel kernel;
+
+    @BeforeEach
+    public void startKernel() {
+        kernel = JavaKernel.builder().name("TestKernel").batchDeclarations(true).build();
+        kernel.onStartup();
+    }
+
+    @AfterEach
+    public void stopKernel() {
+        kernel.onShutdown(false);
+    }
+
+    @Test
+    public void declarations() {
+        Object result = kernel.evalBuilder("import java.util.List;\n"
+                + "record Point(int x, int y) {}\n"
+                + "int sum(List<Point> points) { return points.stream().mapToInt(p -> p.x() + p.y()).sum(); }\n"
+                + "sum(List.of(new Point(1, 2), new Point(3, 4)))").eval();
+
+        assertEquals(10, result);
+    }
+
+    @Test
+    public void forwardReferences() {
+        Object result = kernel.evalBuilder("int a() { return b() + 1; }\n"
+                + "int b() { return C.VALUE; }\n"
+                + "class C { static final int VALUE = 41; }\n"
+                + "a()").eval();
+
+        assertEquals(42, result);
+    }
+
+    @Test
+    public void redefinitionInCell() {
+        Object result = kernel.evalBuilder("int f() { return 1; }\n"
+                + "int g() { return f(); }\n"
+                + "int f() { return 2; }\n"
+                + "g()").eval();
+
+        assertEquals(2, result);
+    }
+
+    @Test
+    public void redefinitionOfPreviousCell() {
+        kernel.evalBuilder("int f() { return 1; }").eval();
+        kernel.evalBuilder("int f() { return 2; }\n"
+                + "int g() { return f() * 10; }").eval();
+
+        assertEquals(20, kernel.evalBuilder("g()").eval());
+    }
+
+    @Test
+    public void compilationError() {
+        assertThrows(CompilationException.class, () -> kernel.evalBuilder("int f() { return 1; }\n"
+                + "int g() { return \"not an int\"; }\n"
+                + "int h() { return 3; }").eval());
+
+        assertEquals(1, kernel.evalBuilder("f()").eval());
+        assertThrows(CompilationException.class, () -> kernel.evalBuilder("h()").eval());
+    }
+
+    @Test
+    public void tempVarNames() {
+        kernel.evalBuilder("int f() { return 1; }\n"
+                + "f() + 1;\n"
+                + "int g() { return 2; }\n"
+                + "g() + 2;").eval();
+
+        assertEquals(2, kernel.evalBuilder("$1").eval());
+        assertEquals(4, kernel.evalBuilder("$2").eval());
+    }
+
+    // the same declarations submitted as separate cells are compiled one by one. A benchmark, only runs with the
+    // "benchmarks" profile
+    @Test
+    @EnabledIfSystemProperty(named = "jjava.benchmark", matches = "true")
+    public void manyDeclarations_fasterThanOneByOne() {
+        long[] batched = new long[3];
+        long[] oneByOne = new long[3];
+        for (int i = 0; i < batched.length; i++) {
+            List<String> declarations = declarations(40, i);
+
+            long t0 = System.nanoTime();
+            kernel.evalBuilder(String.join("\n", declarations)).eval();
+            batched[i] = System.nanoTime() - t0;
+
+            long t1 = System.nanoTime();
+            declarations.forEach(d -> kernel.evalBuilder(d).eval());
+            oneByOne[i] = System.nanoTime() - t1;
+
+            assertEquals(40, kernel.evalBuilder(sum(40)).eval());
+        }
+
+        Arrays.sort(batched);
+        Arrays.sort(oneByOne);
+        String report = "Batched: " + TimeUnit.NANOSECONDS.toMillis(batched[1])
+                + " ms, one by one: " + TimeUnit.NANOSECONDS.toMillis(oneByOne[1]) + " ms";
+        assertTrue(batched[1] < oneByOne[1], report);
+    }
+
+    private static List<String> declarations(int count, int version) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> i % 2 == 0
+                        ? "int m" + i + "() { return " + version + " * 0 + 1; }"
+                        : "record R" + i + "(int v) { int get() { return v + " + version + " * 0; } }")
+                .collect(Collectors.toList());
+    }
+
+    private static String sum(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> i % 2 == 0 ? "m" + i + "()" : "new R" + i + "(1).get()")
+                .collect(Collectors.joining(" + "));
+    }
+}
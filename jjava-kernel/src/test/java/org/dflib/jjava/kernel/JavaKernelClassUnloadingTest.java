@@ -0,0 +1,164 @@
+package org.dflib.jjava.kernel;
+
+import org.dflib.jjava.kernel.execution.SnippetClassStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JavaKernelClassUnloadingTest {
+
+    private JavaKernel kernel;
+
+    @BeforeEach
+    public void startKernel() {
+        kernel = JavaKernel.builder().name("TestKernel").build();
+        kernel.onStartup();
+    }
+
+    @AfterEach
+    public void stopKernel() {
+        kernel.onShutdown(false);
+    }
+
+    @Test
+    public void crossGenerationAccess() {
+        kernel.evalBuilder("class Counter { int count; void inc() { count++; } }").eval();
+        kernel.evalBuilder("Counter c = new Counter();").eval();
+        kernel.evalBuilder("void incTwice(Counter x) { x.inc(); x.inc(); }").eval();
+        kernel.evalBuilder("incTwice(c);").eval();
+        assertEquals(2, kernel.evalBuilder("c.count").eval());
+
+        // redefining a class the other snippets depend on
+        kernel.evalBuilder("class Counter { int count; void inc() { count += 10; } }").eval();
+        kernel.evalBuilder("Counter d = new Counter();").eval();
+        kernel.evalBuilder("incTwice(d);").eval();
+        assertEquals(20, kernel.evalBuilder("d.count").eval());
+
+        // the snippet classes are visible through the context ClassLoader
+        assertEquals(true, kernel.evalBuilder("Class.forName(d.getClass().getName(), false, "
+                + "Thread.currentThread().getContextClassLoader()) == d.getClass()").eval());
+    }
+
+    @Test
+    public void redefine_unloadsClasses() {
+        kernel.evalBuilder("int f() { return 1; }").eval();
+        SnippetClassStats s1 = kernel.getEvaluator().getClassStats();
+        long unloaded1 = unloadedAfterGc();
+
+        for (int i = 0; i < 50; i++) {
+            kernel.evalBuilder("int f() { return " + i + "; }").eval();
+        }
+
+        SnippetClassStats s2 = kernel.getEvaluator().getClassStats();
+        assertEquals(s1.getLiveClasses(), s2.getLiveClasses(), s2.toString());
+        assertEquals(s1.getLiveGenerations(), s2.getLiveGenerations(), s2.toString());
+        assertEquals(0, s2.getRetainedBytecodeSize());
+        assertEquals(49, kernel.evalBuilder("f()").eval());
+
+        long unloaded2 = unloadedAfterGc();
+        assertTrue(unloaded2 - unloaded1 >= 50, "Unloaded only " + (unloaded2 - unloaded1) + " classes");
+    }
+
+    @Test
+    public void redefine_directOnJShell_unloadsClasses() {
+        kernel.getJShell().eval("int g() { return 1; }");
+        SnippetClassStats s1 = kernel.getEvaluator().getClassStats();
+
+        for (int i = 0; i < 10; i++) {
+            kernel.getJShell().eval("int g() { return " + i + "; }");
+        }
+
+        SnippetClassStats s2 = kernel.getEvaluator().getClassStats();
+        assertEquals(s1.getLiveClasses(), s2.getLiveClasses(), s2.toString());
+        assertEquals(9, kernel.evalBuilder("g()").eval());
+    }
+
+    // A method is redefined 10,000 times, as in a long notebook session. The metaspace must not grow with the number
+    // of the redefinitions, as the classes of the overwritten snippets are unloaded. Takes several minutes, so only
+    // runs with "-Djjava.soak=true"
+    @Test
+    @EnabledIfSystemProperty(named = "jjava.soak", matches = "true")
+    public void redefine_metaspaceFlat() {
+        redefine(500);
+        long before = metaspaceAfterGc();
+
+        redefine(10_000);
+        long after = metaspaceAfterGc();
+
+        // ~1 KB per class would be ~10 MB if the classes were retained
+        long growth = after - before;
+        assertTrue(growth < 1024 * 1024, "Metaspace grew by " + growth / 1024 + " KB");
+        assertEquals(9_999, kernel.evalBuilder("f(0)").eval());
+    }
+
+    // The cost of the redefinition bookkeeping must not depend on the number of snippets in the session. A benchmark,
+    // only runs with the "benchmarks" profile. JShell's own eval gets slower as the session grows, so a session of
+    // 10,000 snippets takes very long to build, and is only added with "-Djjava.soak=true"
+    @Test
+    @EnabledIfSystemProperty(named = "jjava.benchmark", matches = "true")
+    public void redefine_costFlat() {
+        boolean soak = Boolean.getBoolean("jjava.soak");
+        int[] sessionSizes = soak ? new int[]{100, 1_000, 10_000} : new int[]{100, 1_000};
+        long[] medians = new long[sessionSizes.length];
+
+        int snippets = 0;
+        for (int i = 0; i < sessionSizes.length; i++) {
+            for (; snippets < sessionSizes[i]; snippets++) {
+                kernel.evalBuilder("int v" + snippets + " = " + snippets + ";").eval();
+            }
+
+            medians[i] = medianRedefinitionNanos();
+        }
+
+        String report = Arrays.stream(medians)
+                .mapToObj(m -> String.valueOf(TimeUnit.NANOSECONDS.toMillis(m)))
+                .collect(Collectors.joining(" ms, ", "Median redefinition time by session size: ", " ms"));
+
+        for (int i = 1; i < medians.length; i++) {
+            assertTrue(medians[i] < 2 * medians[0], report);
+        }
+    }
+
+    private long medianRedefinitionNanos() {
+        long[] times = new long[21];
+        for (int i = 0; i < times.length; i++) {
+            long t0 = System.nanoTime();
+            kernel.evalBuilder("int f() { return " + i + "; }").eval();
+            times[i] = System.nanoTime() - t0;
+        }
+
+        Arrays.sort(times);
+        return times[times.length / 2];
+    }
+
+    private void redefine(int times) {
+        for (int i = 0; i < times; i++) {
+            kernel.evalBuilder("int f(int x) { return x + " + i + "; }").eval();
+        }
+    }
+
+    private long metaspaceAfterGc() {
+        gc();
+        return kernel.getEvaluator().getClassStats().getMetaspaceUsed();
+    }
+
+    private static long unloadedAfterGc() {
+        gc();
+        return ManagementFactory.getClassLoadingMXBean().getUnloadedClassCount();
+    }
+
+    private static void gc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.dflib.jjava.kernel;
+
+import jdk.jshell.SourceCodeAnalysis;
+import org.dflib.jjava.jupyter.kernel.ReplacementOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JavaKernelCompletionTest {
+
+    private static final int JARS = 200;
+    private static final int CLASSES_PER_JAR = 5;
+
+    // the completions requested while typing each of these, one char at a time
+    private static final String[] TYPED = {
+            "java.util.Collections.unmodifiable",
+            "String.valueOf(1).toUpperC",
+            "generated.lib12.Type",
+            "Math.multiplyE"
+    };
+
+    private static String largeClasspath;
+
+    private JavaKernel kernel;
+
+    @BeforeEach
+    public void startKernel() {
+        kernel = JavaKernel.builder().name("TestKernel").extensionsEnabled(false).build();
+        kernel.onStartup();
+    }
+
+    @AfterEach
+    public void stopKernel() {
+        kernel.onShutdown(false);
+    }
+
+    @Test
+    public void complete_sameAsUncached() throws Exception {
+        kernel.addToClasspath(largeClasspath());
+        awaitClasspathIndexed();
+
+        for (String typed : TYPED) {
+            for (int at = typed.indexOf('.') + 1; at <= typed.length(); at++) {
+                String code = typed.substring(0, at);
+                assertEquals(uncached(code), options(kernel.complete(code, at)), code);
+            }
+        }
+    }
+
+    @Test
+    public void complete_invalidatedBySnippets() {
+        assertFalse(options(kernel.complete("myVa", 4)).contains("myVariable"));
+
+        kernel.evalBuilder("int myVariable = 1;").eval();
+        assertTrue(options(kernel.complete("myVa", 4)).contains("myVariable"));
+        assertTrue(options(kernel.complete("myVar", 5)).contains("myVariable"));
+    }
+
+    @Test
+    public void complete_invalidatedByClasspath() throws Exception {
+        assertFalse(options(kernel.complete("extra.l", 7)).contains("lib0."));
+
+        kernel.addToClasspath(buildClasspath("extra", 1));
+        awaitClasspathIndexed();
+        assertTrue(options(kernel.complete("extra.l", 7)).contains("lib0."));
+    }
+
+    // Compares the latency percentiles of the completions requested while typing, with and without the cache. A
+    // benchmark, only runs with the "benchmarks" profile
+    @Test
+    @EnabledIfSystemProperty(named = "jjava.benchmark", matches = "true")
+    public void complete_latencyPercentiles() throws Exception {
+        kernel.addToClasspath(largeClasspath());
+        awaitClasspathIndexed();
+
+        List<Long> uncached = new ArrayList<>();
+        List<Long> cached = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            for (String typed : TYPED) {
+                for (int at = typed.indexOf('.') + 1; at <= typed.length(); at++) {
+                    String code = typed.substring(0, at);
+
+                    long t0 = System.nanoTime();
+                    uncached(code);
+                    uncached.add(System.nanoTime() - t0);
+
+                    long t1 = System.nanoTime();
+                    kernel.complete(code, at);
+                    cached.add(System.nanoTime() - t1);
+                }
+
+                // the next round starts from scratch
+                kernel.evalBuilder("int round = " + round + ";").eval();
+            }
+        }
+
+        long[] u = percentiles(uncached);
+        long[] c = percentiles(cached);
+        String report = String.format("Completion latency on a classpath of %d jars, p50/p90/p99: "
+                        + "uncached %d/%d/%d us, cached %d/%d/%d us",
+                JARS, u[0], u[1], u[2], c[0], c[1], c[2]);
+
+        assertTrue(c[0] * 5 < u[0], report);
+    }
+
+    // JShell indexes the classpath in background, so the packages are not suggested right away
+    private void awaitClasspathIndexed() throws InterruptedException {
+        SourceCodeAnalysis sca = kernel.getJShell().sourceCodeAnalysis();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!CompletionCache.isClasspathIndexed(sca) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private List<String> uncached(String code) {
+        List<SourceCodeAnalysis.Suggestion> suggestions = kernel.getJShell()
+                .sourceCodeAnalysis()
+                .completionSuggestions(code, code.length(), new int[1]);
+
+        return suggestions.stream()
+                .sorted((s1, s2) -> Boolean.compare(s2.matchesType(), s1.matchesType()))
+                .map(SourceCodeAnalysis.Suggestion::continuation)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> options(ReplacementOptions options) {
+        return options != null ? options.getReplacements() : List.of();
+    }
+
+    private static long[] percentiles(List<Long> nanos) {
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new long[]{
+                TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length / 2]),
+                TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length * 9 / 10]),
+                TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length * 99 / 100])
+        };
+    }
+
+    private static synchronized String largeClasspath() throws IOException {
+        if (largeClasspath == null) {
+            largeClasspath = buildClasspath("generated", JARS);
+        }
+
+        return largeClasspath;
+    }
+
+    // Builds small jars, each with its own package, compiled together with a single javac run
+    private static String buildClasspath(String rootPackage, int jarCount) throws IOException {
+        Path dir = Files.createTempDirectory("jjava-completion-");
+        Path src = dir.resolve("src");
+        Path classes = dir.resolve("classes");
+
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < jarCount; i++) {
+            Path pkg = Files.createDirectories(src.resolve(rootPackage + "/lib" + i));
+            for (int j = 0; j < CLASSES_PER_JAR; j++) {
+                Path file = pkg.resolve("Type" + j + ".java");
+                Files.writeString(file, "package " + rootPackage + ".lib" + i + ";\n"
+                        + "public class Type" + j + " {\n"
+                        + "    public int value" + j + "() { return " + j + "; }\n"
+                        + "    public static String name() { return \"Type" + j + "\"; }\n"
+                        + "}\n");
+                sources.add(file.toString());
+            }
+        }
+
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        List<String> args = new ArrayList<>(List.of("-d", classes.toString()));
+        args.addAll(sources);
+        assertEquals(0, javac.run(null, null, null, args.toArray(new String[0])));
+
+        List<String> jars = new ArrayList<>();
+        for (int i = 0; i < jarCount; i++) {
+            Path jar = dir.resolve("lib" + i + ".jar");
+            String pkg = rootPackage + "/lib" + i + "/";
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+                for (int j = 0; j < CLASSES_PER_JAR; j++) {
+                    String entry = pkg + "Type" + j + ".class";
+                    out.putNextEntry(new JarEntry(entry));
+                    copy(classes.resolve(entry), out);
+                    out.closeEntry();
+                }
+            }
+            jars.add(jar.toString());
+        }
+
+        return String.join(File.pathSeparator, jars);
+    }
+
+    private static void copy(Path file, OutputStream out) throws IOException {
+        out.write(Files.readAllBytes(file));
+    }
+}
@@ -0,0 +1,255 @@
+package org.dflib.jjava.kernel;
+
+import jdk.jshell.ImportSnippet;
+import jdk.jshell.SourceCodeAnalysis;
+import org.dflib.jjava.jupyter.kernel.display.DisplayData;
+import org.dflib.jjava.jupyter.kernel.display.mime.MIMEType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JavaKernelDocumentationTest {
+
+    // the code inspected with the cursor at the end
+    private static final String[] INSPECTED = {
+            "String.format(",
+            "String.valueOf(",
+            "Math.max(",
+            "java.util.Objects.requireNonNull(",
+            "java.util.Arrays.copyOf(",
+            "new StringBuilder(",
+            "Integer.MAX_VALUE",
+            "java.util.concurrent.TimeUnit.SECONDS",
+            "java.util.Map.Entry",
+            "System.out.println("
+    };
+
+    private static final List<Path> TEMP_DIRS = new ArrayList<>();
+
+    private static DocumentationIndex index;
+
+    private JavaKernel kernel;
+
+    @BeforeAll
+    public static void buildIndex() throws Exception {
+        // only "java.base" to keep the test reasonably fast
+        index = new DocumentationIndex(tempDir("jjava-doc-index-"), m -> m.equals("java.base"));
+        index.indexJdk();
+        index.whenIndexed().get(5, TimeUnit.MINUTES);
+    }
+
+    @AfterAll
+    public static void closeIndex() throws IOException {
+        index.close();
+
+        for (Path dir : TEMP_DIRS) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @BeforeEach
+    public void startKernel() {
+        kernel = JavaKernel.builder().name("TestKernel").documentationIndex(index).build();
+        kernel.onStartup();
+    }
+
+    @AfterEach
+    public void stopKernel() {
+        kernel.onShutdown(false);
+    }
+
+    @Test
+    public void inspect_sameAsSources() {
+        for (String code : INSPECTED) {
+            assertEquals(fromSources(code), text(kernel.inspect(code, code.length() - 1, false)), code);
+        }
+    }
+
+    @Test
+    public void inspect_indexed() {
+        for (String code : INSPECTED) {
+            for (SourceCodeAnalysis.Documentation d : signatures(code)) {
+                assertNotNull(index.javadoc(d.signature(), imports()), d.signature());
+            }
+        }
+    }
+
+    @Test
+    public void inspect_importedClasses() {
+        kernel.evalBuilder("import java.util.*;").eval();
+        kernel.evalBuilder("import java.util.concurrent.ConcurrentHashMap;").eval();
+
+        for (String code : new String[]{"List.of(", "ConcurrentHashMap.newKeySet(", "Map.Entry.comparingByKey("}) {
+            List<SourceCodeAnalysis.Documentation> signatures = signatures(code);
+            assertTrue(!signatures.isEmpty(), code);
+            for (SourceCodeAnalysis.Documentation d : signatures) {
+                assertNotNull(index.javadoc(d.signature(), imports()), d.signature());
+            }
+
+            assertEquals(fromSources(code), text(kernel.inspect(code, code.length() - 1, false)), code);
+        }
+    }
+
+    @Test
+    public void inspect_notIndexed() {
+        kernel.evalBuilder("/** Not indexed */ int notIndexed(int x) { return x; }").eval();
+
+        assertNull(index.javadoc(signatures("notIndexed(").get(0).signature(), imports()));
+        assertEquals(fromSources("notIndexed("), text(kernel.inspect("notIndexed(", 10, false)));
+    }
+
+    @Test
+    public void inspect_classpathSources() throws Exception {
+        Path jar = buildJarWithSources();
+        kernel.addToClasspath(jar.toString());
+        index.whenIndexed().get(1, TimeUnit.MINUTES);
+
+        // JShell itself only reads the JDK sources
+        String code = "documented.Greeter.greet(";
+        String signature = signatures(code).get(0).signature();
+        assertEquals(signature, fromSources(code));
+        assertEquals(signature + "\n"
+                        + " Returns a greeting.\n"
+                        + " @param name who to greet\n",
+                text(kernel.inspect(code, code.length() - 1, false)));
+
+        // the overloads that only differ by the parameter type package
+        String overloads = "documented.Greeter.greetOn(";
+        List<SourceCodeAnalysis.Documentation> overloadSignatures = signatures(overloads);
+        assertEquals(2, overloadSignatures.size());
+        for (SourceCodeAnalysis.Documentation d : overloadSignatures) {
+            String expected = d.signature().contains("java.sql.Date")
+                    ? "Greets on an SQL date. "
+                    : "Greets on a date. ";
+            assertEquals(expected, index.javadoc(d.signature(), imports()), d.signature());
+        }
+    }
+
+    @Test
+    public void keys_qualifiedParameterTypes() {
+        List<String> keys = DocumentationIndex.keys("String documented.Greeter.greetOn(java.sql.Date date, int... n)")
+                .stream()
+                .map(k -> k[0] + "#" + k[1])
+                .collect(Collectors.toList());
+
+        assertEquals(List.of(
+                "documented.Greeter#greetOn(java.sql.Date,int[])",
+                "documented.Greeter#greetOn(Date,int[])"), keys);
+    }
+
+    // Compares the latency of the inspections that read the javadoc from the sources with the indexed ones
+    @Test
+    public void inspect_latencyColdVsIndexed() {
+        SourceCodeAnalysis sca = kernel.getJShell().sourceCodeAnalysis();
+
+        long[] cold = new long[INSPECTED.length * 3];
+        long[] indexed = new long[INSPECTED.length * 3];
+        for (int i = 0; i < cold.length; i++) {
+            String code = INSPECTED[i % INSPECTED.length];
+
+            long t0 = System.nanoTime();
+            sca.documentation(code, code.length(), true);
+            cold[i] = System.nanoTime() - t0;
+
+            long t1 = System.nanoTime();
+            kernel.inspect(code, code.length() - 1, false);
+            indexed[i] = System.nanoTime() - t1;
+        }
+
+        Arrays.sort(cold);
+        Arrays.sort(indexed);
+        String report = String.format("Inspect latency, p50/p90: from sources %d/%d ms, indexed %d/%d ms",
+                TimeUnit.NANOSECONDS.toMillis(cold[cold.length / 2]),
+                TimeUnit.NANOSECONDS.toMillis(cold[cold.length * 9 / 10]),
+                TimeUnit.NANOSECONDS.toMillis(indexed[indexed.length / 2]),
+                TimeUnit.NANOSECONDS.toMillis(indexed[indexed.length * 9 / 10]));
+
+        assertTrue(indexed[indexed.length / 2] * 2 < cold[cold.length / 2], report);
+    }
+
+    private List<SourceCodeAnalysis.Documentation> signatures(String code) {
+        return kernel.getJShell().sourceCodeAnalysis().documentation(code, code.length(), false);
+    }
+
+    private List<String> imports() {
+        return kernel.getJShell().imports().map(ImportSnippet::fullname).collect(Collectors.toList());
+    }
+
+    // formatted the same way as the inspection text
+    private String fromSources(String code) {
+        return kernel.getJShell().sourceCodeAnalysis().documentation(code, code.length(), true)
+                .stream()
+                .map(d -> d.javadoc() != null ? d.signature() + '\n' + d.javadoc() : d.signature())
+                .collect(Collectors.joining("\n\n"));
+    }
+
+    private static String text(DisplayData data) {
+        return data != null ? (String) data.getData(MIMEType.TEXT_PLAIN) : null;
+    }
+
+    private static Path buildJarWithSources() throws IOException {
+        Path dir = tempDir("jjava-doc-jar-");
+        Path source = Files.createDirectories(dir.resolve("src/documented")).resolve("Greeter.java");
+        Files.writeString(source, "package documented;\n"
+                + "import java.util.Date;\n"
+                + "public class Greeter {\n"
+                + "    /**\n"
+                + "     * Returns a greeting.\n"
+                + "     * @param name who to greet\n"
+                + "     */\n"
+                + "    public static String greet(String name) { return \"Hello, \" + name; }\n"
+                + "    /** Greets on a date. */\n"
+                + "    public static String greetOn(Date date) { return \"Hello on \" + date; }\n"
+                + "    /** Greets on an SQL date. */\n"
+                + "    public static String greetOn(java.sql.Date date) { return \"Hello on \" + date; }\n"
+                + "}\n");
+
+        Path classes = dir.resolve("classes");
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-d", classes.toString(), source.toString()));
+
+        Path jar = dir.resolve("greeter-1.0.jar");
+        writeJar(jar, "documented/Greeter.class", classes.resolve("documented/Greeter.class"));
+        writeJar(dir.resolve("greeter-1.0-sources.jar"), "documented/Greeter.java", source);
+        return jar;
+    }
+
+    private static Path tempDir(String prefix) throws IOException {
+        Path dir = Files.createTempDirectory(prefix);
+        TEMP_DIRS.add(dir);
+        return dir;
+    }
+
+    private static void writeJar(Path jar, String entry, Path file) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(entry));
+            out.write(Files.readAllBytes(file));
+            out.closeEntry();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package org.dflib.jjava.kernel;
+
+import org.dflib.jjava.jupyter.kernel.display.DisplayData;
+import org.dflib.jjava.jupyter.kernel.display.mime.MIMEType;
+import org.dflib.jjava.jupyter.kernel.magic.LineMagic;
+import org.dflib.jjava.jupyter.kernel.magic.MagicHandles;
+import org.dflib.jjava.kernel.execution.EvaluationInterruptedException;
+import org.dflib.jjava.kernel.execution.EvaluationTimeoutException;
+import org.dflib.jjava.kernel.magics.ClasspathMagic;
+import org.dflib.jjava.kernel.magics.TimeMagic;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JavaKernelMagicsTest {
+
+    private JavaKernel kernel;
+
+    // a stand-in for "%maven", which needs the network
+    private List<List<String>> mavenCalls;
+
+    @BeforeEach
+    public void startKernel() {
+        mavenCalls = new ArrayList<>();
+        LineMagic<String, JavaKernel> maven = (kernel, args) -> {
+            mavenCalls.add(args);
+            return String.join(",", args);
+        };
+
+        // a stand-in for a long "%maven" or "%load"
+        LineMagic<String, JavaKernel> sleep = (kernel, args) -> {
+            try {
+                Thread.sleep(Long.parseLong(args.get(0)));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return "slept";
+        };
+
+        TimeMagic time = new TimeMagic();
+        kernel = JavaKernel.builder()
+                .name("TestKernel")
+                .lineMagic("classpath", new ClasspathMagic())
+                .lineMagic("maven", maven)
+                .lineMagic("sleep", sleep)
+                .lineMagic("time", time)
+                .cellMagic("time", time)
+                .build();
+        kernel.onStartup();
+    }
+
+    @AfterEach
+    public void stopKernel() {
+        kernel.onShutdown(false);
+    }
+
+    @Test
+    public void magicsOnly_notCompiled() {
+        long snippets = kernel.getJShell().snippets().count();
+
+        Object result = kernel.evalBuilder("// dependencies\n%maven org:a:1.0\n  %maven org:b:1.0 org:c:1.0\n")
+                .resolveMagics()
+                .eval();
+
+        assertEquals("org:b:1.0,org:c:1.0", result);
+        assertEquals(List.of(List.of("org:a:1.0"), List.of("org:b:1.0", "org:c:1.0")), mavenCalls);
+        assertEquals(snippets, kernel.getJShell().snippets().count());
+    }
+
+    @Test
+    public void cellMagic_notCompiled() {
+        long snippets = kernel.getJShell().snippets().count();
+
+        DisplayData result = kernel.evalBuilder("%%time\n1 + 1").resolveMagics().renderResults().eval();
+
+        assertEquals("2", result.getData(MIMEType.TEXT_PLAIN));
+
+        // only the timed code is compiled
+        assertEquals(snippets + 1, kernel.getJShell().snippets().count());
+    }
+
+    @Test
+    public void mixed() {
+        String cell = "int x = 1;\n%maven org:a:1.0\nx + 1";
+
+        String resolved = kernel.getMagicsResolver().resolve(cell);
+        assertFalse(resolved.contains("org:a"), resolved);
+        assertFalse(resolved.contains("Base64"), resolved);
+
+        assertEquals(2, kernel.evalBuilder(cell).resolveMagics().eval());
+        assertEquals(List.of(List.of("org:a:1.0")), mavenCalls);
+    }
+
+    @Test
+    public void mixed_magicInMethod() {
+        kernel.evalBuilder("void f() {\n%maven org:a:1.0\n}").resolveMagics().eval();
+        kernel.evalBuilder("f();").resolveMagics().eval();
+        kernel.evalBuilder("f();").resolveMagics().eval();
+
+        assertEquals(List.of(List.of("org:a:1.0"), List.of("org:a:1.0")), mavenCalls);
+    }
+
+    @Test
+    public void magicsOnly_interrupt() throws Exception {
+        CompletableFuture<Object> result = CompletableFuture.supplyAsync(() -> kernel.evalBuilder("%sleep 60000").resolveMagics().eval());
+        Thread.sleep(1000);
+        kernel.interrupt();
+
+        Exception e = assertThrows(Exception.class, () -> result.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof EvaluationInterruptedException, String.valueOf(e.getCause()));
+
+        assertEquals("slept", kernel.evalBuilder("%sleep 1").resolveMagics().eval());
+    }
+
+    @Test
+    public void magicsOnly_timeout() {
+        JavaKernel timed = JavaKernel.builder()
+                .name("TestKernel")
+                .timeout(500, TimeUnit.MILLISECONDS)
+                .lineMagic("sleep", (LineMagic<String, JavaKernel>) (kernel, args) -> {
+                    try {
+                        Thread.sleep(60_000);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    return "slept";
+                })
+                .build();
+
+        // stopped by @AfterEach
+        kernel.onShutdown(false);
+        kernel = timed;
+        kernel.onStartup();
+
+        assertThrows(EvaluationTimeoutException.class, () -> timed.evalBuilder("%sleep").resolveMagics().eval());
+    }
+
+    @Test
+    public void magicHandles_clearedOnShutdown() {
+        kernel.evalBuilder("int x = 1;\n%maven org:a:1.0\nx + 1").resolveMagics().eval();
+        MagicHandles handles = kernel.getMagicsResolver().getMagicHandles();
+        assertEquals(1, handles.size());
+
+        kernel.onShutdown(false);
+        assertEquals(0, handles.size());
+
+        // stopped by @AfterEach
+        startKernel();
+    }
+
+    // Compares the latency of the magic cells invoked directly with the same magics transpiled and compiled. A
+    // benchmark, only runs with the "benchmarks" profile
+    @Test
+    @EnabledIfSystemProperty(named = "jjava.benchmark", matches = "true")
+    public void magics_latencyDirectVsCompiled() throws Exception {
+        Path classes = Files.createTempDirectory("jjava-magics-");
+        String[] cells = {"%classpath " + classes, "%maven org:a:1.0", "%%time\n1 + 1"};
+
+        StringBuilder report = new StringBuilder("Magic cell latency, direct vs compiled:");
+        for (String cell : cells) {
+            long[] direct = new long[7];
+            long[] compiled = new long[7];
+            for (int i = 0; i < direct.length; i++) {
+                long t0 = System.nanoTime();
+                kernel.evalBuilder(cell).resolveMagics().eval();
+                direct[i] = System.nanoTime() - t0;
+
+                long t1 = System.nanoTime();
+                kernel.evalBuilder(kernel.getMagicsResolver().resolve(cell)).eval();
+                compiled[i] = System.nanoTime() - t1;
+            }
+
+            Arrays.sort(direct);
+            Arrays.sort(compiled);
+            report.append(String.format(" '%s' %d/%d us;",
+                    cell.split("\\s")[0],
+                    TimeUnit.NANOSECONDS.toMicros(direct[direct.length / 2]),
+                    TimeUnit.NANOSECONDS.toMicros(compiled[compiled.length / 2])));
+
+            assertTrue(direct[direct.length / 2] < compiled[compiled.length / 2], report.toString());
+        }
+    }
+}
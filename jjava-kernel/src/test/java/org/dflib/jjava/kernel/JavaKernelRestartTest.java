@@ -0,0 +1,150 @@
+package org.dflib.jjava.kernel;
+
+import org.dflib.jjava.jupyter.channels.JupyterConnection;
+import org.dflib.jjava.jupyter.messages.Header;
+import org.dflib.jjava.jupyter.messages.Message;
+import org.dflib.jjava.jupyter.messages.MessageType;
+import org.dflib.jjava.jupyter.messages.request.ExecuteRequest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.dflib.jjava.jupyter.channels.TestConnections.newConnProps;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JavaKernelRestartTest {
+
+    private static JavaKernel startKernel() {
+        JavaKernel kernel = JavaKernel.builder().name("TestKernel").build();
+        kernel.startWarmUp(kernel::onStartup);
+        return kernel;
+    }
+
+    private static JavaKernel restartKernel() {
+        JavaKernel kernel = JavaKernel.builder().name("TestKernel").build();
+        kernel.startWarmUp(kernel::onStartup, false);
+        return kernel;
+    }
+
+    @Test
+    public void restartInProcess_disabled() {
+        JavaKernel kernel = startKernel();
+        try {
+            assertThrows(IllegalStateException.class, kernel::restartInProcess);
+        } finally {
+            kernel.onShutdown(false);
+        }
+    }
+
+    @Test
+    public void restartInProcess_discardsState() {
+        JavaKernel kernel = startKernel();
+        kernel.setWarmRestartFactory(JavaKernelRestartTest::restartKernel);
+
+        kernel.evalBuilder("int x = 5;").eval();
+        JavaKernel restarted = (JavaKernel) kernel.restartInProcess();
+        try {
+            assertNotSame(kernel, restarted);
+            assertNotSame(kernel.getJShell(), restarted.getJShell());
+            assertEquals(0L, restarted.getJShell().variables().count());
+
+            restarted.evalBuilder("int x = 6;").eval();
+            assertEquals(12, restarted.evalBuilder("x * 2").eval());
+        } finally {
+            restarted.onShutdown(false);
+        }
+    }
+
+    @Test
+    public void restartInProcess_releasesClassLoaders() throws InterruptedException {
+        List<WeakReference<Object>> loaders = new ArrayList<>();
+        long[] restartNanos = new long[10];
+
+        JavaKernel kernel = startKernel();
+        kernel.setWarmRestartFactory(JavaKernelRestartTest::restartKernel);
+        try {
+            for (int i = 0; i < restartNanos.length; i++) {
+                Object loader = kernel.evalBuilder("class Data { byte[] payload = new byte[4 * 1024 * 1024]; }\n" +
+                        "new Data().getClass().getClassLoader()").eval();
+                loaders.add(new WeakReference<>(loader));
+
+                // measuring until the new kernel produces a result, i.e. including its background initialization
+                long t0 = System.nanoTime();
+                kernel = (JavaKernel) kernel.restartInProcess();
+                assertEquals(2, kernel.evalBuilder("1 + 1").eval());
+                restartNanos[i] = System.nanoTime() - t0;
+            }
+        } finally {
+            kernel.onShutdown(false);
+        }
+
+        for (int i = 0; i < 20 && loaders.stream().anyMatch(r -> r.get() != null); i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        long leaked = loaders.stream().filter(r -> r.get() != null).count();
+        assertEquals(0, leaked, leaked + " of " + loaders.size() + " snippet class loaders were not collected");
+
+        // the JVM is warm at this point, so a restart only has to create a new JShell
+        long[] sorted = restartNanos.clone();
+        Arrays.sort(sorted);
+        long medianMs = TimeUnit.NANOSECONDS.toMillis(sorted[sorted.length / 2]);
+        assertTrue(medianMs < 1000, "Median restart: " + medianMs + " ms");
+    }
+
+    // The channel threads are shared by the kernels that replace each other, so each request must see the class loader
+    // of the current kernel, and leave the thread as it was
+    @Test
+    public void restartInProcess_contextClassLoader() throws Exception {
+        List<ClassLoader> seen = new ArrayList<>();
+        JavaKernel.Builder builder = JavaKernel.builder()
+                .name("TestKernel")
+                .lineMagic("loader", (kernel, args) -> seen.add(Thread.currentThread().getContextClassLoader()));
+
+        JavaKernel kernel = builder.build();
+        kernel.startWarmUp(kernel::onStartup);
+        kernel.setWarmRestartFactory(() -> {
+            JavaKernel k = builder.build();
+            k.startWarmUp(k::onStartup, false);
+            return k;
+        });
+
+        JupyterConnection connection = new JupyterConnection(newConnProps());
+        kernel.becomeHandlerForConnection(connection);
+
+        ClassLoader threadLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            execute(connection, "%loader");
+            ClassLoader before = kernel.getClassLoader();
+
+            kernel = (JavaKernel) kernel.restartInProcess();
+            execute(connection, "%loader");
+
+            assertEquals(List.of(before, kernel.getClassLoader()), seen);
+            assertNotSame(seen.get(0), seen.get(1));
+            assertSame(threadLoader, Thread.currentThread().getContextClassLoader());
+        } finally {
+            kernel.onShutdown(false);
+            connection.close();
+        }
+    }
+
+    private static void execute(JupyterConnection connection, String code) {
+        Message<ExecuteRequest> message = new Message<>(
+                new Header<>(MessageType.EXECUTE_REQUEST),
+                new ExecuteRequest(code, false, true, Map.of(), false, true));
+
+        // only the handler is invoked, the deferred replies are never sent
+        connection.getHandler(MessageType.EXECUTE_REQUEST).handle(connection.prepareReplyEnv(null, message), message);
+    }
+}
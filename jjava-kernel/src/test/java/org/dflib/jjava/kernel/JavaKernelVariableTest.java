@@ -0,0 +1,103 @@
+package org.dflib.jjava.kernel;
+
+import org.dflib.jjava.kernel.execution.CompilationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JavaKernelVariableTest {
+
+    private JavaKernel kernel;
+
+    @BeforeEach
+    public void startKernel() {
+        kernel = JavaKernel.builder().name("TestKernel").build();
+        kernel.onStartup();
+    }
+
+    @AfterEach
+    public void stopKernel() {
+        kernel.onShutdown(false);
+    }
+
+    @Test
+    public void variable() {
+        kernel.evalBuilder("var list = new java.util.ArrayList<>(java.util.List.of(1, 2));").eval();
+        long snippets = kernel.getJShell().snippets().count();
+
+        Object value = kernel.evalBuilder("list").eval();
+        assertSame(kernel.evalBuilder("(list)").eval(), value);
+
+        // no snippet was compiled for the plain variable name
+        assertEquals(snippets + 1, kernel.getJShell().snippets().count());
+
+        kernel.evalBuilder("list.add(3);").eval();
+        assertEquals(List.of(1, 2, 3), kernel.evalBuilder("  list\n").eval());
+    }
+
+    @Test
+    public void variable_primitiveAndNull() {
+        kernel.evalBuilder("int i = 5;").eval();
+        kernel.evalBuilder("String s = null;").eval();
+
+        assertEquals(5, kernel.evalBuilder("i").eval());
+        assertNull(kernel.evalBuilder("s").eval());
+    }
+
+    @Test
+    public void variable_redefined() {
+        kernel.evalBuilder("int x = 1;").eval();
+        kernel.evalBuilder("String x = \"one\";").eval();
+
+        assertEquals("one", kernel.evalBuilder("x").eval());
+    }
+
+    @Test
+    public void variable_unresolved() {
+        kernel.evalBuilder("Undefined u;").eval();
+        assertThrows(RuntimeException.class, () -> kernel.evalBuilder("u").eval());
+    }
+
+    @Test
+    public void notVariable() {
+        kernel.evalBuilder("int f() { return 1; }").eval();
+        assertThrows(CompilationException.class, () -> kernel.evalBuilder("f").eval());
+        assertEquals(1, kernel.evalBuilder("f()").eval());
+    }
+
+    // a benchmark, only runs with the "benchmarks" profile
+    @Test
+    @EnabledIfSystemProperty(named = "jjava.benchmark", matches = "true")
+    public void variable_fasterThanExpression() {
+        kernel.evalBuilder("var data = java.util.List.of(1, 2, 3);").eval();
+
+        long[] direct = new long[11];
+        long[] evaluated = new long[11];
+        for (int i = 0; i < direct.length; i++) {
+            long t0 = System.nanoTime();
+            kernel.evalBuilder("data").eval();
+            direct[i] = System.nanoTime() - t0;
+
+            long t1 = System.nanoTime();
+            kernel.evalBuilder("(data)").eval();
+            evaluated[i] = System.nanoTime() - t1;
+        }
+
+        Arrays.sort(direct);
+        Arrays.sort(evaluated);
+        String report = "Variable name: " + TimeUnit.NANOSECONDS.toMicros(direct[5])
+                + " us, expression: " + TimeUnit.NANOSECONDS.toMicros(evaluated[5]) + " us";
+        assertTrue(direct[5] * 10 < evaluated[5], report);
+    }
+}
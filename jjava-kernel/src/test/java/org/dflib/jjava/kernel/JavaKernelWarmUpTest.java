@@ -0,0 +1,105 @@
+package org.dflib.jjava.kernel;
+
+import org.dflib.jjava.jupyter.kernel.BaseNotebookStatics;
+import org.dflib.jjava.kernel.magics.ClasspathMagic;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class JavaKernelWarmUpTest {
+
+    // Must run first, while javac is cold in this JVM
+    @Test
+    @Order(1)
+    public void firstCellLatency() {
+        JavaKernel kernel = JavaKernel.builder().name("TestKernel").build();
+        try {
+            long t0 = System.nanoTime();
+            kernel.startWarmUp(kernel::onStartup).join();
+            long warmUpNanos = System.nanoTime() - t0;
+
+            long t1 = System.nanoTime();
+            Object result = kernel.evalBuilder("java.util.List.of(1, 2, 3).stream().map(i -> i * 10).reduce(0, Integer::sum)").eval();
+            long firstCellNanos = System.nanoTime() - t1;
+
+            assertEquals(60, result);
+
+            // the one-time javac and JShell initialization cost has moved to the warm-up
+            assertTrue(firstCellNanos * 2 < warmUpNanos,
+                    "First cell: " + firstCellNanos / 1_000_000 + " ms, warm-up: " + warmUpNanos / 1_000_000 + " ms");
+        } finally {
+            kernel.onShutdown(false);
+        }
+    }
+
+    @Test
+    @Order(2)
+    public void evalWaitsForInit() {
+        JavaKernel kernel = JavaKernel.builder().name("TestKernel").build();
+        try {
+            kernel.startWarmUp(() -> {
+                kernel.onStartup();
+                kernel.evalBuilder("int x = 5;").eval();
+            });
+
+            // called right away, must see the variable defined during the initialization
+            assertEquals(10, kernel.evalBuilder("x * 2").eval());
+        } finally {
+            kernel.onShutdown(false);
+        }
+    }
+
+    @Test
+    @Order(3)
+    public void initFailure() {
+        JavaKernel kernel = JavaKernel.builder().name("TestKernel").build();
+        try {
+            CompletableFuture<Void> warmUp = kernel.startWarmUp(() -> {
+                throw new IllegalStateException("bad startup script");
+            });
+
+            RuntimeException e = assertThrows(RuntimeException.class, () -> kernel.evalBuilder("1 + 1").eval());
+            assertTrue(e.getMessage().contains("bad startup script"), e.getMessage());
+            assertTrue(warmUp.isCompletedExceptionally());
+
+            // reported once, the kernel is still usable after that
+            assertEquals(2, kernel.evalBuilder("1 + 1").eval());
+        } finally {
+            kernel.onShutdown(false);
+        }
+    }
+
+    // The startup snippets run on the executor threads, not on the warm-up thread, and must be able to call back into
+    // the kernel without waiting for the warm-up they are part of
+    @Test
+    @Order(4)
+    public void reentrantStartupSnippet() throws Exception {
+        Path classes = Files.createTempDirectory("jjava-warmup-");
+        JavaKernel kernel = JavaKernel.builder()
+                .name("TestKernel")
+                .lineMagic("classpath", new ClasspathMagic())
+                .build();
+        try {
+            kernel.startWarmUp(() -> {
+                kernel.onStartup();
+                kernel.evalBuilder("int x = (Integer) " + BaseNotebookStatics.class.getName() + ".eval(\"1 + 1\");").eval();
+                kernel.evalBuilder("int y = x * 2;\n%classpath " + classes + "\n").resolveMagics().eval();
+            }).get(30, TimeUnit.SECONDS);
+
+            assertEquals(4, kernel.evalBuilder("y").eval());
+        } finally {
+            kernel.onShutdown(false);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.dflib.jjava.kernel;
+
+import org.dflib.jjava.jupyter.kernel.display.DisplayData;
+import org.dflib.jjava.jupyter.kernel.display.mime.MIMEType;
+import org.dflib.jjava.jupyter.kernel.magic.LineMagic;
+import org.dflib.jjava.kernel.execution.CompilationException;
+import org.dflib.jjava.kernel.execution.EvaluationInterruptedException;
+import org.dflib.jjava.kernel.execution.WorkerPool;
+import org.dflib.jjava.kernel.execution.WorkerTerminatedException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JavaKernelWorkerTest {
+
+    private static WorkerPool workers;
+
+    @BeforeAll
+    public static void startWorkers() throws IOException {
+        workers = new WorkerPool(1, List.of("-Xmx64m"));
+    }
+
+    @AfterAll
+    public static void stopWorkers() {
+        workers.close();
+    }
+
+    private static JavaKernel workerKernel() {
+        JavaKernel kernel = JavaKernel.builder().name("TestKernel").workerPool(workers).build();
+        kernel.onStartup();
+        return kernel;
+    }
+
+    @Test
+    public void eval() {
+        JavaKernel kernel = workerKernel();
+        try {
+            assertEquals(2, kernel.evalBuilder("1 + 1").eval());
+            assertEquals(List.of("a", "b"), kernel.evalBuilder("java.util.List.of(\"a\", \"b\")").eval());
+
+            // the snippet classes can't be loaded in the kernel
+            kernel.evalBuilder("record Point(int x, int y) {}").eval();
+            assertEquals("Point[x=1, y=2]", kernel.evalBuilder("new Point(1, 2)").eval());
+            assertEquals("[Point[x=1, y=2]]", kernel.evalBuilder("java.util.List.of(new Point(1, 2))").eval());
+
+            // the worker has its own JVM
+            assertTrue((Long) kernel.evalBuilder("ProcessHandle.current().pid()").eval() != ProcessHandle.current().pid());
+        } finally {
+            kernel.onShutdown(false);
+        }
+    }
+
+    @Test
+    public void eval_rendering() {
+        JavaKernel kernel = workerKernel();
+        try {
+            // the classpath classes are sent as is
+            Object data = kernel.evalBuilder("new org.dflib.jjava.jupyter.kernel.display.DisplayData(\"text\")").eval();
+            assertTrue(data instanceof DisplayData, String.valueOf(data));
+            assertEquals("text", ((DisplayData) data).getData(MIMEType.TEXT_PLAIN));
+
+            // the snippet classes that render themselves are rendered in the worker
+            kernel.evalBuilder("import org.dflib.jjava.jupyter.kernel.display.*;\n" +
+                    "import org.dflib.jjava.jupyter.kernel.display.mime.MIMEType;\n" +
+                    "class Bold implements DisplayDataRenderable {\n" +
+                    "  public java.util.Set<MIMEType> getPreferredRenderTypes() { return java.util.Set.of(MIMEType.TEXT_HTML); }\n" +
+                    "  public void render(RenderContext context) { context.renderIfRequested(MIMEType.TEXT_HTML, () -> \"<b>bold</b>\"); }\n" +
+                    "  public String toString() { return \"bold\"; }\n" +
+                    "}").eval();
+
+            DisplayData rendered = kernel.evalBuilder("new Bold()").renderResults().eval();
+            assertEquals("<b>bold</b>", rendered.getData(MIMEType.TEXT_HTML));
+            assertEquals("bold", rendered.getData(MIMEType.TEXT_PLAIN));
+        } finally {
+            kernel.onShutdown(false);
+        }
+    }
+
+    @Test
+    public void eval_variable() {
+        JavaKernel kernel = workerKernel();
+        try {
+            kernel.evalBuilder("var list = java.util.List.of(1, 2);").eval();
+            kernel.evalBuilder("record Point(int x, int y) {}").eval();
+            kernel.evalBuilder("Point p = new Point(1, 2);").eval();
+
+            // read directly, same as evaluated
+            assertEquals(List.of(1, 2), kernel.evalBuilder("list").eval());
+            assertEquals("Point[x=1, y=2]", kernel.evalBuilder("p").eval());
+            assertEquals("Point[x=1, y=2]", kernel.evalBuilder("(p)").eval());
+        } finally {
+            kernel.onShutdown(false);
+        }
+    }
+
+    @Test
+    public void eval_magicsOnly() {
+        JavaKernel kernel = JavaKernel.builder()
+                .name("TestKernel")
+                .workerPool(workers)
+                .lineMagic("kernelPid", (LineMagic<Long, JavaKernel>) (k, args) -> ProcessHandle.current().pid())
+                .build();
+        kernel.onStartup();
+        try {
+            // runs in the kernel, not in the worker
+            assertEquals(ProcessHandle.current().pid(), (Long) kernel.evalBuilder("%kernelPid").resolveMagics().eval());
+        } finally {
+            kernel.onShutdown(false);
+        }
+    }
+
+    @Test
+    public void eval_output() {
+        JavaKernel kernel = workerKernel();
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        try {
+            System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+            kernel.evalBuilder("System.out.println(\"hello from the worker\");").eval();
+        } finally {
+            System.setOut(stdout);
+            kernel.onShutdown(false);
+        }
+
+        assertEquals("hello from the worker" + System.lineSeparator(), captured.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void eval_exitIsolated() {
+        JavaKernel kernel = workerKernel();
+        try {
+            kernel.evalBuilder("int x = 5;").eval();
+            RuntimeException e = assertThrows(RuntimeException.class, () -> kernel.evalBuilder("System.exit(3);").eval());
+            assertTrue(e.getMessage().contains("exited with code 3"), e.getMessage());
+        } finally {
+            kernel.onShutdown(false);
+        }
+
+        // the kernel JVM survived, and the next kernel gets a fresh worker
+        JavaKernel next = workerKernel();
+        try {
+            assertEquals(0L, next.getJShell().variables().count());
+            assertEquals(2, next.evalBuilder("1 + 1").eval());
+        } finally {
+            next.onShutdown(false);
+        }
+    }
+
+    @Test
+    public void eval_exitReplacesWorker() {
+        JavaKernel kernel = workerKernel();
+        try {
+            kernel.evalBuilder("import java.util.concurrent.atomic.AtomicInteger;").eval();
+            kernel.evalBuilder("int x = 5;").eval();
+            long pid = (Long) kernel.evalBuilder("ProcessHandle.current().pid()").eval();
+
+            WorkerTerminatedException e = assertThrows(WorkerTerminatedException.class, () -> kernel.evalBuilder("System.exit(3);").eval());
+            assertEquals("Worker JVM exited with code 3", e.getReason());
+
+            // the same kernel continues with a new worker, that only lost the state of the old one
+            assertEquals(0L, kernel.getJShell().variables().count());
+            assertThrows(CompilationException.class, () -> kernel.evalBuilder("x").eval());
+            assertEquals(7, kernel.evalBuilder("new AtomicInteger(7).get()").eval());
+            assertTrue((Long) kernel.evalBuilder("ProcessHandle.current().pid()").eval() != pid);
+        } finally {
+            kernel.onShutdown(false);
+        }
+    }
+
+    @Test
+    public void interrupt() throws Exception {
+        JavaKernel kernel = workerKernel();
+        try {
+            kernel.evalBuilder("1").eval();
+
+            CompletableFuture<Object> result = CompletableFuture.supplyAsync(() -> kernel.evalBuilder("Thread.sleep(60_000);").eval());
+            Thread.sleep(1000);
+            kernel.interrupt();
+
+            Exception e = assertThrows(Exception.class, () -> result.get(10, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof EvaluationInterruptedException, String.valueOf(e.getCause()));
+
+            // the worker is still usable
+            assertEquals(3, kernel.evalBuilder("1 + 2").eval());
+        } finally {
+            kernel.onShutdown(false);
+        }
+    }
+}
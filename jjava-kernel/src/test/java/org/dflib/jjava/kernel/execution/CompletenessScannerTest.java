@@ -0,0 +1,168 @@
+package org.dflib.jjava.kernel.execution;
+
+import jdk.jshell.JShell;
+import jdk.jshell.SourceCodeAnalysis;
+import org.dflib.jjava.jupyter.kernel.BaseKernel;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompletenessScannerTest {
+
+    private static final String CELL = "import java.util.*;\n"
+            + "\n"
+            + "/** A point */\n"
+            + "record Point(int x, int y) {\n"
+            + "    Point {\n"
+            + "        if (x < 0) throw new IllegalArgumentException(\"x < 0 // not a comment\");\n"
+            + "    }\n"
+            + "}\n"
+            + "\n"
+            + "int sum(List<Point> points) {\n"
+            + "    int s = 0; // a comment with a brace {\n"
+            + "    for (Point p : points) {\n"
+            + "        s += p.x() + p.y();\n"
+            + "    }\n"
+            + "    return s;\n"
+            + "}\n"
+            + "\n"
+            + "String text = \"\"\"\n"
+            + "    text block with \"quotes\" and a brace {\n"
+            + "    \"\"\";\n"
+            + "char c = '{';\n"
+            + "/* block\n"
+            + "   comment ( */\n"
+            + "try {\n"
+            + "    sum(List.of(new Point(1, 2)));\n"
+            + "} catch (Exception e) {\n"
+            + "    e.printStackTrace();\n"
+            + "}\n"
+            + "var list = new ArrayList<String>();\n"
+            + "list.add(\"a\");\n"
+            + "sum(List.of(new Point(1, 2), new Point(3, 4)))";
+
+    private static final List<String> CODE = List.of(
+            "", "   ", "// c", "/* c */", "/* c", "\"\"\"\nabc",
+            "foo(", "foo(1, 2)", "foo(1,\n  2", "foo())", "}", "#",
+            "1 +", "a =", "a.", "x ->", "a,", "a ==", "a &&", "a ?", "a :", "List<",
+            "1", "\"s\"", "'c'", "\"abc", "x", "x.y()", "x++", "(a)", "a[1]", "new A()", "this",
+            "x -> x", "java.util.List", "foo(1) bar", "x instanceof String s", "List<String>",
+            "int x = 1;", "int x = 1", "int x = 1; foo(", "int x = 1;   // c", "int x = 1;\n",
+            "String x = f()", "String f()", "String[] f()", "List<String> f()", "int f()", "void f()",
+            "void f() {}", "void f() {\n", "void f() {\n    if (x) {", "class A", "class A {}", "class A {\n",
+            "enum E { A }", "record R() {}", "@Foo", "@Foo class A {}", "import java.util.*;",
+            "if (a)", "if (a) {}", "if (a) foo();", "if (a) {} else {}", "if (a) {} else if (b) {}",
+            "if (a) foo(); else bar();", "for (;;) {}", "for (x : y)", "while (x) {}", "while (x)",
+            "try {}", "try {} catch (Exception e) {}", "try {} finally {}", "do {}", "do {} while (x);",
+            "switch (x) {}", "label: {}", "int[] a = {1}", "x = new int[]{1}", "int[] a = {1}, b",
+            "String s = switch (x) { default -> \"b\"; }", "return", "default", "else {}",
+            "String s = \"\"\"\n  a\n  \"\"\";", "String s = \"\"\"\n  a \\\"\"\" b\n", "1e+5", "0x1F + 2.5f",
+            CELL);
+
+    private static JShell jShell;
+    private static CodeEvaluator evaluator;
+
+    @BeforeAll
+    public static void createJShell() {
+        jShell = JShell.builder().executionEngine("local").build();
+        evaluator = new CodeEvaluator("test", -1, TimeUnit.MILLISECONDS);
+    }
+
+    @AfterAll
+    public static void closeJShell() {
+        jShell.close();
+    }
+
+    @Test
+    public void scan_sameAsJShell() {
+        int scanned = 0;
+        for (String code : CODE) {
+            String result = new CompletenessScanner().scan(code);
+            if (result != null) {
+                assertEquals(analyzed(code), result, code);
+                scanned++;
+            }
+        }
+
+        // most of the code is answered by the scanner
+        assertTrue(scanned > CODE.size() * 3 / 4, "Scanned " + scanned + " of " + CODE.size());
+    }
+
+    @Test
+    public void scan() {
+        CompletenessScanner scanner = new CompletenessScanner();
+        assertEquals(BaseKernel.IS_COMPLETE_YES, scanner.scan(CELL));
+        assertEquals("  ", scanner.scan("void f() {"));
+        assertEquals("    ", scanner.scan("void f() {\n  if (x) {"));
+        assertEquals("  ", scanner.scan("void f() {\n  if (x) {}"));
+        assertEquals("", scanner.scan("/* not closed"));
+        assertNull(scanner.scan("try {}"));
+        assertNull(scanner.scan("String f()"));
+        assertNull(scanner.scan("\"not closed"));
+    }
+
+    // the cell typed line by line, as by a console frontend, with the scanning resumed from the previous line
+    @Test
+    public void scan_incremental() {
+        CompletenessScanner scanner = new CompletenessScanner();
+        String[] lines = CELL.split("\n", -1);
+        for (int i = 1; i <= lines.length; i++) {
+            String code = String.join("\n", Arrays.asList(lines).subList(0, i));
+            assertEquals(new CompletenessScanner().scan(code), scanner.scan(code), code);
+            assertEquals(new CompletenessScanner().scan(code + "\n"), scanner.scan(code + "\n"), code);
+        }
+    }
+
+    // Compares the scanner with the JShell analysis on a small and a large cell
+    // a benchmark, only runs with the "benchmarks" profile
+    @Test
+    @EnabledIfSystemProperty(named = "jjava.benchmark", matches = "true")
+    public void isComplete_latency() {
+        for (int lines : new int[]{10, 5_000}) {
+            StringBuilder cell = new StringBuilder();
+            for (int i = 0; i < lines / 5; i++) {
+                cell.append("int f").append(i).append("(int x) {\n")
+                        .append("    // adds ").append(i).append("\n")
+                        .append("    return x + ").append(i).append(";\n")
+                        .append("}\n")
+                        .append("f").append(i).append("(").append(i).append(");\n");
+            }
+            String code = cell.toString();
+
+            long[] scanned = new long[5];
+            long[] analyzed = new long[5];
+            for (int i = 0; i < scanned.length; i++) {
+                long t0 = System.nanoTime();
+                assertEquals(BaseKernel.IS_COMPLETE_YES, new CompletenessScanner().scan(code));
+                scanned[i] = System.nanoTime() - t0;
+
+                long t1 = System.nanoTime();
+                assertEquals(BaseKernel.IS_COMPLETE_YES, analyzed(code));
+                analyzed[i] = System.nanoTime() - t1;
+            }
+
+            Arrays.sort(scanned);
+            Arrays.sort(analyzed);
+            String report = String.format("is_complete of %d lines: scanned %d us, analyzed by JShell %d us",
+                    lines,
+                    TimeUnit.NANOSECONDS.toMicros(scanned[2]),
+                    TimeUnit.NANOSECONDS.toMicros(analyzed[2]));
+
+            assertTrue(scanned[2] * 10 < analyzed[2], report);
+        }
+    }
+
+    private static String analyzed(String code) {
+        SourceCodeAnalysis sca = jShell.sourceCodeAnalysis();
+        return evaluator.analyzeCompleteness(sca, code);
+    }
+}
@@ -0,0 +1,15 @@
+package org.dflib.jjava.kernel.execution;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DeclarationBatchTest {
+
+    // the self-check must pass on the supported JDK versions, or batching silently falls back to one by one
+    @Test
+    public void isAvailable() {
+        int feature = Runtime.version().feature();
+        assertEquals(feature >= 17 && feature <= 21, DeclarationBatch.isAvailable());
+    }
+}
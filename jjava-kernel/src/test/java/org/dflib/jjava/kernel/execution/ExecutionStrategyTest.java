@@ -0,0 +1,21 @@
+package org.dflib.jjava.kernel.execution;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ExecutionStrategyTest {
+
+    @Test
+    public void parse() {
+        assertEquals(ExecutionStrategy.PLATFORM_THREADS, ExecutionStrategy.parse(null));
+        assertEquals(ExecutionStrategy.PLATFORM_THREADS, ExecutionStrategy.parse(" "));
+        assertEquals(ExecutionStrategy.PLATFORM_THREADS, ExecutionStrategy.parse("platform"));
+        assertEquals(ExecutionStrategy.VIRTUAL_THREADS, ExecutionStrategy.parse(" Virtual_Threads "));
+    }
+
+    @Test
+    public void parse_unknown() {
+        assertEquals(ExecutionStrategy.PLATFORM_THREADS, ExecutionStrategy.parse("virtaul"));
+    }
+}
@@ -0,0 +1,150 @@
+package org.dflib.jjava.kernel.execution;
+
+import jdk.jshell.spi.ExecutionControl;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JJavaExecutionControlTest {
+
+    private static final int INVOCATIONS = 2000;
+
+    // accessed by the static "snippet" methods below
+    private static JJavaExecutionControl control;
+    private static Thread outerThread;
+    private static Thread nestedThread;
+
+    @Test
+    public void invoke() throws Exception {
+        for (ExecutionStrategy strategy : ExecutionStrategy.values()) {
+            JJavaExecutionControl control = new JJavaExecutionControl(new JJavaLoaderDelegate(), -1, TimeUnit.MILLISECONDS, strategy);
+            try {
+                String key = control.invoke(snippet("answer"));
+                assertEquals(42, control.takeResult(key));
+            } finally {
+                control.stop();
+            }
+        }
+    }
+
+    @Test
+    public void invoke_nested() throws Exception {
+        for (ExecutionStrategy strategy : ExecutionStrategy.values()) {
+            control = new JJavaExecutionControl(new JJavaLoaderDelegate(), -1, TimeUnit.MILLISECONDS, strategy);
+            try {
+                String key = control.invoke(snippet("outer"));
+                assertEquals(42, control.takeResult(key));
+
+                // the nested snippet runs on the thread of the outer snippet, which is not the caller thread
+                assertSame(outerThread, nestedThread);
+                assertNotSame(Thread.currentThread(), outerThread);
+            } finally {
+                control.stop();
+                control = null;
+            }
+        }
+    }
+
+    @Test
+    public void invoke_timeout() {
+        for (ExecutionStrategy strategy : ExecutionStrategy.values()) {
+            JJavaExecutionControl control = new JJavaExecutionControl(new JJavaLoaderDelegate(), 100, TimeUnit.MILLISECONDS, strategy);
+            try {
+                ExecutionControl.UserException e = assertThrows(ExecutionControl.UserException.class, () -> control.invoke(snippet("sleep")));
+                assertEquals(JJavaExecutionControl.EXECUTION_TIMEOUT_NAME, e.causeExceptionClass());
+            } finally {
+                control.stop();
+            }
+        }
+    }
+
+    @Test
+    public void interrupt() throws Exception {
+        for (ExecutionStrategy strategy : ExecutionStrategy.values()) {
+            JJavaExecutionControl control = new JJavaExecutionControl(new JJavaLoaderDelegate(), -1, TimeUnit.MILLISECONDS, strategy);
+            try {
+                CompletableFuture<String> result = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        control.invoke(snippet("sleep"));
+                        return null;
+                    } catch (ExecutionControl.UserException e) {
+                        return e.causeExceptionClass();
+                    } catch (Exception e) {
+                        return e.toString();
+                    }
+                });
+
+                // wait for the snippet to start
+                while (!result.isDone()) {
+                    control.interrupt();
+                    Thread.sleep(10);
+                }
+
+                assertEquals(JJavaExecutionControl.EXECUTION_INTERRUPTED_NAME, result.get());
+            } finally {
+                control.stop();
+            }
+        }
+    }
+
+    // Measures the per-snippet overhead of handing the invocation over to another thread. Not a precise benchmark,
+    // so the bound is generous (the median is about 20 us on a single CPU), and only catches the gross regressions,
+    // e.g. a timed wait per invocation.
+    @Test
+    public void invoke_overhead() throws Exception {
+        for (ExecutionStrategy strategy : ExecutionStrategy.values()) {
+            JJavaExecutionControl control = new JJavaExecutionControl(new JJavaLoaderDelegate(), -1, TimeUnit.MILLISECONDS, strategy);
+            try {
+                Method answer = snippet("answer");
+
+                long[] times = new long[INVOCATIONS];
+                for (int i = 0; i < INVOCATIONS; i++) {
+                    long t0 = System.nanoTime();
+                    control.takeResult(control.invoke(answer));
+                    times[i] = System.nanoTime() - t0;
+                }
+
+                // the second half, after the warmup
+                long[] measured = Arrays.copyOfRange(times, INVOCATIONS / 2, INVOCATIONS);
+                Arrays.sort(measured);
+                long median = measured[measured.length / 2];
+
+                assertTrue(median < TimeUnit.MILLISECONDS.toNanos(50), strategy + " median invocation overhead: " + median + " ns");
+            } finally {
+                control.stop();
+            }
+        }
+    }
+
+    private static Method snippet(String name) throws NoSuchMethodException {
+        return JJavaExecutionControlTest.class.getDeclaredMethod(name);
+    }
+
+    static Object answer() {
+        return 42;
+    }
+
+    static Object outer() throws Exception {
+        outerThread = Thread.currentThread();
+        return control.takeResult(control.invoke(snippet("nested")));
+    }
+
+    static Object nested() {
+        nestedThread = Thread.currentThread();
+        return 42;
+    }
+
+    static Object sleep() throws InterruptedException {
+        Thread.sleep(10_000);
+        return null;
+    }
+}
@@ -0,0 +1,134 @@
+package org.dflib.jjava.kernel.execution;
+
+import jdk.jshell.JShell;
+import jdk.jshell.Snippet;
+import jdk.jshell.SnippetEvent;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnippetClassIndexTest {
+
+    private static JShell jShell;
+
+    @BeforeAll
+    public static void createJShell() {
+        jShell = JShell.builder().executionEngine("local").build();
+    }
+
+    @AfterAll
+    public static void closeJShell() {
+        jShell.close();
+    }
+
+    @Test
+    public void update() {
+        SnippetClassIndex index = new SnippetClassIndex();
+        Snippet s1 = snippet("int a = 1;");
+        Snippet s2 = snippet("int b = 2;");
+
+        assertNull(index.update(s1, "C1"));
+        assertNull(index.update(s2, "C1"));
+
+        // still used by the other snippet
+        assertNull(index.update(s1, "C2"));
+        assertEquals("C1", index.update(s2, null));
+
+        // recompiled into the same class
+        assertNull(index.update(s1, "C2"));
+        assertEquals("C2", index.update(s1, "C3"));
+        assertEquals("C3", index.update(s1, null));
+    }
+
+    @Test
+    public void update_events() {
+        SnippetClassIndex index = new SnippetClassIndex();
+
+        SnippetEvent defined = jShell.eval("int g() { return 1; }").get(0);
+        String definedClass = SnippetClassIndex.className(defined.snippet());
+        assertNull(index.update(defined));
+
+        // the overwritten snippet class is no longer used
+        List<SnippetEvent> redefined = jShell.eval("int g() { return 2; }");
+        String unused = null;
+        for (SnippetEvent event : redefined) {
+            String c = index.update(event);
+            unused = c != null ? c : unused;
+        }
+        assertEquals(definedClass, unused);
+
+        String redefinedClass = SnippetClassIndex.className(redefined.get(0).snippet());
+        assertEquals(redefinedClass, index.update(jShell.drop(redefined.get(0).snippet()).get(0)));
+    }
+
+    // Measures the index alone, without the JShell compilation that dominates a real redefinition (see
+    // JavaKernelClassUnloadingTest.redefine_costFlat()). The cost of a redefinition must not depend on the number of
+    // snippets in the session. Parsing 10,000 snippets takes a while, so only runs with "-Djjava.soak=true"
+    @Test
+    @EnabledIfSystemProperty(named = "jjava.soak", matches = "true")
+    public void update_costFlat() {
+        int[] sessionSizes = {100, 1_000, 10_000};
+        Snippet[] snippets = new Snippet[sessionSizes[sessionSizes.length - 1]];
+        for (int i = 0; i < snippets.length; i++) {
+            snippets[i] = snippet("int v" + i + " = " + i + ";");
+        }
+
+        long[] nanosPerUpdate = new long[sessionSizes.length];
+        for (int i = 0; i < sessionSizes.length; i++) {
+            nanosPerUpdate[i] = medianRedefinitionNanos(Arrays.copyOf(snippets, sessionSizes[i]));
+        }
+
+        String report = String.format("Index update time by session size: %d ns (100), %d ns (1,000), %d ns (10,000)",
+                nanosPerUpdate[0], nanosPerUpdate[1], nanosPerUpdate[2]);
+
+        // a scan of the session would be 100 times slower at 10,000 snippets than at 100
+        assertTrue(nanosPerUpdate[2] < 10 * Math.max(nanosPerUpdate[0], 100), report);
+    }
+
+    // parsed, but not evaluated, which is enough for the index
+    private static Snippet snippet(String code) {
+        return jShell.sourceCodeAnalysis().sourceToSnippets(code).get(0);
+    }
+
+    private static long medianRedefinitionNanos(Snippet[] snippets) {
+        int sessionSize = snippets.length;
+
+        // each round redefines a snippet, replacing its class, that becomes unused
+        int rounds = 100_000;
+        String[] newClasses = new String[rounds];
+        for (int r = 0; r < rounds; r++) {
+            newClasses[r] = "C" + (r % sessionSize) + "_" + (r / sessionSize + 1);
+        }
+
+        long[] times = new long[11];
+        for (int t = 0; t < times.length; t++) {
+            SnippetClassIndex index = newIndex(snippets);
+            long t0 = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                if (index.update(snippets[r % sessionSize], newClasses[r]) == null) {
+                    throw new IllegalStateException("The replaced class must be unused");
+                }
+            }
+            times[t] = (System.nanoTime() - t0) / rounds;
+        }
+
+        Arrays.sort(times);
+        return times[times.length / 2];
+    }
+
+    private static SnippetClassIndex newIndex(Snippet[] snippets) {
+        SnippetClassIndex index = new SnippetClassIndex();
+        for (int i = 0; i < snippets.length; i++) {
+            index.update(snippets[i], "C" + i + "_0");
+        }
+        return index;
+    }
+}
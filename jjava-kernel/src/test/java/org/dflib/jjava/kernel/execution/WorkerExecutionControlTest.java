@@ -0,0 +1,127 @@
+package org.dflib.jjava.kernel.execution;
+
+import jdk.jshell.spi.ExecutionControl;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WorkerExecutionControlTest {
+
+    private static final int INVOCATIONS = 500;
+
+    private static WorkerPool workers;
+
+    @BeforeAll
+    public static void startWorkers() throws IOException {
+        workers = new WorkerPool(1, List.of("-Xmx64m"));
+    }
+
+    @AfterAll
+    public static void stopWorkers() {
+        workers.close();
+    }
+
+    @Test
+    public void handshake_wrongSecret() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), workers.getPort())) {
+            socket.setSoTimeout(60_000);
+
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            for (int id = 1; id <= 2; id++) {
+                out.writeInt(id);
+                out.write(new byte[32]);
+            }
+            out.flush();
+
+            // the connection is accepted and dropped either while the pool launches its first worker, or the
+            // replacement of the taken one
+            Worker worker = workers.take();
+            try {
+                assertTrue(worker.isAlive());
+            } finally {
+                worker.destroy();
+            }
+
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    @Test
+    public void takeResults() throws Exception {
+        WorkerExecutionControl control = WorkerExecutionControl.create(workers, -1, TimeUnit.MILLISECONDS, ExecutionStrategy.PLATFORM_THREADS);
+        try {
+            control.load(new ExecutionControl.ClassBytecodes[]{snippetBytecodes()});
+
+            String k1 = control.invoke(Snippet.class.getName(), "answer");
+            String k2 = control.invoke(Snippet.class.getName(), "list");
+            String k3 = control.invoke(Snippet.class.getName(), "answer");
+
+            assertArrayEquals(new Object[]{42, List.of("a", "b"), 42}, control.takeResults(new String[]{k1, k2, k3}));
+
+            // taken
+            assertThrows(IllegalStateException.class, () -> control.takeResult(k1));
+        } finally {
+            control.close();
+        }
+    }
+
+    // Measures the round trip of invoking a loaded snippet in the worker and taking its result, without any
+    // compilation. Not a precise benchmark, and the bound is only there to catch a gross regression, like a delayed
+    // ACK on every exchange
+    @Test
+    public void invoke_overhead() throws Exception {
+        WorkerExecutionControl control = WorkerExecutionControl.create(workers, -1, TimeUnit.MILLISECONDS, ExecutionStrategy.PLATFORM_THREADS);
+        try {
+            control.load(new ExecutionControl.ClassBytecodes[]{snippetBytecodes()});
+
+            long[] times = new long[INVOCATIONS];
+            for (int i = 0; i < INVOCATIONS; i++) {
+                long t0 = System.nanoTime();
+                assertEquals(42, control.takeResult(control.invoke(Snippet.class.getName(), "answer")));
+                times[i] = System.nanoTime() - t0;
+            }
+
+            // the second half, after the warmup
+            long[] measured = Arrays.copyOfRange(times, INVOCATIONS / 2, INVOCATIONS);
+            Arrays.sort(measured);
+            long median = measured[measured.length / 2];
+
+            assertTrue(median < TimeUnit.MILLISECONDS.toNanos(50), "Median worker round trip: " + median + " ns");
+        } finally {
+            control.close();
+        }
+    }
+
+    private static ExecutionControl.ClassBytecodes snippetBytecodes() throws IOException {
+        String resource = Snippet.class.getName().replace('.', '/') + ".class";
+        try (InputStream in = WorkerExecutionControlTest.class.getClassLoader().getResourceAsStream(resource)) {
+            return new ExecutionControl.ClassBytecodes(Snippet.class.getName(), in.readAllBytes());
+        }
+    }
+
+    // defined in the worker the same way as a compiled snippet wrapper class
+    static class Snippet {
+
+        static Object answer() {
+            return 42;
+        }
+
+        static Object list() {
+            return List.of("a", "b");
+        }
+    }
+}
@@ -1,16 +1,28 @@
 package org.dflib.jjava.launcher;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 /**
  * The launcher responsible for creating a new process to run the JJava kernel.
  * <p>
  * The command to run the kernel is constructed by combining the JVM executable,
  * the JJAVA_JVM_OPTS environment variable (if set), and the kernel arguments.
+ * <p>
+ * Unless disabled with JJAVA_CDS=off, the kernel runs with an application class-data sharing (AppCDS) archive stored
+ * next to the kernel jar. The archive is dumped by the JVM when the first kernel exits, and mapped by every kernel
+ * started after that, so that the JDK, JShell, javac and the kernel classes are not loaded and verified from scratch.
+ * The archive name is derived from the kernel jar name, size and modification time and from the Java version, so an
+ * upgraded kernel or JVM results in a new archive. The archives of the previous builds of the same jar for the same
+ * Java version are deleted as stale, while the archives of the other jars and Java versions are kept, as they may be
+ * used by the other kernels sharing the directory.
  */
 // TODO: stop using exceptions for flow control. We are dealing with a single class and a main method here.
 //  All the errors should be reported as exit code and messages printed to stderr
@@ -26,6 +38,11 @@ public class KernelLauncher {
     private static final String JUL_JUPYTER_LOG_FORMAT = "[%4$.1s %1$tF %1$tT.%1$tL %3$s] %5$s%n";
 
     private static final String JJAVA_JVM_OPTS = "JJAVA_JVM_OPTS";
+    private static final String JJAVA_CDS = "JJAVA_CDS";
+
+    private static final String CDS_ARCHIVE_PREFIX = "jjava-";
+    private static final String CDS_ARCHIVE_SUFFIX = ".jsa";
+    private static final Pattern CDS_JAR_FINGERPRINT = Pattern.compile("[0-9a-f]+-[0-9a-f]+");
 
     private final List<String> args;
 
@@ -93,6 +110,11 @@ public class KernelLauncher {
             command.addAll(Arrays.asList(options));
         }
 
+        // explicit CDS options in JJAVA_JVM_OPTS take precedence over the managed archive
+        if (jvmOptions == null || !(jvmOptions.contains("SharedArchiveFile") || jvmOptions.contains("ArchiveClassesAtExit") || jvmOptions.contains("-Xshare"))) {
+            command.addAll(buildCdsOptions(kernelPath));
+        }
+
         // Add JVM option for JShell permissions
         command.add("--add-opens");
         command.add("jdk.jshell/jdk.jshell=ALL-UNNAMED");
@@ -102,6 +124,104 @@ public class KernelLauncher {
         return command;
     }
 
+    private List<String> buildCdsOptions(String kernelPath) {
+        String cds = System.getenv(JJAVA_CDS);
+        if (cds != null && (cds.equalsIgnoreCase("off") || cds.equalsIgnoreCase("false"))) {
+            return List.of();
+        }
+
+        // dynamic archives are only supported since Java 13
+        int javaVersion = Runtime.version().feature();
+        if (javaVersion < 13) {
+            return List.of();
+        }
+
+        Path kernelJar = Path.of(kernelPath).toAbsolutePath();
+        Path dir = kernelJar.getParent();
+        String jarName = kernelJar.getFileName().toString();
+        String archivePrefix = CDS_ARCHIVE_PREFIX + (jarName.endsWith(".jar") ? jarName.substring(0, jarName.length() - 4) : jarName) + "-";
+        String archiveSuffix = "-java" + Runtime.version().toString().replace('+', '_') + CDS_ARCHIVE_SUFFIX;
+        Path archive;
+        try {
+            archive = dir.resolve(archivePrefix
+                    + Long.toHexString(Files.size(kernelJar))
+                    + "-" + Long.toHexString(Files.getLastModifiedTime(kernelJar).toMillis())
+                    + archiveSuffix);
+        } catch (IOException e) {
+            LOGGER.warning(() -> "Can't read the kernel jar, starting without a CDS archive: " + e.getMessage());
+            return List.of();
+        }
+
+        List<String> options = new ArrayList<>();
+
+        // the JVM complains about every class it can't archive (e.g. lambda proxies, JShell snippets)
+        options.add("-Xlog:cds=off");
+        options.add("-Xlog:cds+dynamic=off");
+
+        if (Files.isRegularFile(archive)) {
+            LOGGER.info(() -> "Using CDS archive " + archive);
+
+            // since Java 19 the JVM can also regenerate an archive that it considers invalid
+            if (javaVersion >= 19) {
+                options.add("-XX:+AutoCreateSharedArchive");
+            }
+            options.add("-XX:SharedArchiveFile=" + archive);
+            return options;
+        }
+
+        if (!Files.isWritable(dir)) {
+            LOGGER.fine(() -> "Kernel directory is not writable, starting without a CDS archive: " + dir);
+            return List.of();
+        }
+
+        deleteStaleCdsArchives(dir, archivePrefix, archiveSuffix);
+        LOGGER.info(() -> "CDS archive will be created on kernel exit: " + archive);
+
+        if (javaVersion >= 19) {
+            options.add("-XX:+AutoCreateSharedArchive");
+            options.add("-XX:SharedArchiveFile=" + archive);
+        } else {
+            options.add("-XX:ArchiveClassesAtExit=" + archive);
+        }
+
+        return options;
+    }
+
+    // deletes the archives of the other builds of this kernel jar for this Java version, that can't be used anymore
+    private void deleteStaleCdsArchives(Path dir, String archivePrefix, String archiveSuffix) {
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(dir, CDS_ARCHIVE_PREFIX + "*" + CDS_ARCHIVE_SUFFIX)) {
+            for (Path a : archives) {
+                if (isCdsArchiveOf(a.getFileName().toString(), archivePrefix, archiveSuffix)) {
+                    deleteStaleCdsArchive(a);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warning(() -> "Failed to list stale CDS archives: " + e.getMessage());
+        }
+    }
+
+    // the fingerprint between the prefix and the suffix tells apart the jars whose names start alike, e.g. "jjava" and
+    // "jjava-1.0"
+    private static boolean isCdsArchiveOf(String archiveName, String archivePrefix, String archiveSuffix) {
+        return archiveName.length() > archivePrefix.length() + archiveSuffix.length()
+                && archiveName.startsWith(archivePrefix)
+                && archiveName.endsWith(archiveSuffix)
+                && CDS_JAR_FINGERPRINT.matcher(archiveName)
+                .region(archivePrefix.length(), archiveName.length() - archiveSuffix.length())
+                .matches();
+    }
+
+    private static void deleteStaleCdsArchive(Path archive) {
+        LOGGER.fine(() -> "Deleting stale CDS archive " + archive);
+        try {
+            Files.deleteIfExists(archive);
+        } catch (IOException e) {
+
+            // e.g. still mapped by a running kernel on Windows, will be deleted by a later launch
+            LOGGER.fine(() -> "Failed to delete stale CDS archive " + archive + ": " + e.getMessage());
+        }
+    }
+
     private String buildErrorMessage(List<String> args) {
 
         switch (args.size()) {